@@ -14,6 +14,7 @@ import au.com.bytecode.opencsv.CSVReader;
 
 import com.idylwood.misc.PowerShares;
 import com.idylwood.utils.FinUtils;
+import com.idylwood.utils.HistoricalSimulation;
 import com.idylwood.utils.MathUtils;
 import com.idylwood.yahoo.Date;
 import com.idylwood.yahoo.HistTable;
@@ -70,15 +71,14 @@ class Portfolio
 	HistTable[] tables()
 		throws IOException
 	{
-		final HistTable[] tables = new HistTable[items.size()];
-		for (int i = 0 ; i < items.size(); i++)
-			tables[i] = yf.HistoricalPrices(items.get(i).ticker);
-		return tables;
+		// downloads them in parallel
+		return yf.HistoricalPrices(Arrays.asList(tickers()));
 	}
 	public double totalLogReturn()
 		throws IOException
 	{
 		final HistTable[] tables = HistTable.merge(tables());
+		yf.PrefetchDivSplits(Arrays.asList(tickers())); // so the adjustments don't download them one by one
 		for (int i = 0; i < tables.length; i++)
 			tables[i] = tables[i]
 				.AdjustOHLCWithReinvestment();
@@ -88,6 +88,7 @@ class Portfolio
 		throws IOException
 	{
 		final HistTable[] tables = HistTable.merge(tables());
+		yf.PrefetchDivSplits(Arrays.asList(tickers()));
 		// TODO check that the begin, end is actually valid.
 		for (int i = 0; i < tables.length; i++)
 			tables[i] = tables[i]
@@ -95,6 +96,27 @@ class Portfolio
 				.AdjustOHLCWithReinvestment();
 		return totalLogReturn(tables);
 	}
+	/**
+	 * Historical simulation VAR of the portfolio over [begin, end],
+	 * see HistoricalSimulation. The weights are fractions of the capital
+	 * so the VAR and CVAR are (daily, simple) returns.
+	 * @param begin
+	 * @param end
+	 * @param threshold between 0 and 1
+	 * @return
+	 * @throws IOException
+	 */
+	public HistoricalSimulation.Report historicalVAR(final Date begin, final Date end, final double threshold)
+		throws IOException
+	{
+		final HistTable[] tables = HistTable.merge(tables());
+		yf.PrefetchDivSplits(Arrays.asList(tickers()));
+		for (int i = 0; i < tables.length; i++)
+			tables[i] = tables[i]
+				.SubTable(begin,end)
+				.AdjustOHLCWithReinvestment();
+		return new HistoricalSimulation(tables).risk(weights(), threshold);
+	}
 	private Portfolio reassignWeights(final double[] weights)
 	{
 		return Portfolio.reassignWeights(this,weights);
@@ -116,6 +138,7 @@ class Portfolio
 		throws IOException
 	{
 		final HistTable data[] = HistTable.merge(tables());
+		yf.PrefetchDivSplits(Arrays.asList(tickers()));
 		for (int i = 0; i < data.length; i++)
 			data[i] = data[i].SubTable(begin,end).AdjustOHLCWithReinvestment();
 		return markowitzPortfolio(data);
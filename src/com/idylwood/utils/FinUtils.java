@@ -27,13 +27,14 @@ package com.idylwood.utils;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import com.idylwood.utils.MathUtils.LinearRegression;
 import com.idylwood.yahoo.Date;
 import com.idylwood.yahoo.HistRow;
 import com.idylwood.yahoo.HistTable;
+import com.idylwood.yahoo.Panel;
 import com.idylwood.yahoo.Quote;
 import com.idylwood.yahoo.YahooFinance;
 import com.idylwood.yahoo.YahooFinance.Pair;
@@ -251,9 +252,9 @@ public class FinUtils {
 		if (0.0 > threshold || 1.0 < threshold)
 			throw new IllegalArgumentException("Bad threshold parameter: "+threshold);
 		final double [] logReturns = MathUtils.diff(MathUtils.log(data));
-		Arrays.sort(logReturns);
-		int idx = (int)(threshold * data.length);
-		return data[idx];
+		// only the one order statistic is needed, no need to sort. see riskReport()
+		final int idx = Math.min(logReturns.length - 1, (int)(threshold * logReturns.length));
+		return MathUtils.select(logReturns, idx);
 	}
 	
 	final public static double VAR(final HistTable data, final double threshold)
@@ -268,10 +269,11 @@ public class FinUtils {
 	{
 		if (0.0 >= threshold || 1.0 < threshold)
 			throw new IllegalArgumentException("Bad threshold parameter: "+threshold);
-		final double [] logReturns = MathUtils.sort(MathUtils.diff(MathUtils.log(data)));
+		final double [] logReturns = MathUtils.diff(MathUtils.log(data));
 		int idx = (int)Math.ceil(threshold * logReturns.length); // ceiling
-		final double [] underThreshold = MathUtils.copyOfRange(logReturns,0,idx);
-		return MathUtils.sum(underThreshold) / underThreshold.length;
+		// after the selection the idx smallest returns are logReturns[0 .. idx-1], in no particular order
+		MathUtils.select(logReturns, idx - 1);
+		return MathUtils.sum(logReturns, 0, idx) / idx;
 	}
 
 	final public static double CVAR(final HistTable data, double threshold)
@@ -281,6 +283,161 @@ public class FinUtils {
 		return CVAR(data.CloseArray(),threshold);
 	}
 
+	/**
+	 * All the usual risk metrics of a price series, see riskReport().
+	 * Returns are daily log returns. The benchmark metrics are NaN
+	 * if there was no benchmark.
+	 */
+	public static final class RiskReport
+	{
+		public final int observations; // number of returns
+		public final double meanReturn;
+		public final double stdevReturn;
+		public final double sharpeRatio; // with respect to the risk free rate
+		public final double maximumDrawdown;
+		public final double calmarRatio;
+		public final double threshold;
+		public final double VAR; // at threshold
+		public final double CVAR; // at threshold
+		public final double informationRatio; // i.e. Sharpe ratio with respect to the benchmark
+		public final double beta; // with respect to the benchmark
+		public final double treynorRatio;
+		private RiskReport(final int observations, final double meanReturn, final double stdevReturn,
+				final double sharpeRatio, final double maximumDrawdown, final double calmarRatio,
+				final double threshold, final double VAR, final double CVAR,
+				final double informationRatio, final double beta, final double treynorRatio)
+		{
+			this.observations = observations; this.meanReturn = meanReturn; this.stdevReturn = stdevReturn;
+			this.sharpeRatio = sharpeRatio; this.maximumDrawdown = maximumDrawdown; this.calmarRatio = calmarRatio;
+			this.threshold = threshold; this.VAR = VAR; this.CVAR = CVAR;
+			this.informationRatio = informationRatio; this.beta = beta; this.treynorRatio = treynorRatio;
+		}
+		@Override public String toString()
+		{
+			return "mean="+meanReturn+",stdev="+stdevReturn+",sharpe="+sharpeRatio
+				+",maxDrawdown="+maximumDrawdown+",calmar="+calmarRatio
+				+",VAR("+threshold+")="+VAR+",CVAR("+threshold+")="+CVAR
+				+",information="+informationRatio+",beta="+beta+",treynor="+treynorRatio;
+		}
+	}
+
+	/**
+	 * Calculates all the metrics of RiskReport at once. Computing them one at a time
+	 * with SharpeRatio(), CalmarRatio() etc. takes the logs and diffs over and over
+	 * and allocates several temporary arrays each time. This takes the log of each
+	 * price once and accumulates everything in one pass with compensated sums
+	 * (see MathUtils.sum), the only allocation being one array of returns for the
+	 * VAR/CVAR order statistics.
+	 * @param prices
+	 * @param benchmark may be null. Should be aligned with prices.
+	 * @param riskFreeRate as in SharpeRatio(double[],double)
+	 * @param threshold as in CVAR(). Between 0 and 1.
+	 * @return
+	 */
+	public static final RiskReport riskReport(final double[] prices, final double[] benchmark,
+			final double riskFreeRate, final double threshold)
+	{
+		if (0.0 >= threshold || 1.0 < threshold)
+			throw new IllegalArgumentException("Bad threshold parameter: "+threshold);
+		if (null!=benchmark && benchmark.length!=prices.length)
+			throw new IllegalArgumentException("Benchmark must be the same length as prices");
+		if (prices.length < 3)
+			throw new IllegalArgumentException("Need at least three prices");
+		final boolean hasBenchmark = null!=benchmark;
+		final int n = prices.length - 1;
+		final double[] returns = new double[n];
+
+		// sums are of the returns shifted by the first return, which doesn't change
+		// the (co)variances but keeps the sums of squares from losing precision.
+		double sr = 0, srr = 0, sb = 0, sbb = 0, srb = 0;
+		double er = 0, err = 0, eb = 0, ebb = 0, erb = 0;
+		double hi, val;
+		double maxDrawdown = 0;
+		double peak = prices[0];
+
+		double logPrev = Math.log(prices[0]);
+		double logBenchPrev = hasBenchmark ? Math.log(benchmark[0]) : 0;
+		final double kr = Math.log(prices[1]) - logPrev;
+		final double kb = hasBenchmark ? Math.log(benchmark[1]) - logBenchPrev : 0;
+		for (int t = 0; t < n; t++)
+		{
+			final double price = prices[t+1];
+			final double log = Math.log(price);
+			final double r = log - logPrev;
+			logPrev = log;
+			returns[t] = r;
+
+			// see MaximumDrawdown()
+			if (peak < price)
+				peak = price;
+			else
+			{
+				final double drawdown = -Math.log(price / peak);
+				if (drawdown > maxDrawdown) maxDrawdown = drawdown;
+			}
+
+			final double dr = r - kr;
+			val = dr; hi = sr + val; er += (hi - sr) - val; sr = hi;
+			val = dr*dr; hi = srr + val; err += (hi - srr) - val; srr = hi;
+			if (hasBenchmark)
+			{
+				final double logBench = Math.log(benchmark[t+1]);
+				final double db = logBench - logBenchPrev - kb;
+				logBenchPrev = logBench;
+				val = db; hi = sb + val; eb += (hi - sb) - val; sb = hi;
+				val = db*db; hi = sbb + val; ebb += (hi - sbb) - val; sbb = hi;
+				val = dr*db; hi = srb + val; erb += (hi - srb) - val; srb = hi;
+			}
+		}
+		final double Sr = sr - er;
+		final double meanReturn = Sr / n + kr;
+		final double ssr = Math.max(0, (srr - err) - Sr * Sr / n);
+		final double stdev = Math.sqrt(ssr / (n - 1));
+		final double sharpe = (meanReturn - Math.log(1+riskFreeRate)) / stdev;
+		final double calmar = (meanReturn * 250) / maxDrawdown;
+
+		double information = Double.NaN, beta = Double.NaN, treynor = Double.NaN;
+		if (hasBenchmark)
+		{
+			final double Sb = sb - eb;
+			final double meanBenchmark = Sb / n + kb;
+			final double ssb = Math.max(0, (sbb - ebb) - Sb * Sb / n);
+			final double ssrb = (srb - erb) - Sr * Sb / n;
+			// variance of the difference of the returns
+			final double ssd = Math.max(0, ssr + ssb - 2 * ssrb);
+			information = (meanReturn - meanBenchmark) / Math.sqrt(ssd / (n - 1));
+			beta = ssrb / ssb;
+			treynor = (meanReturn - meanBenchmark) / beta;
+		}
+
+		// order statistics, see VAR() and CVAR(). idx is varIdx or varIdx + 1
+		// so after selecting varIdx the idx smallest returns are returns[0 .. idx-1]
+		final int varIdx = Math.min(n - 1, (int)(threshold * n));
+		final double var = MathUtils.select(returns, varIdx);
+		final int idx = (int)Math.ceil(threshold * n);
+		double tail = 0, terr = 0;
+		for (int i = 0; i < idx; i++)
+		{
+			val = returns[i]; hi = tail + val; terr += (hi - tail) - val; tail = hi;
+		}
+		final double cvar = (tail - terr) / idx;
+
+		return new RiskReport(n, meanReturn, stdev, sharpe, maxDrawdown, calmar,
+				threshold, var, cvar, information, beta, treynor);
+	}
+
+	public static final RiskReport riskReport(final HistTable data, final HistTable benchmark,
+			final double riskFreeRate, final double threshold)
+	{
+		if (null==benchmark)
+		{
+			checkAdjusted(data);
+			return riskReport(data.CloseArray(), null, riskFreeRate, threshold);
+		}
+		checkAdjusted(data, benchmark);
+		return riskReport(data.CloseArray(), benchmark.CloseArray(), riskFreeRate, threshold);
+	}
+
 	/**
 	 * Finds the Markowitz Portfolio for the given return
 	 * Right now it does not handle edge cases, e.g. the tables have
@@ -295,16 +452,25 @@ public class FinUtils {
 	public final static double[] MarkowitzPortfolio(final HistTable[] adjusted_tables, final double portfolio_return)
 	{
 		checkAdjusted(adjusted_tables);
-		final double[][] data = new double[adjusted_tables.length][];
-		int i = 0;
-		for (HistTable ht : adjusted_tables)
-			data[i++] = MathUtils.diff(MathUtils.log(ht.CloseArray())); // yay hammering malloc
-		final int row_len = data[0].length;
-
-		final double[][] covariance = MathUtils.covariance(data);
-		final double[] returns = new double[data.length]; //==tables.size()
-		for (i = 0; i < returns.length; ++i)
-			returns[i] = data[i][row_len-1]-data[i][0]; //i.e. totalLogReturn(tables.get(i));
+		return MarkowitzPortfolio(Panel.intersect(HistTable.Field.CLOSE, adjusted_tables), portfolio_return);
+	}
+	/**
+	 * Finds the Markowitz Portfolio for the given return directly from a panel
+	 * of (adjusted) prices, without extracting the series one by one.
+	 * @param prices
+	 * @param portfolio_return
+	 * @return weights in the order of prices.symbols
+	 */
+	public final static double[] MarkowitzPortfolio(final Panel prices, final double portfolio_return)
+	{
+		final Panel logReturns = prices.logReturns();
+		final MathUtils.Matrix data = logReturns.matrix();
+		final int row_len = logReturns.rows();
+
+		final MathUtils.Matrix covariance = MathUtils.covariance(data);
+		final double[] returns = new double[data.rows()]; //==tables.size()
+		for (int i = 0; i < returns.length; ++i)
+			returns[i] = logReturns.get(row_len-1, i) - logReturns.get(0, i); //i.e. totalLogReturn(tables.get(i));
 		return OptimizationUtils.MarkowitzSolve(covariance,returns,portfolio_return);
 	}
 	/**
@@ -322,6 +488,26 @@ public class FinUtils {
 		final double mean_return = MathUtils.abs(MathUtils.mean(mean_returns));
 		return MarkowitzPortfolio(adjusted_tables, mean_return);
 	}
+	/**
+	 * Convenience version of MarkowitzPortfolio(HistTable[]) which downloads
+	 * the tables (in parallel), lines up their dates and adjusts them for
+	 * splits and reinvested dividends over [start, end].
+	 * @param symbols
+	 * @param start
+	 * @param end
+	 * @return weights in the same order as symbols
+	 * @throws IOException
+	 */
+	public static final double[] MarkowitzPortfolio(final Collection<String> symbols, final Date start, final Date end)
+		throws IOException
+	{
+		final YahooFinance yf = YahooFinance.getInstance();
+		final HistTable[] tables = HistTable.merge(yf.HistoricalPrices(symbols));
+		yf.PrefetchDivSplits(symbols);
+		for (int i = 0; i < tables.length; i++)
+			tables[i] = tables[i].SubTable(start,end).AdjustOHLCWithReinvestment();
+		return MarkowitzPortfolio(tables);
+	}
 	public static final double[] weightByEarnings(List<Quote> quotes)
 	{
 		final double[] earnings = new double[quotes.size()];
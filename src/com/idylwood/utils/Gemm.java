@@ -0,0 +1,351 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+
+
+package com.idylwood.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.idylwood.utils.MathUtils.Matrix;
+
+/**
+ * Dense matrix products over the flat row major storage of MathUtils.Matrix.
+ * The work is split over blocks of rows of the result with fork/join.
+ * Each product has two modes:
+ * - fast: cache blocked. B is packed into KC x NC panels which are streamed
+ *   through four rows of A at a time (so each load of B is used four times).
+ *   Naive summation, so same precision as the *Fast methods in MathUtils.
+ * - accurate: every element is a compensated MathUtils.linearCombination,
+ *   giving exactly the same answers as the single threaded MathUtils.matrixMultiply.
+ */
+public final class Gemm
+{
+	private Gemm() {}
+
+	// Block sizes. Not tuned very hard, a KC x NC panel of B is 1MB which should sit in L2/L3
+	// and four rows of C (4 x NC) together with the row of the panel sit in L1.
+	static final int MC = 64; // rows of the result per task
+	static final int KC = 256;
+	static final int NC = 512;
+	static final int NB = 64; // columns per block for the dot product kernels
+	// Below this many multiply-adds it isn't worth waking up other threads
+	private static final long PARALLEL_THRESHOLD = 1L << 20;
+
+	private static volatile ForkJoinPool pool = new ForkJoinPool();
+
+	/**
+	 * Sets the number of threads used for large products. 1 means everything
+	 * runs on the calling thread. Safe to call while products are running:
+	 * they finish on the pool they started with. The old pool is not shut
+	 * down since a running call may still be about to submit to it, its
+	 * threads exit by themselves once they have been idle for a while.
+	 * @param threads
+	 */
+	public static void setParallelism(final int threads)
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("Need at least one thread: "+threads);
+		pool = 1==threads ? null : new ForkJoinPool(threads);
+	}
+
+	// The pool of the products, null when they run on the calling thread.
+	// Also used by the other parallel kernels of the package so that there
+	// is only one set of threads to size.
+	static ForkJoinPool pool()
+	{
+		return pool;
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @param accurate
+	 * @return newly allocated a * b
+	 */
+	public static Matrix multiply(final Matrix a, final Matrix b, final boolean accurate)
+	{
+		return multiply(a, b, new Matrix(a.rows(), b.cols()), accurate);
+	}
+
+	/**
+	 * Calculates a * b into c, overwriting c. c must not be the same as a or b.
+	 * @return c
+	 */
+	public static Matrix multiply(final Matrix a, final Matrix b, final Matrix c, final boolean accurate)
+	{
+		if (a.cols()!=b.rows())
+			throw new ArrayIndexOutOfBoundsException("Trying to multiply matrices of different dimensions?!");
+		if (c.rows()!=a.rows() || c.cols()!=b.cols())
+			throw new ArrayIndexOutOfBoundsException("Result matrix has the wrong dimensions!");
+		if (c.data()==a.data() || c.data()==b.data())
+			throw new IllegalArgumentException("Result can't share storage with the inputs");
+		final int M = a.rows(), K = a.cols(), N = b.cols();
+		final double[] A = a.data(), C = c.data();
+		final long flops = (long)M * K * N;
+		if (accurate)
+		{
+			final double[] Bt = transpose(b.data(), K, N);
+			run(new Kernel() {
+				@Override public void rows(final int lo, final int hi)
+				{
+					dots(A, Bt, C, K, N, lo, hi);
+				}
+			}, M, flops);
+		}
+		else
+		{
+			final double[] packed = pack(b.data(), K, N);
+			run(new Kernel() {
+				@Override public void rows(final int lo, final int hi)
+				{
+					blocked(A, packed, C, K, N, lo, hi);
+				}
+			}, M, flops);
+		}
+		return c;
+	}
+
+	/**
+	 * A^T * A, without forming the transpose in fast mode. If the rows of a
+	 * are observations this is the (uncentered, unnormalized) covariance
+	 * of the columns.
+	 * @return newly allocated symmetric a.cols() x a.cols() matrix
+	 */
+	public static Matrix transposeMultiply(final Matrix a, final boolean accurate)
+	{
+		final int K = a.rows(), N = a.cols();
+		if (accurate)
+			// compensated dot products need the columns to be contiguous
+			return multiplyTranspose(new Matrix(N, K, transpose(a.data(), K, N)), true);
+		final double[] A = a.data();
+		final double[] C = new double[N*N];
+		run(new Kernel() {
+			@Override public void rows(final int lo, final int hi)
+			{
+				rankUpdates(A, C, K, N, lo, hi);
+			}
+		}, N, (long)K * N * N / 2);
+		return new Matrix(N, N, C);
+	}
+
+	/**
+	 * A * A^T, i.e. the dot products of every pair of rows of a. If the rows of a
+	 * are (centered) series this is the (unnormalized) covariance of the rows.
+	 * @return newly allocated symmetric a.rows() x a.rows() matrix
+	 */
+	public static Matrix multiplyTranspose(final Matrix a, final boolean accurate)
+	{
+		final int M = a.rows(), K = a.cols();
+		final double[] A = a.data();
+		final double[] C = new double[M*M];
+		run(new Kernel() {
+			@Override public void rows(final int lo, final int hi)
+			{
+				symmetricDots(A, C, M, K, lo, hi, accurate);
+			}
+		}, M, (long)M * M * K / 2);
+		return new Matrix(M, M, C);
+	}
+
+	// runs kernel over [0,rows), in parallel if it is worth it
+	private static void run(final Kernel kernel, final int rows, final long flops)
+	{
+		final ForkJoinPool p = pool;
+		if (null==p || rows <= MC || flops < PARALLEL_THRESHOLD)
+			kernel.rows(0, rows);
+		else
+			p.invoke(new Rows(kernel, 0, rows));
+	}
+
+	private interface Kernel
+	{
+		void rows(int lo, int hi);
+	}
+
+	private static final class Rows extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final Kernel kernel;
+		private final int lo, hi;
+		Rows(final Kernel kernel, final int lo, final int hi)
+		{
+			this.kernel = kernel; this.lo = lo; this.hi = hi;
+		}
+		@Override protected void compute()
+		{
+			if (hi - lo <= MC)
+			{
+				kernel.rows(lo, hi);
+				return;
+			}
+			// keep the split a multiple of 4 so the register tiles line up
+			final int mid = lo + (((hi - lo) >>> 1) & ~3);
+			invokeAll(new Rows(kernel, lo, mid), new Rows(kernel, mid, hi));
+		}
+	}
+
+	// row major K x N -> row major N x K
+	static double[] transpose(final double[] B, final int K, final int N)
+	{
+		final double[] ret = new double[K*N];
+		// in blocks so that neither side walks through memory with a big stride for too long
+		for (int kk = 0; kk < K; kk += NB)
+			for (int jj = 0; jj < N; jj += NB)
+			{
+				final int kEnd = Math.min(K, kk + NB), jEnd = Math.min(N, jj + NB);
+				for (int k = kk; k < kEnd; k++)
+					for (int j = jj; j < jEnd; j++)
+						ret[j*K + k] = B[k*N + j];
+			}
+		return ret;
+	}
+
+	// Copies B into contiguous KC x NC panels. The panel for (kk, jj) starts at
+	// kk*N + jj*kc and is row major with row length nc.
+	static double[] pack(final double[] B, final int K, final int N)
+	{
+		final double[] ret = new double[K*N];
+		for (int kk = 0; kk < K; kk += KC)
+		{
+			final int kc = Math.min(KC, K - kk);
+			for (int jj = 0; jj < N; jj += NC)
+			{
+				final int nc = Math.min(NC, N - jj);
+				final int panel = kk*N + jj*kc;
+				for (int k = 0; k < kc; k++)
+					System.arraycopy(B, (kk + k)*N + jj, ret, panel + k*nc, nc);
+			}
+		}
+		return ret;
+	}
+
+	// rows [lo,hi) of C = A * B, B packed by pack()
+	private static void blocked(final double[] A, final double[] packed, final double[] C,
+			final int K, final int N, final int lo, final int hi)
+	{
+		Arrays.fill(C, lo*N, hi*N, 0.0);
+		for (int kk = 0; kk < K; kk += KC)
+		{
+			final int kc = Math.min(KC, K - kk);
+			for (int jj = 0; jj < N; jj += NC)
+			{
+				final int nc = Math.min(NC, N - jj);
+				final int panel = kk*N + jj*kc;
+				int i = lo;
+				for (; i + 4 <= hi; i += 4)
+				{
+					final int a0 = i*K + kk, a1 = a0 + K, a2 = a1 + K, a3 = a2 + K;
+					final int c0 = i*N + jj, c1 = c0 + N, c2 = c1 + N, c3 = c2 + N;
+					for (int k = 0; k < kc; k++)
+					{
+						final double x0 = A[a0+k], x1 = A[a1+k], x2 = A[a2+k], x3 = A[a3+k];
+						final int b = panel + k*nc;
+						for (int j = 0; j < nc; j++)
+						{
+							final double y = packed[b+j];
+							C[c0+j] += x0*y;
+							C[c1+j] += x1*y;
+							C[c2+j] += x2*y;
+							C[c3+j] += x3*y;
+						}
+					}
+				}
+				for (; i < hi; i++)
+				{
+					final int a0 = i*K + kk;
+					final int c0 = i*N + jj;
+					for (int k = 0; k < kc; k++)
+					{
+						final double x0 = A[a0+k];
+						final int b = panel + k*nc;
+						for (int j = 0; j < nc; j++)
+							C[c0+j] += x0*packed[b+j];
+					}
+				}
+			}
+		}
+	}
+
+	// rows [lo,hi) of C = A * B with compensated dot products, Bt is B transposed
+	private static void dots(final double[] A, final double[] Bt, final double[] C,
+			final int K, final int N, final int lo, final int hi)
+	{
+		// NB rows of Bt at a time so they stay in cache for the whole row block
+		for (int jj = 0; jj < N; jj += NB)
+		{
+			final int jEnd = Math.min(N, jj + NB);
+			for (int i = lo; i < hi; i++)
+				for (int j = jj; j < jEnd; j++)
+					C[i*N + j] = MathUtils.linearCombination(A, Bt, i*K, j*K, K);
+		}
+	}
+
+	// rows [lo,hi) of the lower triangle of C = A * A^T, mirrored into the upper triangle.
+	private static void symmetricDots(final double[] A, final double[] C, final int M, final int K,
+			final int lo, final int hi, final boolean accurate)
+	{
+		for (int jj = 0; jj < hi; jj += NB)
+		{
+			final int jEnd = Math.min(hi, jj + NB);
+			for (int i = Math.max(lo, jj); i < hi; i++)
+				for (int j = jj, end = Math.min(jEnd, i + 1); j < end; j++)
+				{
+					final double d = accurate
+						? MathUtils.linearCombination(A, A, i*K, j*K, K)
+						: MathUtils.linearCombinationFast(A, A, i*K, j*K, K);
+					C[i*M + j] = d;
+					C[j*M + i] = d;
+				}
+		}
+	}
+
+	// rows [lo,hi) of the lower triangle of C = A^T * A as a sum of rank one updates
+	// (one per row of A), mirrored into the upper triangle.
+	private static void rankUpdates(final double[] A, final double[] C, final int K, final int N,
+			final int lo, final int hi)
+	{
+		for (int kk = 0; kk < K; kk += KC)
+		{
+			final int kEnd = Math.min(K, kk + KC);
+			for (int i = lo; i < hi; i++)
+			{
+				final int c = i*N;
+				for (int k = kk; k < kEnd; k++)
+				{
+					final int row = k*N;
+					final double x = A[row + i];
+					for (int j = 0; j <= i; j++)
+						C[c+j] += x*A[row+j];
+				}
+			}
+		}
+		for (int i = lo; i < hi; i++)
+			for (int j = 0; j < i; j++)
+				C[j*N + i] = C[i*N + j];
+	}
+}
@@ -0,0 +1,275 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+package com.idylwood.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.idylwood.utils.MathUtils.Matrix;
+import com.idylwood.yahoo.HistTable;
+import com.idylwood.yahoo.Panel;
+
+/**
+ * Historical simulation VAR of portfolios of the symbols of a Panel.
+ * Each date of the history is a scenario: every position is revalued
+ * with the simple return of its symbol on that date, so the P&L of a portfolio
+ * under all the scenarios is one product of its weights with the
+ * assets x scenarios matrix of returns (see Gemm). For many portfolios
+ * at once the weights are stacked into a matrix and the products are done
+ * a chunk of portfolios at a time, then the order statistics of each portfolio
+ * are selected (see MathUtils.select) in parallel with fork/join, on the same
+ * threads as the products (see Gemm.setParallelism()).
+ * <p>
+ * The weights can be holdings in currency, in which case the P&L is in currency,
+ * or fractions of the capital, in which case the P&L is a return. As in
+ * FinUtils.VAR() and CVAR() the VAR is the threshold quantile of the P&L
+ * and the CVAR the mean of the P&L at or below it, so losses are negative.
+ * Immutable, so it can be shared between threads.
+ */
+public final class HistoricalSimulation
+{
+	// The P&L of a whole book (e.g. 5000 portfolios x 2500 scenarios is 100MB)
+	// is never held at once, only the P&L of this many portfolios.
+	static final int CHUNK = 512;
+	// portfolios per fork/join task
+	static final int ROWS_PER_TASK = 16;
+
+	public final String[] symbols;
+	private final int[] dates; // YYYYMMDD, the date of each scenario
+	private final Matrix scenarios; // assets x scenarios, simple returns
+
+	/**
+	 * Takes the scenarios from the close prices of the tables, on the dates
+	 * which all of them have.
+	 * @param adjusted_tables
+	 */
+	public HistoricalSimulation(final HistTable... adjusted_tables)
+	{
+		this(Panel.intersect(HistTable.Field.CLOSE, checkAdjusted(adjusted_tables)));
+	}
+
+	/**
+	 * Takes the scenarios from the returns of the prices between consecutive dates.
+	 * @param prices must not have holes, e.g. made by Panel.intersect() or
+	 * by Panel.union() with Fill.PREVIOUS after the first date of every symbol.
+	 */
+	public HistoricalSimulation(final Panel prices)
+	{
+		if (prices.rows() < 2)
+			throw new IllegalArgumentException("Need at least two dates");
+		final Panel returns = prices.returns();
+		this.symbols = returns.symbols;
+		this.dates = returns.dates();
+		this.scenarios = returns.matrix(); // returns is ours so no need to copy it
+		for (final double r : scenarios.data())
+			if (Double.isNaN(r))
+				throw new IllegalArgumentException("Prices have holes!");
+	}
+
+	public int assets() { return scenarios.rows(); }
+	public int scenarios() { return scenarios.cols(); }
+	// Returns the date of scenario s in YYYYMMDD format
+	public int date(final int s) { return dates[s]; }
+
+	/**
+	 * The VAR and CVAR of one portfolio, and the decomposition of the VAR
+	 * over its positions.
+	 */
+	public static final class Report
+	{
+		public final double threshold;
+		public final double VAR;
+		public final double CVAR;
+		// the scenario whose P&L is the VAR
+		public final int scenario;
+		// derivative of the VAR with respect to each weight, i.e. the returns in that scenario
+		public final double[] marginalVAR;
+		// weight times marginal VAR. Sums to the VAR (up to rounding)
+		public final double[] componentVAR;
+		private Report(final double threshold, final double VAR, final double CVAR,
+				final int scenario, final double[] marginalVAR, final double[] componentVAR)
+		{
+			this.threshold = threshold; this.VAR = VAR; this.CVAR = CVAR;
+			this.scenario = scenario; this.marginalVAR = marginalVAR; this.componentVAR = componentVAR;
+		}
+		@Override public String toString()
+		{
+			return "VAR("+threshold+")="+VAR+",CVAR("+threshold+")="+CVAR
+				+",scenario="+scenario+",componentVAR="+Arrays.toString(componentVAR);
+		}
+	}
+
+	/**
+	 * @param weights one per symbol
+	 * @return newly allocated array of the P&L of the portfolio under each scenario
+	 */
+	public double[] pnl(final double[] weights)
+	{
+		checkWeights(weights.length);
+		final int S = scenarios();
+		final double[] R = scenarios.data();
+		final double[] ret = new double[S];
+		for (int i = 0; i < weights.length; i++)
+		{
+			final double w = weights[i];
+			if (0==w)
+				continue;
+			final int row = i*S;
+			for (int s = 0; s < S; s++)
+				ret[s] += w*R[row+s];
+		}
+		return ret;
+	}
+
+	/**
+	 * @param weights portfolios x symbols, one portfolio per row
+	 * @return newly allocated portfolios x scenarios matrix of the P&L
+	 */
+	public Matrix pnl(final Matrix weights)
+	{
+		checkWeights(weights.cols());
+		return Gemm.multiply(weights, scenarios, false);
+	}
+
+	/**
+	 * @param weights one per symbol
+	 * @param threshold as in FinUtils.CVAR(). Between 0 and 1.
+	 * @return
+	 */
+	public Report risk(final double[] weights, final double threshold)
+	{
+		checkThreshold(threshold);
+		final double[] pnl = pnl(weights);
+		return report(pnl, 0, weights, 0, threshold, new double[pnl.length]);
+	}
+
+	/**
+	 * Calculates the Report of many portfolios at once.
+	 * @param weights portfolios x symbols, one portfolio per row
+	 * @param threshold as in FinUtils.CVAR(). Between 0 and 1.
+	 * @return one Report per row of weights
+	 */
+	public Report[] risk(final Matrix weights, final double threshold)
+	{
+		checkThreshold(threshold);
+		checkWeights(weights.cols());
+		final int P = weights.rows(), N = assets(), S = scenarios();
+		final double[] W = weights.data();
+		final Report[] ret = new Report[P];
+		Matrix pnl = null;
+		for (int lo = 0; lo < P; lo += CHUNK)
+		{
+			final int hi = Math.min(P, lo + CHUNK);
+			final Matrix chunk = new Matrix(hi - lo, N, Arrays.copyOfRange(W, lo*N, hi*N));
+			if (null==pnl || pnl.rows()!=hi - lo)
+				pnl = new Matrix(hi - lo, S);
+			Gemm.multiply(chunk, scenarios, pnl, false);
+			final Reports task = new Reports(this, pnl.data(), W, ret, lo, 0, hi - lo, threshold);
+			// same threads as the product, see Gemm.setParallelism()
+			final ForkJoinPool p = Gemm.pool();
+			if (null==p || hi - lo <= ROWS_PER_TASK)
+				task.compute();
+			else
+				p.invoke(task);
+		}
+		return ret;
+	}
+
+	// Report of the portfolio whose P&L is pnl[off .. off+S) and weights w[wOff .. wOff+N)
+	private Report report(final double[] pnl, final int off, final double[] w, final int wOff,
+			final double threshold, final double[] scratch)
+	{
+		final int S = scenarios(), N = assets();
+		System.arraycopy(pnl, off, scratch, 0, S);
+		// order statistics as in FinUtils.riskReport(). idx is varIdx or varIdx + 1
+		// so after selecting varIdx the idx smallest P&Ls are scratch[0 .. idx-1]
+		final int varIdx = Math.min(S - 1, (int)(threshold * S));
+		final double var = MathUtils.select(scratch, varIdx);
+		final int idx = (int)Math.ceil(threshold * S);
+		final double cvar = MathUtils.sum(scratch, 0, idx) / idx;
+		// the selection lost the order, find the scenario again
+		int scenario = 0;
+		while (pnl[off+scenario]!=var)
+			++scenario;
+		final double[] marginal = scenarios.extractColumn(scenario);
+		final double[] component = new double[N];
+		for (int i = 0; i < N; i++)
+			component[i] = w[wOff+i] * marginal[i];
+		return new Report(threshold, var, cvar, scenario, marginal, component);
+	}
+
+	// Reports of rows [lo,hi) of a chunk of P&L, the first row of which is portfolio first
+	private static final class Reports extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final HistoricalSimulation sim;
+		private final double[] pnl, weights;
+		private final Report[] reports;
+		private final int first, lo, hi;
+		private final double threshold;
+		Reports(final HistoricalSimulation sim, final double[] pnl, final double[] weights, final Report[] reports,
+				final int first, final int lo, final int hi, final double threshold)
+		{
+			this.sim = sim; this.pnl = pnl; this.weights = weights; this.reports = reports;
+			this.first = first; this.lo = lo; this.hi = hi; this.threshold = threshold;
+		}
+		@Override protected void compute()
+		{
+			if (hi - lo <= ROWS_PER_TASK)
+			{
+				final int S = sim.scenarios(), N = sim.assets();
+				final double[] scratch = new double[S];
+				for (int i = lo; i < hi; i++)
+					reports[first+i] = sim.report(pnl, i*S, weights, (first+i)*N, threshold, scratch);
+				return;
+			}
+			final int mid = (lo + hi) >>> 1;
+			invokeAll(new Reports(sim, pnl, weights, reports, first, lo, mid, threshold),
+					new Reports(sim, pnl, weights, reports, first, mid, hi, threshold));
+		}
+	}
+
+	private void checkWeights(final int len)
+	{
+		if (len!=assets())
+			throw new IllegalArgumentException("Need one weight per symbol: "+len+" != "+assets());
+	}
+
+	private static void checkThreshold(final double threshold)
+	{
+		if (0.0 >= threshold || 1.0 < threshold)
+			throw new IllegalArgumentException("Bad threshold parameter: "+threshold);
+	}
+
+	private static HistTable[] checkAdjusted(final HistTable[] tables)
+	{
+		for (final HistTable ht : tables)
+			if (!ht.adjusted())
+				throw new IllegalArgumentException("Must be calculated on adjusted data");
+		return tables;
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+
+package com.idylwood.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe memoizing cache. Values are loaded on demand by a Loader
+ * without holding any lock, so different keys load in parallel. Concurrent
+ * requests for a key which is already loading wait for that load instead of
+ * starting their own (single flight).
+ * Values expire <code>ttl</code> millis after their timestamp, and when there
+ * are more than <code>maximumSize</code> of them the least recently used
+ * ones are evicted.
+ * @param <K>
+ * @param <V>
+ */
+public final class LoadingCache<K,V>
+{
+	public static abstract class Loader<K,V>
+	{
+		/**
+		 * Loads the value for key.
+		 * @param stale the expired value for key if there is one, otherwise null.
+		 * Can be used to only load what has changed.
+		 */
+		public abstract V load(K key, V stale) throws IOException;
+
+		/**
+		 * Loads several values at once. The default just calls load() on each
+		 * key, override it if the values can be fetched in one go.
+		 * @param keys distinct keys
+		 * @param stale the corresponding expired values (or nulls)
+		 * @return the values in the same order as keys
+		 */
+		public List<V> loadAll(final List<K> keys, final List<V> stale) throws IOException
+		{
+			final List<V> ret = new ArrayList<V>(keys.size());
+			for (int i = 0; i < keys.size(); i++)
+				ret.add(load(keys.get(i), stale.get(i)));
+			return ret;
+		}
+
+		/**
+		 * The time in millis the value was fetched, from which its expiry is
+		 * calculated. Defaults to now, i.e. the time it was loaded into the cache.
+		 */
+		public long timestamp(final V value)
+		{
+			return System.currentTimeMillis();
+		}
+	}
+
+	// A value, or a value which is in the middle of being loaded.
+	private static final class Entry<V>
+	{
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile V value;
+		private volatile Throwable error;
+		private volatile long timestamp;
+		volatile long lastAccess = System.nanoTime();
+
+		void set(final V value, final long timestamp)
+		{
+			this.value = value; this.timestamp = timestamp;
+			done.countDown();
+		}
+		void fail(final Throwable error)
+		{
+			this.error = error;
+			done.countDown();
+		}
+		boolean isDone() { return 0==done.getCount(); }
+		// in flight entries never expire, that's what makes the loading single flight
+		boolean expired(final long now, final long ttl)
+		{
+			return isDone() && (null!=error || now - timestamp > ttl);
+		}
+		// returns the value if it loaded successfully, otherwise null.
+		V valueOrNull()
+		{
+			return isDone() && null==error ? value : null;
+		}
+		V await()
+			throws IOException
+		{
+			try
+			{
+				done.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for load");
+			}
+			if (null==error)
+				return value;
+			if (error instanceof IOException)
+				throw (IOException) error;
+			if (error instanceof RuntimeException)
+				throw (RuntimeException) error;
+			if (error instanceof Error)
+				throw (Error) error;
+			throw new IOException(error);
+		}
+	}
+
+	private final ConcurrentMap<K,Entry<V>> map = new ConcurrentHashMap<K,Entry<V>>();
+	private final Loader<K,V> loader;
+	private final long ttl;
+	private volatile int maximumSize;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong loadNanos = new AtomicLong();
+
+	/**
+	 * @param ttl time to live in millis
+	 * @param maximumSize maximum number of values to keep
+	 * @param loader
+	 */
+	public LoadingCache(final long ttl, final int maximumSize, final Loader<K,V> loader)
+	{
+		if (maximumSize < 1)
+			throw new IllegalArgumentException("Bad maximum size: "+maximumSize);
+		this.ttl = ttl; this.maximumSize = maximumSize; this.loader = loader;
+	}
+
+	public void setMaximumSize(final int maximumSize)
+	{
+		if (maximumSize < 1)
+			throw new IllegalArgumentException("Bad maximum size: "+maximumSize);
+		this.maximumSize = maximumSize;
+		evict();
+	}
+
+	/**
+	 * Returns the value for key, loading it if it is not there or has expired.
+	 * @param key
+	 * @return
+	 * @throws IOException if the load failed
+	 */
+	public V get(final K key)
+		throws IOException
+	{
+		return getAll(Collections.singletonList(key)).get(0);
+	}
+
+	/**
+	 * Returns the values for keys in the same order, loading all the
+	 * missing or expired ones with a single call to Loader#loadAll.
+	 * @param keys
+	 * @return newly allocated list
+	 * @throws IOException if any of the loads failed
+	 */
+	public List<V> getAll(final List<K> keys)
+		throws IOException
+	{
+		final Map<K,Entry<V>> entries = new HashMap<K,Entry<V>>();
+		final List<K> toLoad = new ArrayList<K>();
+		final List<V> stale = new ArrayList<V>();
+		final List<Entry<V>> loading = new ArrayList<Entry<V>>();
+		for (final K key : keys)
+		{
+			if (entries.containsKey(key))
+				continue;
+			while (true)
+			{
+				final Entry<V> e = map.get(key);
+				if (null!=e && !e.expired(System.currentTimeMillis(), ttl))
+				{
+					hits.incrementAndGet();
+					entries.put(key, e);
+					break;
+				}
+				final Entry<V> fresh = new Entry<V>();
+				final boolean won = null==e
+					? null==map.putIfAbsent(key, fresh)
+					: map.replace(key, e, fresh);
+				if (won)
+				{
+					misses.incrementAndGet();
+					entries.put(key, fresh);
+					toLoad.add(key);
+					stale.add(null==e ? null : e.valueOrNull());
+					loading.add(fresh);
+					break;
+				}
+				// somebody else got there first, try again.
+			}
+		}
+		if (!toLoad.isEmpty())
+		{
+			load(toLoad, stale, loading);
+			evict();
+		}
+		final List<V> ret = new ArrayList<V>(keys.size());
+		final long now = System.nanoTime();
+		for (final K key : keys)
+		{
+			final Entry<V> e = entries.get(key);
+			e.lastAccess = now;
+			ret.add(e.await());
+		}
+		return ret;
+	}
+
+	private void load(final List<K> keys, final List<V> stale, final List<Entry<V>> entries)
+	{
+		final long start = System.nanoTime();
+		try
+		{
+			final List<V> values = loader.loadAll(keys, stale);
+			if (values.size()!=keys.size())
+				throw new IllegalStateException("Loader returned "+values.size()+" values for "+keys.size()+" keys");
+			for (int i = 0; i < keys.size(); i++)
+				entries.get(i).set(values.get(i), loader.timestamp(values.get(i)));
+		}
+		catch (Throwable t)
+		{
+			failures.incrementAndGet();
+			// don't cache failures, the next caller will retry
+			for (int i = 0; i < keys.size(); i++)
+			{
+				entries.get(i).fail(t);
+				map.remove(keys.get(i), entries.get(i));
+			}
+		}
+		finally
+		{
+			loadNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	// Evicts least recently used values until we are within the maximum size
+	private void evict()
+	{
+		while (map.size() > maximumSize)
+		{
+			K oldest = null;
+			Entry<V> oldestEntry = null;
+			for (final Map.Entry<K,Entry<V>> me : map.entrySet())
+			{
+				final Entry<V> e = me.getValue();
+				if (!e.isDone())
+					continue; // don't evict in flight loads
+				if (null==oldestEntry || e.lastAccess < oldestEntry.lastAccess)
+				{
+					oldest = me.getKey();
+					oldestEntry = e;
+				}
+			}
+			if (null==oldestEntry)
+				return; // everything is in flight
+			if (map.remove(oldest, oldestEntry))
+				evictions.incrementAndGet();
+		}
+	}
+
+	// Inserts a value which was loaded some other way
+	public void put(final K key, final V value)
+	{
+		final Entry<V> e = new Entry<V>();
+		e.set(value, loader.timestamp(value));
+		map.put(key, e);
+		evict();
+	}
+
+	public void invalidate(final K key)
+	{
+		map.remove(key);
+	}
+
+	public void clear()
+	{
+		map.clear();
+	}
+
+	public int size()
+	{
+		return map.size();
+	}
+
+	// Number of requests which found a value (or a load in progress)
+	public long hits() { return hits.get(); }
+	// Number of requests which had to load
+	public long misses() { return misses.get(); }
+	// Number of calls to the loader which threw
+	public long failures() { return failures.get(); }
+	public long evictions() { return evictions.get(); }
+	// Total time spent in the loader in nanoseconds
+	public long loadTimeNanos() { return loadNanos.get(); }
+
+	@Override public String toString()
+	{
+		return "hits="+hits()+",misses="+misses()+",failures="+failures()
+			+",evictions="+evictions()+",loadTimeMillis="+loadTimeNanos()/1000000+",size="+size();
+	}
+}
@@ -0,0 +1,627 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+package com.idylwood.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.idylwood.utils.MathUtils.Matrix;
+
+/**
+ * Mean variance (Markowitz) portfolios: the weights w of least variance w'Sw
+ * with sum(w) = 1 and a given expected return r'w, optionally with box
+ * constraints lower <= w <= upper (long only is lower = 0, upper = infinity).
+ * <p>
+ * The covariance is factored once (Cholesky, S = LL') when the object is made.
+ * Without constraints the solution is a combination of S^-1 1 and S^-1 r, which
+ * are kept, so each point of the frontier is only O(k) and a frontier sweep
+ * costs one factorization. With constraints each target is solved with a
+ * primal active set method: starting from a feasible point which has most
+ * weights at their bounds, one weight is freed or fixed per iteration and the
+ * Cholesky factor of the covariance of the free weights is updated in O(k^2)
+ * rather than refactored.
+ * Immutable, so it can be shared between threads.
+ */
+public final class Markowitz
+{
+	// A pivot of the Cholesky factorization below this times the variance of
+	// its asset is rounding noise, i.e. the asset is a combination of the others.
+	static final double PIVOT_TOLERANCE = 1e-12;
+	// Steps of a weight smaller than this (relative to the weight) are rounding noise
+	static final double STEP_TOLERANCE = 1e-12;
+	private final int k;
+	private final double[] S; // k x k row major covariance
+	private final double[] returns;
+	private final double maxVariance;
+	private final double[] inv1; // S^-1 1
+	private final double[] invR; // S^-1 r
+	// 1'S^-1 1, 1'S^-1 r, r'S^-1 r and A*C - B*B
+	private final double A, B, C, D;
+
+	/**
+	 * @param covariance symmetric positive definite
+	 * @param returns expected return of each asset
+	 * @throws IllegalArgumentException if the covariance is not positive definite
+	 * (up to rounding, see PIVOT_TOLERANCE) or the returns are all the same (so there is no frontier)
+	 */
+	public Markowitz(final Matrix covariance, final double[] returns)
+	{
+		k = covariance.rows();
+		if (covariance.cols()!=k)
+			throw new IllegalArgumentException("Covariance needs to be square matrix");
+		if (returns.length!=k)
+			throw new IllegalArgumentException("Returns must be same length as covariance");
+		this.S = covariance.data().clone();
+		this.returns = returns.clone();
+		double max = 0;
+		for (int i = 0; i < k; i++)
+			max = Math.max(max, S[i*k+i]);
+		this.maxVariance = max;
+		final double[] L = cholesky(S, k);
+		final double[] ones = new double[k];
+		Arrays.fill(ones, 1);
+		inv1 = choleskySolve(L, k, k, ones);
+		invR = choleskySolve(L, k, k, this.returns);
+		A = MathUtils.sum(inv1);
+		B = MathUtils.linearCombination(this.returns, inv1);
+		C = MathUtils.linearCombination(this.returns, invR);
+		D = A*C - B*B;
+		// D is (1'S^-1 1)(r'S^-1 r) - (1'S^-1 r)^2 >= 0 by Cauchy-Schwarz, 0 iff r is constant
+		if (!(D > 1e-12 * A * C))
+			throw new IllegalArgumentException("Returns must not all be the same");
+	}
+
+	public int size() { return k; }
+
+	/**
+	 * @return the expected return of the portfolio of least variance
+	 */
+	public double minimumVarianceReturn()
+	{
+		return B / A;
+	}
+
+	/**
+	 * Unconstrained (short selling allowed) frontier portfolio.
+	 * @param portfolio_return
+	 * @return newly allocated weights
+	 */
+	public double[] weights(final double portfolio_return)
+	{
+		final double a = (C - portfolio_return*B) / D;
+		final double b = (portfolio_return*A - B) / D;
+		final double[] ret = new double[k];
+		for (int i = 0; i < k; i++)
+			ret[i] = a*inv1[i] + b*invR[i];
+		return ret;
+	}
+
+	/**
+	 * Variance of the unconstrained frontier portfolio, without forming it.
+	 * @param portfolio_return
+	 * @return
+	 */
+	public double variance(final double portfolio_return)
+	{
+		final double q = portfolio_return;
+		return (A*q*q - 2*B*q + C) / D;
+	}
+
+	/**
+	 * Unconstrained frontier, see weights(double).
+	 * @param targets the portfolio returns
+	 * @return newly allocated targets.length x size() matrix, one portfolio per row
+	 */
+	public Matrix frontier(final double[] targets)
+	{
+		final Matrix ret = new Matrix(targets.length, k);
+		for (int i = 0; i < targets.length; i++)
+			System.arraycopy(weights(targets[i]), 0, ret.data(), i*k, k);
+		return ret;
+	}
+
+	/**
+	 * Constrained frontier, see weights(double, double[], double[]).
+	 * @param targets the portfolio returns
+	 * @param lower
+	 * @param upper
+	 * @return newly allocated targets.length x size() matrix, one portfolio per row.
+	 * The rows of infeasible targets are NaN.
+	 */
+	public Matrix frontier(final double[] targets, final double[] lower, final double[] upper)
+	{
+		final Matrix ret = new Matrix(targets.length, k);
+		for (int i = 0; i < targets.length; i++)
+		{
+			final double[] w = weights(targets[i], lower, upper);
+			if (null==w)
+				Arrays.fill(ret.data(), i*k, (i+1)*k, Double.NaN);
+			else
+				System.arraycopy(w, 0, ret.data(), i*k, k);
+		}
+		return ret;
+	}
+
+	/**
+	 * Long only frontier portfolio.
+	 * @param portfolio_return
+	 * @return newly allocated weights, or null if no long only portfolio has the return
+	 */
+	public double[] longOnlyWeights(final double portfolio_return)
+	{
+		final double[] upper = new double[k];
+		Arrays.fill(upper, Double.POSITIVE_INFINITY);
+		return weights(portfolio_return, new double[k], upper);
+	}
+
+	/**
+	 * Frontier portfolio with box constraints.
+	 * @param portfolio_return
+	 * @param lower finite lower bound of each weight
+	 * @param upper upper bound of each weight, may be infinite
+	 * @return newly allocated weights, or null if no portfolio within the bounds has the return
+	 */
+	public double[] weights(final double portfolio_return, final double[] lower, final double[] upper)
+	{
+		if (lower.length!=k || upper.length!=k)
+			throw new IllegalArgumentException("Need one bound per asset");
+		for (int i = 0; i < k; i++)
+			if (Double.isInfinite(lower[i]) || Double.isNaN(lower[i]) || !(lower[i] <= upper[i]))
+				throw new IllegalArgumentException("Bad bounds for asset "+i+": ["+lower[i]+", "+upper[i]+"]");
+		final double[] target = { portfolio_return };
+		final boolean[] unique = new boolean[1];
+		final double[] w = feasiblePoint(target, lower, upper, unique);
+		if (null==w)
+			return null;
+		if (!unique[0])
+			new ActiveSet(w, target[0], lower, upper).solve();
+		return w;
+	}
+
+	/**
+	 * Finds weights within the bounds with the portfolio return, with at most
+	 * two weights strictly between their bounds. The weights in excess of the
+	 * lower bounds are filled greedily by decreasing return, which gives the
+	 * largest return, and by increasing return, which gives the least, and
+	 * the two are mixed to give the target.
+	 * @param target the portfolio return, which is moved onto the least or
+	 * largest return if it is outside of them by a rounding error
+	 * @param unique set to whether the point is the only feasible one, which
+	 * happens at the least or largest return unless there are ties in the returns
+	 * @return null if infeasible
+	 */
+	private double[] feasiblePoint(final double[] target, final double[] lower, final double[] upper,
+			final boolean[] unique)
+	{
+		final double budget = 1 - MathUtils.sum(lower);
+		if (budget < 0)
+			return null;
+		final Integer[] order = new Integer[k];
+		for (int i = 0; i < k; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override public int compare(final Integer x, final Integer y)
+			{
+				return Double.compare(returns[x], returns[y]);
+			}
+		});
+		final double[] least = fill(order, lower, upper, budget, false);
+		final double[] most = fill(order, lower, upper, budget, true);
+		if (null==least || null==most)
+			return null;
+		final double rLeast = MathUtils.linearCombination(returns, least);
+		final double rMost = MathUtils.linearCombination(returns, most);
+		final double tol = 1e-12 * Math.max(1, Math.max(Math.abs(rLeast), Math.abs(rMost)));
+		if (target[0] < rLeast - tol || target[0] > rMost + tol)
+			return null;
+		final double q = Math.max(rLeast, Math.min(rMost, target[0]));
+		target[0] = q;
+		// at the ends the greedy fill is the answer, unless weight can be moved
+		// between two assets with the same return. How close to the end counts as
+		// the end depends on the spread of the returns, not on their size.
+		final double end = 1e-14 * (rMost - rLeast);
+		if (q >= rMost - end && !hasTie(order, most, lower, upper))
+		{
+			unique[0] = true;
+			return most;
+		}
+		if (q <= rLeast + end && !hasTie(order, least, lower, upper))
+		{
+			unique[0] = true;
+			return least;
+		}
+		final double theta = rMost - rLeast > 0
+			? Math.max(0, Math.min(1, (q - rLeast) / (rMost - rLeast)))
+			: 0.5;
+		final double[] ret = new double[k];
+		for (int i = 0; i < k; i++)
+			ret[i] = Math.max(lower[i], Math.min(upper[i], (1 - theta)*least[i] + theta*most[i]));
+		return ret;
+	}
+
+	// whether some asset can give weight to another one with the same return
+	private boolean hasTie(final Integer[] order, final double[] w, final double[] lower, final double[] upper)
+	{
+		int start = 0;
+		while (start < order.length)
+		{
+			int end = start + 1;
+			while (end < order.length && returns[order[end]]==returns[order[start]])
+				++end;
+			int decrease = 0, increase = 0, both = 0;
+			for (int n = start; n < end; n++)
+			{
+				final int i = order[n];
+				final boolean down = w[i] > lower[i], up = w[i] < upper[i];
+				if (down) ++decrease;
+				if (up) ++increase;
+				if (down && up) ++both;
+			}
+			// a pair of different assets, unless the only one which can move either way is the same
+			if (decrease > 0 && increase > 0 && !(1==decrease && 1==increase && 1==both))
+				return true;
+			start = end;
+		}
+		return false;
+	}
+
+	// lower bounds plus budget, filled in the order (reversed if descending)
+	private static double[] fill(final Integer[] order, final double[] lower, final double[] upper,
+			double budget, final boolean descending)
+	{
+		final double[] ret = lower.clone();
+		for (int n = 0; n < order.length && budget > 0; n++)
+		{
+			final int i = order[descending ? order.length - 1 - n : n];
+			final double add = Math.min(budget, upper[i] - lower[i]);
+			ret[i] += add;
+			budget -= add;
+		}
+		return budget > 1e-12 ? null : ret;
+	}
+
+	/**
+	 * Primal active set method (Nocedal and Wright, algorithm 16.3) for
+	 * min w'Sw/2 s.t. 1'w = 1, r'w = q, lower <= w <= upper, starting from
+	 * a feasible w. The working set is the weights fixed at a bound; the other
+	 * ones are free and their covariance is kept factored.
+	 */
+	private final class ActiveSet
+	{
+		final double[] w, lower, upper;
+		final double q; // target return
+		final double[] g; // S*w
+		final int[] free; // indices of the free weights, in the order of the factor
+		final boolean[] isFree;
+		final double[] L; // Cholesky factor of S restricted to free, lower triangle with row stride k
+		int m; // number of free weights
+		double a, b; // multipliers of the equality constraints
+
+		ActiveSet(final double[] w, final double q, final double[] lower, final double[] upper)
+		{
+			this.w = w; this.q = q; this.lower = lower; this.upper = upper;
+			g = new double[k];
+			for (int i = 0; i < k; i++)
+				g[i] = MathUtils.linearCombinationFast(S, w, i*k, 0, k);
+			free = new int[k];
+			isFree = new boolean[k];
+			L = new double[k*k];
+			for (int i = 0; i < k; i++)
+				if (lower[i] < w[i] && w[i] < upper[i])
+					add(i);
+			// the equality constraints must stay independent on the free weights,
+			// i.e. there must be two free weights with different returns
+			for (int i = 0; i < k && !independent(); i++)
+				if (!isFree[i] && lower[i] < upper[i] && (0==m || returns[i]!=returns[free[0]]))
+					add(i);
+		}
+
+		private boolean independent()
+		{
+			return independentWithout(-1);
+		}
+
+		// whether two free weights other than the one at position skip have different returns
+		private boolean independentWithout(final int skip)
+		{
+			int first = -1;
+			for (int n = 0; n < m; n++)
+			{
+				if (n==skip)
+					continue;
+				if (-1==first)
+					first = free[n];
+				else if (returns[free[n]]!=returns[first])
+					return true;
+			}
+			return false;
+		}
+
+		void solve()
+		{
+			final double tol = 1e-10 * maxVariance;
+			final int maxIterations = 10*k + 100;
+			boolean atMinimum = false;
+			for (int iteration = 0; iteration < maxIterations; iteration++)
+			{
+				if (!atMinimum)
+				{
+					final double[] p = step();
+					if (null==p)
+					{
+						// the equality constraints are (numerically) dependent on the free
+						// weights so they can't move, w is the minimum for the working set
+						atMinimum = true;
+						continue;
+					}
+					// longest step along p which stays within the bounds. Steps which are
+					// rounding noise don't block, otherwise a weight at its bound would stop
+					// the step before it starts. Neither does a weight without which the
+					// equality constraints would become dependent.
+					double alpha = 1;
+					int blocking = -1;
+					for (int n = 0; n < m; n++)
+					{
+						final int i = free[n];
+						if (Math.abs(p[n]) <= STEP_TOLERANCE * (1 + Math.abs(w[i])))
+							continue;
+						final double ratio = p[n] < 0 ? (lower[i] - w[i]) / p[n]
+							: p[n] > 0 ? (upper[i] - w[i]) / p[n]
+							: Double.POSITIVE_INFINITY;
+						if (ratio < alpha && independentWithout(n))
+						{
+							alpha = ratio;
+							blocking = n;
+						}
+					}
+					move(p, Math.max(0, alpha));
+					// the steps which were ignored may have crossed a bound by a rounding error
+					for (int n = 0; n < m; n++)
+					{
+						final int i = free[n];
+						w[i] = Math.max(lower[i], Math.min(upper[i], w[i]));
+					}
+					if (-1==blocking)
+						atMinimum = true;
+					else
+					{
+						final int i = free[blocking];
+						w[i] = p[blocking] < 0 ? lower[i] : upper[i];
+						remove(blocking);
+					}
+					continue;
+				}
+				// at the minimum for the working set, check the multipliers of the bounds
+				int worst = -1;
+				double most = -tol;
+				for (int i = 0; i < k; i++)
+				{
+					if (isFree[i] || lower[i]==upper[i])
+						continue;
+					final double z = g[i] - a - b*returns[i];
+					final double multiplier = w[i]==lower[i] ? z : -z;
+					if (multiplier < most)
+					{
+						most = multiplier;
+						worst = i;
+					}
+				}
+				if (-1==worst)
+					return;
+				add(worst);
+				atMinimum = false;
+			}
+			throw new RuntimeException("Active set method did not converge");
+		}
+
+		// minimizes over the free weights with the others fixed, returns the step
+		// from w in the order of free and sets the multipliers a, b. The step also
+		// cancels the residual of the equality constraints, so rounding errors
+		// don't pile up over the iterations when the returns are nearly the same.
+		// Returns null if the equality constraints are dependent on the free weights.
+		private double[] step()
+		{
+			// r'w = q is the same constraint as (r - shift)'w = q - shift given 1'w = 1.
+			// Centering the returns keeps 1 and r from being nearly parallel when the
+			// returns are large compared to their spread, which would make a and b
+			// huge and p the difference of two nearly equal vectors.
+			double shift = 0;
+			for (int n = 0; n < m; n++)
+				shift += returns[free[n]];
+			shift /= m;
+			final double[] ones = new double[m], r = new double[m], gF = new double[m];
+			for (int n = 0; n < m; n++)
+			{
+				ones[n] = 1;
+				r[n] = returns[free[n]] - shift;
+				gF[n] = g[free[n]];
+			}
+			final double[] y1 = choleskySolve(L, k, m, ones);
+			final double[] yr = choleskySolve(L, k, m, r);
+			final double[] yg = choleskySolve(L, k, m, gF);
+			// p = a*y1 + b*yr - yg must satisfy both equality constraints at w + p
+			final double m11 = MathUtils.sum(y1), m12 = MathUtils.sum(yr);
+			final double m21 = MathUtils.linearCombination(r, y1), m22 = MathUtils.linearCombination(r, yr);
+			final double c1 = MathUtils.sum(yg) + 1 - MathUtils.sum(w);
+			double residual = q - shift;
+			for (int i = 0; i < k; i++)
+				residual -= (returns[i] - shift) * w[i];
+			final double c2 = MathUtils.linearCombination(r, yg) + residual;
+			final double det = m11*m22 - m12*m21;
+			// m is a Gram matrix so det >= 0, and 0 iff 1 and r are collinear on the free weights
+			if (!(det > 1e-14 * m11 * m22))
+			{
+				fitMultipliers();
+				return null;
+			}
+			b = (m11*c2 - c1*m21) / det;
+			// g = a + b*(r - shift) on the free weights, back to g = a + b*r
+			a = (c1*m22 - m12*c2) / det - b*shift;
+			final double a0 = a + b*shift;
+			final double[] p = new double[m];
+			for (int n = 0; n < m; n++)
+				p[n] = a0*y1[n] + b*yr[n] - yg[n];
+			return p;
+		}
+
+		// least squares fit of the gradient on the free weights by a + b*r, which is
+		// exact at the minimum for the working set. b = 0 if the free returns are all the same.
+		private void fitMultipliers()
+		{
+			double s1 = 0, sr = 0, srr = 0, sg = 0, srg = 0;
+			for (int n = 0; n < m; n++)
+			{
+				final double r = returns[free[n]], gn = g[free[n]];
+				s1 += 1; sr += r; srr += r*r; sg += gn; srg += r*gn;
+			}
+			final double det = s1*srr - sr*sr;
+			if (det > 1e-14 * s1 * srr)
+			{
+				a = (sg*srr - sr*srg) / det;
+				b = (s1*srg - sr*sg) / det;
+			}
+			else
+			{
+				a = sg / s1;
+				b = 0;
+			}
+		}
+
+		private void move(final double[] p, final double alpha)
+		{
+			if (0==alpha)
+				return;
+			for (int n = 0; n < m; n++)
+			{
+				final int j = free[n];
+				final double d = alpha*p[n];
+				w[j] += d;
+				// column j of S is row j, which is contiguous
+				final int row = j*k;
+				for (int i = 0; i < k; i++)
+					g[i] += d*S[row+i];
+			}
+		}
+
+		// frees weight i, appending a row to the factor
+		private void add(final int i)
+		{
+			final int row = m*k;
+			double diag = S[i*k+i];
+			for (int c = 0; c < m; c++)
+			{
+				final double l = (S[i*k+free[c]] - MathUtils.linearCombinationFast(L, L, row, c*k, c)) / L[c*k+c];
+				L[row+c] = l;
+				diag -= l*l;
+			}
+			if (!(diag > PIVOT_TOLERANCE * S[i*k+i]))
+				throw new IllegalArgumentException("Covariance is not positive definite");
+			L[row+m] = Math.sqrt(diag);
+			free[m++] = i;
+			isFree[i] = true;
+		}
+
+		// fixes the free weight at position n: drops row and column n of the
+		// factor and restores the rows below it with a rank one update
+		private void remove(final int n)
+		{
+			isFree[free[n]] = false;
+			final double[] x = new double[m];
+			for (int r = n + 1; r < m; r++)
+			{
+				x[r-1] = L[r*k+n];
+				System.arraycopy(L, r*k, L, (r-1)*k, n);
+				System.arraycopy(L, r*k + n + 1, L, (r-1)*k + n, r - n);
+				free[r-1] = free[r];
+			}
+			--m;
+			for (int c = n; c < m; c++)
+			{
+				final double lcc = L[c*k+c];
+				final double rr = Math.hypot(lcc, x[c]);
+				final double cos = rr / lcc, sin = x[c] / lcc;
+				L[c*k+c] = rr;
+				for (int r = c + 1; r < m; r++)
+				{
+					final double l = (L[r*k+c] + sin*x[r]) / cos;
+					L[r*k+c] = l;
+					x[r] = cos*x[r] - sin*l;
+				}
+			}
+		}
+	}
+
+	// Cholesky-Banachiewicz, returns newly allocated lower triangle, row major
+	private static double[] cholesky(final double[] S, final int k)
+	{
+		final double[] L = new double[k*k];
+		for (int i = 0; i < k; i++)
+		{
+			final int row = i*k;
+			for (int j = 0; j < i; j++)
+				L[row+j] = (S[row+j] - MathUtils.linearCombinationFast(L, L, row, j*k, j)) / L[j*k+j];
+			final double diag = S[row+i] - MathUtils.linearCombinationFast(L, L, row, row, i);
+			// relative to the variance, otherwise an asset which is a combination
+			// of the others factors its rounding noise
+			if (!(diag > PIVOT_TOLERANCE * S[row+i]))
+				throw new IllegalArgumentException("Covariance is not positive definite");
+			L[row+i] = Math.sqrt(diag);
+		}
+		return L;
+	}
+
+	// solves LL'x = b for the leading n x n block of L (row stride k)
+	private static double[] choleskySolve(final double[] L, final int k, final int n, final double[] b)
+	{
+		final double[] x = new double[n];
+		for (int i = 0; i < n; i++)
+			x[i] = (b[i] - MathUtils.linearCombinationFast(L, x, i*k, 0, i)) / L[i*k+i];
+		// L' is upper triangular, solve by columns of L' (rows of L) to walk through L contiguously
+		for (int i = n - 1; i >= 0; i--)
+		{
+			final int row = i*k;
+			final double xi = x[i] / L[row+i];
+			x[i] = xi;
+			for (int j = 0; j < i; j++)
+				x[j] -= L[row+j] * xi;
+		}
+		return x;
+	}
+
+	// Prints the long only and the box constrained efficient portfolios of three assets
+	public static void main(String[] args)
+	{
+		final Matrix S = new Matrix(new double[][] {
+			{ .04, .01, 0 },
+			{ .01, .09, .02 },
+			{ 0, .02, .16 } });
+		final Markowitz m = new Markowitz(S, new double[] { .05, .08, .12 });
+		final double[] lower = { .1, 0, .05 }, upper = { .6, .5, .4 };
+		for (final double q : new double[] { .05, .07, .09, .12 })
+			System.out.println(q+" long only: "+Arrays.toString(m.longOnlyWeights(q))
+					+" boxed: "+Arrays.toString(m.weights(q, lower, upper)));
+	}
+}
@@ -82,7 +82,12 @@ public final class MathUtils {
 		return ret;
 	}
 
-	// TODO do we need more InPlace methods? they are significantly faster because of no allocation/copying overhead
+	// In place methods are significantly faster because of no allocation/copying overhead.
+	// Most of the vector ops below come in two flavors, one which returns a newly
+	// allocated array and one which writes into a caller supplied destination:
+	//   op(source(s), [constant,] dest, start(s), destStart, len)
+	// which returns dest. The destination may be the same array as a source
+	// as long as the offsets are the same.
 	public final static void roundInPlace(final double[] d)
 	{
 		for (int i = d.length; 0!=i--;)
@@ -228,10 +233,26 @@ public final class MathUtils {
 	// theoretically same as R's 'diff' function
 	final public static double [] diff(final double[] data)
 	{
-		double [] ret = new double[data.length - 1];
-		for (int i = data.length - 1; i--!=0; )
-			ret[i] = data[i+1] - data[i];
-		return ret;
+		return diff(data, new double[data.length - 1], 0, 0, data.length - 1);
+	}
+
+	// dest[destStart+i] = data[start+i+1] - data[start+i] for i < len,
+	// so reads len+1 elements of data. Goes forwards so it is safe to do in place.
+	final public static double [] diff(final double[] data, final double[] dest, final int start, final int destStart, final int len)
+	{
+		checkRange(data, start, len + 1);
+		checkRange(dest, destStart, len);
+		for (int i = 0; i < len; i++)
+			dest[destStart+i] = data[start+i+1] - data[start+i];
+		return dest;
+	}
+
+	// Throws ArrayIndexOutOfBoundsException up front so that the in place
+	// methods never leave a partially written destination.
+	private static final void checkRange(final double[] data, final int start, final int len)
+	{
+		if (start < 0 || len < 0 || start > data.length - len)
+			throw new ArrayIndexOutOfBoundsException("Bad range ["+start+","+(start+len)+") for array of length "+data.length);
 	}
 
 	// This will not throw an exception if the arrays are not of equal length,
@@ -240,19 +261,35 @@ public final class MathUtils {
 	final public static double [] subtract(final double[] first, final double[] second)
 	{
 		final int len = Math.min(first.length,second.length);
-		final double ret[] = new double[len];
+		return subtract(first, second, new double[len], 0, 0, 0, len);
+	}
+
+	final public static double [] subtract(final double[] first, final double[] second, final double[] dest,
+			final int startOne, final int startTwo, final int destStart, final int len)
+	{
+		checkRange(first, startOne, len);
+		checkRange(second, startTwo, len);
+		checkRange(dest, destStart, len);
 		for (int i = len; i-- != 0;)
-			ret[i] = first[i] - second[i];
-		return ret;
+			dest[destStart+i] = first[startOne+i] - second[startTwo+i];
+		return dest;
 	}
 
 	final public static double [] add(final double[] first, final double[] second)
 	{
 		final int len = Math.min(first.length,second.length);
-		final double ret[] = new double[len];
+		return add(first, second, new double[len], 0, 0, 0, len);
+	}
+
+	final public static double [] add(final double[] first, final double[] second, final double[] dest,
+			final int startOne, final int startTwo, final int destStart, final int len)
+	{
+		checkRange(first, startOne, len);
+		checkRange(second, startTwo, len);
+		checkRange(dest, destStart, len);
 		for (int i = len; i--!=0;)
-			ret[i] = first[i]+second[i];
-		return ret;
+			dest[destStart+i] = first[startOne+i] + second[startTwo+i];
+		return dest;
 	}
 
 	// Returns newly allocated array.
@@ -261,27 +298,47 @@ public final class MathUtils {
 		final int len = first.length;
 		if (len!=second.length)
 			throw new ArrayIndexOutOfBoundsException("Tried to multiply two vectors of unequal length!");
-		final double ret[] = new double[len];
+		return multiply(first, second, new double[len], 0, 0, 0, len);
+	}
+
+	final public static double[] multiply(final double[] first, final double[] second, final double[] dest,
+			final int startOne, final int startTwo, final int destStart, final int len)
+	{
+		checkRange(first, startOne, len);
+		checkRange(second, startTwo, len);
+		checkRange(dest, destStart, len);
 		for (int i = len; i--!=0;)
-			ret[i] = first[i]*second[i];
-		return ret;
+			dest[destStart+i] = first[startOne+i] * second[startTwo+i];
+		return dest;
 	}
 
 	// takes the log of every element of the data
 	final public static double[] log(final double[] data)
 	{
-		final double [] ret = new double[data.length];
-		for (int i = data.length; i-- != 0; )
-			ret[i] = Math.log(data[i]);
-		return ret;
+		return log(data, new double[data.length], 0, 0, data.length);
+	}
+
+	final public static double[] log(final double[] data, final double[] dest, final int start, final int destStart, final int len)
+	{
+		checkRange(data, start, len);
+		checkRange(dest, destStart, len);
+		for (int i = len; i-- != 0; )
+			dest[destStart+i] = Math.log(data[start+i]);
+		return dest;
 	}
 
 	public static final double[] exp(final double[] data)
 	{
-		final double[] ret = new double[data.length];
-		for (int i = 0; i < data.length; i++)
-			ret[i] = Math.exp(data[i]);
-		return ret;
+		return exp(data, new double[data.length], 0, 0, data.length);
+	}
+
+	public static final double[] exp(final double[] data, final double[] dest, final int start, final int destStart, final int len)
+	{
+		checkRange(data, start, len);
+		checkRange(dest, destStart, len);
+		for (int i = 0; i < len; i++)
+			dest[destStart+i] = Math.exp(data[start+i]);
+		return dest;
 	}
 
 	// infinite precision but slow and there is no bound on how
@@ -325,10 +382,17 @@ public final class MathUtils {
 	// Takes all the values to the power of exp
 	public static final double [] pow(final double[] values, final double exp)
 	{
-		final double[] ret = new double[values.length];
-		for (int i = values.length; i--!=0; )
-			ret[i] = Math.pow(values[i],exp);
-		return ret;
+		return pow(values, exp, new double[values.length], 0, 0, values.length);
+	}
+
+	public static final double [] pow(final double[] values, final double exp, final double[] dest,
+			final int start, final int destStart, final int len)
+	{
+		checkRange(values, start, len);
+		checkRange(dest, destStart, len);
+		for (int i = len; i--!=0; )
+			dest[destStart+i] = Math.pow(values[start+i],exp);
+		return dest;
 	}
 
 	// Returns a newly allocated array with all the values
@@ -336,10 +400,17 @@ public final class MathUtils {
 	// TODO maybe rename this 'add'?
 	public static final double [] shift(final double[] values, final double constant)
 	{
-		final double ret[] = new double[values.length];
-		for (int i = values.length; i--!=0; )
-			ret[i] = values[i] + constant;
-		return ret;
+		return shift(values, constant, new double[values.length], 0, 0, values.length);
+	}
+
+	public static final double [] shift(final double[] values, final double constant, final double[] dest,
+			final int start, final int destStart, final int len)
+	{
+		checkRange(values, start, len);
+		checkRange(dest, destStart, len);
+		for (int i = len; i--!=0; )
+			dest[destStart+i] = values[start+i] + constant;
+		return dest;
 	}
 
 	// Returns a newly allocated array with all the values
@@ -347,10 +418,17 @@ public final class MathUtils {
 	// TODO maybe rename this 'multiply'?
 	public static final double [] scale(double[] values, double scale)
 	{
-		double [] ret = new double[values.length];
-		for (int i = values.length; i--!=0;)
-			ret[i] = values[i]*scale;
-		return ret;
+		return scale(values, scale, new double[values.length], 0, 0, values.length);
+	}
+
+	public static final double [] scale(final double[] values, final double scale, final double[] dest,
+			final int start, final int destStart, final int len)
+	{
+		checkRange(values, start, len);
+		checkRange(dest, destStart, len);
+		for (int i = len; i--!=0;)
+			dest[destStart+i] = values[start+i]*scale;
+		return dest;
 	}
 
 	// numerically precise implementation of sum
@@ -429,10 +507,17 @@ public final class MathUtils {
 	// elements are max(input,0)
 	final public static double[] positivePart(final double... data)
 	{
-		final double [] ret = new double[data.length];
-		for (int i = data.length; i--!=0;)
-			ret[i] = max(data[i],0.0);
-		return ret;
+		return positivePart(data, new double[data.length], 0, 0, data.length);
+	}
+
+	final public static double[] positivePart(final double[] data, final double[] dest,
+			final int start, final int destStart, final int len)
+	{
+		checkRange(data, start, len);
+		checkRange(dest, destStart, len);
+		for (int i = len; i--!=0;)
+			dest[destStart+i] = max(data[start+i],0.0);
+		return dest;
 	}
 
 	// returns newly allocated array
@@ -492,16 +577,24 @@ public final class MathUtils {
 	// than the naive implementation on my machine.
 	public static final double sum(final double... values)
 	{
+		return sum(values, 0, values.length);
+	}
+
+	// sum of values[start] ... values[start+len-1]
+	public static final double sum(final double[] values, final int start, final int len)
+	{
+		checkRange(values, start, len);
 		double sum = 0;
 		double err = 0;
 		final int unroll = 6; // empirically it doesn't get much better than this
-		final int len = values.length - values.length%unroll;
+		final int end = start + len;
+		final int unrolled = end - len%unroll;
 
 		// unroll the loop. due to IEEE 754 restrictions
 		// the JIT shouldn't be allowed to unroll it dynamically, so it's
 		// up to us to do it by hand ;)
-		int i = 0;
-		for (; i < len; i+=unroll)
+		int i = start;
+		for (; i < unrolled; i+=unroll)
 		{
 			final double val = values[i] + values[i+1]
 				+ values[i+2] + values[i+3]
@@ -510,7 +603,7 @@ public final class MathUtils {
 			err += (hi - sum) - val;
 			sum = hi;
 		}
-		for (; i < values.length; i++)
+		for (; i < end; i++)
 		{
 			final double val = values[i];
 			final double hi = sum + val;
@@ -726,6 +819,16 @@ public final class MathUtils {
 			this(rows,cols,false);
 		}
 
+		// Wraps data (row major) without copying it.
+		public Matrix(int rows, int cols, double[] data)
+		{
+			if (data.length!=rows*cols)
+				throw new ArrayIndexOutOfBoundsException("Illegal matrix: data has wrong length.");
+			this.rows = rows;
+			this.cols = cols;
+			this.data = data;
+		}
+
 		public int index(int row, int col)
 		{
 			return row * cols + col;
@@ -757,42 +860,16 @@ public final class MathUtils {
 		}
 	}
 
+	// Multi-threaded, see Gemm. Uses compensated dot products.
 	public static final Matrix matrixMultiply(final Matrix first, final Matrix second)
 	{
-		if (first.cols()!=second.rows())
-			throw new ArrayIndexOutOfBoundsException("Trying to multiply matrices of different dimensions?!");
-		final Matrix ret = new Matrix(first.rows(), second.cols());
-		for (int i = 0; i < second.cols(); i++)
-		{
-			// extract the column beforehand to improve cache hits
-			// TODO think about extracting on fly to save cost of read
-			final double vector[] = second.extractColumn(i);
-			for (int j = 0; j < first.rows(); j++)
-			{
-				final double val = linearCombination(first.data(), vector, j*first.cols(), 0, first.cols());
-				ret.set(j, i, val);
-			}
-		}
-		return ret;
+		return Gemm.multiply(first, second, true);
 	}
 
+	// Multi-threaded and cache blocked, see Gemm.
 	public static final Matrix matrixMultiplyFast(final Matrix first, final Matrix second)
 	{
-		if (first.cols()!=second.rows())
-			throw new ArrayIndexOutOfBoundsException("Trying to multiply matrices of different dimensions?!");
-		final Matrix ret = new Matrix(first.rows(), second.cols());
-		for (int i = 0; i < second.cols(); i++)
-		{
-			// extract the column beforehand to improve cache hits
-			// TODO think about extracting on fly to save cost of read
-			final double vector[] = second.extractColumn(i);
-			for (int j = 0; j < first.rows(); j++)
-			{
-				final double val = linearCombinationFast(first.data(), vector, j*first.cols(), 0, first.cols());
-				ret.set(j, i, val);
-			}
-		}
-		return ret;
+		return Gemm.multiply(first, second, false);
 	}
 
 
@@ -999,6 +1076,54 @@ public final class MathUtils {
 		return ret;
 	}
 
+	// Rearranges data in place so that data[k] is the value it would have
+	// if data were sorted, with nothing larger before it and nothing smaller
+	// after it, and returns it. Useful for order statistics (medians, VAR)
+	// where sorting everything is a waste: expected O(n). Quickselect
+	// with a median of three pivot and a three way partition so that
+	// repeated values don't hurt, falling back to Arrays.sort if the
+	// partitions don't shrink fast enough, so O(n log n) worst case.
+	// data must not contain NaN.
+	public static final double select(final double[] data, final int k)
+	{
+		if (k < 0 || k >= data.length)
+			throw new IllegalArgumentException("Bad index "+k+" for length "+data.length);
+		int lo = 0, hi = data.length; // [lo, hi)
+		int depth = 2 * (32 - Integer.numberOfLeadingZeros(data.length));
+		while (hi - lo > 16)
+		{
+			if (0 == depth--)
+			{
+				Arrays.sort(data, lo, hi);
+				return data[k];
+			}
+			final double a = data[lo], b = data[(lo + hi) >>> 1], c = data[hi - 1];
+			final double pivot = a < b ? (b < c ? b : (a < c ? c : a)) : (a < c ? a : (b < c ? c : b));
+			// [lo, lt) < pivot, [lt, i) == pivot, (gt, hi) > pivot
+			int lt = lo, i = lo, gt = hi - 1;
+			while (i <= gt)
+			{
+				final double val = data[i];
+				if (val < pivot) { data[i++] = data[lt]; data[lt++] = val; }
+				else if (val > pivot) { data[i] = data[gt]; data[gt--] = val; }
+				else i++;
+			}
+			if (k < lt) hi = lt;
+			else if (k > gt) lo = gt + 1;
+			else return data[k];
+		}
+		// insertion sort what's left
+		for (int i = lo + 1; i < hi; i++)
+		{
+			final double val = data[i];
+			int j = i - 1;
+			for (; j >= lo && data[j] > val; j--)
+				data[j+1] = data[j];
+			data[j+1] = val;
+		}
+		return data[k];
+	}
+
 	// Allocates new array which is sorted version of argument.
 	// O(n) in the allocation and then O(n log n) in the sort.
 	// Behavior should be identical to calling Arrays.sort(data.clone())
@@ -1052,14 +1177,22 @@ public final class MathUtils {
 	public static final double[][] covariance(final double[][] data)
 	{
 		final int len = data.length;
-		final double []means = new double[len]; // precalculate the means
 		final double[][] ret = new double[len][len];
+		if (0==len) return ret;
+		final int n = data[0].length;
+		// center each row once, then each element is a multiply into
+		// the same scratch buffer and a sum
+		final double[][] centered = new double[len][n];
+		final double[] scratch = new double[n];
 		for (int i = 0; i < len; i++)
 		{
-			means[i] = mean(data[i]);
+			if (n!=data[i].length)
+				throw new ArrayIndexOutOfBoundsException("Tried to multiply two vectors of unequal length!");
+			shift(data[i], -mean(data[i]), centered[i], 0, 0, n);
 			for (int j = 0; j <= i; j++)
 			{
-				final double d = sum(multiply(shift(data[i],-means[i]),shift(data[j],-means[j]))) / (len);
+				multiply(centered[i], centered[j], scratch, 0, 0, 0, n);
+				final double d = sum(scratch, 0, n) / (len);
 				ret[i][j] = d;
 				ret[j][i] = d;
 			}
@@ -1067,6 +1200,31 @@ public final class MathUtils {
 		return ret;
 	}
 
+	/**
+	 * Sample covariance matrix of the rows of data, i.e. each row is a series
+	 * of observations of one variable. Works on the flat storage directly,
+	 * each row is centered once and then each element is one dot product.
+	 * @param data
+	 * @return newly allocated symmetric rows x rows matrix
+	 */
+	public static final Matrix covariance(final Matrix data)
+	{
+		final int k = data.rows();
+		final int n = data.cols();
+		final double[] centered = new double[k*n];
+		final double[] src = data.data();
+		for (int i = 0; i < k; i++)
+		{
+			final int off = i*n;
+			shift(src, -sum(src, off, n) / n, centered, off, off, n);
+		}
+		final Matrix ret = Gemm.multiplyTranspose(new Matrix(k, n, centered), true);
+		final double[] d = ret.data();
+		for (int i = d.length; i--!=0;)
+			d[i] /= (n - 1);
+		return ret;
+	}
+
 	public static void main(String[] args)
 	{
 
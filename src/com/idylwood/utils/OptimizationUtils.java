@@ -27,11 +27,6 @@
 
 package com.idylwood.utils;
 
-import org.apache.commons.math3.linear.MatrixUtils;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
-import org.apache.commons.math3.linear.SingularValueDecomposition;
-
 // Holder class for new stuff which hasn't had the dependencies gotten rid of yet.
 public final class OptimizationUtils {
 
@@ -52,77 +47,107 @@ public final class OptimizationUtils {
 	{
 		if (covariance.length!=covariance[0].length)
 			throw new IllegalArgumentException("Covariance needs to be square matrix");
-		if (returns.length!=covariance.length)
-			throw new IllegalArgumentException("Returns must be same length as covariance");
+		return MarkowitzSolve(new MathUtils.Matrix(covariance), returns, portfolio_return);
+	}
 
-		/*
-		for (int i = 0; i < covariance.length; i++)
-			MathUtils.printArray(covariance[i]);
-		System.out.println();
-		MathUtils.printArray(returns);
-		System.out.println();
-		*/
+	/**
+	 * Same as MarkowitzSolve(double[][], double[], double) on the flat matrix.
+	 * The (k+2)x(k+2) Lagrangian system used to be solved by SVD; its solution
+	 * is the frontier portfolio of Markowitz, which only needs a Cholesky
+	 * factorization of the covariance. To solve for many returns or with
+	 * constraints use Markowitz directly, which keeps the factorization.
+	 * If the covariance is only positive semidefinite (e.g. one asset is a
+	 * combination of the others) the Lagrangian may still have a solution,
+	 * so it is solved by Gaussian elimination instead.
+	 */
+	static final double[] MarkowitzSolve(final MathUtils.Matrix covariance, final double[] returns, final double portfolio_return)
+	{
+		if (covariance.rows()!=covariance.cols())
+			throw new IllegalArgumentException("Covariance needs to be square matrix");
+		if (returns.length!=covariance.rows())
+			throw new IllegalArgumentException("Returns must be same length as covariance");
 
-		final int timePoints = covariance.length;
-		final double[][] lagrangeMatrix = new double[timePoints+2][timePoints+2];
-		//b as in Ax = b
-		final double[] b = new double[timePoints+2];
-		for(int i = 0; i < timePoints; i++)
+		final Markowitz markowitz;
+		try
 		{
-			for(int j = 0; j < timePoints; j++)
-			{
-				lagrangeMatrix[i][j] = 2*covariance[i][j];
-				b[i] = 0;
-				// this is like riskTolerance*returns[i]; but since
-				// returns[i]*weights[i] = portfolio_return it will go away in the derivative
-			}
+			markowitz = new Markowitz(covariance, returns);
+		}
+		catch (final IllegalArgumentException e)
+		{
+			// not positive definite or the returns can't be told apart
+			return lagrangeSolve(covariance, returns, portfolio_return);
 		}
+		final double[] weights = markowitz.weights(portfolio_return);
+
+		// put these in some test class
+		if (!MathUtils.fuzzyEquals(1,MathUtils.sum(weights)))
+			throw new RuntimeException();
+		if (!MathUtils.fuzzyEquals(portfolio_return,MathUtils.linearCombination(returns, weights)))
+			throw new RuntimeException();
+		//The following calculates the risk(variance) for the weights found
+		// final double risk = markowitz.variance(portfolio_return);
+		return weights;
+	}
 
-		for(int j = 0; j<timePoints; j++)
+	// Solves the Lagrangian system of MarkowitzSolve directly, by Gaussian
+	// elimination with partial pivoting. Returns null if it is singular.
+	private static double[] lagrangeSolve(final MathUtils.Matrix covariance, final double[] returns, final double portfolio_return)
+	{
+		final int timePoints = covariance.rows();
+		final int n = timePoints + 2;
+		final double[][] lagrangeMatrix = new double[n][n];
+		//b as in Ax = b
+		final double[] b = new double[n];
+		for (int i = 0; i < timePoints; i++)
 		{
-			lagrangeMatrix[timePoints][j] = returns[j];
-			lagrangeMatrix[timePoints+1][j] = 1;
-			lagrangeMatrix[j][timePoints] = returns[j];
-			lagrangeMatrix[j][timePoints+1] = 1;
+			for (int j = 0; j < timePoints; j++)
+				lagrangeMatrix[i][j] = 2*covariance.get(i,j);
+			lagrangeMatrix[timePoints][i] = returns[i];
+			lagrangeMatrix[timePoints+1][i] = 1;
+			lagrangeMatrix[i][timePoints] = returns[i];
+			lagrangeMatrix[i][timePoints+1] = 1;
 		}
-		b[timePoints] = portfolio_return; //**** what is the constraint on total expected return?
+		b[timePoints] = portfolio_return;
 		b[timePoints + 1] = 1;
 
-		/*
-		// Print out lagrangeMatrix augmented with b vector
-		for(int i=0; i<timePoints+2; i++)
+		double scale = 0;
+		for (final double[] row : lagrangeMatrix)
+			for (final double x : row)
+				scale = Math.max(scale, Math.abs(x));
+		for (int c = 0; c < n; c++)
 		{
-			for(int j=0; j<timePoints+2;j++)
+			int pivot = c;
+			for (int r = c + 1; r < n; r++)
+				if (Math.abs(lagrangeMatrix[r][c]) > Math.abs(lagrangeMatrix[pivot][c]))
+					pivot = r;
+			// relative to the entries, otherwise rounding noise passes for a pivot
+			if (!(Math.abs(lagrangeMatrix[pivot][c]) > 1e-12 * scale))
+				return null;
+			final double[] tmp = lagrangeMatrix[c]; lagrangeMatrix[c] = lagrangeMatrix[pivot]; lagrangeMatrix[pivot] = tmp;
+			final double tb = b[c]; b[c] = b[pivot]; b[pivot] = tb;
+			for (int r = c + 1; r < n; r++)
 			{
-				System.out.print(lagrangeMatrix[i][j] + " ");
+				final double f = lagrangeMatrix[r][c] / lagrangeMatrix[c][c];
+				if (0==f)
+					continue;
+				for (int j = c; j < n; j++)
+					lagrangeMatrix[r][j] -= f * lagrangeMatrix[c][j];
+				b[r] -= f * b[c];
 			}
-			System.out.println(b[i]);
 		}
-		*/
-		// TODO use Gaussian elimination solver, may be faster
-		// TODO maybe refactor to use idylblas
-		RealMatrix lagrangeReal = MatrixUtils.createRealMatrix(lagrangeMatrix);
-		RealVector bReal = MatrixUtils.createRealVector(b);
-		SingularValueDecomposition svd = new SingularValueDecomposition(lagrangeReal);
-
-		if (!svd.getSolver().isNonSingular())
-			return null;
-
-		RealVector solution = svd.getSolver().solve(bReal);
-
-		final double weights[] = new double[timePoints];
-
+		final double[] solution = new double[n];
+		for (int i = n - 1; i >= 0; i--)
+		{
+			double sum = b[i];
+			for (int j = i + 1; j < n; j++)
+				sum -= lagrangeMatrix[i][j] * solution[j];
+			solution[i] = sum / lagrangeMatrix[i][i];
+		}
 		// last two elements of solution are just lagrange multipliers
-		for (int i = 0; i < weights.length; i++)
-			weights[i] = solution.getEntry(i);
-
-		// put these in some test class
-		if (!MathUtils.fuzzyEquals(1,MathUtils.sum(weights)))
-			throw new RuntimeException();
-		if (!MathUtils.fuzzyEquals(portfolio_return,MathUtils.linearCombination(returns, weights)))
-			throw new RuntimeException();
-		//The following calculates the risk(variance) for the weights found
-		// final double risk = MathUtils.linearCombination(MathUtils.matrixMultiply(covariance, weights),weights);
+		final double[] weights = MathUtils.copyOfRange(solution, 0, timePoints);
+		if (!MathUtils.fuzzyEquals(1,MathUtils.sum(weights))
+				|| !MathUtils.fuzzyEquals(portfolio_return,MathUtils.linearCombination(returns, weights)))
+			return null;
 		return weights;
 	}
 
@@ -0,0 +1,145 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+
+package com.idylwood.utils;
+
+/**
+ * Rolling (moving window) statistics of two series, computed in a single O(n) pass.
+ * Instead of recomputing everything for every window, the sums, sums of squares
+ * and cross products are kept as the window slides: the new observation is added
+ * and the one falling out of the window subtracted. Like MathUtils.sum, each running
+ * sum keeps a running error so that the rounding error doesn't accumulate
+ * over the length of the series.
+ * Element k of each of the result arrays is for the window [k, k+window).
+ * Variances and covariances are sample (n-1) statistics, matching MathUtils.variance.
+ */
+public final class RollingStatistics
+{
+	public final int window;
+	public final double[] meanX;
+	public final double[] meanY;
+	public final double[] varianceX;
+	public final double[] varianceY;
+	public final double[] covariance;
+	public final double[] correlation;
+	// of the regression of y on x: y = alpha + beta * x
+	public final double[] alpha;
+	public final double[] beta;
+
+	private RollingStatistics(final int window, final int len)
+	{
+		this.window = window;
+		meanX = new double[len];
+		meanY = new double[len];
+		varianceX = new double[len];
+		varianceY = new double[len];
+		covariance = new double[len];
+		correlation = new double[len];
+		alpha = new double[len];
+		beta = new double[len];
+	}
+
+	public int size()
+	{
+		return alpha.length;
+	}
+
+	/**
+	 * Calculates the rolling statistics of x and y over windows of length window.
+	 * Uses the first min(x.length,y.length) elements.
+	 * @param x
+	 * @param y
+	 * @param window at least 2
+	 * @return
+	 */
+	public static RollingStatistics calculate(final double[] x, final double[] y, final int window)
+	{
+		if (window < 2)
+			throw new IllegalArgumentException("Window must be at least 2: "+window);
+		final int n = Math.min(x.length, y.length);
+		final RollingStatistics ret = new RollingStatistics(window, Math.max(0, n - window + 1));
+		if (n < window)
+			return ret;
+
+		// Everything is shifted by the first observation; the statistics don't change
+		// but the sums of squares don't lose precision to a large mean.
+		final double kx = x[0];
+		final double ky = y[0];
+
+		// running sums and their running errors (see MathUtils.sum)
+		double sx = 0, sy = 0, sxx = 0, syy = 0, sxy = 0;
+		double ex = 0, ey = 0, exx = 0, eyy = 0, exy = 0;
+		double hi, val;
+
+		for (int i = 0; i < n; i++)
+		{
+			final double dx = x[i] - kx;
+			final double dy = y[i] - ky;
+
+			val = dx; hi = sx + val; ex += (hi - sx) - val; sx = hi;
+			val = dy; hi = sy + val; ey += (hi - sy) - val; sy = hi;
+			val = dx*dx; hi = sxx + val; exx += (hi - sxx) - val; sxx = hi;
+			val = dy*dy; hi = syy + val; eyy += (hi - syy) - val; syy = hi;
+			val = dx*dy; hi = sxy + val; exy += (hi - sxy) - val; sxy = hi;
+
+			if (i >= window)
+			{
+				// drop the observation which just fell out of the window
+				final double ox = x[i-window] - kx;
+				final double oy = y[i-window] - ky;
+				val = -ox; hi = sx + val; ex += (hi - sx) - val; sx = hi;
+				val = -oy; hi = sy + val; ey += (hi - sy) - val; sy = hi;
+				val = -ox*ox; hi = sxx + val; exx += (hi - sxx) - val; sxx = hi;
+				val = -oy*oy; hi = syy + val; eyy += (hi - syy) - val; syy = hi;
+				val = -ox*oy; hi = sxy + val; exy += (hi - sxy) - val; sxy = hi;
+			}
+
+			if (i < window - 1)
+				continue;
+
+			final int k = i - window + 1;
+			final double Sx = sx - ex;
+			final double Sy = sy - ey;
+			final double mx = Sx / window;
+			final double my = Sy / window;
+			// sum of squared deviations, clamped since rounding can make them slightly negative
+			final double ssx = Math.max(0, (sxx - exx) - Sx * mx);
+			final double ssy = Math.max(0, (syy - eyy) - Sy * my);
+			final double ssxy = (sxy - exy) - Sx * my;
+
+			ret.meanX[k] = mx + kx;
+			ret.meanY[k] = my + ky;
+			ret.varianceX[k] = ssx / (window - 1);
+			ret.varianceY[k] = ssy / (window - 1);
+			ret.covariance[k] = ssxy / (window - 1);
+			ret.correlation[k] = ssxy / Math.sqrt(ssx * ssy);
+			final double b = ssxy / ssx;
+			ret.beta[k] = b;
+			ret.alpha[k] = ret.meanY[k] - b * ret.meanX[k];
+		}
+		return ret;
+	}
+}
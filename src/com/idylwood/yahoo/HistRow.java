@@ -29,6 +29,8 @@ package com.idylwood.yahoo;
 import java.util.Comparator;
 
 // TODO does this really need to implement Comparable<Date>?
+// Note that HistTable does not store these, it creates them on demand
+// from its columns.
 public class HistRow extends Date
 {
 	final Date date; // TODO refactor this out.
@@ -36,7 +38,10 @@ public class HistRow extends Date
 	public final double high;
 	public final double low;
 	public final double close;
+	// Kept an int for compatibility, saturates at Integer.MAX_VALUE.
+	// volume() has the exact volume.
 	public final int volume;
+	private final long long_volume;
 	public final double adj_close;
 
 	// This is consistent with the constructor, as in new HistRow(this.toString())
@@ -44,21 +49,29 @@ public class HistRow extends Date
 	@Override public String toString()
 	{
 		return date + "," + open + "," + high 
-			+ "," + low + "," + close + "," +volume + "," + adj_close;
+			+ "," + low + "," + close + "," +long_volume + "," + adj_close;
 	}
 	public HistRow(final Date date, final double open, final double high,
 			final double low, final double close, final int volume,
 			final double adj_close)
+	{
+		this(date, open, high, low, close, (long)volume, adj_close);
+	}
+	public HistRow(final Date date, final double open, final double high,
+			final double low, final double close, final long volume,
+			final double adj_close)
 	{
 		super(date);
 		this.date = date; this.open = open; this.high = high; this.low = low;
-		this.close = close; this.volume = volume; this.adj_close = adj_close;
+		this.close = close; this.adj_close = adj_close;
+		this.long_volume = volume;
+		this.volume = saturate(volume);
 	}
 	// Copy constructor
 	public HistRow(final HistRow other)
 	{
 		this(new Date(other.date),other.open,other.high,other.low,other.close,
-				other.volume,other.adj_close);
+				other.long_volume,other.adj_close);
 		// equivalent to this(other.toString());
 	}
 
@@ -72,8 +85,22 @@ public class HistRow extends Date
 		high = Double.parseDouble(elems[2]);
 		low = Double.parseDouble(elems[3]);
 		close = Double.parseDouble(elems[4]);
-		volume = Integer.parseInt(elems[5]);
+		long_volume = Long.parseLong(elems[5]);
+		volume = saturate(long_volume);
 		adj_close = Double.parseDouble(elems[6]);
 	}
+
+	// The volume, which can be larger than an int can hold.
+	public long volume()
+	{
+		return long_volume;
+	}
+
+	private static int saturate(final long volume)
+	{
+		if (volume > Integer.MAX_VALUE) return Integer.MAX_VALUE;
+		if (volume < Integer.MIN_VALUE) return Integer.MIN_VALUE;
+		return (int)volume;
+	}
 }
 
@@ -28,11 +28,14 @@
 package com.idylwood.yahoo;
 
 import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import com.idylwood.utils.MathUtils;
 import com.idylwood.yahoo.YahooFinance.DivSplitTable;
@@ -41,20 +44,83 @@ import com.idylwood.yahoo.YahooFinance.Single;
 import com.idylwood.yahoo.YahooFinance.SplitTable;
 
 
+// The table is stored column-wise in primitive arrays. A HistTable is
+// a window [offset, offset+length) onto the columns, so SubTable is just
+// a new window onto the same arrays. The columns are never modified
+// after construction which is what makes the sharing safe.
+// HistRows are materialised on the fly by get(int) and iterator(),
+// they are not stored.
 public class HistTable implements Iterable<HistRow>
 {
 	final public String symbol;
 	final public long dateAccessed;
-	// Note: this is not thread safe! assume there are no methods which modify this!
-	// TODO make this an immutable list. note that a lot of these methods could be optimized better
-	// if the data structures were immutable.
-	final private List<HistRow> data; // TODO this should become private.
+	// Dates in format YYYYMMDD, see Date#toInt()
+	final private int[] dates;
+	final private double[] open;
+	final private double[] high;
+	final private double[] low;
+	final private double[] close;
+	final private long[] volume;
+	final private double[] adj_close;
+	final private int offset;
+	final private int length;
 	public boolean splitAdjusted = false; // TODO declare these final.
 	public boolean dividendAdjusted = false;
 	public HistTable(final String symbol, final long dateAccessed, final List<HistRow> data)
 	{
 		this.symbol=symbol; this.dateAccessed = dateAccessed;
-		this.data = Collections.unmodifiableList(data);
+		final int len = data.size();
+		this.dates = new int[len];
+		this.open = new double[len];
+		this.high = new double[len];
+		this.low = new double[len];
+		this.close = new double[len];
+		this.volume = new long[len];
+		this.adj_close = new double[len];
+		this.offset = 0;
+		this.length = len;
+		int i = 0;
+		for (final HistRow row : data)
+		{
+			dates[i] = row.toInt();
+			open[i] = row.open;
+			high[i] = row.high;
+			low[i] = row.low;
+			close[i] = row.close;
+			volume[i] = row.volume();
+			adj_close[i] = row.adj_close;
+			++i;
+		}
+	}
+	/**
+	 * Constructs a table directly from columns. The arrays must all
+	 * have the same length and the dates must be in ascending order.
+	 * The table takes ownership of the arrays (they are not copied),
+	 * so the caller must not modify them afterwards.
+	 * Side Effects: none
+	 */
+	public HistTable(final String symbol, final long dateAccessed,
+			final int[] dates, final double[] open, final double[] high,
+			final double[] low, final double[] close, final long[] volume,
+			final double[] adj_close)
+	{
+		this(symbol, dateAccessed, dates, open, high, low, close, volume, adj_close, 0, dates.length);
+	}
+	private HistTable(final String symbol, final long dateAccessed,
+			final int[] dates, final double[] open, final double[] high,
+			final double[] low, final double[] close, final long[] volume,
+			final double[] adj_close, final int offset, final int length)
+	{
+		final int len = dates.length;
+		if (open.length!=len || high.length!=len || low.length!=len
+				|| close.length!=len || volume.length!=len || adj_close.length!=len)
+			throw new IllegalArgumentException("Columns must all be the same length!");
+		if (offset < 0 || length < 0 || offset + length > len)
+			throw new IndexOutOfBoundsException("Bad window: "+offset+","+length);
+		this.symbol = symbol; this.dateAccessed = dateAccessed;
+		this.dates = dates; this.open = open; this.high = high; this.low = low;
+		this.close = close; this.volume = volume; this.adj_close = adj_close;
+		this.offset = offset; this.length = length;
 	}
 	/**
 	 * Returns true iff it has been both split and dividend adjusted.
@@ -73,16 +139,23 @@ public class HistTable implements Iterable<HistRow>
 	 * Note that you should be careful when adjusting for splits and dividends; i.e.
 	 * table#SubTable#AdjustOHLC() is NOT the same as table#AdjustOHLC()#SubTable
 	 * since #AdjustOHLC() always adjusts to the first element in the table.
-	 * Side Effects: allocation of new HistTable
+	 * Side Effects: allocation of new HistTable (but not of the columns)
 	 * @param start
 	 * @param end
 	 * @return
 	 */
 	public HistTable SubTable(final Date start, final Date end)
 	{
-		int start_idx = ceil_idx(start);
-		int end_idx = floor_idx(end);
-		return new HistTable(this.symbol, this.dateAccessed, this.data.subList(start_idx, end_idx));
+		final int start_idx = ceil_idx(start);
+		final int end_idx = floor_idx(end);
+		final int len = Math.max(0, end_idx - start_idx);
+		final HistTable ret = new HistTable(this.symbol, this.dateAccessed,
+				dates, open, high, low, close, volume, adj_close,
+				this.offset + start_idx, len);
+		// the adjustments are properties of the data, not the window.
+		ret.splitAdjusted = this.splitAdjusted;
+		ret.dividendAdjusted = this.dividendAdjusted;
+		return ret;
 	}
 	/**
 	 * Returns the date of the first entry.
@@ -91,7 +164,7 @@ public class HistTable implements Iterable<HistRow>
 	 */
 	public Date StartDate()
 	{
-		return data.get(0).date;
+		return new Date(dateInt(0));
 	}
 	/**
 	 * Returns the date of the last entry.
@@ -100,13 +173,35 @@ public class HistTable implements Iterable<HistRow>
 	 */
 	public Date EndDate()
 	{
-		return data.get(data.size()-1).date;
+		return new Date(dateInt(length-1));
+	}
+
+	// Returns the date of the idx'th row in YYYYMMDD format
+	// without allocating a Date.
+	public int dateInt(final int idx)
+	{
+		return dates[check(idx)];
+	}
+
+	// translates a row index into an index into the columns
+	private int check(final int idx)
+	{
+		if (idx < 0 || idx >= length)
+			throw new IndexOutOfBoundsException("Index: "+idx+", Size: "+length);
+		return offset + idx;
 	}
 
 	// if it's not in the list, returns ~insertion_point as in Collections#binarySearch
 	public int idx(final Date date)
 	{
-		return Collections.binarySearch(this.data, date);
+		return idx(date.toInt());
+	}
+	public int idx(final int date)
+	{
+		final int ret = Arrays.binarySearch(dates, offset, offset + length, date);
+		if (ret < 0)
+			return ~(~ret - offset);
+		return ret - offset;
 	}
 	// if it's not in the list, returns the first date before it.
 	private int floor_idx(final Date date)
@@ -134,7 +229,7 @@ public class HistTable implements Iterable<HistRow>
 	}
 	public int size()
 	{
-		return data.size();
+		return length;
 	}
 	public HistRow getCeiling(final Date date)
 	{
@@ -154,13 +249,33 @@ public class HistTable implements Iterable<HistRow>
 			return null;
 		return get(idx);
 	}
+	/**
+	 * Materialises the idx'th row. The row is newly allocated
+	 * and is not cached, so prefer the column accessors in loops.
+	 * Side Effects: allocation of new HistRow
+	 */
 	public HistRow get(final int idx)
 	{
-		return data.get(idx);
+		final int i = check(idx);
+		return new HistRow(new Date(dates[i]), open[i], high[i], low[i],
+				close[i], volume[i], adj_close[i]);
 	}
 	@Override public Iterator<HistRow> iterator()
 	{
-		return data.iterator();
+		return new Iterator<HistRow>() {
+			private int idx = 0;
+			@Override public boolean hasNext() { return idx < length; }
+			@Override public HistRow next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return get(idx++);
+			}
+			@Override public void remove()
+			{
+				throw new UnsupportedOperationException("HistTable is immutable");
+			}
+		};
 	}
 
 	/**
@@ -170,19 +285,88 @@ public class HistTable implements Iterable<HistRow>
 	 */
 	public List<Date> Dates()
 	{
-		final List<Date> ret = new ArrayList<Date>(data.size());
-		for (final HistRow row : data)
-			ret.add(row.date);
+		final List<Date> ret = new ArrayList<Date>(length);
+		for (int i = 0; i < length; i++)
+			ret.add(new Date(dates[offset+i]));
+		return ret;
+	}
+	// Returns newly allocated array of the dates in YYYYMMDD format
+	public int[] DateArray()
+	{
+		return Arrays.copyOfRange(dates, offset, offset+length);
+	}
+
+	// The *Column() methods return read only views of the columns.
+	// Unlike the *Array() methods they do not copy anything,
+	// so they are the fastest way of getting at the data.
+	// Note that the views are not thread safe (they carry a position),
+	// so don't share a single view between threads.
+	public IntBuffer DateColumn()
+	{
+		return IntBuffer.wrap(dates, offset, length).slice().asReadOnlyBuffer();
+	}
+	public DoubleBuffer OpenColumn()
+	{
+		return column(open);
+	}
+	public DoubleBuffer HighColumn()
+	{
+		return column(high);
+	}
+	public DoubleBuffer LowColumn()
+	{
+		return column(low);
+	}
+	public DoubleBuffer CloseColumn()
+	{
+		return column(close);
+	}
+	public DoubleBuffer AdjustedCloseColumn()
+	{
+		return column(adj_close);
+	}
+	public LongBuffer VolumeColumn()
+	{
+		return LongBuffer.wrap(volume, offset, length).slice().asReadOnlyBuffer();
+	}
+	private DoubleBuffer column(final double[] col)
+	{
+		return DoubleBuffer.wrap(col, offset, length).slice().asReadOnlyBuffer();
+	}
+
+	// Package level access to the raw columns so that Panel can merge
+	// without copying them first. Row i of the table is at index offset()+i.
+	int offset() { return offset; }
+	int[] rawDates() { return dates; }
+	double[] rawColumn(final Field field)
+	{
+		switch (field)
+		{
+			case OPEN: return open;
+			case HIGH: return high;
+			case LOW: return low;
+			case CLOSE: return close;
+			case ADJ_CLOSE: return adj_close;
+			default: throw new IllegalArgumentException("Unknown field "+field);
+		}
+	}
+
+	// The price columns
+	public enum Field { OPEN, HIGH, LOW, CLOSE, ADJ_CLOSE }
+
+	// helper to box a column
+	private List<Double> list(final double[] col)
+	{
+		final List<Double> ret = new ArrayList<Double>(length);
+		for (int i = offset; i < offset+length; i++)
+			ret.add(col[i]);
 		return ret;
 	}
 
 	// Extracts the closing prices as list of Double objects.
 	public List<Double> Close()
 	{
-		final List<Double> ret = new ArrayList<Double>(data.size());
-		for (final HistRow row : data)
-			ret.add(row.close);
-		return ret;
+		return list(close);
 	}
 	// Extracts the closing prices as array of primitive doubles.
 	// This should be used if speed is needed. Its List counterpart
@@ -190,81 +374,104 @@ public class HistTable implements Iterable<HistRow>
 	// and slower to manipulate.
 	public double[] CloseArray()
 	{
-		final double[] ret = new double[size()];
-		for (int i = 0; i < ret.length; i++)
-			ret[i] = data.get(i).close;
-		return ret;
+		return Arrays.copyOfRange(close, offset, offset+length);
 	}
 	public List<Double> High()
 	{
-		final List<Double> ret = new ArrayList<Double>(data.size());
-		for (final HistRow row : data)
-			ret.add(row.high);
-		return ret;
+		return list(high);
 	}
 	public double[] HighArray()
 	{
-		final double[] ret = new double[data.size()];
-		for (int i = 0; i < ret.length; i++)
-			ret[i] = data.get(i).high;
-		return ret;
+		return Arrays.copyOfRange(high, offset, offset+length);
 	}
 	public List<Double> Low()
 	{
-		final List<Double> ret = new ArrayList<Double>(data.size());
-		for (final HistRow row : data)
-			ret.add(row.low);
-		return ret;
+		return list(low);
 	}
 	public double[] LowArray()
 	{
-		final double[] ret = new double[data.size()];
-		for (int i = 0; i < ret.length; i++)
-			ret[i] = get(i).low;
-		return ret;
+		return Arrays.copyOfRange(low, offset, offset+length);
 	}
 	public List<Double> Open()
 	{
-		final List<Double> ret = new ArrayList<Double>(data.size());
-		for (final HistRow row : data)
-			ret.add(row.open);
-		return ret;
+		return list(open);
 	}
 	public double[] OpenArray()
 	{
-		final double[] ret = new double[data.size()];
-		for (int i = 0; i < ret.length; i++)
-			ret[i] = get(i).open;
-		return ret;
+		return Arrays.copyOfRange(open, offset, offset+length);
 	}
 	public List<Double> AdjustedClose()
 	{
-		final List<Double> ret = new ArrayList<Double>(data.size());
-		for (final HistRow row : data)
-			ret.add(row.adj_close);
-		return ret;
+		return list(adj_close);
 	}
 	public double[] AdjustedCloseArray()
 	{
-		final double[] ret = new double[data.size()];
-		for (int i = 0; i < ret.length; i++)
-			ret[i] = data.get(i).adj_close;
-		return ret;
+		return Arrays.copyOfRange(adj_close, offset, offset+length);
 	}
-	public List<Integer> Volume()
+	public List<Long> Volume()
 	{
-		final List<Integer> ret = new ArrayList<Integer>(data.size());
-		for (final HistRow row : data)
-			ret.add(row.volume);
+		final List<Long> ret = new ArrayList<Long>(length);
+		for (int i = offset; i < offset+length; i++)
+			ret.add(volume[i]);
 		return ret;
 	}
-	public int[] VolumeArray()
+	public long[] VolumeArray()
 	{
-		final int[] ret = new int[data.size()];
-		for (int i = 0; i < ret.length; i++)
-			ret[i] = data.get(i).volume;
+		return Arrays.copyOfRange(volume, offset, offset+length);
+	}
+
+	/**
+	 * Returns newly allocated table with the rows of <code>later</code> which come
+	 * after the end of this table appended. The result takes its dateAccessed
+	 * from <code>later</code>, since that is the most recent download.
+	 * Side Effects: none
+	 * @param later
+	 * @return
+	 */
+	HistTable append(final HistTable later)
+	{
+		int skip = 0;
+		if (0!=this.length)
+			while (skip < later.length && later.dateInt(skip) <= this.dateInt(this.length-1))
+				++skip;
+		final int len = this.length + later.length - skip;
+		final int[] d = new int[len];
+		final double[] o = new double[len];
+		final double[] h = new double[len];
+		final double[] l = new double[len];
+		final double[] c = new double[len];
+		final long[] v = new long[len];
+		final double[] a = new double[len];
+		this.copyTo(0, d, o, h, l, c, v, a, 0, this.length);
+		later.copyTo(skip, d, o, h, l, c, v, a, this.length, later.length - skip);
+		final HistTable ret = new HistTable(this.symbol, later.dateAccessed, d, o, h, l, c, v, a);
+		ret.splitAdjusted = this.splitAdjusted;
+		ret.dividendAdjusted = this.dividendAdjusted;
 		return ret;
 	}
+	private void copyTo(final int from, final int[] d, final double[] o, final double[] h,
+			final double[] l, final double[] c, final long[] v, final double[] a,
+			final int to, final int len)
+	{
+		final int k = offset + from;
+		System.arraycopy(dates, k, d, to, len);
+		System.arraycopy(open, k, o, to, len);
+		System.arraycopy(high, k, h, to, len);
+		System.arraycopy(low, k, l, to, len);
+		System.arraycopy(close, k, c, to, len);
+		System.arraycopy(volume, k, v, to, len);
+		System.arraycopy(adj_close, k, a, to, len);
+	}
+
+	// Returns a newly allocated table with the same dates and volume
+	// as this one but with the given prices. adj_close is undefined (zero)
+	// as it is for all the adjusted tables.
+	private HistTable withPrices(final double[] open, final double[] high,
+			final double[] low, final double[] close)
+	{
+		return new HistTable(this.symbol, this.dateAccessed, DateArray(),
+				open, high, low, close, VolumeArray(), new double[length]);
+	}
 
 	// Pre: All the tables have the same starting and ending dates. otherwise
 	// the result will be undefined.
@@ -273,47 +480,47 @@ public class HistTable implements Iterable<HistRow>
 	{
 		if (this.dividendAdjusted)
 			throw new IllegalArgumentException("This is already dividend adjusted!");
-		final List<HistRow> ret_data = new ArrayList<HistRow>(this.size());
 
 		final List<YahooFinance.Single> ratios = new ArrayList<YahooFinance.Single>(dividends.data.size()+1);
-		ratios.add(new YahooFinance.Single(this.get(0).date,1));
+		ratios.add(new YahooFinance.Single(this.StartDate(),1));
 
 		int idx = 0;
 		for (YahooFinance.Single s : dividends.data)
 		{
 			// calculate the running ratio (this represents the number of shares
 			// held after reinvesting dividends)
-			HistRow row = null;
+			final int exDate = s.toInt();
+			int row = 0;
 			while (true)
 			{
-				row = get(idx++);
-				if (row.compareTo((Date)s) >= 0) break;
+				row = idx++;
+				if (dateInt(row) >= exDate) break;
 			}
-			final double ratio = 1 + (s.data / row.close); // the percentage + 1.
+			final double ratio = 1 + (s.data / close[offset+row]); // the percentage + 1.
 			ratios.add(new YahooFinance.Single(s,ratio)); // recall the constructor Single(Date, double)
 		}
 		// running ratio
 		for (int i = 1; i < ratios.size(); ++i)
 			ratios.get(i).data *= ratios.get(i-1).data;
 
+		final double[] o = new double[length];
+		final double[] h = new double[length];
+		final double[] l = new double[length];
+		final double[] c = new double[length];
 		int j = 0;
-		for (int i = 0; i < this.size(); i++)
+		for (int i = 0; i < length; i++)
 		{
-			final HistRow row = get(i);
+			final int k = offset + i;
 			// find the correct ex-date
-			if (j < ratios.size() - 1 && ratios.get(j+1).toInt()==row.date.toInt())
+			if (j < ratios.size() - 1 && ratios.get(j+1).toInt()==dates[k])
 				++j;
 			final double ratio = ratios.get(j).data;
-			ret_data.add(new HistRow(row.date,
-						MathUtils.roundToCent(row.open * ratio),
-						MathUtils.roundToCent(row.high * ratio),
-						MathUtils.roundToCent(row.low * ratio),
-						MathUtils.roundToCent(row.close * ratio),
-						row.volume,
-						0 // adj_close undefined.
-						));
+			o[i] = MathUtils.roundToCent(open[k] * ratio);
+			h[i] = MathUtils.roundToCent(high[k] * ratio);
+			l[i] = MathUtils.roundToCent(low[k] * ratio);
+			c[i] = MathUtils.roundToCent(close[k] * ratio);
 		}
-		final HistTable ret = new HistTable(this.symbol,this.dateAccessed,ret_data);
+		final HistTable ret = withPrices(o,h,l,c);
 		ret.dividendAdjusted = true;
 		ret.splitAdjusted = this.splitAdjusted;
 		return ret;
@@ -325,10 +532,9 @@ public class HistTable implements Iterable<HistRow>
 	{
 		if (this.dividendAdjusted)
 			throw new IllegalArgumentException("This is already dividend adjusted!");
-		final List<HistRow> ret_data = new ArrayList<HistRow>(this.size());
 
 		List<YahooFinance.Single> dividends = new ArrayList<YahooFinance.Single>(arg.data.size()+1);
-		dividends.add(new YahooFinance.Single(this.data.get(0).date, 0)); // add a zero dividend
+		dividends.add(new YahooFinance.Single(this.StartDate(), 0)); // add a zero dividend
 		// calculate the running sum of the dividends
 		for (int i = 0; i < arg.data.size(); ++i)
 		{
@@ -340,26 +546,25 @@ public class HistTable implements Iterable<HistRow>
 		}
 
 		// TODO refactor this to get rid of repeated complicated code?
+		final double[] o = new double[length];
+		final double[] h = new double[length];
+		final double[] l = new double[length];
+		final double[] c = new double[length];
 		int j = 0;
-		for (int i = 0; i < this.size(); ++i)
+		for (int i = 0; i < length; ++i)
 		{
-			final HistRow row = this.get(i);
+			final int k = offset + i;
 			// figure out if need to move to the next ex-date.
 			// TODO double check correctness
-			if (j < dividends.size() - 1 && 0==row.compareTo(dividends.get(j+1)))
-				//	row.toInt()==dividends.get(j+1).toInt())
+			if (j < dividends.size() - 1 && dates[k]==dividends.get(j+1).toInt())
 				++j;
 			final double dividend = dividends.get(j).data;
-			ret_data.add(new HistRow(row.date,
-						MathUtils.roundToCent(row.open + dividend),
-						MathUtils.roundToCent(row.high + dividend),
-						MathUtils.roundToCent(row.low + dividend),
-						MathUtils.roundToCent(row.close + dividend),
-						row.volume,
-						0 // adj_close undefined
-						));
+			o[i] = MathUtils.roundToCent(open[k] + dividend);
+			h[i] = MathUtils.roundToCent(high[k] + dividend);
+			l[i] = MathUtils.roundToCent(low[k] + dividend);
+			c[i] = MathUtils.roundToCent(close[k] + dividend);
 		}
-		final HistTable ret = new HistTable(this.symbol, this.dateAccessed, ret_data);
+		final HistTable ret = withPrices(o,h,l,c);
 		ret.dividendAdjusted = true;
 		ret.splitAdjusted = this.splitAdjusted;
 		return ret;
@@ -375,32 +580,30 @@ public class HistTable implements Iterable<HistRow>
 	{
 		if (this.splitAdjusted)
 			throw new IllegalArgumentException("This is already dividend adjusted!");
-		final List<HistRow> ret_data = new ArrayList<HistRow>(this.size());
 
 		final List<Single> ratios = splits.RunningRatios(this.StartDate());
+		// adjust splits forwards in time instead of backwards. TODO comment more clearly
+		final double finalRatio = ratios.get(ratios.size()-1).data;
 
 		// TODO refactor this to get rid of repeated code.
+		final double[] o = new double[length];
+		final double[] h = new double[length];
+		final double[] l = new double[length];
+		final double[] c = new double[length];
 		int j = 0;
-		for (int i = 0; i < this.data.size(); i++)
+		for (int i = 0; i < length; i++)
 		{
-			HistRow row = this.data.get(i);
-
-			if (j < ratios.size() - 1 && ratios.get(j+1).toInt()==row.date.toInt())
+			final int k = offset + i;
+			if (j < ratios.size() - 1 && ratios.get(j+1).toInt()==dates[k])
 				++j;
 
-			// adjust splits forwards in time instead of backwards. TODO comment more clearly
-			final double finalRatio = ratios.get(ratios.size()-1).data;
 			final double ratio = ratios.get(j).data;
-			ret_data.add(new HistRow(row.date,
-						MathUtils.roundToCent((row.open / ratio) * finalRatio),
-						MathUtils.roundToCent((row.high / ratio) * finalRatio),
-						MathUtils.roundToCent((row.low / ratio) * finalRatio),
-						MathUtils.roundToCent((row.close / ratio) * finalRatio),
-						row.volume,
-						0 // adj_close undefined.
-						));
+			o[i] = MathUtils.roundToCent((open[k] / ratio) * finalRatio);
+			h[i] = MathUtils.roundToCent((high[k] / ratio) * finalRatio);
+			l[i] = MathUtils.roundToCent((low[k] / ratio) * finalRatio);
+			c[i] = MathUtils.roundToCent((close[k] / ratio) * finalRatio);
 		}
-		final HistTable ret = new HistTable(this.symbol, this.dateAccessed, ret_data);
+		final HistTable ret = withPrices(o,h,l,c);
 		ret.splitAdjusted = true;
 		ret.dividendAdjusted = this.dividendAdjusted;
 		return ret;
@@ -493,36 +696,64 @@ public class HistTable implements Iterable<HistRow>
 		final int len = raw_tables.length;
 		final int[] idx = new int[len];
 		Arrays.fill(idx,0);
-		//final HistTable[] ret = new HistTable[len];
-		final List<HistRow>[] ret_lists = new List[len];
+		// indices (into each table) of the rows which are in all the tables
+		final int[][] keep = new int[len][];
 		for (int i = 0; i < len; i++)
-			//ret[i] = new HistTable(raw_tables[i].symbol, raw_tables[i].dateAccessed, new ArrayList<HistRow>(raw_tables[i].data.size()));
-			ret_lists[i] = new ArrayList<HistRow>(raw_tables[i].size());
+			keep[i] = new int[raw_tables[i].size()];
+		int kept = 0;
 		boolean exit = false;
+		for (int i = 0; i < len; i++)
+			if (0==raw_tables[i].size())
+				exit = true;
 		while (!exit)
 		{
-			Date min_date = raw_tables[0].get(idx[0]);
+			int min_date = raw_tables[0].dateInt(idx[0]);
 			boolean all_have = true;
 			for (int i = 0; i < len; i++)
 			{
-				// min_date - other.date > 0 ==> min_date > other.date
-				if (min_date.compareTo(raw_tables[i].get(idx[i])) > 0)
-					min_date = raw_tables[i].get(idx[i]);
-				if (0!=min_date.compareTo(raw_tables[i].get(idx[i])))
+				final int date = raw_tables[i].dateInt(idx[i]);
+				if (min_date > date)
+					min_date = date;
+				if (min_date!=date)
 					all_have = false;
 			}
 			if (all_have)
+			{
 				for (int i = 0; i < len; i++)
-					ret_lists[i].add(raw_tables[i].get(idx[i]));
+					keep[i][kept] = idx[i];
+				++kept;
+			}
 			// increment the laggards
 			for (int i = 0; i < len; i++)
-				if (0==min_date.compareTo(raw_tables[i].get(idx[i])))
+				if (min_date==raw_tables[i].dateInt(idx[i]))
 					if (++idx[i] == raw_tables[i].size())
 						exit = true;
 		}
 		final HistTable[] ret = new HistTable[len];
 		for (int i = 0; i < ret.length; i++)
-			ret[i] = new HistTable(raw_tables[i].symbol, raw_tables[i].dateAccessed, ret_lists[i]);
+			ret[i] = raw_tables[i].select(keep[i], kept);
+		return ret;
+	}
+
+	// Returns newly allocated table consisting of the rows rows[0..len)
+	private HistTable select(final int[] rows, final int len)
+	{
+		final int[] d = new int[len];
+		final double[] o = new double[len];
+		final double[] h = new double[len];
+		final double[] l = new double[len];
+		final double[] c = new double[len];
+		final long[] v = new long[len];
+		final double[] a = new double[len];
+		for (int i = 0; i < len; i++)
+		{
+			final int k = offset + rows[i];
+			d[i] = dates[k]; o[i] = open[k]; h[i] = high[k]; l[i] = low[k];
+			c[i] = close[k]; v[i] = volume[k]; a[i] = adj_close[k];
+		}
+		final HistTable ret = new HistTable(this.symbol, this.dateAccessed, d, o, h, l, c, v, a);
+		ret.splitAdjusted = this.splitAdjusted;
+		ret.dividendAdjusted = this.dividendAdjusted;
 		return ret;
 	}
 }
@@ -0,0 +1,469 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+
+package com.idylwood.yahoo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.idylwood.yahoo.YahooFinance.DivSplitTable;
+import com.idylwood.yahoo.YahooFinance.Pair;
+
+// Parses the Yahoo historical csv formats straight from the bytes of the stream
+// into primitive columns. Unlike going through String#split there are no
+// intermediate Strings or arrays per row, which matters once we aren't network bound.
+// Not thread safe, use one per stream.
+final class HistoricalCsvParser
+{
+	private final InputStream is;
+	private final byte[] buf = new byte[1<<14];
+	private int pos = 0;
+	private int lim = 0;
+	private int line = 1; // for error messages
+	// holds the bytes of the current number in case we need to fall back to Double.parseDouble
+	private final byte[] token = new byte[64];
+	private int tokenLen = 0;
+
+	HistoricalCsvParser(final InputStream is)
+	{
+		this.is = is;
+	}
+
+	// 10^i for i <= 22 are exactly representable as doubles
+	private static final double[] POW10 = new double[23];
+	static
+	{
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i-1] * 10;
+	}
+	private static final long MAX_EXACT = 1L<<53;
+
+	/**
+	 * Parses a daily prices csv (Date,Open,High,Low,Close,Volume,Adj Close)
+	 * into a newly allocated HistTable in ascending date order.
+	 * Only the rows strictly after <code>after</code> (YYYYMMDD) are kept.
+	 */
+	static HistTable prices(final String symbol, final long dateAccessed, final InputStream is, final int after)
+		throws IOException
+	{
+		return new HistoricalCsvParser(is).prices(symbol, dateAccessed, after);
+	}
+
+	/**
+	 * Parses a dividends and splits csv into a newly allocated DivSplitTable
+	 * in ascending date order. Only the rows strictly after <code>after</code> are kept.
+	 */
+	static DivSplitTable divSplits(final String symbol, final long dateAccessed, final InputStream is, final int after)
+		throws IOException
+	{
+		return new HistoricalCsvParser(is).divSplits(symbol, dateAccessed, after);
+	}
+
+	private HistTable prices(final String symbol, final long dateAccessed, final int after)
+		throws IOException
+	{
+		int cap = 1024;
+		int[] dates = new int[cap];
+		double[] open = new double[cap];
+		double[] high = new double[cap];
+		double[] low = new double[cap];
+		double[] close = new double[cap];
+		long[] volume = new long[cap];
+		double[] adj_close = new double[cap];
+		int len = 0;
+
+		// header
+		if (!isDigit(peek()))
+			skipLine();
+		while (-1!=peek())
+		{
+			if (isEol(peek()))
+			{
+				skipLine(); // blank line
+				continue;
+			}
+			if (len==cap)
+			{
+				cap *= 2;
+				dates = Arrays.copyOf(dates, cap);
+				open = Arrays.copyOf(open, cap);
+				high = Arrays.copyOf(high, cap);
+				low = Arrays.copyOf(low, cap);
+				close = Arrays.copyOf(close, cap);
+				volume = Arrays.copyOf(volume, cap);
+				adj_close = Arrays.copyOf(adj_close, cap);
+			}
+			final int date = parseDate();
+			expect(',');
+			open[len] = parseDouble();
+			expect(',');
+			high[len] = parseDouble();
+			expect(',');
+			low[len] = parseDouble();
+			expect(',');
+			close[len] = parseDouble();
+			expect(',');
+			volume[len] = parseLong();
+			expect(',');
+			adj_close[len] = parseDouble();
+			endLine();
+			if (date > after)
+			{
+				dates[len] = date;
+				++len;
+			}
+		}
+
+		// yahoo serves them in descending order
+		if (len > 1 && dates[0] > dates[len-1])
+		{
+			reverse(dates, len);
+			reverse(open, len); reverse(high, len); reverse(low, len);
+			reverse(close, len); reverse(volume, len); reverse(adj_close, len);
+		}
+		if (len!=cap)
+		{
+			dates = Arrays.copyOf(dates, len);
+			open = Arrays.copyOf(open, len);
+			high = Arrays.copyOf(high, len);
+			low = Arrays.copyOf(low, len);
+			close = Arrays.copyOf(close, len);
+			volume = Arrays.copyOf(volume, len);
+			adj_close = Arrays.copyOf(adj_close, len);
+		}
+		return new HistTable(symbol, dateAccessed, dates, open, high, low, close, volume, adj_close);
+	}
+
+	private static final byte[] DIVIDEND = ascii("DIVIDEND");
+	private static final byte[] SPLIT = ascii("SPLIT");
+	private static final byte[] STARTDATE = ascii("STARTDATE");
+	private static final byte[] ENDDATE = ascii("ENDDATE");
+	private static final byte[] STATUS = ascii("STATUS");
+	private static final byte[] TOTALSIZE = ascii("TOTALSIZE");
+
+	private DivSplitTable divSplits(final String symbol, final long dateAccessed, final int after)
+		throws IOException
+	{
+		final DivSplitTable ret = new DivSplitTable();
+		ret.symbol = symbol;
+		ret.dateAccessed = dateAccessed;
+		while (-1!=peek())
+		{
+			readKeyword();
+			if (matches(DIVIDEND))
+			{
+				final int date = nextInt();
+				expect(',');
+				skipSpaces();
+				final double dividend = parseDouble();
+				if (date > after)
+					ret.add(new Pair(new Date(date), dividend, 0));
+			}
+			else if (matches(SPLIT))
+			{
+				final int date = nextInt();
+				expect(',');
+				skipSpaces();
+				// gonna be like 1:10 or something
+				final double from = parseDouble();
+				expect(':');
+				final double to = parseDouble();
+				if (date > after)
+					ret.add(new Pair(new Date(date), 0, to / from));
+			}
+			else if (matches(STARTDATE))
+				ret.startDate = new Date(nextInt());
+			else if (matches(ENDDATE))
+				ret.endDate = new Date(nextInt());
+			else if (matches(STATUS))
+				ret.status = nextInt();
+			else if (matches(TOTALSIZE))
+				ret.totalSize = nextInt();
+			// anything else (the header) is ignored
+			skipLine();
+		}
+		//if (ret.totalSize != ret.data.size()) throw new RuntimeException("Uh oh");
+		// TODO figure out what ret.totalSize represents
+
+		Collections.reverse(ret); // ascending order
+		return ret;
+	}
+
+	// reads ", 12345" which is how the integer fields in the dividend csv look
+	private int nextInt()
+		throws IOException
+	{
+		skipSpaces();
+		expect(',');
+		skipSpaces();
+		final long ret = parseLong();
+		if (ret > Integer.MAX_VALUE || ret < Integer.MIN_VALUE)
+			throw error("Integer overflow");
+		return (int) ret;
+	}
+
+	// reads the leading alphabetic keyword of the line into token
+	private void readKeyword()
+		throws IOException
+	{
+		skipSpaces();
+		tokenLen = 0;
+		int c;
+		while (-1!=(c = peek()) && ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')))
+		{
+			if (tokenLen < token.length)
+				token[tokenLen++] = (byte) c;
+			++pos;
+		}
+	}
+	private boolean matches(final byte[] keyword)
+	{
+		if (tokenLen!=keyword.length)
+			return false;
+		for (int i = 0; i < tokenLen; i++)
+			if (token[i]!=keyword[i])
+				return false;
+		return true;
+	}
+
+	// Parses YYYY-MM-DD (or YYYYMMDD) into YYYYMMDD
+	private int parseDate()
+		throws IOException
+	{
+		final int year = digits();
+		if ('-'!=peek())
+			return year; // already YYYYMMDD
+		++pos;
+		final int month = digits();
+		expect('-');
+		final int day = digits();
+		return year * 10000 + month * 100 + day;
+	}
+	private int digits()
+		throws IOException
+	{
+		int ret = 0;
+		int n = 0;
+		int c;
+		while (isDigit(c = peek()))
+		{
+			ret = ret * 10 + (c - '0');
+			++pos; ++n;
+		}
+		if (0==n || n > 9)
+			throw error("Bad date");
+		return ret;
+	}
+
+	private long parseLong()
+		throws IOException
+	{
+		boolean neg = false;
+		if ('-'==peek())
+		{
+			neg = true;
+			++pos;
+		}
+		long ret = 0;
+		int n = 0;
+		int c;
+		while (isDigit(c = peek()))
+		{
+			if (ret > (Long.MAX_VALUE - 9) / 10)
+				throw error("Integer overflow");
+			ret = ret * 10 + (c - '0');
+			++pos; ++n;
+		}
+		if (0==n)
+			throw error("Expected a number");
+		return neg ? -ret : ret;
+	}
+
+	// For the usual case of a short decimal the result is exact: the digits
+	// fit in the 53 bits of a double and so does the power of ten, so the
+	// one division is correctly rounded, the same as Double.parseDouble.
+	// Anything else goes through Double.parseDouble.
+	private double parseDouble()
+		throws IOException
+	{
+		tokenLen = 0;
+		boolean neg = false;
+		boolean slow = false;
+		long mantissa = 0;
+		int scale = 0;
+		boolean dot = false;
+		int n = 0;
+		int c = peek();
+		if ('-'==c || '+'==c)
+		{
+			neg = '-'==c;
+			token[tokenLen++] = (byte) c;
+			++pos;
+		}
+		while (-1!=(c = peek()))
+		{
+			if (isDigit(c))
+			{
+				if (mantissa < MAX_EXACT / 10)
+				{
+					mantissa = mantissa * 10 + (c - '0');
+					if (dot) ++scale;
+				}
+				else
+					slow = true;
+				++n;
+			}
+			else if ('.'==c && !dot)
+				dot = true;
+			else if ('e'==c || 'E'==c
+					|| (('+'==c || '-'==c) && 0 < tokenLen
+						&& ('e'==token[tokenLen-1] || 'E'==token[tokenLen-1])))
+				slow = true;
+			else
+				break;
+			if (tokenLen==token.length)
+				throw error("Number too long");
+			token[tokenLen++] = (byte) c;
+			++pos;
+		}
+		if (0==n)
+			throw error("Expected a number");
+		if (slow || mantissa > MAX_EXACT || scale >= POW10.length)
+		{
+			try
+			{
+				return Double.parseDouble(new String(token, 0, tokenLen, "US-ASCII"));
+			}
+			catch (NumberFormatException e)
+			{
+				throw error("Bad number");
+			}
+		}
+		final double ret = 0==scale ? (double) mantissa : mantissa / POW10[scale];
+		return neg ? -ret : ret;
+	}
+
+	private void expect(final char ch)
+		throws IOException
+	{
+		if (ch!=peek())
+			throw error("Expected '"+ch+"'");
+		++pos;
+	}
+	private void skipSpaces()
+		throws IOException
+	{
+		int c;
+		while (' '==(c = peek()) || '\t'==c)
+			++pos;
+	}
+	// the rest of the line should be empty
+	private void endLine()
+		throws IOException
+	{
+		skipSpaces();
+		final int c = peek();
+		if (-1!=c && !isEol(c))
+			throw error("Expected end of line");
+		skipLine();
+	}
+	private void skipLine()
+		throws IOException
+	{
+		int c;
+		while (-1!=(c = peek()))
+		{
+			++pos;
+			if ('\n'==c)
+			{
+				++line;
+				return;
+			}
+		}
+	}
+
+	// returns the next byte without consuming it, or -1 at the end of the stream
+	private int peek()
+		throws IOException
+	{
+		if (pos==lim)
+		{
+			lim = is.read(buf, 0, buf.length);
+			pos = 0;
+			if (lim <= 0)
+			{
+				lim = 0;
+				return -1;
+			}
+		}
+		return buf[pos] & 0xff;
+	}
+
+	private IOException error(final String msg)
+	{
+		return new IOException(msg+" on line "+line);
+	}
+
+	private static boolean isDigit(final int c)
+	{
+		return c >= '0' && c <= '9';
+	}
+	private static boolean isEol(final int c)
+	{
+		return '\n'==c || '\r'==c;
+	}
+	private static byte[] ascii(final String s)
+	{
+		final byte[] ret = new byte[s.length()];
+		for (int i = 0; i < ret.length; i++)
+			ret[i] = (byte) s.charAt(i);
+		return ret;
+	}
+	private static void reverse(final int[] a, final int len)
+	{
+		for (int i = 0, j = len - 1; i < j; i++, j--)
+		{
+			final int tmp = a[i]; a[i] = a[j]; a[j] = tmp;
+		}
+	}
+	private static void reverse(final long[] a, final int len)
+	{
+		for (int i = 0, j = len - 1; i < j; i++, j--)
+		{
+			final long tmp = a[i]; a[i] = a[j]; a[j] = tmp;
+		}
+	}
+	private static void reverse(final double[] a, final int len)
+	{
+		for (int i = 0, j = len - 1; i < j; i++, j--)
+		{
+			final double tmp = a[i]; a[i] = a[j]; a[j] = tmp;
+		}
+	}
+}
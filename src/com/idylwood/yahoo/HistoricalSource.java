@@ -0,0 +1,159 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+
+package com.idylwood.yahoo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import com.idylwood.yahoo.YahooFinance.DivSplitTable;
+
+/**
+ * Where YahooFinance gets its historical data from. Subclasses only need to
+ * know how to open the raw csv for a symbol; the parsing lives here so
+ * that every source produces identical tables.
+ * The default is {@link Yahoo}, {@link Directory} reads the same csv files
+ * from disk and is useful for testing and for working offline.
+ */
+public abstract class HistoricalSource
+{
+	/**
+	 * Opens the csv of the given type for symbol. The stream must contain
+	 * at least every row after <code>after</code>, it may contain more
+	 * (they are filtered out when parsing).
+	 * @param after null means the whole history
+	 * @return null if there is no data after <code>after</code>
+	 */
+	protected abstract InputStream open(String symbol, HistoricalUrlBuilder.Type type, Date after)
+		throws IOException;
+
+	/**
+	 * Returns newly allocated table with the daily prices for symbol which are
+	 * strictly after <code>after</code>, or the whole history if <code>after</code> is null.
+	 * @param symbol
+	 * @param after
+	 * @return
+	 * @throws IOException
+	 */
+	public HistTable HistoricalPrices(final String symbol, final Date after)
+		throws IOException
+	{
+		final long dateAccessed = System.currentTimeMillis();
+		final InputStream is = open(symbol, HistoricalUrlBuilder.Type.DAILY, after);
+		if (null==is)
+			return new HistTable(symbol, dateAccessed, new ArrayList<HistRow>());
+		try
+		{
+			return HistoricalCsvParser.prices(symbol, dateAccessed, is, cutoff(after));
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * Returns newly allocated table with the dividends and splits for symbol
+	 * which are strictly after <code>after</code>, or the whole history if
+	 * <code>after</code> is null.
+	 * @param symbol
+	 * @param after
+	 * @return
+	 * @throws IOException
+	 */
+	public DivSplitTable HistoricalDivSplits(final String symbol, final Date after)
+		throws IOException
+	{
+		final long dateAccessed = System.currentTimeMillis();
+		final InputStream is = open(symbol, HistoricalUrlBuilder.Type.DIVIDEND, after);
+		if (null==is)
+		{
+			final DivSplitTable ret = new DivSplitTable();
+			ret.symbol = symbol;
+			ret.dateAccessed = dateAccessed;
+			return ret;
+		}
+		try
+		{
+			return HistoricalCsvParser.divSplits(symbol, dateAccessed, is, cutoff(after));
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	private static int cutoff(final Date after)
+	{
+		return null==after ? Integer.MIN_VALUE : after.toInt();
+	}
+
+	// Downloads from ichart.yahoo.com
+	public static class Yahoo extends HistoricalSource
+	{
+		@Override protected InputStream open(final String symbol, final HistoricalUrlBuilder.Type type, final Date after)
+			throws IOException
+		{
+			final HistoricalUrlBuilder hub = new HistoricalUrlBuilder(symbol).setType(type);
+			if (null!=after)
+				hub.setStartDate(after);
+			try
+			{
+				return hub.toURL().openStream();
+			}
+			catch (FileNotFoundException e)
+			{
+				// yahoo 404s if there is nothing in the requested range,
+				// which is expected when we are just asking for the latest rows.
+				if (null!=after)
+					return null;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Reads csv files in the same format as Yahoo serves them from a directory.
+	 * Prices are read from <code>SYMBOL.csv</code> and dividends and splits
+	 * from <code>SYMBOL.div.csv</code>. Every call re-reads the file so tests
+	 * can simulate new data arriving by rewriting it.
+	 */
+	public static class Directory extends HistoricalSource
+	{
+		final File dir;
+		public Directory(final File dir) { this.dir = dir; }
+		@Override protected InputStream open(final String symbol, final HistoricalUrlBuilder.Type type, final Date after)
+			throws IOException
+		{
+			final String suffix = HistoricalUrlBuilder.Type.DIVIDEND==type ? ".div.csv" : ".csv";
+			return new FileInputStream(new File(dir, symbol + suffix));
+		}
+	}
+}
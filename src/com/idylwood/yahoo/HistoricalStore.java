@@ -0,0 +1,287 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+
+package com.idylwood.yahoo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.idylwood.yahoo.YahooFinance.DivSplitTable;
+import com.idylwood.yahoo.YahooFinance.Pair;
+
+/**
+ * Persistent store for historical prices and dividends/splits which survives
+ * restarts. Each symbol gets two memory mapped files in the store directory,
+ * SYMBOL.prices and SYMBOL.divs. The files are append only: a fixed size header
+ * followed by fixed size rows in ascending date order. New rows are written
+ * before the header is updated, so a crash in the middle of an append just
+ * loses the new rows.
+ * Thread safe.
+ */
+public final class HistoricalStore
+{
+	static final int PRICES_MAGIC = 0x1D11F001;
+	static final int DIVS_MAGIC = 0x1D11F002;
+	static final int VERSION = 1;
+
+	// magic, version, dateAccessed, rows
+	static final int PRICES_HEADER = 4 + 4 + 8 + 4;
+	// date, open, high, low, close, adj_close, volume
+	static final int PRICES_ROW = 4 + 8*5 + 8;
+	// magic, version, dateAccessed, rows, startDate, endDate, status, totalSize
+	static final int DIVS_HEADER = 4 + 4 + 8 + 4 + 4*4;
+	// date, dividend, split
+	static final int DIVS_ROW = 4 + 8 + 8;
+
+	private final File dir;
+
+	public HistoricalStore(final File dir)
+		throws IOException
+	{
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Could not create "+dir);
+		this.dir = dir;
+	}
+
+	// Symbols like ^GSPC or BRK/B don't make good file names.
+	private File file(final String symbol, final String suffix)
+	{
+		return new File(dir, symbol.replaceAll("[^A-Za-z0-9.\\-]", "_") + suffix);
+	}
+
+	/**
+	 * Reads the stored prices for symbol. Returns null if there is nothing stored.
+	 * The returned table has the dateAccessed of the last append.
+	 * @param symbol
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized HistTable readPrices(final String symbol)
+		throws IOException
+	{
+		final File f = file(symbol, ".prices");
+		if (!f.exists())
+			return null;
+		try (RandomAccessFile raf = new RandomAccessFile(f, "r"))
+		{
+			final FileChannel ch = raf.getChannel();
+			final MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			checkHeader(buf, PRICES_MAGIC, f);
+			final long dateAccessed = buf.getLong();
+			final int len = buf.getInt();
+			if (ch.size() < PRICES_HEADER + (long)len * PRICES_ROW)
+				throw new IOException("Truncated store file "+f);
+			final int[] dates = new int[len];
+			final double[] open = new double[len];
+			final double[] high = new double[len];
+			final double[] low = new double[len];
+			final double[] close = new double[len];
+			final double[] adj_close = new double[len];
+			final long[] volume = new long[len];
+			buf.position(PRICES_HEADER);
+			for (int i = 0; i < len; i++)
+			{
+				dates[i] = buf.getInt();
+				open[i] = buf.getDouble();
+				high[i] = buf.getDouble();
+				low[i] = buf.getDouble();
+				close[i] = buf.getDouble();
+				adj_close[i] = buf.getDouble();
+				volume[i] = buf.getLong();
+			}
+			return new HistTable(symbol, dateAccessed, dates, open, high, low, close, volume, adj_close);
+		}
+	}
+
+	/**
+	 * Appends the rows of <code>rows</code> to what is stored for its symbol,
+	 * creating the file if needed, and stamps the file with rows.dateAccessed.
+	 * It is up to the caller to make sure the rows come after the stored ones.
+	 * @param rows
+	 * @throws IOException
+	 */
+	public synchronized void appendPrices(final HistTable rows)
+		throws IOException
+	{
+		final File f = file(rows.symbol, ".prices");
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw"))
+		{
+			final FileChannel ch = raf.getChannel();
+			final int stored = readOrInitHeader(ch, PRICES_MAGIC, PRICES_HEADER, f);
+			final int len = rows.size();
+			if (0!=len)
+			{
+				final MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE,
+						PRICES_HEADER + (long)stored * PRICES_ROW, (long)len * PRICES_ROW);
+				final IntBuffer dates = rows.DateColumn();
+				final DoubleBuffer open = rows.OpenColumn();
+				final DoubleBuffer high = rows.HighColumn();
+				final DoubleBuffer low = rows.LowColumn();
+				final DoubleBuffer close = rows.CloseColumn();
+				final DoubleBuffer adj_close = rows.AdjustedCloseColumn();
+				final LongBuffer volume = rows.VolumeColumn();
+				for (int i = 0; i < len; i++)
+				{
+					buf.putInt(dates.get(i));
+					buf.putDouble(open.get(i));
+					buf.putDouble(high.get(i));
+					buf.putDouble(low.get(i));
+					buf.putDouble(close.get(i));
+					buf.putDouble(adj_close.get(i));
+					buf.putLong(volume.get(i));
+				}
+				buf.force();
+			}
+			final MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, PRICES_HEADER);
+			header.position(8);
+			header.putLong(rows.dateAccessed);
+			header.putInt(stored + len);
+			header.force();
+		}
+	}
+
+	/**
+	 * Reads the stored dividends and splits for symbol. Returns null if there is nothing stored.
+	 * @param symbol
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized DivSplitTable readDivSplits(final String symbol)
+		throws IOException
+	{
+		final File f = file(symbol, ".divs");
+		if (!f.exists())
+			return null;
+		try (RandomAccessFile raf = new RandomAccessFile(f, "r"))
+		{
+			final FileChannel ch = raf.getChannel();
+			final MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			checkHeader(buf, DIVS_MAGIC, f);
+			final long dateAccessed = buf.getLong();
+			final int len = buf.getInt();
+			if (ch.size() < DIVS_HEADER + (long)len * DIVS_ROW)
+				throw new IOException("Truncated store file "+f);
+			final DivSplitTable ret = new DivSplitTable(len);
+			ret.symbol = symbol;
+			ret.dateAccessed = dateAccessed;
+			ret.startDate = toDate(buf.getInt());
+			ret.endDate = toDate(buf.getInt());
+			ret.status = buf.getInt();
+			ret.totalSize = buf.getInt();
+			for (int i = 0; i < len; i++)
+				ret.add(new Pair(new Date(buf.getInt()), buf.getDouble(), buf.getDouble()));
+			return ret;
+		}
+	}
+
+	/**
+	 * Appends <code>rows</code> to what is stored for its symbol, creating the file
+	 * if needed, and stamps the file with the dateAccessed, endDate and status of rows.
+	 * It is up to the caller to make sure the rows come after the stored ones.
+	 * @param rows
+	 * @throws IOException
+	 */
+	public synchronized void appendDivSplits(final DivSplitTable rows)
+		throws IOException
+	{
+		final File f = file(rows.symbol, ".divs");
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw"))
+		{
+			final FileChannel ch = raf.getChannel();
+			final boolean fresh = 0==ch.size();
+			final int stored = readOrInitHeader(ch, DIVS_MAGIC, DIVS_HEADER, f);
+			final int len = rows.size();
+			if (0!=len)
+			{
+				final MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE,
+						DIVS_HEADER + (long)stored * DIVS_ROW, (long)len * DIVS_ROW);
+				for (final Pair p : rows)
+				{
+					buf.putInt(p.date.toInt());
+					buf.putDouble(p.first);
+					buf.putDouble(p.second);
+				}
+				buf.force();
+			}
+			final MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, DIVS_HEADER);
+			header.position(8);
+			header.putLong(rows.dateAccessed);
+			header.putInt(stored + len);
+			// the start date is that of the first download
+			if (fresh)
+				header.putInt(toInt(rows.startDate));
+			else
+				header.getInt();
+			header.putInt(toInt(rows.endDate));
+			header.putInt(rows.status);
+			header.putInt(rows.totalSize);
+			header.force();
+		}
+	}
+
+	private static void checkHeader(final MappedByteBuffer buf, final int magic, final File f)
+		throws IOException
+	{
+		if (buf.remaining() < 8 || magic!=buf.getInt())
+			throw new IOException("Not a store file: "+f);
+		final int version = buf.getInt();
+		if (VERSION!=version)
+			throw new IOException("Unknown store version "+version+" in "+f);
+	}
+
+	// Returns the number of rows already in the file, writing a new header if it is empty
+	private static int readOrInitHeader(final FileChannel ch, final int magic, final int headerSize, final File f)
+		throws IOException
+	{
+		if (0==ch.size())
+		{
+			final MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+			buf.putInt(magic);
+			buf.putInt(VERSION);
+			return 0;
+		}
+		final MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+		checkHeader(buf, magic, f);
+		buf.getLong(); // dateAccessed
+		return buf.getInt();
+	}
+
+	// 0 represents a missing date
+	private static int toInt(final Date d)
+	{
+		return null==d ? 0 : d.toInt();
+	}
+	private static Date toDate(final int d)
+	{
+		return 0==d ? null : new Date(d);
+	}
+}
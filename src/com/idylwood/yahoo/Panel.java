@@ -0,0 +1,260 @@
+/*
+ * ====================================================
+ * Copyright (C) 2013 by Idylwood Technologies, LLC. All rights reserved.
+ *
+ * Developed at Idylwood Technologies, LLC.
+ * Permission to use, copy, modify, and distribute this
+ * software is freely granted, provided that this notice 
+ * is preserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * The License should have been distributed to you with the source tree.
+ * If not, it can be found at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * Author: Charles Cooper
+ * Date: 2013
+ * ====================================================
+ */
+
+package com.idylwood.yahoo;
+
+import java.util.Arrays;
+
+import com.idylwood.utils.MathUtils.Matrix;
+
+/**
+ * Prices of several symbols lined up on a shared date index and stored in one
+ * dense array. The storage is symbol-major: the series for symbol i is
+ * row i of matrix(), which is the layout MathUtils.covariance(Matrix)
+ * and friends expect. Immutable.
+ */
+public final class Panel
+{
+	/**
+	 * What to put in an outer join for a symbol which has no row on a date.
+	 */
+	public enum Fill
+	{
+		NAN, // leave a hole
+		PREVIOUS // carry the last observation forward (NaN until the first observation)
+	}
+
+	public final String[] symbols;
+	private final int[] dates; // YYYYMMDD
+	private final double[] data;
+
+	private Panel(final String[] symbols, final int[] dates, final double[] data)
+	{
+		this.symbols = symbols; this.dates = dates; this.data = data;
+	}
+
+	// number of dates
+	public int rows() { return dates.length; }
+	// number of symbols
+	public int cols() { return symbols.length; }
+	// Returns the date of row t in YYYYMMDD format
+	public int date(final int t) { return dates[t]; }
+	// Returns newly allocated array of the dates
+	public int[] dates() { return Arrays.copyOf(dates, dates.length); }
+	public double get(final int t, final int symbol) { return data[symbol*dates.length + t]; }
+	// Returns newly allocated copy of the series for symbol
+	public double[] series(final int symbol)
+	{
+		final int n = dates.length;
+		return Arrays.copyOfRange(data, symbol*n, (symbol+1)*n);
+	}
+	/**
+	 * Returns the panel as a cols() x rows() matrix (one row per symbol)
+	 * which shares the storage of the panel, so don't modify it.
+	 */
+	public Matrix matrix()
+	{
+		return new Matrix(symbols.length, dates.length, data);
+	}
+
+	/**
+	 * Returns newly allocated panel of the log returns, log(p[t]/p[t-1]),
+	 * indexed by the date of the later price. Has one less row.
+	 */
+	public Panel logReturns()
+	{
+		final int n = dates.length;
+		if (0==n)
+			return this;
+		final int m = n - 1;
+		final double[] ret = new double[symbols.length * m];
+		for (int i = 0; i < symbols.length; i++)
+		{
+			final int src = i*n;
+			final int dst = i*m;
+			double prev = Math.log(data[src]);
+			for (int t = 0; t < m; t++)
+			{
+				final double cur = Math.log(data[src+t+1]);
+				ret[dst+t] = cur - prev;
+				prev = cur;
+			}
+		}
+		return new Panel(symbols, Arrays.copyOfRange(dates, 1, n), ret);
+	}
+
+	/**
+	 * Returns newly allocated panel of the simple returns, p[t]/p[t-1] - 1,
+	 * indexed by the date of the later price. Has one less row.
+	 * Unlike log returns these add up across symbols, so the return of
+	 * a weighted basket is the weighted sum of the rows.
+	 */
+	public Panel returns()
+	{
+		final int n = dates.length;
+		if (0==n)
+			return this;
+		final int m = n - 1;
+		final double[] ret = new double[symbols.length * m];
+		for (int i = 0; i < symbols.length; i++)
+		{
+			final int src = i*n;
+			final int dst = i*m;
+			for (int t = 0; t < m; t++)
+				ret[dst+t] = data[src+t+1] / data[src+t] - 1;
+		}
+		return new Panel(symbols, Arrays.copyOfRange(dates, 1, n), ret);
+	}
+
+	/**
+	 * Lines up the tables on the dates which all of them have (inner join).
+	 * @param field which price to take
+	 * @param tables
+	 * @return newly allocated Panel
+	 */
+	public static Panel intersect(final HistTable.Field field, final HistTable... tables)
+	{
+		final int len = tables.length;
+		final int[] idx = new int[len]; // cursor into each table
+		if (0==len)
+			return new Panel(new String[0], new int[0], new double[0]);
+		int cap = Integer.MAX_VALUE;
+		for (final HistTable t : tables)
+			cap = Math.min(cap, t.size());
+		final int[] dates = new int[cap];
+		final int[][] rows = new int[len][cap]; // row of each table for each output date
+		int n = 0;
+		outer:
+		while (true)
+		{
+			// the largest current date is the earliest date they could all have
+			int target = Integer.MIN_VALUE;
+			for (int i = 0; i < len; i++)
+			{
+				if (idx[i]==tables[i].size())
+					break outer;
+				target = Math.max(target, tables[i].dateInt(idx[i]));
+			}
+			boolean all_have = true;
+			for (int i = 0; i < len; i++)
+			{
+				final HistTable t = tables[i];
+				while (idx[i] < t.size() && t.dateInt(idx[i]) < target)
+					++idx[i];
+				if (idx[i]==t.size())
+					break outer;
+				if (t.dateInt(idx[i])!=target)
+					all_have = false;
+			}
+			if (!all_have)
+				continue;
+			dates[n] = target;
+			for (int i = 0; i < len; i++)
+				rows[i][n] = idx[i]++;
+			++n;
+		}
+		final double[] data = new double[len * n];
+		for (int i = 0; i < len; i++)
+		{
+			final double[] col = tables[i].rawColumn(field);
+			final int off = tables[i].offset();
+			final int[] r = rows[i];
+			final int dst = i*n;
+			for (int t = 0; t < n; t++)
+				data[dst+t] = col[off + r[t]];
+		}
+		return new Panel(symbols(tables), Arrays.copyOf(dates, n), data);
+	}
+
+	/**
+	 * Lines up the tables on the dates which any of them have (outer join),
+	 * filling in the holes according to <code>fill</code>.
+	 * @param field which price to take
+	 * @param fill
+	 * @param tables
+	 * @return newly allocated Panel
+	 */
+	public static Panel union(final HistTable.Field field, final Fill fill, final HistTable... tables)
+	{
+		final int len = tables.length;
+		final int[] idx = new int[len];
+		int cap = 0;
+		for (final HistTable t : tables)
+			cap += t.size();
+		// first pass, merge the date indices
+		final int[] dates = new int[cap];
+		int n = 0;
+		while (true)
+		{
+			int min = Integer.MAX_VALUE;
+			boolean any = false;
+			for (int i = 0; i < len; i++)
+				if (idx[i] < tables[i].size())
+				{
+					min = Math.min(min, tables[i].dateInt(idx[i]));
+					any = true;
+				}
+			if (!any)
+				break;
+			dates[n++] = min;
+			for (int i = 0; i < len; i++)
+				if (idx[i] < tables[i].size() && min==tables[i].dateInt(idx[i]))
+					++idx[i];
+		}
+		// second pass, copy each table's column into the slots for its dates
+		final double[] data = new double[len * n];
+		for (int i = 0; i < len; i++)
+		{
+			final HistTable table = tables[i];
+			final double[] col = table.rawColumn(field);
+			final int[] tdates = table.rawDates();
+			final int off = table.offset();
+			final int size = table.size();
+			final int dst = i*n;
+			double last = Double.NaN;
+			int r = 0;
+			for (int t = 0; t < n; t++)
+			{
+				if (r < size && tdates[off+r]==dates[t])
+				{
+					last = col[off + r++];
+					data[dst+t] = last;
+				}
+				else
+					data[dst+t] = Fill.PREVIOUS==fill ? last : Double.NaN;
+			}
+		}
+		return new Panel(symbols(tables), Arrays.copyOf(dates, n), data);
+	}
+
+	private static String[] symbols(final HistTable[] tables)
+	{
+		final String[] ret = new String[tables.length];
+		for (int i = 0; i < tables.length; i++)
+			ret[i] = tables[i].symbol;
+		return ret;
+	}
+}
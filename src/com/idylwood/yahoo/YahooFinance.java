@@ -28,6 +28,16 @@ package com.idylwood.yahoo;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.math3.stat.regression.*;
 
@@ -39,18 +49,113 @@ import au.com.bytecode.opencsv.CSVReader;
 
 import com.idylwood.*;
 import com.idylwood.utils.FinUtils;
+import com.idylwood.utils.LoadingCache;
 import com.idylwood.utils.MathUtils;
+import com.idylwood.utils.RollingStatistics;
 
 // Class intended to provide wrapper to Yahoo Finance API
 public final class YahooFinance
 {
 	final static long TwentyFourHours = 1000L * 60 * 60 * 24; // millis in day
 	final static public Date DEFAULT_START_DATE = new Date(20070101);
-	final Map<String,HistTable> mTables = new HashMap<String,HistTable>();
-	final Map<String,DivTable> mDividends = new HashMap<String,DivTable>();
-	final Map<String,SplitTable> mSplits = new HashMap<String,SplitTable>();
-	final Map<String,DivSplitTable> mDivSplits = new HashMap<String,DivSplitTable>();
-	final Map<String,Quote> mQuotes = new HashMap<String,Quote>();
+	final static int DEFAULT_CACHE_SIZE = 4096; // number of symbols
+
+	// The caches don't lock while downloading, so one slow symbol
+	// doesn't hold up everybody else.
+	final LoadingCache<String,HistTable> mTables = new LoadingCache<String,HistTable>(
+			TwentyFourHours, DEFAULT_CACHE_SIZE,
+			new LoadingCache.Loader<String,HistTable>() {
+				@Override public HistTable load(final String symbol, final HistTable stale)
+					throws IOException
+				{
+					return LoadHistoricalPrices(symbol, stale);
+				}
+				@Override public long timestamp(final HistTable table)
+				{
+					return table.dateAccessed;
+				}
+			});
+	final LoadingCache<String,DivSplitTable> mDivSplits = new LoadingCache<String,DivSplitTable>(
+			TwentyFourHours, DEFAULT_CACHE_SIZE,
+			new LoadingCache.Loader<String,DivSplitTable>() {
+				@Override public DivSplitTable load(final String symbol, final DivSplitTable stale)
+					throws IOException
+				{
+					return LoadHistoricalDivSplits(symbol, stale);
+				}
+				@Override public long timestamp(final DivSplitTable table)
+				{
+					return table.dateAccessed;
+				}
+			});
+	final LoadingCache<String,Quote> mQuotes = new LoadingCache<String,Quote>(
+			TwentyFourHours, DEFAULT_CACHE_SIZE,
+			new LoadingCache.Loader<String,Quote>() {
+				@Override public Quote load(final String ticker, final Quote stale)
+					throws IOException
+				{
+					return DownloadQuotes(ticker).get(0);
+				}
+				// batch them into one request
+				@Override public List<Quote> loadAll(final List<String> tickers, final List<Quote> stale)
+					throws IOException
+				{
+					return DownloadQuotes(tickers.toArray(new String[tickers.size()]));
+				}
+				@Override public long timestamp(final Quote quote)
+				{
+					return quote.time_accessed;
+				}
+			});
+	private volatile HistoricalSource mSource = new HistoricalSource.Yahoo();
+	private volatile HistoricalStore mStore = null; // in memory only by default
+
+	/**
+	 * Sets where historical prices and dividends/splits are downloaded from.
+	 * Defaults to Yahoo. Does not clear anything already cached.
+	 * @param source
+	 */
+	public void setHistoricalSource(final HistoricalSource source)
+	{
+		if (null==source)
+			throw new IllegalArgumentException("Source cannot be null");
+		mSource = source;
+	}
+
+	/**
+	 * Sets the on disk store used to persist historical tables between runs.
+	 * When a table is stale only the rows after the last stored date are
+	 * downloaded and appended to it. Pass null to turn persistence off.
+	 * Note that since old rows are never re-downloaded, the adj_close column
+	 * of the stored rows is not updated for later dividends and splits;
+	 * use AdjustOHLC() and friends rather than relying on adj_close.
+	 * @param store
+	 */
+	public void setHistoricalStore(final HistoricalStore store)
+	{
+		// drop what is in memory so that the store sees every table from the start
+		mStore = store;
+		mTables.clear();
+		mDivSplits.clear();
+	}
+
+	/**
+	 * Sets the maximum number of symbols to keep in memory for each of the
+	 * historical prices, dividends/splits and quotes caches.
+	 * @param size
+	 */
+	public void setCacheSize(final int size)
+	{
+		mTables.setMaximumSize(size);
+		mDivSplits.setMaximumSize(size);
+		mQuotes.setMaximumSize(size);
+	}
+
+	// The caches are exposed so their hit/miss/load time counters can be monitored.
+	// They are live objects, not snapshots.
+	public LoadingCache<String,HistTable> HistoricalPricesCache() { return mTables; }
+	public LoadingCache<String,DivSplitTable> HistoricalDivSplitsCache() { return mDivSplits; }
+	public LoadingCache<String,Quote> QuotesCache() { return mQuotes; }
 
 	// Surprisingly useful class which contains two doubles and a date.
 	// TODO refactor to extend Date
@@ -148,6 +253,26 @@ public final class YahooFinance
 			return ret;
 		}
 
+		// Returns newly allocated table with the rows of later which come after
+		// the last row of this table appended. Takes dateAccessed, endDate and status
+		// from later since it is the more recent download.
+		DivSplitTable append(final DivSplitTable later)
+		{
+			final DivSplitTable ret = new DivSplitTable(this.size() + later.size());
+			ret.addAll(this);
+			final int last = this.isEmpty() ? Integer.MIN_VALUE : this.get(this.size()-1).date.toInt();
+			for (final Pair p : later)
+				if (p.date.toInt() > last)
+					ret.add(p);
+			ret.symbol = this.symbol;
+			ret.dateAccessed = later.dateAccessed;
+			ret.startDate = null==this.startDate ? later.startDate : this.startDate;
+			ret.endDate = later.endDate;
+			ret.status = later.status;
+			ret.totalSize = later.totalSize;
+			return ret;
+		}
+
 		// returns newly allocated thing.
 		public DivTable DivTable()
 		{
@@ -194,18 +319,31 @@ public final class YahooFinance
 	DivSplitTable HistoricalDivSplits(String symbol)
 		throws IOException
 	{
-		DivSplitTable ret;
-		// TODO maybe this lock needs to be more sophisticated.
-		synchronized(mDivSplits)
+		return mDivSplits.get(symbol);
+	}
+
+	// Called by the cache when the table for symbol is missing or stale.
+	private DivSplitTable LoadHistoricalDivSplits(final String symbol, final DivSplitTable stale)
+		throws IOException
+	{
+		final HistoricalStore store = mStore;
+		DivSplitTable ret = stale;
+		if (null==ret && null!=store)
+			ret = store.readDivSplits(symbol);
+		if (null==ret)
 		{
-			ret = mDivSplits.get(symbol);
-			// TODO make this more sophisticated. As it is it's going to download the whole table another time every day.
-			if (null==ret || System.currentTimeMillis() - ret.dateAccessed > TwentyFourHours)
-			{
-				ret = DownloadHistoricalDivSplits(symbol);
-				// intern it in case calling code is smart
-				mDivSplits.put(symbol.intern(),ret);
-			}
+			ret = DownloadHistoricalDivSplits(symbol);
+			if (null!=store)
+				store.appendDivSplits(ret);
+		}
+		else if (System.currentTimeMillis() - ret.dateAccessed > TwentyFourHours)
+		{
+			// only get what we don't already have
+			final Date last = ret.isEmpty() ? null : ret.get(ret.size()-1).date;
+			final DivSplitTable update = mSource.HistoricalDivSplits(symbol, last);
+			if (null!=store)
+				store.appendDivSplits(update);
+			ret = ret.append(update);
 		}
 		return ret;
 	}
@@ -217,58 +355,11 @@ public final class YahooFinance
 		return HistoricalDivSplits(symbol).SubTable(startDate, endDate);
 	}
 
-	// Downloads historical split and dividend data and caches them. Called for side effects.
+	// Downloads the whole history of splits and dividends. Does not cache.
 	private DivSplitTable DownloadHistoricalDivSplits(String symbol)
 		throws IOException
 	{
-		String csv = new HistoricalUrlBuilder(symbol)
-			.setType(HistoricalUrlBuilder.Type.DIVIDEND)
-			.download();
-		String [] lines = csv.split("\n");
-
-		final DivSplitTable ret = new DivSplitTable(lines.length);
-		ret.symbol = symbol;
-		ret.dateAccessed = System.currentTimeMillis();
-
-		for (String s : lines)
-		{
-			s = s.replaceAll(" ","");
-			String [] elements = s.split(",");
-			if (elements[0].equals("DIVIDEND"))
-			{
-				Pair p = new Pair();
-				int date = Integer.parseInt(elements[1]);
-				p.date = new Date(date);
-				p.second = 0;
-				p.first = Double.parseDouble(elements[2]);
-				ret.add(p);
-			}
-			if (elements[0].equals("SPLIT"))
-			{
-				Pair p = new Pair();
-				int date = Integer.parseInt(elements[1]);
-				p.date = new Date(date);
-				p.first = 0;
-				String [] fractionParts = elements[2].split(":"); // gonna be like 1:10 or something
-				p.second = Double.parseDouble(fractionParts[1]) / Double.parseDouble(fractionParts[0]);
-				ret.add(p);
-			}
-			if (elements[0].equals("STARTDATE"))
-				ret.startDate = new Date(Integer.parseInt(elements[1]));
-			if (elements[0].equals("ENDDATE"))
-				ret.endDate = new Date(Integer.parseInt(elements[1]));
-			if (elements[0].equals("STATUS"))
-				ret.status = Integer.parseInt(elements[1]);
-			if (elements[0].equals("TOTALSIZE"))
-				ret.totalSize = Integer.parseInt(elements[1]);
-		}
-
-		//if (ret.totalSize != ret.data.size()) throw new RuntimeException("Uh oh");
-		// TODO figure out what ret.totalSize represents
-
-		Collections.reverse(ret); // ascending order
-
-		return ret;
+		return mSource.HistoricalDivSplits(symbol, null);
 	}
 
 	final boolean DBG_QUOTES = false;
@@ -314,49 +405,21 @@ public final class YahooFinance
 	public List<Quote> Quotes(final String... tickers)
 		throws IOException
 	{
-		final List<Quote> ret = new ArrayList<Quote>(tickers.length);
-		final List<String> needed_quotes = new ArrayList<String>(tickers.length);
-		synchronized(mQuotes)
-		{
-			// download needed quotes
-			for (final String ticker : tickers)
-			{
-				final Quote q = mQuotes.get(ticker);
-				if (null==q || System.currentTimeMillis() - q.time_accessed > TwentyFourHours)
-					needed_quotes.add(ticker);
-			}
-			List<Quote> downloaded = DownloadQuotes(needed_quotes.toArray(new String[needed_quotes.size()]));
-			int i = 0;
-			for (final Quote q : downloaded)
-				mQuotes.put(tickers[i++], q);
-			// return them in order requested
-			for (final String ticker : tickers)
-				ret.add(mQuotes.get(ticker));
-		}
-		return ret;
+		// the ones we don't have are downloaded in one batch
+		return mQuotes.getAll(Arrays.asList(tickers));
 	}
 
-	// Downloads stuff from Yahoo Finance
+	// Downloads stuff from Yahoo Finance (or whatever the HistoricalSource is)
 	public HistTable DownloadHistoricalPrices(String symbol)
 		throws IOException
 	{
-		String csv = new HistoricalUrlBuilder(symbol)
-			.setType(HistoricalUrlBuilder.Type.DAILY)
-			.download();
-
-		List<HistRow> list = new ArrayList<HistRow>();
-		String [] lines = csv.split("\n");
-		// skip first line and put it into a list backwards
-		// since it is already in sorted descending order
-		for (int i = lines.length; i--!=1; )
-			list.add(new HistRow(lines[i]));
-
-		HistTable ret = new HistTable(symbol,System.currentTimeMillis(),list);
-		return ret;
+		return mSource.HistoricalPrices(symbol, null);
 	}
 
 	/**
 	 * Get the historical csv table for symbol. Will memoize (cache) the result.
+	 * If there is a HistoricalStore the table is also persisted, and when the
+	 * table goes stale only the new rows are downloaded.
 	 * @param symbol
 	 * @return
 	 * @throws IOException
@@ -364,21 +427,30 @@ public final class YahooFinance
 	public HistTable HistoricalPrices(String symbol)
 		throws IOException
 	{
-		HistTable ret = null;
-		synchronized (mTables)
+		return mTables.get(symbol);
+	}
+
+	// Called by the cache when the table for symbol is missing or stale.
+	private HistTable LoadHistoricalPrices(final String symbol, final HistTable stale)
+		throws IOException
+	{
+		final HistoricalStore store = mStore;
+		HistTable ret = stale;
+		if (null==ret && null!=store)
+			ret = store.readPrices(symbol);
+		if (null==ret || 0==ret.size())
 		{
-			ret = mTables.get(symbol);
-			// TODO make this more sophisticated. As it is it's going to download the whole table another time every day. Lol.
-			// Try something where you just download today's price. problematic
-			// because then it's like mutable.
-			//
-			// If we don't have the table or it is old get a new one
-			if (null==ret || System.currentTimeMillis() - ret.dateAccessed > TwentyFourHours)
-			{
-				ret = DownloadHistoricalPrices(symbol);
-				// intern it in case calling code is smart
-				mTables.put(symbol.intern(),ret);
-			}
+			ret = DownloadHistoricalPrices(symbol);
+			if (null!=store)
+				store.appendPrices(ret);
+		}
+		// If it is old get whatever is new since the last row.
+		else if (System.currentTimeMillis() - ret.dateAccessed > TwentyFourHours)
+		{
+			final HistTable update = mSource.HistoricalPrices(symbol, ret.EndDate());
+			if (null!=store)
+				store.appendPrices(update);
+			ret = ret.append(update);
 		}
 		return ret;
 	}
@@ -403,6 +475,181 @@ public final class YahooFinance
 		return HistoricalPrices(symbol, new Date(startDate), new Date(endDate));
 	}
 
+	/**
+	 * Callbacks for the bulk loading methods. They are called from the thread
+	 * which called the bulk method, one at a time, in order of completion.
+	 */
+	public interface BulkListener<V>
+	{
+		void loaded(String symbol, V value, int done, int total);
+		void failed(String symbol, Exception e, int done, int total);
+	}
+
+	// Threads are daemons so they don't keep the JVM alive.
+	private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(8, 8,
+			60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+				private final ThreadFactory mDefault = Executors.defaultThreadFactory();
+				@Override public Thread newThread(final Runnable r)
+				{
+					final Thread t = mDefault.newThread(r);
+					t.setDaemon(true);
+					t.setName("YahooFinance-"+t.getName());
+					return t;
+				}
+			});
+	{
+		mExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Sets the maximum number of downloads the bulk methods do at once. Defaults to 8.
+	 * @param threads
+	 */
+	public void setConcurrency(final int threads)
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("Bad number of threads: "+threads);
+		synchronized (mExecutor)
+		{
+			// order matters, core size can't be larger than max size
+			if (threads > mExecutor.getMaximumPoolSize())
+			{
+				mExecutor.setMaximumPoolSize(threads);
+				mExecutor.setCorePoolSize(threads);
+			}
+			else
+			{
+				mExecutor.setCorePoolSize(threads);
+				mExecutor.setMaximumPoolSize(threads);
+			}
+		}
+	}
+
+	/**
+	 * Bulk version of HistoricalPrices(String). Downloads and parses the tables
+	 * in parallel. A failure for one symbol doesn't stop the others from loading.
+	 * @param symbols
+	 * @param listener may be null
+	 * @return array aligned with <code>symbols</code>, with null for the symbols
+	 * which failed to load.
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	public HistTable[] HistoricalPrices(final Collection<String> symbols, final BulkListener<HistTable> listener)
+		throws InterruptedIOException
+	{
+		return bulk(mTables, symbols, listener).toArray(new HistTable[symbols.size()]);
+	}
+
+	/**
+	 * Bulk version of HistoricalPrices(String). Downloads and parses the tables in
+	 * parallel, and throws if any of them failed to load (after the rest have loaded).
+	 * @param symbols
+	 * @return array aligned with <code>symbols</code>
+	 * @throws IOException wrapping the first failure, with the others suppressed
+	 */
+	public HistTable[] HistoricalPrices(final Collection<String> symbols)
+		throws IOException
+	{
+		final Failures<HistTable> failures = new Failures<HistTable>();
+		final HistTable[] ret = HistoricalPrices(symbols, failures);
+		failures.check();
+		return ret;
+	}
+
+	/**
+	 * Downloads the dividend and split tables for all the symbols in parallel
+	 * so that adjusting the corresponding HistTables doesn't have to download
+	 * them one at a time. Called for side effects.
+	 * @param symbols
+	 * @throws IOException if any of them failed to load
+	 */
+	public void PrefetchDivSplits(final Collection<String> symbols)
+		throws IOException
+	{
+		final Failures<DivSplitTable> failures = new Failures<DivSplitTable>();
+		bulk(mDivSplits, symbols, failures);
+		failures.check();
+	}
+
+	// Remembers the failures so they can be thrown at the end.
+	// The exceptions come from the cache and can be shared with other
+	// callers loading the same symbol, so they are never modified: the
+	// first one is wrapped in a new exception which the others are added to.
+	private static final class Failures<V> implements BulkListener<V>
+	{
+		private IOException failure = null;
+		@Override public void loaded(String symbol, V value, int done, int total) {}
+		@Override public void failed(String symbol, Exception e, int done, int total)
+		{
+			if (null==failure)
+				failure = new IOException("Failed to load "+symbol, e);
+			else
+				failure.addSuppressed(e);
+		}
+		void check()
+			throws IOException
+		{
+			if (null!=failure)
+				throw failure;
+		}
+	}
+
+	// Loads the symbols from the cache in parallel. Returns list aligned with symbols.
+	private <V> List<V> bulk(final LoadingCache<String,V> cache, final Collection<String> symbols, final BulkListener<V> listener)
+		throws InterruptedIOException
+	{
+		// only load each symbol once
+		final Set<String> distinct = new LinkedHashSet<String>(symbols);
+		final CompletionService<V> cs = new ExecutorCompletionService<V>(mExecutor);
+		final Map<Future<V>,String> futures = new HashMap<Future<V>,String>();
+		for (final String symbol : distinct)
+			futures.put(cs.submit(new Callable<V>() {
+				@Override public V call() throws IOException
+				{
+					return cache.get(symbol);
+				}
+			}), symbol);
+
+		final Map<String,V> results = new HashMap<String,V>();
+		final int total = distinct.size();
+		try
+		{
+			for (int done = 1; done <= total; done++)
+			{
+				final Future<V> f = cs.take();
+				final String symbol = futures.get(f);
+				try
+				{
+					final V value = f.get();
+					results.put(symbol, value);
+					if (null!=listener)
+						listener.loaded(symbol, value, done, total);
+				}
+				catch (ExecutionException e)
+				{
+					final Throwable cause = e.getCause();
+					if (cause instanceof Error)
+						throw (Error) cause;
+					if (null!=listener)
+						listener.failed(symbol, (Exception) cause, done, total);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			for (final Future<V> f : futures.keySet())
+				f.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during bulk load");
+		}
+
+		final List<V> ret = new ArrayList<V>(symbols.size());
+		for (final String symbol : symbols)
+			ret.add(results.get(symbol));
+		return ret;
+	}
+
 	private YahooFinance() {}
 
 	static final private YahooFinance sYahooFinance = new YahooFinance();
@@ -435,26 +682,24 @@ public final class YahooFinance
 	public List<Pair> Alphabet(HistTable stock1, HistTable stock2, int windowSize, double convolutionFilter)
 	{
 		logTime("Start");
-		List<Pair> merged = FinUtils.merge(stock1,stock2);
+		final Panel merged = Panel.intersect(HistTable.Field.ADJ_CLOSE, stock1, stock2);
 		logTime("Merged");
 		// This size is slightly different from R window size
 		// it is like R window size + 1
-		// Since Statistics.regress does the diff/log
+		// since a window of windowSize prices has windowSize-1 log returns.
 		DataTable alpha = new DataTable(Integer.class, Double.class);
 		DataTable beta = new DataTable(Integer.class, Double.class);
-		// perform regression over rolling windows
-		// TODO make this faster.
-		SimpleRegression regress;
-		for (int i = 0; i < merged.size() - windowSize; i++)
+		// perform regression over rolling windows, in one pass.
+		final Panel returns = merged.logReturns();
+		final RollingStatistics rolling = RollingStatistics.calculate(returns.series(0), returns.series(1), windowSize - 1);
+		for (int i = 0; i < merged.rows() - windowSize; i++)
 		{
-			List<Pair> window = merged.subList(i,i+windowSize);
-			regress = Statistics.regress(window);
-
-			int date = window.get(window.size()-1).date.toInt();
-			double intercept = regress.getIntercept();
+			// the window of prices [i, i+windowSize) is the window of returns [i, i+windowSize-1)
+			int date = merged.date(i+windowSize-1);
+			double intercept = rolling.alpha[i];
 			intercept = 100 * (Math.exp(intercept * 250) - 1); // in APR, not daily log
 			alpha.add(date, intercept);
-			beta.add(date, regress.getSlope());
+			beta.add(date, rolling.beta[i]);
 		}
 
 		logTime("Regressed");
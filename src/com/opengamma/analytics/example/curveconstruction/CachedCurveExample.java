@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.example.curveconstruction;
+
+// @export "imports"
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.opengamma.analytics.financial.horizon.ConstantSpreadYieldCurveRolldownFunction;
+import com.opengamma.analytics.financial.interestrate.NodeYieldSensitivityCalculator;
+import com.opengamma.analytics.financial.interestrate.PresentValueNodeSensitivityCalculator;
+import com.opengamma.analytics.financial.interestrate.YieldCurveBundle;
+import com.opengamma.analytics.financial.model.interestrate.curve.DiscountCurve;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCachedCurve;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCurve;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
+import com.opengamma.analytics.math.curve.InterpolatedDoublesCurve;
+import com.opengamma.analytics.math.interpolation.CombinedInterpolatorExtrapolatorFactory;
+import com.opengamma.analytics.math.interpolation.Interpolator1D;
+import com.opengamma.analytics.math.interpolation.Interpolator1DFactory;
+import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
+import com.opengamma.util.tuple.DoublesPair;
+
+// @export "classDefinition"
+public class CachedCurveExample {
+
+    // @export "initCurves"
+    static Interpolator1D INTERPOLATOR = CombinedInterpolatorExtrapolatorFactory.getInterpolator(Interpolator1DFactory.LINEAR,
+            Interpolator1DFactory.FLAT_EXTRAPOLATOR);
+    static double[] TIMES = {0.5, 1, 2, 5, 10};
+    static String YIELD_NAME = "Yield";
+    static String DISCOUNT_NAME = "Discount";
+
+    public static YieldCurveBundle getBundle() {
+        YieldCurve yieldCurve = YieldCurve.from(InterpolatedDoublesCurve.fromSorted(TIMES, new double[] {0.01, 0.012, 0.015, 0.02, 0.025}, INTERPOLATOR));
+        DiscountCurve discountCurve = DiscountCurve.from(InterpolatedDoublesCurve.fromSorted(TIMES, new double[] {0.995, 0.988, 0.97, 0.9, 0.78},
+                INTERPOLATOR));
+        return new YieldCurveBundle(new String[] {YIELD_NAME, DISCOUNT_NAME}, new YieldAndDiscountCurve[] {yieldCurve, discountCurve});
+    }
+
+    // @export "cachedValuesDemo"
+    public static void cachedValuesDemo(PrintStream out) {
+        YieldCurveBundle bundle = getBundle();
+        YieldCurveBundle cached = YieldAndDiscountCachedCurve.cacheAll(bundle, YieldAndDiscountCachedCurve.DEFAULT_MAX_SIZE);
+        YieldAndDiscountCachedCurve curve = (YieldAndDiscountCachedCurve) cached.getCurve(YIELD_NAME);
+
+        for (int i = 0; i < 3; i++) {
+            out.println(curve.getDiscountFactor(3.0));
+        }
+        out.println("hits: " + curve.getHitCount() + ", misses: " + curve.getMissCount());
+
+        assert curve.getDiscountFactor(3.0) == bundle.getCurve(YIELD_NAME).getDiscountFactor(3.0);
+        assert YieldAndDiscountCachedCurve.getUnderlying(curve) == bundle.getCurve(YIELD_NAME);
+    }
+
+    // @export "nodeSensitivityDemo"
+    public static void nodeSensitivityDemo(PrintStream out) {
+        YieldCurveBundle bundle = getBundle();
+        YieldCurveBundle cached = YieldAndDiscountCachedCurve.cacheAll(bundle, 16);
+
+        Map<String, List<DoublesPair>> sensitivities = new HashMap<String, List<DoublesPair>>();
+        sensitivities.put(YIELD_NAME, Arrays.asList(DoublesPair.of(0.75, -50.), DoublesPair.of(3., -200.), DoublesPair.of(12., 10.)));
+        sensitivities.put(DISCOUNT_NAME, Arrays.asList(DoublesPair.of(1.5, -100.), DoublesPair.of(7., -300.)));
+
+        NodeYieldSensitivityCalculator calculator = PresentValueNodeSensitivityCalculator.getDefaultInstance();
+        DoubleMatrix1D expected = calculator.curveToNodeSensitivities(sensitivities, bundle);
+        DoubleMatrix1D onCached = calculator.curveToNodeSensitivities(sensitivities, cached);
+        out.println(expected);
+        out.println(onCached);
+
+        assert expected.getNumberOfElements() == 2 * TIMES.length;
+        assert expected.equals(onCached);
+        assert calculator.curveToNodeSensitivities(sensitivities.get(DISCOUNT_NAME), bundle.getCurve(DISCOUNT_NAME)).equals(
+                calculator.curveToNodeSensitivities(sensitivities.get(DISCOUNT_NAME), new YieldAndDiscountCachedCurve(cached.getCurve(DISCOUNT_NAME))));
+    }
+
+    // @export "rolldownDemo"
+    public static void rolldownDemo(PrintStream out) {
+        YieldCurveBundle cached = YieldAndDiscountCachedCurve.cacheAll(getBundle(), 16);
+        YieldAndDiscountCurve rolled = ConstantSpreadYieldCurveRolldownFunction.getInstance().rollDown(cached.getCurve(YIELD_NAME), 1.0);
+
+        out.println(rolled.getInterestRate(1.0));
+
+        assert rolled.getInterestRate(1.0) == cached.getCurve(YIELD_NAME).getInterestRate(2.0);
+    }
+
+    public static void main(String[] args) {
+        cachedValuesDemo(System.out);
+        nodeSensitivityDemo(System.out);
+        rolldownDemo(System.out);
+    }
+}
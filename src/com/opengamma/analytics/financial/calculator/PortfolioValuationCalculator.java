@@ -0,0 +1,284 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.calculator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.opengamma.OpenGammaRuntimeException;
+import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
+import com.opengamma.analytics.financial.interestrate.InstrumentDerivativeVisitor;
+import com.opengamma.analytics.financial.interestrate.InterestRateCurveSensitivity;
+import com.opengamma.analytics.financial.interestrate.InterestRateCurveSensitivityUtils;
+import com.opengamma.analytics.financial.interestrate.PresentValueCalculator;
+import com.opengamma.analytics.financial.interestrate.PresentValueCurveSensitivityCalculator;
+import com.opengamma.analytics.financial.interestrate.YieldCurveBundle;
+import com.opengamma.util.ArgumentChecker;
+import com.opengamma.util.tuple.DoublesPair;
+
+/**
+ * Runs a calculator (an {@link InstrumentDerivativeVisitor}, e.g. {@link PresentValueCalculator}) over a portfolio of instruments.
+ * <p>The portfolio is cut in batches of consecutive trades which are submitted to an executor; without an executor the batches are run on the
+ * calling thread. The calculators are stateless so they can be shared between the threads; the data (e.g. the {@link YieldCurveBundle}) is
+ * only read. The result for each trade is returned in the portfolio order, and if an {@link Aggregator} is given the results are also
+ * summed, first in each batch and then over the batches in the portfolio order, so the total does not depend on the number of threads.
+ * The time spent on each instrument type is recorded.
+ */
+public class PortfolioValuationCalculator {
+
+  /**
+   * The default number of trades in a batch.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  /**
+   * Sums the results of a calculator.
+   * @param <T> The type of the calculator result.
+   */
+  public abstract static class Aggregator<T> {
+    /**
+     * Sums a list of results.
+     * @param values The results, not empty.
+     * @return The sum.
+     */
+    public abstract T sum(List<T> values);
+  }
+
+  /**
+   * Sums present values or any other Double results.
+   */
+  public static final Aggregator<Double> DOUBLE_SUM = new Aggregator<Double>() {
+    @Override
+    public Double sum(final List<Double> values) {
+      double sum = 0;
+      for (final Double value : values) {
+        sum += value;
+      }
+      return sum;
+    }
+  };
+
+  /**
+   * Sums curve sensitivities given as maps of curve names to lists of (time, sensitivity). The sum is cleaned (sensitivities at the same time are netted).
+   */
+  public static final Aggregator<Map<String, List<DoublesPair>>> CURVE_SENSITIVITY_MAP_SUM = new Aggregator<Map<String, List<DoublesPair>>>() {
+    @Override
+    public Map<String, List<DoublesPair>> sum(final List<Map<String, List<DoublesPair>>> values) {
+      return InterestRateCurveSensitivityUtils.clean(concatenate(values), 0, 0);
+    }
+  };
+
+  /**
+   * Sums {@link InterestRateCurveSensitivity}. The sum is cleaned (sensitivities at the same time are netted).
+   */
+  public static final Aggregator<InterestRateCurveSensitivity> CURVE_SENSITIVITY_SUM = new Aggregator<InterestRateCurveSensitivity>() {
+    @Override
+    public InterestRateCurveSensitivity sum(final List<InterestRateCurveSensitivity> values) {
+      final List<Map<String, List<DoublesPair>>> maps = new ArrayList<Map<String, List<DoublesPair>>>(values.size());
+      for (final InterestRateCurveSensitivity value : values) {
+        maps.add(value.getSensitivities());
+      }
+      return new InterestRateCurveSensitivity(InterestRateCurveSensitivityUtils.clean(concatenate(maps), 0, 0));
+    }
+  };
+
+  /**
+   * The executor, null to run on the calling thread.
+   */
+  private final ExecutorService _executor;
+  /**
+   * The number of trades in a batch.
+   */
+  private final int _batchSize;
+
+  /**
+   * Constructor of a calculator running on the calling thread.
+   */
+  public PortfolioValuationCalculator() {
+    this(null, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor with the default batch size.
+   * @param executor The executor, null to run on the calling thread. The executor is not shut down by the calculator.
+   */
+  public PortfolioValuationCalculator(final ExecutorService executor) {
+    this(executor, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param executor The executor, null to run on the calling thread. The executor is not shut down by the calculator.
+   * @param batchSize The number of trades in a batch.
+   */
+  public PortfolioValuationCalculator(final ExecutorService executor, final int batchSize) {
+    ArgumentChecker.isTrue(batchSize > 0, "Batch size should be positive");
+    _executor = executor;
+    _batchSize = batchSize;
+  }
+
+  /**
+   * Computes the present value of each trade and of the portfolio with the {@link PresentValueCalculator}.
+   * @param portfolio The instruments.
+   * @param curves The curves.
+   * @return The present values.
+   */
+  public PortfolioValuationResult<Double> presentValue(final List<? extends InstrumentDerivative> portfolio, final YieldCurveBundle curves) {
+    return evaluate(portfolio, PresentValueCalculator.getInstance(), curves, DOUBLE_SUM);
+  }
+
+  /**
+   * Computes the curve sensitivity of the present value of each trade and of the portfolio with the {@link PresentValueCurveSensitivityCalculator}.
+   * @param portfolio The instruments.
+   * @param curves The curves.
+   * @return The sensitivities.
+   */
+  public PortfolioValuationResult<Map<String, List<DoublesPair>>> presentValueCurveSensitivity(final List<? extends InstrumentDerivative> portfolio,
+      final YieldCurveBundle curves) {
+    return evaluate(portfolio, PresentValueCurveSensitivityCalculator.getInstance(), curves, CURVE_SENSITIVITY_MAP_SUM);
+  }
+
+  /**
+   * Runs a calculator over a portfolio.
+   * @param <S> The type of the data.
+   * @param <T> The type of the result.
+   * @param portfolio The instruments.
+   * @param calculator The calculator, shared by the threads.
+   * @param data The data, shared by the threads.
+   * @return The result for each trade; there is no total.
+   */
+  public <S, T> PortfolioValuationResult<T> evaluate(final List<? extends InstrumentDerivative> portfolio, final InstrumentDerivativeVisitor<S, T> calculator,
+      final S data) {
+    return evaluate(portfolio, calculator, data, null);
+  }
+
+  /**
+   * Runs a calculator over a portfolio and sums the results.
+   * @param <S> The type of the data.
+   * @param <T> The type of the result.
+   * @param portfolio The instruments.
+   * @param calculator The calculator, shared by the threads.
+   * @param data The data, shared by the threads.
+   * @param aggregator The aggregator, null for no total.
+   * @return The result for each trade and their total.
+   */
+  public <S, T> PortfolioValuationResult<T> evaluate(final List<? extends InstrumentDerivative> portfolio, final InstrumentDerivativeVisitor<S, T> calculator,
+      final S data, final Aggregator<T> aggregator) {
+    ArgumentChecker.notNull(portfolio, "Portfolio");
+    ArgumentChecker.notNull(calculator, "Calculator");
+    final long start = System.nanoTime();
+    final int nbTrades = portfolio.size();
+    final int nbBatches = (nbTrades + _batchSize - 1) / _batchSize;
+    final List<Batch<S, T>> batches = new ArrayList<Batch<S, T>>(nbBatches);
+    for (int loopb = 0; loopb < nbBatches; loopb++) {
+      batches.add(new Batch<S, T>(portfolio.subList(loopb * _batchSize, Math.min(nbTrades, (loopb + 1) * _batchSize)), calculator, data, aggregator));
+    }
+    final List<Batch<S, T>> done;
+    if (_executor == null || nbBatches < 2) {
+      for (final Batch<S, T> batch : batches) {
+        batch.call();
+      }
+      done = batches;
+    } else {
+      done = new ArrayList<Batch<S, T>>(nbBatches);
+      try {
+        for (final Future<Batch<S, T>> future : _executor.invokeAll(batches)) {
+          done.add(future.get());
+        }
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new OpenGammaRuntimeException("Interrupted while valuing the portfolio", ex);
+      } catch (final ExecutionException ex) {
+        if (ex.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) ex.getCause();
+        }
+        throw new OpenGammaRuntimeException("Error while valuing the portfolio", ex.getCause());
+      }
+    }
+    final List<T> results = new ArrayList<T>(nbTrades);
+    final List<T> batchTotals = new ArrayList<T>(nbBatches);
+    final Map<Class<?>, Long> timeByType = new LinkedHashMap<Class<?>, Long>();
+    final Map<Class<?>, Integer> countByType = new LinkedHashMap<Class<?>, Integer>();
+    for (final Batch<S, T> batch : done) {
+      results.addAll(batch._results);
+      if (aggregator != null) {
+        batchTotals.add(batch._total);
+      }
+      for (final Map.Entry<Class<?>, long[]> entry : batch._timeAndCount.entrySet()) {
+        final Long time = timeByType.get(entry.getKey());
+        final Integer count = countByType.get(entry.getKey());
+        timeByType.put(entry.getKey(), (time == null ? 0 : time) + entry.getValue()[0]);
+        countByType.put(entry.getKey(), (count == null ? 0 : count) + (int) entry.getValue()[1]);
+      }
+    }
+    final T total = (aggregator == null || nbBatches == 0) ? null : (nbBatches == 1 ? batchTotals.get(0) : aggregator.sum(batchTotals));
+    return new PortfolioValuationResult<T>(results, total, timeByType, countByType, System.nanoTime() - start);
+  }
+
+  private static Map<String, List<DoublesPair>> concatenate(final List<Map<String, List<DoublesPair>>> values) {
+    final Map<String, List<DoublesPair>> all = new HashMap<String, List<DoublesPair>>();
+    for (final Map<String, List<DoublesPair>> value : values) {
+      for (final Map.Entry<String, List<DoublesPair>> entry : value.entrySet()) {
+        List<DoublesPair> list = all.get(entry.getKey());
+        if (list == null) {
+          list = new ArrayList<DoublesPair>();
+          all.put(entry.getKey(), list);
+        }
+        list.addAll(entry.getValue());
+      }
+    }
+    return all;
+  }
+
+  /**
+   * A run of consecutive trades valued on one thread.
+   */
+  private static final class Batch<S, T> implements Callable<Batch<S, T>> {
+    private final List<? extends InstrumentDerivative> _trades;
+    private final InstrumentDerivativeVisitor<S, T> _calculator;
+    private final S _data;
+    private final Aggregator<T> _aggregator;
+    private final List<T> _results;
+    private final Map<Class<?>, long[]> _timeAndCount = new HashMap<Class<?>, long[]>();
+    private T _total;
+
+    Batch(final List<? extends InstrumentDerivative> trades, final InstrumentDerivativeVisitor<S, T> calculator, final S data, final Aggregator<T> aggregator) {
+      _trades = trades;
+      _calculator = calculator;
+      _data = data;
+      _aggregator = aggregator;
+      _results = new ArrayList<T>(trades.size());
+    }
+
+    @Override
+    public Batch<S, T> call() {
+      for (final InstrumentDerivative trade : _trades) {
+        final long start = System.nanoTime();
+        _results.add(_calculator.visit(trade, _data));
+        final long time = System.nanoTime() - start;
+        long[] timeAndCount = _timeAndCount.get(trade.getClass());
+        if (timeAndCount == null) {
+          timeAndCount = new long[2];
+          _timeAndCount.put(trade.getClass(), timeAndCount);
+        }
+        timeAndCount[0] += time;
+        timeAndCount[1]++;
+      }
+      if (_aggregator != null) {
+        _total = _aggregator.sum(_results);
+      }
+      return this;
+    }
+  }
+
+}
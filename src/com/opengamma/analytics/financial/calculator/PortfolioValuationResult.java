@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.calculator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * The result of running a calculator over a portfolio with {@link PortfolioValuationCalculator}: the result for each trade,
+ * in the order of the portfolio, their aggregate when one was requested, and the time spent on each type of instrument.
+ * @param <T> The type of the calculator result.
+ */
+public class PortfolioValuationResult<T> {
+
+  /**
+   * The result for each trade, in the portfolio order.
+   */
+  private final List<T> _tradeResults;
+  /**
+   * The aggregated result, null if no aggregation was requested.
+   */
+  private final T _total;
+  /**
+   * The calculation time, in nanoseconds, summed over all the threads, by instrument type.
+   */
+  private final Map<Class<?>, Long> _timeByType;
+  /**
+   * The number of trades by instrument type.
+   */
+  private final Map<Class<?>, Integer> _countByType;
+  /**
+   * The wall clock time of the whole calculation, in nanoseconds.
+   */
+  private final long _elapsedTime;
+
+  /**
+   * Constructor.
+   * @param tradeResults The result for each trade, in the portfolio order.
+   * @param total The aggregated result, null if no aggregation was requested.
+   * @param timeByType The calculation time, in nanoseconds, by instrument type.
+   * @param countByType The number of trades by instrument type.
+   * @param elapsedTime The wall clock time of the whole calculation, in nanoseconds.
+   */
+  public PortfolioValuationResult(final List<T> tradeResults, final T total, final Map<Class<?>, Long> timeByType, final Map<Class<?>, Integer> countByType,
+      final long elapsedTime) {
+    ArgumentChecker.notNull(tradeResults, "Trade results");
+    ArgumentChecker.notNull(timeByType, "Times");
+    ArgumentChecker.notNull(countByType, "Counts");
+    _tradeResults = Collections.unmodifiableList(tradeResults);
+    _total = total;
+    _timeByType = Collections.unmodifiableMap(timeByType);
+    _countByType = Collections.unmodifiableMap(countByType);
+    _elapsedTime = elapsedTime;
+  }
+
+  /**
+   * Gets the result for each trade, in the portfolio order.
+   * @return The results.
+   */
+  public List<T> getTradeResults() {
+    return _tradeResults;
+  }
+
+  /**
+   * Gets the aggregated result.
+   * @return The total, null if no aggregation was requested.
+   */
+  public T getTotal() {
+    return _total;
+  }
+
+  /**
+   * Gets the calculation time by instrument type, summed over all the threads.
+   * @return The times in nanoseconds.
+   */
+  public Map<Class<?>, Long> getTimeByType() {
+    return _timeByType;
+  }
+
+  /**
+   * Gets the number of trades by instrument type.
+   * @return The counts.
+   */
+  public Map<Class<?>, Integer> getCountByType() {
+    return _countByType;
+  }
+
+  /**
+   * Gets the wall clock time of the whole calculation.
+   * @return The time in nanoseconds.
+   */
+  public long getElapsedTime() {
+    return _elapsedTime;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PortfolioValuationResult[trades=");
+    sb.append(_tradeResults.size());
+    sb.append(", elapsed=");
+    sb.append(_elapsedTime / 1000000);
+    sb.append("ms");
+    for (final Map.Entry<Class<?>, Long> entry : _timeByType.entrySet()) {
+      sb.append(", ");
+      sb.append(entry.getKey().getSimpleName());
+      sb.append("=");
+      sb.append(_countByType.get(entry.getKey()));
+      sb.append(" in ");
+      sb.append(entry.getValue() / 1000000);
+      sb.append("ms");
+    }
+    sb.append("]");
+    return sb.toString();
+  }
+
+}
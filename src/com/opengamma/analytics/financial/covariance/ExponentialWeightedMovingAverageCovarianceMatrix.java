@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exponentially weighted moving average (EWMA) covariance matrix, maintained incrementally. This is the multi-asset version of
+ * {@link ExponentialWeightedMovingAverageHistoricalVolatilityCalculator}: the returns are assumed to have zero mean and, for a new return
+ * vector $r_t$, the covariance is updated as
+ * $$
+ * \begin{eqnarray*}
+ * \Sigma_t = \lambda \Sigma_{t-1} + (1 - \lambda) r_t r_t^T
+ * \end{eqnarray*}
+ * $$
+ * starting from $\Sigma_0 = r_0 r_0^T$. The diagonal is the square of the volatility given by the volatility calculator for the same
+ * returns.
+ */
+public class ExponentialWeightedMovingAverageCovarianceMatrix extends IncrementalCovarianceMatrix {
+  private static final Logger s_logger = LoggerFactory.getLogger(ExponentialWeightedMovingAverageCovarianceMatrix.class);
+  private final double _lambda;
+  private double[] _x;
+  private double _oldWeight;
+  private double _newWeight;
+
+  /**
+   * Although the weight parameter can take any positive value, for most use the range should be $\lambda < 1$; if a value outside of this
+   * range is used then greater weight will be placed on older return values.
+   * @param size The number of assets, positive
+   * @param lambda The weight parameter
+   * @throws IllegalArgumentException If $\lambda < 0$
+   */
+  public ExponentialWeightedMovingAverageCovarianceMatrix(final int size, final double lambda) {
+    super(size);
+    if (lambda < 0) {
+      throw new IllegalArgumentException("Lambda must be positive");
+    }
+    if (lambda > 1) {
+      s_logger.warn("Weight for EWMA series is greater than one: this is probably not what was intended");
+    }
+    _lambda = lambda;
+  }
+
+  /**
+   * Gets the weight parameter.
+   * @return The weight parameter
+   */
+  public double getLambda() {
+    return _lambda;
+  }
+
+  @Override
+  public double[] getPackedCovariance() {
+    synchronized (this) {
+      Validate.isTrue(getNumberOfUpdates() > 0, "No returns have been added");
+      return copyData();
+    }
+  }
+
+  @Override
+  protected void prepareUpdate(final double[] x, final long nbUpdates) {
+    _x = x;
+    _oldWeight = nbUpdates == 0 ? 0 : _lambda;
+    _newWeight = nbUpdates == 0 ? 1 : 1 - _lambda;
+  }
+
+  @Override
+  protected void updateRows(final double[] data, final int fromRow, final int toRow) {
+    final int n = getSize();
+    final double[] x = _x;
+    int index = getOffset(n, fromRow);
+    for (int i = fromRow; i < toRow; i++) {
+      final double xi = _newWeight * x[i];
+      for (int j = i; j < n; j++) {
+        data[index] = _oldWeight * data[index] + xi * x[j];
+        index++;
+      }
+    }
+  }
+
+  @Override
+  protected void completeUpdate() {
+    // do not keep the caller's array
+    _x = null;
+  }
+
+}
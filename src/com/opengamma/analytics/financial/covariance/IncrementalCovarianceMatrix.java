@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.DenseSymmetricMatrix;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.auxiliary.BLASThreadPool;
+
+/**
+ * A covariance matrix of the returns of $k$ assets which is maintained as return vectors arrive, rather than recomputed from the full
+ * time series (as {@link CovarianceMatrixCalculator} does). Each new vector is an $O(k^2)$ update of the upper triangle, which is stored
+ * packed: row $i$ holds the elements $(i, i), (i, i + 1), \dots, (i, k - 1)$ and starts at index $ik - i(i - 1)/2$. For large $k$ the rows are
+ * updated in parallel on the {@link BLASThreadPool}.
+ * <p>
+ * Updates and snapshots are synchronized, and a snapshot only copies the packed data while holding the lock, so a snapshot is always the
+ * covariance after a whole number of updates and updates are held up for no longer than the copy.
+ */
+public abstract class IncrementalCovarianceMatrix {
+  /**
+   * Below this number of packed elements the rows are updated on the calling thread.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 17;
+  /**
+   * The number of packed elements under which a parallel task stops splitting.
+   */
+  private static final int ELEMENTS_PER_TASK = 1 << 14;
+
+  private final int _size;
+  private final double[] _data;
+  private long _nbUpdates;
+
+  /**
+   * @param size The number of assets, positive
+   */
+  protected IncrementalCovarianceMatrix(final int size) {
+    Validate.isTrue(size > 0, "Number of assets must be positive");
+    Validate.isTrue((long) size * (size + 1) / 2 <= Integer.MAX_VALUE, "Too many assets for packed storage: " + size);
+    _size = size;
+    _data = new double[getOffset(size, size)];
+  }
+
+  /**
+   * Adds a return vector.
+   * @param x The returns of the assets, not null, one per asset, not NaN
+   */
+  public final synchronized void update(final double[] x) {
+    Validate.notNull(x, "x");
+    Validate.isTrue(x.length == _size, "Need one return per asset; have " + x.length + " for " + _size + " assets");
+    for (final double value : x) {
+      Validate.isTrue(!Double.isNaN(value), "Returns cannot be NaN");
+    }
+    prepareUpdate(x, _nbUpdates);
+    if (_data.length < PARALLEL_THRESHOLD || BLASThreadPool.getParallelism() == 1) {
+      updateRows(_data, 0, _size);
+    } else {
+      BLASThreadPool.getPool().invoke(new Rows(0, _size));
+    }
+    completeUpdate();
+    _nbUpdates++;
+  }
+
+  /**
+   * Gets the covariance matrix.
+   * @return The covariance matrix
+   */
+  public DenseSymmetricMatrix getCovarianceMatrix() {
+    final double[] packed = getPackedCovariance();
+    final double[][] matrix = new double[_size][_size];
+    int index = 0;
+    for (int i = 0; i < _size; i++) {
+      for (int j = i; j < _size; j++) {
+        matrix[i][j] = packed[index];
+        matrix[j][i] = packed[index++];
+      }
+    }
+    return new DenseSymmetricMatrix(matrix);
+  }
+
+  /**
+   * Gets the upper triangle of the covariance matrix in packed storage (see the class documentation). This is cheaper than
+   * {@link #getCovarianceMatrix()}, e.g. to keep the snapshots of a day.
+   * @return A new array with the packed covariances
+   */
+  public abstract double[] getPackedCovariance();
+
+  /**
+   * Gets the number of return vectors added.
+   * @return The number of updates
+   */
+  public synchronized long getNumberOfUpdates() {
+    return _nbUpdates;
+  }
+
+  /**
+   * Gets the number of assets.
+   * @return The number of assets
+   */
+  public int getSize() {
+    return _size;
+  }
+
+  /**
+   * Gets the index of an element in packed storage.
+   * @param i The row
+   * @param j The column, not less than the row
+   * @return The index
+   */
+  public int getIndex(final int i, final int j) {
+    Validate.isTrue(i >= 0 && i <= j && j < _size, "Need 0 <= i <= j < " + _size + "; have i = " + i + ", j = " + j);
+    return getOffset(_size, i) + j - i;
+  }
+
+  /**
+   * Sets the vectors used by {@link #updateRows} for a new return vector. Called by {@link #update} on the updating thread.
+   * @param x The returns
+   * @param nbUpdates The number of return vectors added before this one
+   */
+  protected abstract void prepareUpdate(double[] x, long nbUpdates);
+
+  /**
+   * Updates the rows fromRow (inclusive) to toRow (exclusive) of the packed data. May be called from several threads for different rows.
+   * @param data The packed data
+   * @param fromRow The first row
+   * @param toRow The row after the last one
+   */
+  protected abstract void updateRows(double[] data, int fromRow, int toRow);
+
+  /**
+   * Called by {@link #update} once all the rows have been updated. Does nothing by default.
+   */
+  protected void completeUpdate() {
+  }
+
+  /**
+   * Copies the packed data. Must be called while holding the lock of this object.
+   * @return A copy of the packed data
+   */
+  protected double[] copyData() {
+    final double[] copy = new double[_data.length];
+    System.arraycopy(_data, 0, copy, 0, _data.length);
+    return copy;
+  }
+
+  /**
+   * Gets the index of the first element of a row in packed storage.
+   * @param size The number of assets
+   * @param i The row
+   * @return The index
+   */
+  protected static int getOffset(final int size, final int i) {
+    return (int) ((long) i * size - (long) i * (i - 1) / 2);
+  }
+
+  /**
+   * Updates a range of rows, splitting it until the tasks have few enough elements.
+   */
+  private final class Rows extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final int _fromRow;
+    private final int _toRow;
+
+    Rows(final int fromRow, final int toRow) {
+      _fromRow = fromRow;
+      _toRow = toRow;
+    }
+
+    @Override
+    protected void compute() {
+      if (_toRow - _fromRow == 1 || getOffset(_size, _toRow) - getOffset(_size, _fromRow) <= ELEMENTS_PER_TASK) {
+        updateRows(_data, _fromRow, _toRow);
+        return;
+      }
+      final int mid = (_fromRow + _toRow) >>> 1;
+      invokeAll(new Rows(_fromRow, mid), new Rows(mid, _toRow));
+    }
+  }
+
+}
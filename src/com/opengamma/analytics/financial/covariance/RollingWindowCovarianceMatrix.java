@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.covariance;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Sample covariance matrix of the last $w$ return vectors, maintained incrementally:
+ * $$
+ * \begin{eqnarray*}
+ * \Sigma_{ij} = \frac{1}{n - 1}\sum\limits_{t=1}^n (x_{t,i} - \overline{x}_i)(x_{t,j} - \overline{x}_j)
+ * \end{eqnarray*}
+ * $$
+ * where $n = \min(w, \text{number of updates})$. The sums of the returns and of their cross products over the window are kept; a new vector
+ * adds its cross products and, once the window is full, the cross products of the vector which leaves the window are subtracted, so an
+ * update is a rank-2 change of the upper triangle. The window is kept in a ring buffer of $wk$ values.
+ * <p>
+ * The returns are shifted by one of the return vectors before being summed, which does not change the covariance but keeps the sums small
+ * compared to the cross products of the deviations, so that little precision is lost in the subtraction of the squared mean. Every $w$
+ * updates the shift is moved to the newest vector and the sums are recomputed from the window, so that neither the drift of the returns away
+ * from the shift nor the rounding errors of the additions and subtractions build up over long histories. This costs $O(wk^2)$ once every $w$
+ * updates, i.e. the same as an update on average.
+ */
+public class RollingWindowCovarianceMatrix extends IncrementalCovarianceMatrix {
+  private final int _window;
+  private final double[] _shift;
+  private final double[] _sums;
+  private final double[][] _buffer;
+  private final double[] _new;
+  private final double[] _old;
+  private int _position;
+  private int _count;
+  private int _sinceShift;
+  private boolean _hasOld;
+  private boolean _recompute;
+
+  /**
+   * @param size The number of assets, positive
+   * @param window The number of return vectors in the window, at least 2
+   */
+  public RollingWindowCovarianceMatrix(final int size, final int window) {
+    super(size);
+    Validate.isTrue(window > 1, "Window must contain at least two returns");
+    _window = window;
+    _shift = new double[size];
+    _sums = new double[size];
+    _buffer = new double[window][];
+    _new = new double[size];
+    _old = new double[size];
+  }
+
+  /**
+   * Gets the window length.
+   * @return The number of return vectors in the window
+   */
+  public int getWindow() {
+    return _window;
+  }
+
+  @Override
+  public double[] getPackedCovariance() {
+    final double[] data;
+    final double[] sums;
+    final int count;
+    synchronized (this) {
+      Validate.isTrue(_count > 1, "Need at least two returns");
+      data = copyData();
+      sums = _sums.clone();
+      count = _count;
+    }
+    final int n = getSize();
+    int index = 0;
+    for (int i = 0; i < n; i++) {
+      final double mean = sums[i] / count;
+      for (int j = i; j < n; j++) {
+        data[index] = (data[index] - mean * sums[j]) / (count - 1);
+        index++;
+      }
+    }
+    return data;
+  }
+
+  @Override
+  protected void prepareUpdate(final double[] x, final long nbUpdates) {
+    final int n = getSize();
+    // the buffer holds the returns themselves, so that the sums can be recomputed against a new shift. The vector which leaves the window
+    // is read before its slot is overwritten with the new returns
+    _recompute = _sinceShift == _window;
+    if (nbUpdates == 0 || _recompute) {
+      System.arraycopy(x, 0, _shift, 0, n);
+      _sinceShift = 0;
+    }
+    for (int i = 0; i < n; i++) {
+      _new[i] = x[i] - _shift[i];
+    }
+    _hasOld = _count == _window;
+    if (_hasOld) {
+      final double[] old = _buffer[_position];
+      for (int i = 0; i < n; i++) {
+        _old[i] = old[i] - _shift[i];
+      }
+    }
+    if (_buffer[_position] == null) {
+      _buffer[_position] = new double[n];
+    }
+    System.arraycopy(x, 0, _buffer[_position], 0, n);
+  }
+
+  @Override
+  protected void updateRows(final double[] data, final int fromRow, final int toRow) {
+    final int n = getSize();
+    int index = getOffset(n, fromRow);
+    if (_recompute) {
+      final double[] shift = _shift;
+      // the buffer already holds the window after the update
+      for (int i = fromRow; i < toRow; i++) {
+        Arrays.fill(data, index, index + n - i, 0.0);
+        for (final double[] returns : _buffer) {
+          final double xi = returns[i] - shift[i];
+          int k = index;
+          for (int j = i; j < n; j++) {
+            data[k++] += xi * (returns[j] - shift[j]);
+          }
+        }
+        index += n - i;
+      }
+      return;
+    }
+    final double[] x = _new;
+    final double[] y = _old;
+    for (int i = fromRow; i < toRow; i++) {
+      final double xi = x[i];
+      if (!_hasOld) {
+        for (int j = i; j < n; j++) {
+          data[index++] += xi * x[j];
+        }
+      } else {
+        final double yi = y[i];
+        for (int j = i; j < n; j++) {
+          data[index++] += xi * x[j] - yi * y[j];
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void completeUpdate() {
+    final int n = getSize();
+    if (_recompute) {
+      Arrays.fill(_sums, 0.0);
+      for (final double[] returns : _buffer) {
+        for (int i = 0; i < n; i++) {
+          _sums[i] += returns[i] - _shift[i];
+        }
+      }
+    } else {
+      for (int i = 0; i < n; i++) {
+        _sums[i] += _new[i] - (_hasOld ? _old[i] : 0);
+      }
+    }
+    _position = (_position + 1) % _window;
+    if (_count < _window) {
+      _count++;
+    }
+    _sinceShift++;
+    _recompute = false;
+  }
+
+}
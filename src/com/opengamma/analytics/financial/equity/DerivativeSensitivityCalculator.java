@@ -19,6 +19,8 @@ import com.opengamma.analytics.financial.equity.option.EquityIndexOption;
 import com.opengamma.analytics.financial.interestrate.NodeYieldSensitivityCalculator;
 import com.opengamma.analytics.financial.interestrate.PresentValueNodeSensitivityCalculator;
 import com.opengamma.analytics.financial.interestrate.YieldCurveBundle;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCachedCurve;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCurve;
 import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
 import com.opengamma.analytics.financial.model.volatility.smile.fitting.interpolation.GeneralSmileInterpolator;
 import com.opengamma.analytics.financial.model.volatility.smile.fitting.interpolation.SurfaceArrayUtils;
@@ -157,10 +159,11 @@ public class DerivativeSensitivityCalculator {
     // NodeSensitivityCalculator.curveToNodeSensitivities(curveSensitivities, interpolatedCurves)
 
     // 2nd arg = LinkedHashMap<String, YieldAndDiscountCurve> interpolatedCurves
-    if (!(market.getDiscountCurve() instanceof YieldCurve)) {
+    final YieldAndDiscountCurve underlying = YieldAndDiscountCachedCurve.getUnderlying(market.getDiscountCurve());
+    if (!(underlying instanceof YieldCurve)) {
       throw new IllegalArgumentException("Can only handle YieldCurve");
     }
-    final YieldCurve discCrv = (YieldCurve) market.getDiscountCurve();
+    final YieldCurve discCrv = (YieldCurve) underlying;
     final String discCrvName = discCrv.getCurve().getName();
     final YieldCurveBundle interpolatedCurves = new YieldCurveBundle();
     interpolatedCurves.setCurve(discCrvName, discCrv);
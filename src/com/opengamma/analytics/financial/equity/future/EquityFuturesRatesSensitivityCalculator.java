@@ -16,6 +16,8 @@ import com.opengamma.analytics.financial.equity.future.derivative.EquityFuture;
 import com.opengamma.analytics.financial.interestrate.NodeYieldSensitivityCalculator;
 import com.opengamma.analytics.financial.interestrate.PresentValueNodeSensitivityCalculator;
 import com.opengamma.analytics.financial.interestrate.YieldCurveBundle;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCachedCurve;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCurve;
 import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
 import com.opengamma.analytics.financial.simpleinstruments.pricing.SimpleFutureDataBundle;
 import com.opengamma.analytics.math.matrix.DoubleMatrix1D;
@@ -46,10 +48,11 @@ public final class EquityFuturesRatesSensitivityCalculator {
   public DoubleMatrix1D calcDeltaBucketed(final EquityFuture future, final SimpleFutureDataBundle dataBundle) {
     Validate.notNull(future, "null future");
     Validate.notNull(dataBundle, "null data bundle");
-    if (!(dataBundle.getFundingCurve() instanceof YieldCurve)) {
+    final YieldAndDiscountCurve underlying = YieldAndDiscountCachedCurve.getUnderlying(dataBundle.getFundingCurve());
+    if (!(underlying instanceof YieldCurve)) {
       throw new IllegalArgumentException("Calculator expects a YieldCurve. Perhaps it has encountered a discount curve?");
     }
-    final YieldCurve discCrv = (YieldCurve) dataBundle.getFundingCurve();
+    final YieldCurve discCrv = (YieldCurve) underlying;
     final String discCrvName = discCrv.getCurve().getName();
     final YieldCurveBundle interpolatedCurves = new YieldCurveBundle();
     interpolatedCurves.setCurve(discCrvName, discCrv);
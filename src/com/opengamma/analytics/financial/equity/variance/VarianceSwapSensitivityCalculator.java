@@ -18,6 +18,7 @@ import com.opengamma.analytics.financial.equity.variance.pricing.VarianceSwapSta
 import com.opengamma.analytics.financial.interestrate.NodeYieldSensitivityCalculator;
 import com.opengamma.analytics.financial.interestrate.PresentValueNodeSensitivityCalculator;
 import com.opengamma.analytics.financial.interestrate.YieldCurveBundle;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCachedCurve;
 import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCurve;
 import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
 import com.opengamma.analytics.financial.varianceswap.VarianceSwap;
@@ -120,7 +121,7 @@ public final class VarianceSwapSensitivityCalculator extends DerivativeSensitivi
     // NodeSensitivityCalculator.curveToNodeSensitivities(curveSensitivities, interpolatedCurves)
 
     // 2nd arg = LinkedHashMap<String, YieldAndDiscountCurve> interpolatedCurves
-    final YieldAndDiscountCurve discCrv = market.getDiscountCurve();
+    final YieldAndDiscountCurve discCrv = YieldAndDiscountCachedCurve.getUnderlying(market.getDiscountCurve());
     if (!(discCrv instanceof YieldCurve)) {
       throw new IllegalArgumentException("Can only handle YieldCurve");
     }
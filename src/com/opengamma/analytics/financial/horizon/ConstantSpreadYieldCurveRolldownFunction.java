@@ -5,6 +5,7 @@
  */
 package com.opengamma.analytics.financial.horizon;
 
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCachedCurve;
 import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCurve;
 import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
 import com.opengamma.analytics.math.curve.Curve;
@@ -28,10 +29,11 @@ public final class ConstantSpreadYieldCurveRolldownFunction implements RolldownF
   @Override
   public YieldAndDiscountCurve rollDown(final YieldAndDiscountCurve yieldCurve, final double time) {
     ArgumentChecker.notNull(yieldCurve, "yield curve");
-    if (!(yieldCurve instanceof YieldCurve)) {
+    final YieldAndDiscountCurve underlying = YieldAndDiscountCachedCurve.getUnderlying(yieldCurve);
+    if (!(underlying instanceof YieldCurve)) {
       throw new IllegalArgumentException("Can only handle YieldCurve");
     }
-    final Curve<Double, Double> curve = ((YieldCurve) yieldCurve).getCurve();
+    final Curve<Double, Double> curve = ((YieldCurve) underlying).getCurve();
     final Function1D<Double, Double> shiftedFunction = new Function1D<Double, Double>() {
 
       @Override
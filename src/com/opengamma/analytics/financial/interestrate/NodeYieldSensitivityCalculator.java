@@ -12,6 +12,7 @@ import java.util.Map;
 import org.apache.commons.lang.Validate;
 
 import com.opengamma.analytics.financial.model.interestrate.curve.DiscountCurve;
+import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCachedCurve;
 import com.opengamma.analytics.financial.model.interestrate.curve.YieldAndDiscountCurve;
 import com.opengamma.analytics.financial.model.interestrate.curve.YieldCurve;
 import com.opengamma.analytics.math.curve.InterpolatedDoublesCurve;
@@ -66,7 +67,7 @@ public abstract class NodeYieldSensitivityCalculator {
   public DoubleMatrix1D curveToNodeSensitivities(final Map<String, List<DoublesPair>> curveSensitivities, final YieldCurveBundle interpolatedCurves) {
     final List<Double> result = new ArrayList<Double>();
     for (final String name : interpolatedCurves.getAllNames()) { // loop over all curves (by name)
-      final YieldAndDiscountCurve curve = interpolatedCurves.getCurve(name);
+      final YieldAndDiscountCurve curve = YieldAndDiscountCachedCurve.getUnderlying(interpolatedCurves.getCurve(name));
       // Split between Yield and Discount    
       if (curve instanceof YieldCurve) {
         result.addAll(curveToNodeSensitivity(curveSensitivities.get(name), (YieldCurve) curve));
@@ -173,10 +174,11 @@ public abstract class NodeYieldSensitivityCalculator {
    */
   public DoubleMatrix1D curveToNodeSensitivities(final List<DoublesPair> curveSensitivities, final YieldAndDiscountCurve curve) {
     final List<Double> result = new ArrayList<Double>();
-    if (curve instanceof YieldCurve) {
-      result.addAll(curveToNodeSensitivity(curveSensitivities, (YieldCurve) curve));
-    } else if (curve instanceof DiscountCurve) {
-      result.addAll(curveToNodeSensitivity(curveSensitivities, (DiscountCurve) curve));
+    final YieldAndDiscountCurve underlying = YieldAndDiscountCachedCurve.getUnderlying(curve);
+    if (underlying instanceof YieldCurve) {
+      result.addAll(curveToNodeSensitivity(curveSensitivities, (YieldCurve) underlying));
+    } else if (underlying instanceof DiscountCurve) {
+      result.addAll(curveToNodeSensitivity(curveSensitivities, (DiscountCurve) underlying));
     } else {
       throw new IllegalArgumentException("Can only handle YieldCurve and DiscountCurve at the moment");
     }
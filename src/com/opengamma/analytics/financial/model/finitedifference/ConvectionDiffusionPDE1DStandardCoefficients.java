@@ -7,6 +7,7 @@ package com.opengamma.analytics.financial.model.finitedifference;
 
 import org.apache.commons.lang.Validate;
 
+import com.opengamma.analytics.math.surface.ConstantDoublesSurface;
 import com.opengamma.analytics.math.surface.Surface;
 
 /**
@@ -24,15 +25,34 @@ public class ConvectionDiffusionPDE1DStandardCoefficients implements ConvectionD
   private final Surface<Double, Double, Double> _a;
   private final Surface<Double, Double, Double> _b;
   private final Surface<Double, Double, Double> _c;
+  private final boolean _timeHomogeneous;
 
+  /**
+   * The coefficients are treated as time-homogeneous only if all three surfaces are constant
+   * @param a The second derivative coefficient
+   * @param b The first derivative coefficient
+   * @param c The zeroth order coefficient
+   */
   public ConvectionDiffusionPDE1DStandardCoefficients(final Surface<Double, Double, Double> a, final Surface<Double, Double, Double> b,
       final Surface<Double, Double, Double> c) {
+    this(a, b, c, a instanceof ConstantDoublesSurface && b instanceof ConstantDoublesSurface && c instanceof ConstantDoublesSurface);
+  }
+
+  /**
+   * @param a The second derivative coefficient
+   * @param b The first derivative coefficient
+   * @param c The zeroth order coefficient
+   * @param timeHomogeneous true if none of $a$, $b$ or $c$ depend on $t$. Solvers may then evaluate the coefficients once rather than every time step
+   */
+  public ConvectionDiffusionPDE1DStandardCoefficients(final Surface<Double, Double, Double> a, final Surface<Double, Double, Double> b,
+      final Surface<Double, Double, Double> c, final boolean timeHomogeneous) {
     Validate.notNull(a, "null a");
     Validate.notNull(b, "null b");
     Validate.notNull(c, "null c");
     _a = a;
     _b = b;
     _c = c;
+    _timeHomogeneous = timeHomogeneous;
   }
 
   public double getA(final double t, final double x) {
@@ -47,6 +67,14 @@ public class ConvectionDiffusionPDE1DStandardCoefficients implements ConvectionD
     return _c.getZValue(t, x);
   }
 
+  /**
+   * Gets the time-homogeneous flag.
+   * @return true if the coefficients do not depend on $t$
+   */
+  public boolean isTimeHomogeneous() {
+    return _timeHomogeneous;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -54,6 +82,7 @@ public class ConvectionDiffusionPDE1DStandardCoefficients implements ConvectionD
     result = prime * result + ((_a == null) ? 0 : _a.hashCode());
     result = prime * result + ((_b == null) ? 0 : _b.hashCode());
     result = prime * result + ((_c == null) ? 0 : _c.hashCode());
+    result = prime * result + (_timeHomogeneous ? 1231 : 1237);
     return result;
   }
 
@@ -90,6 +119,9 @@ public class ConvectionDiffusionPDE1DStandardCoefficients implements ConvectionD
     } else if (!_c.equals(other._c)) {
       return false;
     }
+    if (_timeHomogeneous != other._timeHomogeneous) {
+      return false;
+    }
     return true;
   }
 
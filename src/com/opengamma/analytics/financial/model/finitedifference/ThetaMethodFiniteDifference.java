@@ -9,19 +9,17 @@ import java.util.Arrays;
 
 import org.apache.commons.lang.Validate;
 
+import com.opengamma.analytics.math.MathException;
 import com.opengamma.analytics.math.function.Function1D;
-import com.opengamma.analytics.math.linearalgebra.Decomposition;
-import com.opengamma.analytics.math.linearalgebra.DecompositionResult;
-import com.opengamma.analytics.math.linearalgebra.LUDecompositionCommons;
-import com.opengamma.analytics.math.matrix.DoubleMatrix2D;
 import com.opengamma.analytics.math.surface.Surface;
 
 /**
- * A theta (i.e. weighted between explicit and implicit time stepping) scheme using SOR algorithm to solve the matrix system at each time step
+ * A theta (i.e. weighted between explicit and implicit time stepping) scheme. The matrix system at each time step is tridiagonal in the interior
+ * and is held in banded storage, with the bandwidth widened only as far as the boundary rows need; it is solved directly by banded LU
+ * (which is just the Thomas algorithm for Dirichlet or two-point boundary conditions), so each step is O(n) in time and memory.
  * This uses the exponentially fitted scheme of duffy
  */
 public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver {
-  private static final Decomposition<?> DCOMP = new LUDecompositionCommons();
   private final double _theta;
   private final boolean _showFullResults;
 
@@ -174,7 +172,11 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
     private double[][] _full;
 
     private final double[] _q;
+    // banded storage of the LHS matrix: _m[i][j - i + _kl] holds m(i, j) for i - _kl <= j <= i + _ku
     private final double[][] _m;
+    private final double[][] _lu;
+    private final int _kl;
+    private final int _ku;
 
     private final double[] _rho;
     private final double[] _a;
@@ -201,8 +203,14 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
         _full = new double[tNodes][xNodes];
       }
 
+      // The interior rows are tridiagonal, so only the boundary rows can widen the band
+      final double t0 = grid.getTimeNode(0);
+      _ku = Math.max(1, lowerBoundary.getLeftMatrixCondition(coeff, grid, t0).length - 1);
+      _kl = Math.max(1, upperBoundary.getLeftMatrixCondition(coeff, grid, t0).length - 1);
+
       _q = new double[xNodes];
-      _m = new double[xNodes][xNodes];
+      _m = new double[xNodes][_kl + _ku + 1];
+      _lu = new double[xNodes][_kl + _ku + 1];
       _rho = new double[xNodes - 2];
       _a = new double[xNodes - 2];
       _b = new double[xNodes - 2];
@@ -310,18 +318,26 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
     }
 
     void updateLHSBoundary() {
+      final int xNodes = getGrid().getNumSpaceNodes();
       double[] temp = _lowerBoundary.getLeftMatrixCondition(_coefficients, getGrid(), getT2());
+      Validate.isTrue(temp.length <= _ku + 1, "lower boundary condition is wider than the matrix band");
+      Arrays.fill(_m[0], 0.0);
       for (int k = 0; k < temp.length; k++) {
         setM(0, k, temp[k]);
       }
 
       temp = _upperBoundary.getLeftMatrixCondition(_coefficients, getGrid(), getT2());
+      Validate.isTrue(temp.length <= _kl + 1, "upper boundary condition is wider than the matrix band");
+      Arrays.fill(_m[xNodes - 1], 0.0);
       for (int k = 0; k < temp.length; k++) {
-        setM(getGrid().getNumSpaceNodes() - 1, getGrid().getNumSpaceNodes() - temp.length + k, temp[k]);
+        setM(xNodes - 1, xNodes - temp.length + k, temp[k]);
       }
     }
 
     void updateCoefficents() {
+      if (_coefficients.isTimeHomogeneous()) {
+        return; // a, b, c and rho are as set in initialise
+      }
       double x;
       for (int i = 1; i < getGrid().getNumSpaceNodes() - 1; i++) {
         x = getGrid().getSpaceNode(i);
@@ -334,60 +350,49 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
       }
     }
 
+    /**
+     * Solves the banded system by LU decomposition without pivoting (the matrix is diagonally dominant in the interior),
+     * eliminating on the RHS as we go. The free boundary, if any, is applied as a projection of the solution.
+     */
     private void solveMatrixSystem() {
-      final double omega = 1.0;
-      //   @SuppressWarnings("unused")
-      //NOTE get this working again with dynamic omega
-      //final int count = solveBySOR(omega);
-      solveByLU();
-      //      if (oldCount > 0) {
-      //        if ((omegaIncrease && count > oldCount) || (!omegaIncrease && count < oldCount)) {
-      //          omega = Math.max(1.0, omega * 0.9);
-      //          omegaIncrease = false;
-      //        } else {
-      //          omega = 1.1 * omega;
-      //          omegaIncrease = true;
-      //        }
-      //      }
-      //      oldCount = count;
-
-    }
-
-    @SuppressWarnings({"unused", "synthetic-access" })
-    private void solveByLU() {
-      DoubleMatrix2D temp = new DoubleMatrix2D(_m);
-      DecompositionResult res = DCOMP.evaluate(temp);
-      double[] f = res.solve(_q);
-      for (int i = 0; i < f.length; i++) {
-        _f[i] = f[i];
+      final int xNodes = getGrid().getNumSpaceNodes();
+      final int width = _kl + _ku + 1;
+      for (int i = 0; i < xNodes; i++) {
+        System.arraycopy(_m[i], 0, _lu[i], 0, width);
       }
-    }
-
-    private int solveBySOR(final double omega) {
+      System.arraycopy(_q, 0, _f, 0, xNodes);
 
-      double sum;
-      int count = 0;
-      double scale = 1.0;
-      double errorSqr = Double.POSITIVE_INFINITY;
-      while (errorSqr / (scale + 1e-10) > 1e-18) {
-        errorSqr = 0.0;
-        scale = 0.0;
-        for (int j = 0; j < getGrid().getNumSpaceNodes(); j++) {
-          sum = 0;
-          for (int k = 0; k < getGrid().getNumSpaceNodes(); k++) {
-            sum += getM(j, k) * getF(k);
-          }
-          double correction = omega / getM(j, j) * (getQ(j) - sum);
-          if (_freeBoundary != null) {
-            correction = Math.max(correction, _freeBoundary.getZValue(getT2(), getGrid().getSpaceNode(j)) - getF(j));
+      for (int k = 0; k < xNodes; k++) {
+        final double pivot = _lu[k][_kl];
+        if (pivot == 0.0) {
+          throw new MathException("Zero pivot in row " + k + " of the finite difference matrix");
+        }
+        final int iMax = Math.min(xNodes - 1, k + _kl);
+        final int jMax = Math.min(xNodes - 1, k + _ku);
+        for (int i = k + 1; i <= iMax; i++) {
+          final double l = _lu[i][k - i + _kl] / pivot;
+          if (l != 0.0) {
+            for (int j = k + 1; j <= jMax; j++) {
+              _lu[i][j - i + _kl] -= l * _lu[k][j - k + _kl];
+            }
+            _f[i] -= l * _f[k];
           }
-          errorSqr += correction * correction;
-          setF(j, getF(j) + correction); //TODO don't like this
-          scale += getF(j) * getF(j);
         }
-        count++;
       }
-      return count;
+      for (int i = xNodes - 1; i >= 0; i--) {
+        double sum = _f[i];
+        final int jMax = Math.min(xNodes - 1, i + _ku);
+        for (int j = i + 1; j <= jMax; j++) {
+          sum -= _lu[i][j - i + _kl] * _f[j];
+        }
+        _f[i] = sum / _lu[i][_kl];
+      }
+
+      if (_freeBoundary != null) {
+        for (int i = 0; i < xNodes; i++) {
+          _f[i] = Math.max(_f[i], _freeBoundary.getZValue(getT2(), getGrid().getSpaceNode(i)));
+        }
+      }
     }
 
     /**
@@ -460,11 +465,11 @@ public class ThetaMethodFiniteDifference implements ConvectionDiffusionPDESolver
     }
 
     public double getM(final int i, final int j) {
-      return _m[i][j];
+      return _m[i][j - i + _kl];
     }
 
     public void setM(final int i, final int j, final double value) {
-      _m[i][j] = value;
+      _m[i][j - i + _kl] = value;
     }
 
     public double getF(final int i) {
@@ -63,7 +63,7 @@ public class PDE1DCoefficientsProvider {
     };
 
     return new ConvectionDiffusionPDE1DStandardCoefficients(FunctionalDoublesSurface.from(a), FunctionalDoublesSurface.from(b),
-        ConstantDoublesSurface.from(rate));
+        ConstantDoublesSurface.from(rate), true);
   }
 
   /**
@@ -151,7 +151,7 @@ public class PDE1DCoefficientsProvider {
       }
     };
 
-    return new ConvectionDiffusionPDE1DStandardCoefficients(FunctionalDoublesSurface.from(a), ZERO_SURFACE, ConstantDoublesSurface.from(zeroRate));
+    return new ConvectionDiffusionPDE1DStandardCoefficients(FunctionalDoublesSurface.from(a), ZERO_SURFACE, ConstantDoublesSurface.from(zeroRate), true);
   }
 
   /**
@@ -451,7 +451,7 @@ public class PDE1DCoefficientsProvider {
       }
     };
 
-    return new ConvectionDiffusionPDE1DStandardCoefficients(FunctionalDoublesSurface.from(a), FunctionalDoublesSurface.from(b), ConstantDoublesSurface.from(yield));
+    return new ConvectionDiffusionPDE1DStandardCoefficients(FunctionalDoublesSurface.from(a), FunctionalDoublesSurface.from(b), ConstantDoublesSurface.from(yield), true);
   }
 
   /**
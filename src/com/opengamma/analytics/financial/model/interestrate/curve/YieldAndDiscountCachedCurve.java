@@ -0,0 +1,343 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.model.interestrate.curve;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang.ObjectUtils;
+
+import com.opengamma.analytics.financial.interestrate.YieldCurveBundle;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * YieldAndDiscountCurve decorator that remembers the interest rates and discount factors already computed by the underlying curve.
+ * The same pay and fixing times are typically queried many times in a valuation (e.g. all the swaps of a portfolio paying on IMM dates).
+ * <p>The times are keyed on their exact bit pattern, there is no tolerance. The cache is a primitive open-addressing table split in segments,
+ * each with its own lock, so that it can be shared by the threads of a parallel valuation. When a segment is full it is emptied, the cache
+ * never holds more than the maximum size given at construction.
+ * <p>The underlying curve is assumed not to change. If its parameters are changed in place (e.g. through the data bundle of an
+ * interpolated curve) {@link #invalidate()} must be called.
+ * <p>The parameter sensitivities are not cached and the curve has the same name and parameters as the underlying curve. The decorator is
+ * neither a {@link YieldCurve} nor a {@link DiscountCurve}: code which needs the type of the curve (e.g. its nodes) should use
+ * {@link #getUnderlying(YieldAndDiscountCurve)}.
+ */
+public class YieldAndDiscountCachedCurve extends YieldAndDiscountCurve {
+
+  /**
+   * The default maximum number of times cached.
+   */
+  public static final int DEFAULT_MAX_SIZE = 4096;
+  /**
+   * The maximum number of segments, a power of two.
+   */
+  private static final int MAX_SEGMENTS = 16;
+  /**
+   * The minimum number of entries per segment. With fewer the keys would not spread evenly enough and some segments would keep overflowing.
+   */
+  private static final int MIN_SEGMENT_SIZE = 256;
+
+  /**
+   * The underlying curve.
+   */
+  private final YieldAndDiscountCurve _curve;
+  /**
+   * The maximum number of times cached.
+   */
+  private final int _maxSize;
+  /**
+   * The cache segments.
+   */
+  private final Segment[] _segments;
+  /**
+   * The number of segments less one, for masking.
+   */
+  private final int _segmentMask;
+
+  /**
+   * Constructor with the default maximum size. The curve name is the underlying curve name.
+   * @param curve The underlying curve.
+   */
+  public YieldAndDiscountCachedCurve(final YieldAndDiscountCurve curve) {
+    this(curve, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Constructor. The curve name is the underlying curve name.
+   * @param curve The underlying curve.
+   * @param maxSize The maximum number of times cached.
+   */
+  public YieldAndDiscountCachedCurve(final YieldAndDiscountCurve curve, final int maxSize) {
+    super(curve.getName());
+    ArgumentChecker.isTrue(maxSize > 0, "The maximum size should be positive");
+    _curve = curve;
+    _maxSize = maxSize;
+    final int nbSegments = Math.max(1, Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxSize / MIN_SEGMENT_SIZE)));
+    _segmentMask = nbSegments - 1;
+    _segments = new Segment[nbSegments];
+    final int segmentSize = maxSize / nbSegments;
+    for (int loops = 0; loops < nbSegments; loops++) {
+      _segments[loops] = new Segment(segmentSize);
+    }
+  }
+
+  /**
+   * Returns a copy of a bundle in which all the curves are replaced by cached versions.
+   * <p>The caches keep the values of the curves of the bundle at the time of the call. Bumping or replacing a curve in the original bundle, or
+   * calling {@link YieldCurveBundle#replaceCurve} on the returned one with an uncached curve, is not seen by the cached curves: a bumped
+   * bundle should be cached again. A curve whose parameters are changed in place needs {@link #invalidate()} on its cached version, otherwise
+   * the values computed before the change are returned.
+   * @param bundle The bundle.
+   * @param maxSize The maximum number of times cached for each curve.
+   * @return The bundle with cached curves.
+   */
+  public static YieldCurveBundle cacheAll(final YieldCurveBundle bundle, final int maxSize) {
+    ArgumentChecker.notNull(bundle, "Bundle");
+    final YieldCurveBundle cached = bundle.copy();
+    for (final String name : bundle.getAllNames()) {
+      final YieldAndDiscountCurve curve = bundle.getCurve(name);
+      if (!(curve instanceof YieldAndDiscountCachedCurve)) {
+        cached.replaceCurve(name, new YieldAndDiscountCachedCurve(curve, maxSize));
+      }
+    }
+    return cached;
+  }
+
+  @Override
+  public double getInterestRate(final Double t) {
+    final long key = Double.doubleToLongBits(t);
+    final Segment segment = segmentFor(key);
+    double rate = segment.get(key, false);
+    if (Double.isNaN(rate)) {
+      rate = _curve.getInterestRate(t);
+      segment.put(key, rate, false);
+    }
+    return rate;
+  }
+
+  @Override
+  public double getDiscountFactor(final double t) {
+    final long key = Double.doubleToLongBits(t);
+    final Segment segment = segmentFor(key);
+    double df = segment.get(key, true);
+    if (Double.isNaN(df)) {
+      df = _curve.getDiscountFactor(t);
+      segment.put(key, df, true);
+    }
+    return df;
+  }
+
+  @Override
+  public double[] getInterestRateParameterSensitivity(final double time) {
+    return _curve.getInterestRateParameterSensitivity(time);
+  }
+
+  @Override
+  public int getNumberOfParameters() {
+    return _curve.getNumberOfParameters();
+  }
+
+  @Override
+  public List<String> getUnderlyingCurvesNames() {
+    return _curve.getUnderlyingCurvesNames();
+  }
+
+  /**
+   * Empties the cache. To be called when the parameters of the underlying curve have been changed.
+   */
+  public void invalidate() {
+    for (final Segment segment : _segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Gets the underlying curve.
+   * @return The curve.
+   */
+  public YieldAndDiscountCurve getUnderlyingCurve() {
+    return _curve;
+  }
+
+  /**
+   * Removes the caches around a curve, which has the same values and parameters but the type of the curve which was cached.
+   * @param curve The curve, possibly cached, not null.
+   * @return The curve under all the caches, the curve itself if it is not cached.
+   */
+  public static YieldAndDiscountCurve getUnderlying(final YieldAndDiscountCurve curve) {
+    ArgumentChecker.notNull(curve, "curve");
+    YieldAndDiscountCurve underlying = curve;
+    while (underlying instanceof YieldAndDiscountCachedCurve) {
+      underlying = ((YieldAndDiscountCachedCurve) underlying)._curve;
+    }
+    return underlying;
+  }
+
+  /**
+   * Gets the maximum number of times cached.
+   * @return The maximum size.
+   */
+  public int getMaxSize() {
+    return _maxSize;
+  }
+
+  /**
+   * Gets the number of requests answered from the cache since construction.
+   * @return The number of hits.
+   */
+  public long getHitCount() {
+    long hits = 0;
+    for (final Segment segment : _segments) {
+      hits += segment.getHits();
+    }
+    return hits;
+  }
+
+  /**
+   * Gets the number of requests passed to the underlying curve since construction.
+   * @return The number of misses.
+   */
+  public long getMissCount() {
+    long misses = 0;
+    for (final Segment segment : _segments) {
+      misses += segment.getMisses();
+    }
+    return misses;
+  }
+
+  private Segment segmentFor(final long key) {
+    return _segments[(int) (mix(key) >>> 60) & _segmentMask];
+  }
+
+  /**
+   * Finaliser of MurmurHash3, spreads the bits of the double (close times share most of their high bits).
+   * @param key The key.
+   * @return The hash.
+   */
+  private static long mix(final long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * A linear probing table from the time bits to the rate and the discount factor, NaN meaning not computed yet.
+   */
+  private static final class Segment {
+    private final int _maxEntries;
+    private final long[] _keys;
+    private final boolean[] _used;
+    private final double[] _rates;
+    private final double[] _discountFactors;
+    private final int _mask;
+    private int _size;
+    private long _hits;
+    private long _misses;
+
+    Segment(final int maxEntries) {
+      _maxEntries = maxEntries;
+      int capacity = 4;
+      while (capacity < 2 * maxEntries) {
+        capacity <<= 1;
+      }
+      _mask = capacity - 1;
+      _keys = new long[capacity];
+      _used = new boolean[capacity];
+      _rates = new double[capacity];
+      _discountFactors = new double[capacity];
+    }
+
+    synchronized double get(final long key, final boolean discountFactor) {
+      int slot = (int) mix(key) & _mask;
+      while (_used[slot]) {
+        if (_keys[slot] == key) {
+          final double value = discountFactor ? _discountFactors[slot] : _rates[slot];
+          if (Double.isNaN(value)) {
+            _misses++;
+          } else {
+            _hits++;
+          }
+          return value;
+        }
+        slot = (slot + 1) & _mask;
+      }
+      _misses++;
+      return Double.NaN;
+    }
+
+    synchronized void put(final long key, final double value, final boolean discountFactor) {
+      int slot = (int) mix(key) & _mask;
+      while (_used[slot] && _keys[slot] != key) {
+        slot = (slot + 1) & _mask;
+      }
+      if (!_used[slot]) {
+        if (_size == _maxEntries) {
+          clearUnsynchronized();
+          slot = (int) mix(key) & _mask;
+        }
+        _used[slot] = true;
+        _keys[slot] = key;
+        _rates[slot] = Double.NaN;
+        _discountFactors[slot] = Double.NaN;
+        _size++;
+      }
+      if (discountFactor) {
+        _discountFactors[slot] = value;
+      } else {
+        _rates[slot] = value;
+      }
+    }
+
+    synchronized void clear() {
+      clearUnsynchronized();
+    }
+
+    private void clearUnsynchronized() {
+      Arrays.fill(_used, false);
+      _size = 0;
+    }
+
+    synchronized long getHits() {
+      return _hits;
+    }
+
+    synchronized long getMisses() {
+      return _misses;
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + _curve.hashCode();
+    result = prime * result + _maxSize;
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    final YieldAndDiscountCachedCurve other = (YieldAndDiscountCachedCurve) obj;
+    if (!ObjectUtils.equals(_curve, other._curve)) {
+      return false;
+    }
+    return _maxSize == other._maxSize;
+  }
+
+}
@@ -45,6 +45,8 @@ import com.opengamma.analytics.math.statistics.distribution.ProbabilityDistribut
  */
 public class BlackScholesMertonModel extends AnalyticOptionModel<OptionDefinition, StandardOptionDataBundle> {
   private static final ProbabilityDistribution<Double> NORMAL = new NormalDistribution(0, 1);
+  /** The cut-off for small volatility times square root of time in the array methods */
+  private static final double SMALL = 1.0E-12;
 
   /**
    * Returns a visitor that calculates the greeks analytically.
@@ -94,6 +96,112 @@ public class BlackScholesMertonModel extends AnalyticOptionModel<OptionDefinitio
     return pricingFunction;
   }
 
+  /**
+   * Computes the prices of options on the same underlying, for example the options of a volatility surface, in a loop over primitive arrays.
+   * The price of each option is the one given by {@link #getPricingFunction(OptionDefinition)} with a flat interest rate and cost of carry.
+   * @param s The spot
+   * @param r The continuously-compounded interest rate
+   * @param b The cost of carry
+   * @param sigmas The volatilities, not null, not negative
+   * @param strikes The strikes, not null
+   * @param times The times to expiry, not null
+   * @param isCall True for calls, false for puts
+   * @param prices The array filled with the prices, not null, of the same length as the strikes
+   */
+  public void getPrices(final double s, final double r, final double b, final double[] sigmas, final double[] strikes, final double[] times, final boolean isCall,
+      final double[] prices) {
+    checkArrays(sigmas, strikes, times, prices);
+    final int sign = isCall ? 1 : -1;
+    final int n = strikes.length;
+    for (int i = 0; i < n; i++) {
+      final double k = strikes[i];
+      final double t = times[i];
+      final double df = Math.exp(-r * t);
+      if (s == 0) {
+        prices[i] = isCall ? 0 : df * k;
+        continue;
+      }
+      final double forward = s * Math.exp(b * t);
+      final double sigmaRootT = sigmas[i] * Math.sqrt(t);
+      if (sigmaRootT < SMALL) {
+        prices[i] = df * Math.max(sign * (forward - k), 0);
+        continue;
+      }
+      final double d1 = Math.log(forward / k) / sigmaRootT + 0.5 * sigmaRootT;
+      prices[i] = sign * df * (forward * NormalDistribution.getStandardCDF(sign * d1) - k * NormalDistribution.getStandardCDF(sign * (d1 - sigmaRootT)));
+    }
+  }
+
+  /**
+   * Computes the spot deltas of options on the same underlying in a loop over primitive arrays, with a flat interest rate and cost of carry.
+   * @param s The spot
+   * @param r The continuously-compounded interest rate
+   * @param b The cost of carry
+   * @param sigmas The volatilities, not null, not negative
+   * @param strikes The strikes, not null
+   * @param times The times to expiry, not null
+   * @param isCall True for calls, false for puts
+   * @param deltas The array filled with the deltas, not null, of the same length as the strikes
+   */
+  public void getDeltas(final double s, final double r, final double b, final double[] sigmas, final double[] strikes, final double[] times, final boolean isCall,
+      final double[] deltas) {
+    checkArrays(sigmas, strikes, times, deltas);
+    final int n = strikes.length;
+    for (int i = 0; i < n; i++) {
+      final double k = strikes[i];
+      final double t = times[i];
+      final double df = getDF(r, b, t);
+      final double forward = s * Math.exp(b * t);
+      final double sigmaRootT = sigmas[i] * Math.sqrt(t);
+      final double nd1;
+      if (sigmaRootT < SMALL) {
+        nd1 = forward > k ? 1 : 0;
+      } else {
+        nd1 = NormalDistribution.getStandardCDF(Math.log(forward / k) / sigmaRootT + 0.5 * sigmaRootT);
+      }
+      deltas[i] = df * (isCall ? nd1 : nd1 - 1);
+    }
+  }
+
+  /**
+   * Computes the vegas of options on the same underlying in a loop over primitive arrays, with a flat interest rate and cost of carry.
+   * The vega does not depend on the option being a call or a put.
+   * @param s The spot
+   * @param r The continuously-compounded interest rate
+   * @param b The cost of carry
+   * @param sigmas The volatilities, not null, not negative
+   * @param strikes The strikes, not null
+   * @param times The times to expiry, not null
+   * @param vegas The array filled with the vegas, not null, of the same length as the strikes
+   */
+  public void getVegas(final double s, final double r, final double b, final double[] sigmas, final double[] strikes, final double[] times, final double[] vegas) {
+    checkArrays(sigmas, strikes, times, vegas);
+    final int n = strikes.length;
+    for (int i = 0; i < n; i++) {
+      final double t = times[i];
+      final double rootT = Math.sqrt(t);
+      final double sigmaRootT = sigmas[i] * rootT;
+      if (sigmaRootT < SMALL) {
+        vegas[i] = 0;
+        continue;
+      }
+      final double d1 = (Math.log(s / strikes[i]) + b * t) / sigmaRootT + 0.5 * sigmaRootT;
+      vegas[i] = s * getDF(r, b, t) * NormalDistribution.getStandardPDF(d1) * rootT;
+    }
+  }
+
+  private static void checkArrays(final double[] sigmas, final double[] strikes, final double[] times, final double[] result) {
+    Validate.notNull(sigmas, "sigmas");
+    Validate.notNull(strikes, "strikes");
+    Validate.notNull(times, "times");
+    Validate.notNull(result, "result");
+    final int n = strikes.length;
+    Validate.isTrue(sigmas.length == n && times.length == n && result.length == n, "sigmas, strikes, times and result should have the same length");
+    for (final double sigma : sigmas) {
+      Validate.isTrue(sigma >= 0.0, "negative volatility; have " + sigma);
+    }
+  }
+
   /**
    * Greek visitor for this class. Analytic solutions for the greeks are used.
    */
@@ -17,6 +17,10 @@ import com.opengamma.analytics.math.statistics.distribution.ProbabilityDistribut
  */
 public class BlackPriceFunction implements OptionPriceFunction<BlackFunctionData> {
   private static final ProbabilityDistribution<Double> NORMAL = new NormalDistribution(0, 1);
+  /**
+   * The cut-off for small strike and volatility times square root of time in the array methods.
+   */
+  private static final double SMALL = 1.0E-12;
 
   @Override
   public Function1D<BlackFunctionData, Double> getPriceFunction(final EuropeanVanillaOption option) {
@@ -220,4 +224,103 @@ public class BlackPriceFunction implements OptionPriceFunction<BlackFunctionData
     };
   }
 
+  /**
+   * Computes the prices of options on the same forward, for example the options of a volatility surface, in a loop over primitive arrays.
+   * The price of each option is the one given by {@link #getPriceFunction(EuropeanVanillaOption)}.
+   * @param forward The forward.
+   * @param discountFactor The discount factor.
+   * @param volatilities The Black volatilities, not negative.
+   * @param strikes The strikes.
+   * @param timesToExpiry The times to expiry.
+   * @param isCall True for calls, false for puts.
+   * @param prices The array filled with the prices, of the same length as the strikes.
+   */
+  public void getPrices(final double forward, final double discountFactor, final double[] volatilities, final double[] strikes, final double[] timesToExpiry,
+      final boolean isCall, final double[] prices) {
+    checkArrays(volatilities, strikes, timesToExpiry, prices);
+    final double omega = isCall ? 1 : -1;
+    final int nbOptions = strikes.length;
+    for (int loopopt = 0; loopopt < nbOptions; loopopt++) {
+      final double strike = strikes[loopopt];
+      final double sigmaRootT = volatilities[loopopt] * Math.sqrt(timesToExpiry[loopopt]);
+      if (strike < SMALL || sigmaRootT < SMALL) {
+        prices[loopopt] = discountFactor * Math.max(omega * (forward - strike), 0.0);
+      } else {
+        final double d1 = Math.log(forward / strike) / sigmaRootT + 0.5 * sigmaRootT;
+        prices[loopopt] = discountFactor * omega
+            * (forward * NormalDistribution.getStandardCDF(omega * d1) - strike * NormalDistribution.getStandardCDF(omega * (d1 - sigmaRootT)));
+      }
+    }
+  }
+
+  /**
+   * Computes the deltas (derivatives of the price with respect to the forward, including the discount factor) of options on the same forward,
+   * in a loop over primitive arrays.
+   * @param forward The forward.
+   * @param discountFactor The discount factor.
+   * @param volatilities The Black volatilities, not negative.
+   * @param strikes The strikes.
+   * @param timesToExpiry The times to expiry.
+   * @param isCall True for calls, false for puts.
+   * @param deltas The array filled with the deltas, of the same length as the strikes.
+   */
+  public void getDeltas(final double forward, final double discountFactor, final double[] volatilities, final double[] strikes, final double[] timesToExpiry,
+      final boolean isCall, final double[] deltas) {
+    checkArrays(volatilities, strikes, timesToExpiry, deltas);
+    final double omega = isCall ? 1 : -1;
+    final int nbOptions = strikes.length;
+    for (int loopopt = 0; loopopt < nbOptions; loopopt++) {
+      final double strike = strikes[loopopt];
+      final double sigmaRootT = volatilities[loopopt] * Math.sqrt(timesToExpiry[loopopt]);
+      if (strike < SMALL || sigmaRootT < SMALL) {
+        deltas[loopopt] = discountFactor * (isCall ? (forward > strike ? 1.0 : 0.0) : (forward > strike ? 0.0 : -1.0));
+      } else {
+        final double d1 = Math.log(forward / strike) / sigmaRootT + 0.5 * sigmaRootT;
+        deltas[loopopt] = discountFactor * omega * NormalDistribution.getStandardCDF(omega * d1);
+      }
+    }
+  }
+
+  /**
+   * Computes the vegas (including the discount factor) of options on the same forward, in a loop over primitive arrays. The vega of each
+   * option is the one given by {@link #getVegaFunction(EuropeanVanillaOption)}; it does not depend on the option being a call or a put.
+   * @param forward The forward.
+   * @param discountFactor The discount factor.
+   * @param volatilities The Black volatilities, not negative.
+   * @param strikes The strikes.
+   * @param timesToExpiry The times to expiry.
+   * @param vegas The array filled with the vegas, of the same length as the strikes.
+   */
+  public void getVegas(final double forward, final double discountFactor, final double[] volatilities, final double[] strikes, final double[] timesToExpiry,
+      final double[] vegas) {
+    checkArrays(volatilities, strikes, timesToExpiry, vegas);
+    final int nbOptions = strikes.length;
+    for (int loopopt = 0; loopopt < nbOptions; loopopt++) {
+      final double strike = strikes[loopopt];
+      final double rootT = Math.sqrt(timesToExpiry[loopopt]);
+      final double sigmaRootT = volatilities[loopopt] * rootT;
+      if (Math.abs(forward - strike) < SMALL) {
+        vegas[loopopt] = discountFactor * forward * rootT * NormalDistribution.getStandardPDF(0.5 * sigmaRootT);
+      } else if (strike < SMALL || sigmaRootT < SMALL) {
+        vegas[loopopt] = 0.0;
+      } else {
+        final double d1 = Math.log(forward / strike) / sigmaRootT + 0.5 * sigmaRootT;
+        vegas[loopopt] = discountFactor * forward * rootT * NormalDistribution.getStandardPDF(d1);
+      }
+    }
+  }
+
+  private static void checkArrays(final double[] volatilities, final double[] strikes, final double[] timesToExpiry, final double[] result) {
+    Validate.notNull(volatilities, "volatilities");
+    Validate.notNull(strikes, "strikes");
+    Validate.notNull(timesToExpiry, "times to expiry");
+    Validate.notNull(result, "result");
+    final int nbOptions = strikes.length;
+    Validate.isTrue(volatilities.length == nbOptions && timesToExpiry.length == nbOptions && result.length == nbOptions,
+        "volatilities, strikes, times to expiry and result should have the same length");
+    for (final double volatility : volatilities) {
+      Validate.isTrue(volatility >= 0.0, "negative volatility; have " + volatility);
+    }
+  }
+
 }
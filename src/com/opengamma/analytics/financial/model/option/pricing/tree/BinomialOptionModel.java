@@ -12,7 +12,9 @@ import org.apache.commons.lang.Validate;
 import com.opengamma.analytics.financial.greeks.Greek;
 import com.opengamma.analytics.financial.greeks.GreekResultCollection;
 import com.opengamma.analytics.financial.greeks.GreekVisitor;
+import com.opengamma.analytics.financial.model.option.definition.AmericanVanillaOptionDefinition;
 import com.opengamma.analytics.financial.model.option.definition.BinomialOptionModelDefinition;
+import com.opengamma.analytics.financial.model.option.definition.EuropeanVanillaOptionDefinition;
 import com.opengamma.analytics.financial.model.option.definition.OptionDefinition;
 import com.opengamma.analytics.financial.model.option.definition.OptionExerciseFunction;
 import com.opengamma.analytics.financial.model.option.definition.OptionPayoffFunction;
@@ -56,11 +58,20 @@ public class BinomialOptionModel<T extends StandardOptionDataBundle> extends Tre
     _maxWidthToSave = RecombiningBinomialTree.NODES.evaluate(maxDepthToSave);
   }
 
+  /**
+   * {@inheritDoc}
+   * The tree is rolled back once over arrays of doubles; delta, gamma and theta are read off the first levels of the tree and the
+   * other Greeks are computed by finite difference on the price.
+   */
   @Override
   public GreekResultCollection getGreeks(final OptionDefinition definition, final T data, final Set<Greek> requiredGreeks) {
-    final Function1D<T, RecombiningBinomialTree<DoublesPair>> treeFunction = getTreeGeneratingFunction(definition);
+    Validate.notNull(definition, "definition");
+    Validate.notNull(data, "data");
+    final DoublesPair[][] firstLevels = new DoublesPair[Math.min(2, _n) + 1][];
+    backwardInduction(definition, data, isVanilla(definition) ? new double[] {definition.getStrike()} : null, firstLevels);
     final GreekResultCollection results = new GreekResultCollection();
-    final GreekVisitor<Double> visitor = getGreekVisitor(treeFunction, data, definition);
+    final GreekVisitor<Double> visitor = new BinomialModelFiniteDifferenceGreekVisitor(new RecombiningBinomialTree<DoublesPair>(firstLevels),
+        getPricingFunction(definition), data, definition);
     for (final Greek greek : requiredGreeks) {
       final Double result = greek.accept(visitor);
       results.put(greek, result);
@@ -68,6 +79,45 @@ public class BinomialOptionModel<T extends StandardOptionDataBundle> extends Tre
     return results;
   }
 
+  /**
+   * Gets the function pricing the option by backward induction over a single array of option values: unlike the tree generating function
+   * no node is allocated and the memory used is proportional to the number of steps. The payoff of vanilla options is computed directly,
+   * other options use the payoff and exercise functions of the definition.
+   * @param definition The option definition
+   * @return The pricing function
+   */
+  public Function1D<T, Double> getPricingFunction(final OptionDefinition definition) {
+    Validate.notNull(definition, "definition");
+    final double[] strikes = isVanilla(definition) ? new double[] {definition.getStrike()} : null;
+    return new Function1D<T, Double>() {
+
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public Double evaluate(final T data) {
+        Validate.notNull(data, "data");
+        return backwardInduction(definition, data, strikes, null)[0];
+      }
+
+    };
+  }
+
+  /**
+   * Prices vanilla options with several strikes on one tree. The tree (up and down factors, probabilities and spots) is built once
+   * from the definition, in particular the volatility is the one at the strike of the definition; the options have the expiry,
+   * type and exercise style of the definition.
+   * @param definition The option definition, a {@link EuropeanVanillaOptionDefinition} or an {@link AmericanVanillaOptionDefinition}
+   * @param data The data
+   * @param strikes The strikes
+   * @return The option prices, in the order of the strikes
+   */
+  public double[] getPrices(final OptionDefinition definition, final T data, final double[] strikes) {
+    Validate.notNull(definition, "definition");
+    Validate.notNull(data, "data");
+    Validate.notNull(strikes, "strikes");
+    ArgumentChecker.isTrue(isVanilla(definition), "Can only price vanilla options on a shared tree; have {}", definition);
+    return backwardInduction(definition, data, strikes, null);
+  }
+
   public GreekVisitor<Double> getGreekVisitor(final Function1D<T, RecombiningBinomialTree<DoublesPair>> treeFunction, final T data, final OptionDefinition definition) {
     final Function1D<T, Double> function = new Function1D<T, Double>() {
 
@@ -126,6 +176,88 @@ public class BinomialOptionModel<T extends StandardOptionDataBundle> extends Tre
     };
   }
 
+  /**
+   * Rolls the tree back over arrays of doubles.
+   * @param definition The option definition, giving the tree, the option type and the exercise style
+   * @param data The data
+   * @param strikes The strikes of vanilla options priced on the same tree, null to use the payoff and exercise functions of the definition
+   * @param firstLevels If not null, filled with the (spot, option price) pairs of the first levels of the tree for the first strike
+   * @return The option prices, one for each strike
+   */
+  @SuppressWarnings("unchecked")
+  private double[] backwardInduction(final OptionDefinition definition, final T data, final double[] strikes, final DoublesPair[][] firstLevels) {
+    final OptionPayoffFunction<T> payoffFunction = definition.getPayoffFunction();
+    final OptionExerciseFunction<T> exerciseFunction = definition.getExerciseFunction();
+    final boolean american = definition instanceof AmericanVanillaOptionDefinition;
+    final double omega = definition.isCall() ? 1 : -1;
+    final double u = _model.getUpFactor(definition, data, _n, _j);
+    final double d = _model.getDownFactor(definition, data, _n, _j);
+    final RecombiningBinomialTree<Double> pTree = _model.getUpProbabilityTree(definition, data, _n, _j);
+    final double spot = data.getSpot();
+    final double t = definition.getTimeToExpiry(data.getDate());
+    final double r = data.getInterestRate(t);
+    final double df = Math.exp(-r * t / _n);
+    final double[] terminalSpots = new double[_j];
+    double newSpot = spot * Math.pow(d, _n);
+    for (int i = 0; i < _j; i++) {
+      terminalSpots[i] = newSpot;
+      newSpot *= u / d;
+    }
+    final int nbStrikes = strikes == null ? 1 : strikes.length;
+    final double[] prices = new double[nbStrikes];
+    final double[] spots = new double[_j];
+    final double[] values = new double[_j];
+    for (int loopk = 0; loopk < nbStrikes; loopk++) {
+      System.arraycopy(terminalSpots, 0, spots, 0, _j);
+      if (strikes == null) {
+        for (int i = 0; i < _j; i++) {
+          values[i] = payoffFunction.getPayoff((T) data.withSpot(spots[i]), 0.);
+        }
+      } else {
+        final double k = strikes[loopk];
+        for (int i = 0; i < _j; i++) {
+          values[i] = Math.max(0, omega * (spots[i] - k));
+        }
+      }
+      saveLevel(firstLevels, loopk, _n, spots, values);
+      double optionValue, p;
+      T newData;
+      for (int i = _n - 1; i >= 0; i--) {
+        for (int j = 0; j <= i; j++) {
+          p = pTree.getNode(i, j);
+          optionValue = df * ((1 - p) * values[j] + p * values[j + 1]);
+          spots[j] /= d;
+          if (strikes == null) {
+            newData = (T) data.withSpot(spots[j]);
+            if (exerciseFunction.shouldExercise(newData, optionValue)) {
+              optionValue = payoffFunction.getPayoff(newData, optionValue);
+            }
+          } else if (american) {
+            optionValue = Math.max(optionValue, omega * (spots[j] - strikes[loopk]));
+          }
+          values[j] = optionValue;
+        }
+        saveLevel(firstLevels, loopk, i, spots, values);
+      }
+      prices[loopk] = values[0];
+    }
+    return prices;
+  }
+
+  private static void saveLevel(final DoublesPair[][] firstLevels, final int strikeIndex, final int level, final double[] spots, final double[] values) {
+    if (firstLevels == null || strikeIndex > 0 || level >= firstLevels.length) {
+      return;
+    }
+    firstLevels[level] = new DoublesPair[level + 1];
+    for (int j = 0; j <= level; j++) {
+      firstLevels[level][j] = DoublesPair.of(spots[j], values[j]);
+    }
+  }
+
+  private static boolean isVanilla(final OptionDefinition definition) {
+    return definition.getClass() == EuropeanVanillaOptionDefinition.class || definition.getClass() == AmericanVanillaOptionDefinition.class;
+  }
+
   /**
    * 
    */
@@ -140,6 +272,11 @@ public class BinomialOptionModel<T extends StandardOptionDataBundle> extends Tre
       _dt = definition.getTimeToExpiry(data.getDate()) / _n;
     }
 
+    @Override
+    public Double visitPrice() {
+      return _tree.getNode(0, 0).second;
+    }
+
     @Override
     public Double visitDelta() {
       final DoublesPair node11 = _tree.getNode(1, 1);
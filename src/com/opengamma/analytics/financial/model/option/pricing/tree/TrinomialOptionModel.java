@@ -12,6 +12,8 @@ import org.apache.commons.lang.Validate;
 import com.opengamma.analytics.financial.greeks.Greek;
 import com.opengamma.analytics.financial.greeks.GreekResultCollection;
 import com.opengamma.analytics.financial.greeks.GreekVisitor;
+import com.opengamma.analytics.financial.model.option.definition.AmericanVanillaOptionDefinition;
+import com.opengamma.analytics.financial.model.option.definition.EuropeanVanillaOptionDefinition;
 import com.opengamma.analytics.financial.model.option.definition.OptionDefinition;
 import com.opengamma.analytics.financial.model.option.definition.OptionExerciseFunction;
 import com.opengamma.analytics.financial.model.option.definition.OptionPayoffFunction;
@@ -56,19 +58,20 @@ public class TrinomialOptionModel<T extends StandardOptionDataBundle> extends Tr
     _maxWidthToSave = RecombiningTrinomialTree.NODES.evaluate(maxDepthToSave);
   }
 
+  /**
+   * {@inheritDoc}
+   * The tree is rolled back once over arrays of doubles; delta, gamma and theta are read off the first level of the tree and the
+   * other Greeks are computed by finite difference on the price.
+   */
   @Override
   public GreekResultCollection getGreeks(final OptionDefinition definition, final T data, final Set<Greek> requiredGreeks) {
-    final Function1D<T, RecombiningTrinomialTree<DoublesPair>> treeFunction = getTreeGeneratingFunction(definition);
-    final Function1D<T, Double> function = new Function1D<T, Double>() {
-
-      @Override
-      public Double evaluate(final T t) {
-        return treeFunction.evaluate(t).getNode(0, 0).second;
-      }
-
-    };
+    Validate.notNull(definition, "definition");
+    Validate.notNull(data, "data");
+    final DoublesPair[][] firstLevels = new DoublesPair[2][];
+    backwardInduction(definition, data, isVanilla(definition) ? new double[] {definition.getStrike()} : null, firstLevels);
     final GreekResultCollection results = new GreekResultCollection();
-    final GreekVisitor<Double> visitor = new FiniteDifferenceGreekVisitor<T, OptionDefinition>(function, data, definition);
+    final GreekVisitor<Double> visitor = new TrinomialModelFiniteDifferenceGreekVisitor(new RecombiningTrinomialTree<DoublesPair>(firstLevels),
+        getPricingFunction(definition), data, definition);
     for (final Greek greek : requiredGreeks) {
       final Double result = greek.accept(visitor);
       results.put(greek, result);
@@ -76,6 +79,45 @@ public class TrinomialOptionModel<T extends StandardOptionDataBundle> extends Tr
     return results;
   }
 
+  /**
+   * Gets the function pricing the option by backward induction over a single array of option values: unlike the tree generating function
+   * no node is allocated and the memory used is proportional to the number of steps. The payoff of vanilla options is computed directly,
+   * other options use the payoff and exercise functions of the definition.
+   * @param definition The option definition
+   * @return The pricing function
+   */
+  public Function1D<T, Double> getPricingFunction(final OptionDefinition definition) {
+    Validate.notNull(definition, "definition");
+    final double[] strikes = isVanilla(definition) ? new double[] {definition.getStrike()} : null;
+    return new Function1D<T, Double>() {
+
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public Double evaluate(final T data) {
+        Validate.notNull(data, "data");
+        return backwardInduction(definition, data, strikes, null)[0];
+      }
+
+    };
+  }
+
+  /**
+   * Prices vanilla options with several strikes on one tree. The tree (space step, probabilities and spots) is built once
+   * from the definition, in particular the volatility is the one at the strike of the definition; the options have the expiry,
+   * type and exercise style of the definition.
+   * @param definition The option definition, a {@link EuropeanVanillaOptionDefinition} or an {@link AmericanVanillaOptionDefinition}
+   * @param data The data
+   * @param strikes The strikes
+   * @return The option prices, in the order of the strikes
+   */
+  public double[] getPrices(final OptionDefinition definition, final T data, final double[] strikes) {
+    Validate.notNull(definition, "definition");
+    Validate.notNull(data, "data");
+    Validate.notNull(strikes, "strikes");
+    ArgumentChecker.isTrue(isVanilla(definition), "Can only price vanilla options on a shared tree; have {}", definition);
+    return backwardInduction(definition, data, strikes, null);
+  }
+
   @Override
   public Function1D<T, RecombiningTrinomialTree<DoublesPair>> getTreeGeneratingFunction(final OptionDefinition definition) {
     return new Function1D<T, RecombiningTrinomialTree<DoublesPair>>() {
@@ -108,7 +150,7 @@ public class TrinomialOptionModel<T extends StandardOptionDataBundle> extends Tr
         for (int i = _n - 1; i >= 0; i--) {
           for (int j = 1; j <= RecombiningTrinomialTree.NODES.evaluate(i); j++) {
             optionValue = df * (u * tempResults[j + 1].second + m * tempResults[j].second + d * tempResults[j - 1].second);
-            spotValue = df * tempResults[j].first;
+            spotValue = tempResults[j].first;
             newData = (T) data.withSpot(spotValue);
             tempResults[j - 1] = DoublesPair.of(spotValue, exerciseFunction.shouldExercise(newData, optionValue) ? payoffFunction.getPayoff(newData, optionValue) : optionValue);
             if (i <= _maxDepthToSave) {
@@ -121,4 +163,130 @@ public class TrinomialOptionModel<T extends StandardOptionDataBundle> extends Tr
 
     };
   }
+
+  /**
+   * Rolls the tree back over arrays of doubles. The spot of the node j at step i is the spot of the terminal node j + n - i.
+   * @param definition The option definition, giving the tree, the option type and the exercise style
+   * @param data The data
+   * @param strikes The strikes of vanilla options priced on the same tree, null to use the payoff and exercise functions of the definition
+   * @param firstLevels If not null, filled with the (spot, option price) pairs of the first levels of the tree for the first strike
+   * @return The option prices, one for each strike
+   */
+  @SuppressWarnings("unchecked")
+  private double[] backwardInduction(final OptionDefinition definition, final T data, final double[] strikes, final DoublesPair[][] firstLevels) {
+    final OptionPayoffFunction<T> payoffFunction = definition.getPayoffFunction();
+    final OptionExerciseFunction<T> exerciseFunction = definition.getExerciseFunction();
+    final boolean american = definition instanceof AmericanVanillaOptionDefinition;
+    final double omega = definition.isCall() ? 1 : -1;
+    final double u = _model.getUpFactor(definition, data, _n, _j);
+    final double m = _model.getMidFactor(definition, data, _n, _j);
+    final double d = _model.getDownFactor(definition, data, _n, _j);
+    final double spot = data.getSpot();
+    final double t = definition.getTimeToExpiry(data.getDate());
+    final double r = data.getInterestRate(t);
+    final double edx = Math.exp(_model.getDX(definition, data, _n, _j));
+    final double df = Math.exp(-r * t / _n);
+    final double[] spots = new double[_j];
+    double newSpot = spot * Math.pow(edx, -_n);
+    for (int i = 0; i < _j; i++) {
+      spots[i] = newSpot;
+      newSpot *= edx;
+    }
+    final int nbStrikes = strikes == null ? 1 : strikes.length;
+    final double[] prices = new double[nbStrikes];
+    final double[] values = new double[_j];
+    for (int loopk = 0; loopk < nbStrikes; loopk++) {
+      if (strikes == null) {
+        for (int i = 0; i < _j; i++) {
+          values[i] = payoffFunction.getPayoff((T) data.withSpot(spots[i]), 0.);
+        }
+      } else {
+        final double k = strikes[loopk];
+        for (int i = 0; i < _j; i++) {
+          values[i] = Math.max(0, omega * (spots[i] - k));
+        }
+      }
+      saveLevel(firstLevels, loopk, _n, spots, _n, values);
+      double optionValue, spotValue;
+      T newData;
+      for (int i = _n - 1; i >= 0; i--) {
+        for (int j = 1; j <= 2 * i + 1; j++) {
+          optionValue = df * (u * values[j + 1] + m * values[j] + d * values[j - 1]);
+          spotValue = spots[j + _n - i - 1];
+          if (strikes == null) {
+            newData = (T) data.withSpot(spotValue);
+            if (exerciseFunction.shouldExercise(newData, optionValue)) {
+              optionValue = payoffFunction.getPayoff(newData, optionValue);
+            }
+          } else if (american) {
+            optionValue = Math.max(optionValue, omega * (spotValue - strikes[loopk]));
+          }
+          values[j - 1] = optionValue;
+        }
+        saveLevel(firstLevels, loopk, i, spots, _n, values);
+      }
+      prices[loopk] = values[0];
+    }
+    return prices;
+  }
+
+  private static void saveLevel(final DoublesPair[][] firstLevels, final int strikeIndex, final int level, final double[] terminalSpots, final int n,
+      final double[] values) {
+    if (firstLevels == null || strikeIndex > 0 || level >= firstLevels.length) {
+      return;
+    }
+    firstLevels[level] = new DoublesPair[2 * level + 1];
+    for (int j = 0; j <= 2 * level; j++) {
+      firstLevels[level][j] = DoublesPair.of(terminalSpots[j + n - level], values[j]);
+    }
+  }
+
+  private static boolean isVanilla(final OptionDefinition definition) {
+    return definition.getClass() == EuropeanVanillaOptionDefinition.class || definition.getClass() == AmericanVanillaOptionDefinition.class;
+  }
+
+  /**
+   * Reads delta, gamma and theta off the first level of the tree.
+   */
+  protected class TrinomialModelFiniteDifferenceGreekVisitor extends FiniteDifferenceGreekVisitor<T, OptionDefinition> {
+    private final RecombiningTrinomialTree<DoublesPair> _tree;
+    private final double _dt;
+
+    @SuppressWarnings("synthetic-access")
+    public TrinomialModelFiniteDifferenceGreekVisitor(final RecombiningTrinomialTree<DoublesPair> tree, final Function1D<T, Double> function, final T data,
+        final OptionDefinition definition) {
+      super(function, data, definition);
+      _tree = tree;
+      _dt = definition.getTimeToExpiry(data.getDate()) / _n;
+    }
+
+    @Override
+    public Double visitPrice() {
+      return _tree.getNode(0, 0).second;
+    }
+
+    @Override
+    public Double visitDelta() {
+      final DoublesPair node12 = _tree.getNode(1, 2);
+      final DoublesPair node10 = _tree.getNode(1, 0);
+      return (node12.second - node10.second) / (node12.first - node10.first);
+    }
+
+    @Override
+    public Double visitGamma() {
+      final DoublesPair node12 = _tree.getNode(1, 2);
+      final DoublesPair node11 = _tree.getNode(1, 1);
+      final DoublesPair node10 = _tree.getNode(1, 0);
+      double gamma = (node12.second - node11.second) / (node12.first - node11.first) - (node11.second - node10.second) / (node11.first - node10.first);
+      gamma /= 0.5 * (node12.first - node10.first);
+      return gamma;
+    }
+
+    @Override
+    public Double visitTheta() {
+      final DoublesPair node11 = _tree.getNode(1, 1);
+      final DoublesPair node00 = _tree.getNode(0, 0);
+      return (node11.second - node00.second) / _dt;
+    }
+  }
 }
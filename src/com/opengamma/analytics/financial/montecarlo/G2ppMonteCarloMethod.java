@@ -5,6 +5,8 @@
  */
 package com.opengamma.analytics.financial.montecarlo;
 
+import java.util.List;
+
 import com.opengamma.analytics.financial.interestrate.InstrumentDerivative;
 import com.opengamma.analytics.financial.interestrate.YieldCurveBundle;
 import com.opengamma.analytics.financial.model.interestrate.G2ppPiecewiseConstantModel;
@@ -43,10 +45,6 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
    * The Hull-White one factor model.
    */
   private static final G2ppPiecewiseConstantModel MODEL = new G2ppPiecewiseConstantModel();
-  /**
-   * The number of paths in one block.
-   */
-  private static final int BLOCK_SIZE = 1000;
 
   /**
    * @param numberGenerator The random number generator.
@@ -56,10 +54,19 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
     super(numberGenerator, nbPath);
   }
 
+  /**
+   * Constructor for the parallel method, with one random number stream per block of paths.
+   * @param seed The seed.
+   * @param nbPath The number of paths.
+   */
+  public G2ppMonteCarloMethod(long seed, int nbPath) {
+    super(seed, nbPath);
+  }
+
   /**
    * Computes the present value in the G2++ two factors model by Monte-Carlo.
    * Implementation note: The total number of paths is divided in blocks of maximum size BLOCK_SIZE=1000. The Monte Carlo is run on each block and the average of each
-   * block price is the total price. 
+   * block price is the total price. The blocks are run in parallel if the method was constructed with a seed.
    * @param instrument The swaption.
    * @param ccy The currency
    * @param dscName The discounting curve name.
@@ -72,11 +79,11 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
     DecisionSchedule decision = DC.visit(instrument, g2Data);
     double[] decisionTime = decision.getDecisionTime();
     double[][] impactTime = decision.getImpactTime();
-    int nbJump = decisionTime.length;
+    final int nbJump = decisionTime.length;
     double numeraireTime = decisionTime[nbJump - 1];
     double pDN = dsc.getDiscountFactor(numeraireTime);
     // Discount factor to numeraire date for rebasing.
-    double[][] pDI = new double[nbJump][];
+    final double[][] pDI = new double[nbJump][];
     // Initial discount factors to each impact date.
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       pDI[loopjump] = new double[impactTime[loopjump].length];
@@ -85,7 +92,7 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
       }
     }
     final double rhog2pp = g2Data.getG2ppParameter().getCorrelation();
-    double[][][] h = MODEL.volatilityMaturityPart(g2Data.getG2ppParameter(), numeraireTime, impactTime); // factor/jump/cf
+    final double[][][] h = MODEL.volatilityMaturityPart(g2Data.getG2ppParameter(), numeraireTime, impactTime); // factor/jump/cf
     double[][][] gamma = new double[nbJump][2][2]; // jump/factor/factor
     double[][] cov = new double[2 * nbJump][2 * nbJump]; // factor 0 - factor 1
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
@@ -102,7 +109,7 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
       }
     }
     double[][][] alpha = new double[2][nbJump][]; // factor/jump/cf
-    double[][] tau2 = new double[nbJump][];
+    final double[][] tau2 = new double[nbJump][];
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       tau2[loopjump] = new double[impactTime[loopjump].length];
       alpha[0][loopjump] = new double[impactTime[loopjump].length];
@@ -116,27 +123,20 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
     }
     CholeskyDecompositionCommons cd = new CholeskyDecompositionCommons();
     CholeskyDecompositionResult cdr = cd.evaluate(new DoubleMatrix2D(cov));
-    double[][] covCD = cdr.getL().getData();
-    int nbBlock = (int) Math.round(Math.ceil(getNbPath() / ((double) BLOCK_SIZE)));
-    int[] nbPath2 = new int[nbBlock];
-    for (int i = 0; i < nbBlock - 1; i++) {
-      nbPath2[i] = BLOCK_SIZE;
-    }
-    nbPath2[nbBlock - 1] = getNbPath() - (nbBlock - 1) * BLOCK_SIZE;
-    double[][] impactAmount = decision.getImpactAmount();
-    double pv = 0;
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      double[][] x = getNormalArray(2 * nbJump, nbPath2[loopblock]);
-      double[][] y = new double[2 * nbJump][nbPath2[loopblock]]; // jump/path
-      for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
-        for (int i = 0; i < 2 * nbJump; i++) {
-          for (int j = 0; j < 2 * nbJump; j++) {
-            y[i][looppath] += x[j][looppath] * covCD[i][j];
-          }
-        }
+    final double[][] covCD = cdr.getL().getData();
+    final double[][] impactAmount = decision.getImpactAmount();
+    final List<Double> pvBlock = runBlocks(new Block<Double>() {
+      @Override
+      public Double evaluate(final RandomNumberGenerator numberGenerator, final int nbPath) {
+        double[][] x = getNormalArray(numberGenerator, 2 * nbJump, nbPath);
+        double[][] y = correlate(covCD, x, nbPath); // jump/path
+        double[] pD = pathGeneratorDiscount(pDI, y, h, tau2, MonteCarloDiscountFactorDataBundle.pathStride(impactAmount));
+        return MCC.visit(instrument, new MonteCarloDiscountFactorDataBundle(pD, nbPath, impactAmount)) * nbPath;
       }
-      Double[][][] pD = pathGeneratorDiscount(pDI, y, h, tau2);
-      pv += MCC.visit(instrument, new MonteCarloDiscountFactorDataBundle(pD, impactAmount)) * nbPath2[loopblock];
+    });
+    double pv = 0;
+    for (final Double pvB : pvBlock) {
+      pv += pvB;
     }
     pv *= pDN / getNbPath(); // Multiply by the numeraire.
     return CurrencyAmount.of(ccy, pv);
@@ -147,41 +147,34 @@ public class G2ppMonteCarloMethod extends MonteCarloMethod {
     return null;
   }
 
-  /**
-   * Gets a 2D-array of independent normally distributed variables.
-   * @param nbJump The number of jumps.
-   * @param nbPath The number of paths.
-   * @return The array of variables.
-   */
-  private double[][] getNormalArray(int nbJump, int nbPath) {
-    double[][] result = new double[nbJump][nbPath];
-    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      result[loopjump] = getNumberGenerator().getVector(nbPath);
-    }
-    return result;
-  }
-
   /**
    * Construct the discount factors on the simulated paths from the random variables and the model constants.
    * @param initDiscountFactor The initial discount factors. jump/cf
    * @param y The correlated random variables. jump0+jump1/path.
    * @param h The H parameters. factor/jump/cf
-   * @param tau2 The square of total volatilities. jump/cf 
-   * @return The discount factor paths (path/jump/cf).
+   * @param tau2 The square of total volatilities. jump/cf
+   * @param stride The number of discount factors in one path.
+   * @return The discount factor paths, flattened path/jump/cf (see MonteCarloDiscountFactorDataBundle).
    */
-  private Double[][][] pathGeneratorDiscount(double[][] initDiscountFactor, double[][] y, double[][][] h, double[][] tau2) {
+  private static double[] pathGeneratorDiscount(double[][] initDiscountFactor, double[][] y, double[][][] h, double[][] tau2, int stride) {
     int nbJump = y.length / 2;
     int nbPath = y[0].length;
-    Double[][][] pD = new Double[nbPath][nbJump][];
+    double[] pD = new double[nbPath * stride];
+    int start = 0;
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       int nbCF = h[0][loopjump].length;
-      for (int looppath = 0; looppath < nbPath; looppath++) {
-        pD[looppath][loopjump] = new Double[nbCF];
-        for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-          pD[looppath][loopjump][loopcf] = initDiscountFactor[loopjump][loopcf]
-              * Math.exp(-h[0][loopjump][loopcf] * y[loopjump][looppath] - h[1][loopjump][loopcf] * y[nbJump + loopjump][looppath] - 0.5 * tau2[loopjump][loopcf]);
+      final double[] y0 = y[loopjump];
+      final double[] y1 = y[nbJump + loopjump];
+      for (int loopcf = 0; loopcf < nbCF; loopcf++) {
+        final double h0 = h[0][loopjump][loopcf];
+        final double h1 = h[1][loopjump][loopcf];
+        final double halfTau2 = 0.5 * tau2[loopjump][loopcf];
+        final double initCF = initDiscountFactor[loopjump][loopcf];
+        for (int looppath = 0, p = start + loopcf; looppath < nbPath; looppath++, p += stride) {
+          pD[p] = initCF * Math.exp(-h0 * y0[looppath] - h1 * y1[looppath] - halfTau2);
         }
       }
+      start += nbCF;
     }
     return pD;
   }
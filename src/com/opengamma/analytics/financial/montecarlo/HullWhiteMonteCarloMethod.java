@@ -6,6 +6,7 @@
 package com.opengamma.analytics.financial.montecarlo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +26,8 @@ import com.opengamma.analytics.math.random.RandomNumberGenerator;
 import com.opengamma.util.money.Currency;
 import com.opengamma.util.money.CurrencyAmount;
 import com.opengamma.util.tuple.DoublesPair;
+import com.opengamma.util.tuple.ObjectsPair;
+import com.opengamma.util.tuple.Pair;
 
 /**
  * Monte Carlo pricing method in the hull-White one factor model.
@@ -52,10 +55,6 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
    * The Hull-White one factor model.
    */
   private static final HullWhiteOneFactorPiecewiseConstantInterestRateModel MODEL = new HullWhiteOneFactorPiecewiseConstantInterestRateModel();
-  /**
-   * The number of paths in one block.
-   */
-  private static final int BLOCK_SIZE = 1000;
 
   /**
    * @param numberGenerator The random number generator.
@@ -65,10 +64,19 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
     super(numberGenerator, nbPath);
   }
 
+  /**
+   * Constructor for the parallel method, with one random number stream per block of paths.
+   * @param seed The seed.
+   * @param nbPath The number of paths.
+   */
+  public HullWhiteMonteCarloMethod(long seed, int nbPath) {
+    super(seed, nbPath);
+  }
+
   /**
    * Computes the present value in the Hull-White one factor model by Monte-Carlo.
    * Implementation note: The total number of paths is divided in blocks of maximum size BLOCK_SIZE=1000. The Monte Carlo is run on each block and the average of each
-   * block price is the total price. 
+   * block price is the total price. The blocks are run in parallel if the method was constructed with a seed.
    * @param instrument The swaption.
    * @param ccy The currency
    * @param dscName The discounting curve name.
@@ -81,11 +89,11 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
     DecisionSchedule decision = DC.visit(instrument, hwData);
     double[] decisionTime = decision.getDecisionTime();
     double[][] impactTime = decision.getImpactTime();
-    int nbJump = decisionTime.length;
+    final int nbJump = decisionTime.length;
     double numeraireTime = decisionTime[nbJump - 1];
     double pDN = dsc.getDiscountFactor(numeraireTime);
     // Discount factor to numeraire date for rebasing.
-    double[][] pDI = new double[nbJump][];
+    final double[][] pDI = new double[nbJump][];
     // Initial discount factors to each impact date.
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       pDI[loopjump] = new double[impactTime[loopjump].length];
@@ -93,7 +101,7 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
         pDI[loopjump][i] = dsc.getDiscountFactor(impactTime[loopjump][i]) / pDN;
       }
     }
-    double[] gamma = new double[nbJump];
+    final double[] gamma = new double[nbJump];
     double[][] cov = new double[nbJump][nbJump];
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       gamma[loopjump] = MODEL.beta(hwData.getHullWhiteParameter(), 0.0, decisionTime[loopjump]);
@@ -104,8 +112,8 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
         cov[loopjump][j] = gamma[loopjump];
       }
     }
-    double[][] h = MODEL.volatilityMaturityPart(hwData.getHullWhiteParameter(), numeraireTime, impactTime); // jump/cf
-    double[][] h2 = new double[nbJump][];
+    final double[][] h = MODEL.volatilityMaturityPart(hwData.getHullWhiteParameter(), numeraireTime, impactTime); // jump/cf
+    final double[][] h2 = new double[nbJump][];
     for (int i = 0; i < nbJump; i++) {
       h2[i] = new double[h[i].length];
       for (int j = 0; j < h[i].length; j++) {
@@ -126,32 +134,25 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
     CholeskyDecompositionCommons cd = new CholeskyDecompositionCommons();
     CholeskyDecompositionResult cdr2 = cd.evaluate(new DoubleMatrix2D(cov2));
     double[][] covCD2 = cdr2.getL().toArray();
-    double[][] covCD = new double[nbJump][nbJump];
+    final double[][] covCD = new double[nbJump][nbJump];
     for (int loopjump = 0; loopjump < nbJump - nbZero; loopjump++) {
       for (int loopjump2 = 0; loopjump2 < nbJump - nbZero; loopjump2++) {
         covCD[loopjump + nbZero][loopjump2 + nbZero] = covCD2[loopjump][loopjump2];
       }
     }
-    int nbBlock = (int) Math.round(Math.ceil(getNbPath() / ((double) BLOCK_SIZE)));
-    int[] nbPath2 = new int[nbBlock];
-    for (int i = 0; i < nbBlock - 1; i++) {
-      nbPath2[i] = BLOCK_SIZE;
-    }
-    nbPath2[nbBlock - 1] = getNbPath() - (nbBlock - 1) * BLOCK_SIZE;
-    double[][] impactAmount = decision.getImpactAmount();
-    double pv = 0;
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      double[][] x = getNormalArray(nbJump, nbPath2[loopblock]);
-      double[][] y = new double[nbJump][nbPath2[loopblock]]; // jump/path
-      for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
-        for (int i = 0; i < nbJump; i++) {
-          for (int j = 0; j < nbJump; j++) {
-            y[i][looppath] += x[j][looppath] * covCD[i][j];
-          }
-        }
+    final double[][] impactAmount = decision.getImpactAmount();
+    final List<Double> pvBlock = runBlocks(new Block<Double>() {
+      @Override
+      public Double evaluate(final RandomNumberGenerator numberGenerator, final int nbPath) {
+        double[][] x = getNormalArray(numberGenerator, nbJump, nbPath);
+        double[][] y = correlate(covCD, x, nbPath); // jump/path
+        double[] pD = pathGeneratorDiscount(pDI, y, h, h2, gamma, MonteCarloDiscountFactorDataBundle.pathStride(impactAmount));
+        return MCC.visit(instrument, new MonteCarloDiscountFactorDataBundle(pD, nbPath, impactAmount)) * nbPath;
       }
-      Double[][][] pD = pathGeneratorDiscount(pDI, y, h, h2, gamma);
-      pv += MCC.visit(instrument, new MonteCarloDiscountFactorDataBundle(pD, impactAmount)) * nbPath2[loopblock];
+    });
+    double pv = 0;
+    for (final Double pvB : pvBlock) {
+      pv += pvB;
     }
     pv *= pDN / getNbPath(); // Multiply by the numeraire.
     return CurrencyAmount.of(ccy, pv);
@@ -167,17 +168,44 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
    * @return The curve sensitivity.
    */
   public InterestRateCurveSensitivity presentValueCurveSensitivity(final InstrumentDerivative instrument, final String dscName, final HullWhiteOneFactorPiecewiseConstantDataBundle hwData) {
+    return presentValueCurveAndHullWhiteSensitivity(instrument, dscName, hwData).getFirst();
+  }
+
+  /**
+   * Computes the present value sensitivity to the Hull-White volatility parameters by Monte-Carlo, computed by Adjoint Algorithmic Differentiation.
+   * @param instrument The swaption.
+   * @param dscName The discounting curve name.
+   * @param hwData The Hull-White data (curves and Hull-White parameters).
+   * @return The sensitivity to the piecewise constant volatilities.
+   */
+  public double[] presentValueHullWhiteSensitivity(final InstrumentDerivative instrument, final String dscName, final HullWhiteOneFactorPiecewiseConstantDataBundle hwData) {
+    return presentValueCurveAndHullWhiteSensitivity(instrument, dscName, hwData).getSecond();
+  }
+
+  /**
+   * Computes the present value curve sensitivity and the sensitivity to the Hull-White volatility parameters by Monte-Carlo, in the same adjoint sweep.
+   * Implementation note: The total number of paths is divided in blocks of maximum size BLOCK_SIZE=1000. The forward and backward sweeps are run on each block 
+   * (in parallel if the method was constructed with a seed) with the adjoints accumulated per block. The block adjoints are added in block order at the end.
+   * The volatility sensitivity is pathwise: the correlated variables are y_j = sum_{i<=j} sqrt(gamma_i - gamma_{i-1}) x_i (Cholesky decomposition of the 
+   * covariance min(gamma_i, gamma_j)), so the adjoint of the Cholesky factor gives the adjoint of gamma, which gives the adjoint of the volatilities.
+   * @param instrument The swaption.
+   * @param dscName The discounting curve name.
+   * @param hwData The Hull-White data (curves and Hull-White parameters).
+   * @return The curve sensitivity and the sensitivity to the piecewise constant volatilities.
+   */
+  public Pair<InterestRateCurveSensitivity, double[]> presentValueCurveAndHullWhiteSensitivity(final InstrumentDerivative instrument, final String dscName,
+      final HullWhiteOneFactorPiecewiseConstantDataBundle hwData) {
     YieldAndDiscountCurve dsc = hwData.getCurve(dscName);
     // TODO: remove dsc curve name
     // Forward sweep
     DecisionScheduleDerivative decision = DDC.visit(instrument, hwData);
     double[] decisionTime = decision.getDecisionTime();
     double[][] impactTime = decision.getImpactTime();
-    int nbJump = decisionTime.length;
+    final int nbJump = decisionTime.length;
     double numeraireTime = decisionTime[nbJump - 1];
     double pDN = dsc.getDiscountFactor(numeraireTime);
     // Discount factor to numeraire date for rebasing.
-    double[][] pDI = new double[nbJump][];
+    final double[][] pDI = new double[nbJump][];
     // Initial discount factors to each impact date.
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       pDI[loopjump] = new double[impactTime[loopjump].length];
@@ -185,19 +213,24 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
         pDI[loopjump][i] = dsc.getDiscountFactor(impactTime[loopjump][i]) / pDN;
       }
     }
-    double[] gamma = new double[nbJump];
+    final int nbSigma = hwData.getHullWhiteParameter().getVolatility().length;
+    final double[] gamma = new double[nbJump];
+    double[][] gammaDerivative = new double[nbJump][nbSigma];
     double[][] cov = new double[nbJump][nbJump];
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      gamma[loopjump] = MODEL.beta(hwData.getHullWhiteParameter(), 0.0, decisionTime[loopjump]);
-      gamma[loopjump] = gamma[loopjump] * gamma[loopjump];
+      double beta = MODEL.beta(hwData.getHullWhiteParameter(), 0.0, decisionTime[loopjump], gammaDerivative[loopjump]);
+      gamma[loopjump] = beta * beta;
+      for (int loopsigma = 0; loopsigma < nbSigma; loopsigma++) {
+        gammaDerivative[loopjump][loopsigma] *= 2 * beta;
+      }
       cov[loopjump][loopjump] = gamma[loopjump];
       for (int j = loopjump + 1; j < nbJump; j++) {
         cov[j][loopjump] = gamma[loopjump];
         cov[loopjump][j] = gamma[loopjump];
       }
     }
-    double[][] h = MODEL.volatilityMaturityPart(hwData.getHullWhiteParameter(), numeraireTime, impactTime); // jump/cf
-    double[][] h2 = new double[nbJump][];
+    final double[][] h = MODEL.volatilityMaturityPart(hwData.getHullWhiteParameter(), numeraireTime, impactTime); // jump/cf
+    final double[][] h2 = new double[nbJump][];
     for (int i = 0; i < nbJump; i++) {
       h2[i] = new double[h[i].length];
       for (int j = 0; j < h[i].length; j++) {
@@ -207,6 +240,7 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
     // To remove the 0 (fixed coupons)
     int nbZero = 0;
     while (cov[nbZero][nbZero] < 1.0E-12) {
+      gammaDerivative[nbZero] = new double[nbSigma]; // derivative of beta is not defined at 0, the one of gamma is 0.
       nbZero++;
     }
     double[][] cov2 = new double[nbJump - nbZero][nbJump - nbZero];
@@ -218,74 +252,85 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
     CholeskyDecompositionCommons cd = new CholeskyDecompositionCommons();
     CholeskyDecompositionResult cdr2 = cd.evaluate(new DoubleMatrix2D(cov2));
     double[][] covCD2 = cdr2.getL().toArray();
-    double[][] covCD = new double[nbJump][nbJump];
+    final double[][] covCD = new double[nbJump][nbJump];
     for (int loopjump = 0; loopjump < nbJump - nbZero; loopjump++) {
       for (int loopjump2 = 0; loopjump2 < nbJump - nbZero; loopjump2++) {
         covCD[loopjump + nbZero][loopjump2 + nbZero] = covCD2[loopjump][loopjump2];
       }
     }
-    int nbBlock = (int) Math.round(Math.ceil(getNbPath() / ((double) BLOCK_SIZE)));
-    int[] nbPath2 = new int[nbBlock];
-    for (int i = 0; i < nbBlock - 1; i++) {
-      nbPath2[i] = BLOCK_SIZE;
-    }
-    nbPath2[nbBlock - 1] = getNbPath() - (nbBlock - 1) * BLOCK_SIZE;
-    double[][] impactAmount = decision.getImpactAmount();
-    double pv = 0;
-    double[] pvBlock = new double[nbBlock];
+    final double[][] impactAmount = decision.getImpactAmount();
+    final int stride = MonteCarloDiscountFactorDataBundle.pathStride(impactAmount);
     // Backward sweep (init)
     double pvBar = 1.0;
-    double[] pvBlockBar = new double[nbBlock];
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      pvBlockBar[loopblock] = pDN / getNbPath() * pvBar;
-    }
+    final double pvBlockBar = pDN / getNbPath() * pvBar; // the same for all blocks
+    // Forward sweep (end) and backward sweep (main), block by block
+    final List<BlockAdjoint> blocks = runBlocks(new Block<BlockAdjoint>() {
+      @Override
+      public BlockAdjoint evaluate(final RandomNumberGenerator numberGenerator, final int nbPath) {
+        double[][] x = getNormalArray(numberGenerator, nbJump, nbPath);
+        double[][] y = correlate(covCD, x, nbPath); // jump/path
+        double[] pD = pathGeneratorDiscount(pDI, y, h, h2, gamma, stride);
+        MonteCarloDiscountFactorDerivativeDataBundle mcdDB = new MonteCarloDiscountFactorDerivativeDataBundle(pD, nbPath, impactAmount);
+        BlockAdjoint result = new BlockAdjoint(nbJump);
+        result._pv = MCDC.visit(instrument, mcdDB) * nbPath;
+        // Backward sweep (in block)
+        final double factor = nbPath * pvBlockBar;
+        double[][] impactAmountDerivative = mcdDB.getImpactAmountDerivative();
+        for (int loopjump = 0; loopjump < nbJump; loopjump++) {
+          result._impactAmountBar[loopjump] = new double[impactAmount[loopjump].length];
+          for (int loopimp = 0; loopimp < impactAmount[loopjump].length; loopimp++) {
+            result._impactAmountBar[loopjump][loopimp] = impactAmountDerivative[loopjump][loopimp] * factor;
+          }
+        }
+        pathGeneratorDiscountAdjoint(pDI, x, h, h2, covCD, pD, mcdDB.getPathDiscountingFactorDerivative(), factor, stride, result);
+        return result;
+      }
+    });
+    double pv = 0;
     double[][] impactAmountBar = new double[nbJump][];
-    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      impactAmountBar[loopjump] = new double[impactAmount[loopjump].length];
-    }
-    // Forward sweep (end) and backward sweep (main)
     double[][] pDIBar = new double[nbJump][];
+    double[] gammaBar = new double[nbJump];
+    double[][] covCDBar = new double[nbJump][nbJump];
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
+      impactAmountBar[loopjump] = new double[impactAmount[loopjump].length];
       pDIBar[loopjump] = new double[impactAmount[loopjump].length];
     }
-    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
-      double[][] x = getNormalArray(nbJump, nbPath2[loopblock]);
-      double[][] y = new double[nbJump][nbPath2[loopblock]]; // jump/path
-      for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
-        for (int i = 0; i < nbJump; i++) {
-          for (int j = 0; j < nbJump; j++) {
-            y[i][looppath] += x[j][looppath] * covCD[i][j];
-          }
-        }
-      }
-      Double[][][] pD = pathGeneratorDiscount(pDI, y, h, h2, gamma);
-      MonteCarloDiscountFactorDerivativeDataBundle mcdDB = new MonteCarloDiscountFactorDerivativeDataBundle(pD, impactAmount);
-      pvBlock[loopblock] = MCDC.visit(instrument, mcdDB) * nbPath2[loopblock];
-      pv += pvBlock[loopblock];
-      // Backward sweep (in block loop)
+    for (final BlockAdjoint block : blocks) {
+      pv += block._pv;
       for (int loopjump = 0; loopjump < nbJump; loopjump++) {
         for (int loopimp = 0; loopimp < impactAmount[loopjump].length; loopimp++) {
-          impactAmountBar[loopjump][loopimp] += mcdDB.getImpactAmountDerivative()[loopjump][loopimp] * nbPath2[loopblock] * pvBlockBar[loopblock];
+          impactAmountBar[loopjump][loopimp] += block._impactAmountBar[loopjump][loopimp];
+          pDIBar[loopjump][loopimp] += block._pDIBar[loopjump][loopimp];
         }
-      }
-      Double[][][] pDBar = new Double[nbPath2[loopblock]][nbJump][];
-      for (int looppath = 0; looppath < nbPath2[loopblock]; looppath++) {
-        for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-          pDBar[looppath][loopjump] = new Double[impactAmount[loopjump].length];
-          for (int loopimp = 0; loopimp < impactAmount[loopjump].length; loopimp++) {
-            pDBar[looppath][loopjump][loopimp] = mcdDB.getPathDiscountingFactorDerivative()[looppath][loopjump][loopimp] * nbPath2[loopblock] * pvBlockBar[loopblock];
-          }
-        }
-      }
-      double[][] pDIBarTemp = pathGeneratorDiscountAdjointIDF(pDI, y, h, h2, gamma, pDBar);
-      for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-        for (int loopimp = 0; loopimp < impactAmount[loopjump].length; loopimp++) {
-          pDIBar[loopjump][loopimp] += pDIBarTemp[loopjump][loopimp];
+        gammaBar[loopjump] += block._gammaBar[loopjump];
+        for (int j = 0; j <= loopjump; j++) {
+          covCDBar[loopjump][j] += block._covCDBar[loopjump][j];
         }
       }
     }
     pv *= pDN / getNbPath(); // Multiply by the numeraire.
     // Backward sweep (end)
+    // Cholesky factor: covCD[j][i] = sqrt(gamma_i - gamma_{i-1}) for all j >= i (with gamma_{nbZero-1} = 0).
+    for (int i = nbZero; i < nbJump; i++) {
+      if (covCD[i][i] == 0.0) {
+        continue; // two identical decision times, no sensitivity through that increment.
+      }
+      double incrementBar = 0;
+      for (int j = i; j < nbJump; j++) {
+        incrementBar += covCDBar[j][i];
+      }
+      incrementBar /= 2 * covCD[i][i];
+      gammaBar[i] += incrementBar;
+      if (i > nbZero) {
+        gammaBar[i - 1] -= incrementBar;
+      }
+    }
+    double[] sigmaBar = new double[nbSigma];
+    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
+      for (int loopsigma = 0; loopsigma < nbSigma; loopsigma++) {
+        sigmaBar[loopsigma] += gammaDerivative[loopjump][loopsigma] * gammaBar[loopjump];
+      }
+    }
     double pDNBar = pv / pDN * pvBar;
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       for (int loopimp = 0; loopimp < impactTime[loopjump].length; loopimp++) {
@@ -313,21 +358,40 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
       }
     }
     result = result.cleaned();
-    return result;
+    return new ObjectsPair<InterestRateCurveSensitivity, double[]>(result, sigmaBar);
   }
 
   /**
-   * Gets a 2D-array of independent normally distributed variables.
-   * @param nbJump The number of jumps.
-   * @param nbPath The number of paths.
-   * @return The array of variables.
+   * The adjoints accumulated on one block of paths.
    */
-  private double[][] getNormalArray(int nbJump, int nbPath) {
-    double[][] result = new double[nbJump][nbPath];
-    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-      result[loopjump] = getNumberGenerator().getVector(nbPath);
+  private static final class BlockAdjoint {
+    /**
+     * The block price (sum over the paths).
+     */
+    private double _pv;
+    /**
+     * The impact amounts adjoints (jump/cf).
+     */
+    private final double[][] _impactAmountBar;
+    /**
+     * The initial discount factors adjoints (jump/cf).
+     */
+    private final double[][] _pDIBar;
+    /**
+     * The gamma adjoints through the discount factor drift (jump).
+     */
+    private final double[] _gammaBar;
+    /**
+     * The Cholesky factor adjoints (lower triangular, jump/jump).
+     */
+    private final double[][] _covCDBar;
+
+    BlockAdjoint(final int nbJump) {
+      _impactAmountBar = new double[nbJump][];
+      _pDIBar = new double[nbJump][];
+      _gammaBar = new double[nbJump];
+      _covCDBar = new double[nbJump][nbJump];
     }
-    return result;
   }
 
   /**
@@ -337,129 +401,81 @@ public class HullWhiteMonteCarloMethod extends MonteCarloMethod {
    * @param h The H parameters. jump/cf
    * @param h2 The H^2 parameters.
    * @param gamma The gamma parameters.
-   * @return The discount factor paths (path/jump/cf).
+   * @param stride The number of discount factors in one path.
+   * @return The discount factor paths, flattened path/jump/cf (see MonteCarloDiscountFactorDataBundle).
    */
-  private Double[][][] pathGeneratorDiscount(double[][] initDiscountFactor, double[][] y, double[][] h, double[][] h2, double[] gamma) {
+  private static double[] pathGeneratorDiscount(double[][] initDiscountFactor, double[][] y, double[][] h, double[][] h2, double[] gamma, int stride) {
     int nbJump = y.length;
     int nbPath = y[0].length;
-    Double[][][] pD = new Double[nbPath][nbJump][];
-    double[] h2gamma;
+    double[] pD = new double[nbPath * stride];
+    int start = 0;
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       int nbCF = h[loopjump].length;
-      h2gamma = new double[nbCF];
+      final double[] yJump = y[loopjump];
       for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-        h2gamma[loopcf] = h2[loopjump][loopcf] * gamma[loopjump];
-      }
-      for (int looppath = 0; looppath < nbPath; looppath++) {
-        pD[looppath][loopjump] = new Double[nbCF];
-        for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-          pD[looppath][loopjump][loopcf] = initDiscountFactor[loopjump][loopcf] * Math.exp(-h[loopjump][loopcf] * y[loopjump][looppath] - h2gamma[loopcf]);
+        final double hCF = h[loopjump][loopcf];
+        final double h2gamma = h2[loopjump][loopcf] * gamma[loopjump];
+        final double initCF = initDiscountFactor[loopjump][loopcf];
+        for (int looppath = 0, p = start + loopcf; looppath < nbPath; looppath++, p += stride) {
+          pD[p] = initCF * Math.exp(-hCF * yJump[looppath] - h2gamma);
         }
       }
+      start += nbCF;
     }
     return pD;
   }
 
   /**
-   * Computes the initial discount factors adjoint values with respect to the initDiscountFactor.
-   * @param initDiscountFactor The initial discount factors.
-   * @param y The correlated random variables.
-   * @param h The H parameters.
+   * Computes the adjoints of the path generation: initial discount factors, gamma (drift part) and Cholesky factor, for one block.
+   * With pD = pDI exp(-h y - h2 gamma): the derivatives are pD / pDI, -h2 pD and -h pD respectively and y = covCD x.
+   * @param initDiscountFactor The initial discount factors. jump/cf
+   * @param x The independent random variables. jump/path
+   * @param h The H parameters. jump/cf
    * @param h2 The H^2 parameters.
-   * @param gamma The gamma parameters.
-   * @param pDBar The simulated discount factor adjoints (path/jump/cf).
-   * @return The initial discount factor adjoints (jump/cf).
+   * @param covCD The Cholesky factor (lower triangular).
+   * @param pD The simulated discount factors, flattened path/jump/cf.
+   * @param pDDerivative The derivatives of the block price with respect to the simulated discount factors, same layout as pD.
+   * @param factor The adjoint of the block price.
+   * @param stride The number of discount factors in one path.
+   * @param result The block adjoints, updated by the method.
    */
-  private double[][] pathGeneratorDiscountAdjointIDF(double[][] initDiscountFactor, double[][] y, double[][] h, double[][] h2, double[] gamma, Double[][][] pDBar) {
-    int nbJump = y.length;
-    int nbPath = y[0].length;
-    double[] h2gamma;
-    double[][] initDiscountFactorBar = new double[nbJump][];
+  private static void pathGeneratorDiscountAdjoint(double[][] initDiscountFactor, double[][] x, double[][] h, double[][] h2, double[][] covCD, double[] pD,
+      double[] pDDerivative, double factor, int stride, BlockAdjoint result) {
+    int nbJump = x.length;
+    int nbPath = x[0].length;
+    double[] yBar = new double[nbPath];
+    int start = 0;
     for (int loopjump = 0; loopjump < nbJump; loopjump++) {
       int nbCF = h[loopjump].length;
-      h2gamma = new double[nbCF];
+      result._pDIBar[loopjump] = new double[nbCF];
+      Arrays.fill(yBar, 0.0);
       for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-        h2gamma[loopcf] = h2[loopjump][loopcf] * gamma[loopjump];
+        final double hCF = h[loopjump][loopcf];
+        double pDpDBar = 0; // sum over the paths of pD * pDBar
+        for (int looppath = 0, p = start + loopcf; looppath < nbPath; looppath++, p += stride) {
+          final double d = pD[p] * pDDerivative[p] * factor;
+          pDpDBar += d;
+          yBar[looppath] -= hCF * d;
+        }
+        result._pDIBar[loopjump][loopcf] = pDpDBar / initDiscountFactor[loopjump][loopcf];
+        result._gammaBar[loopjump] -= h2[loopjump][loopcf] * pDpDBar;
       }
-      // Backward sweep
-      initDiscountFactorBar[loopjump] = new double[nbCF];
-      for (int looppath = 0; looppath < nbPath; looppath++) {
-        for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-          initDiscountFactorBar[loopjump][loopcf] += Math.exp(-h[loopjump][loopcf] * y[loopjump][looppath] - h2gamma[loopcf]) * pDBar[looppath][loopjump][loopcf];
+      start += nbCF;
+      // y_j = sum_{i<=j} covCD[j][i] x_i
+      for (int i = 0; i <= loopjump; i++) {
+        if (covCD[loopjump][i] == 0.0) {
+          continue;
         }
+        final double[] xi = x[i];
+        double bar = 0;
+        for (int looppath = 0; looppath < nbPath; looppath++) {
+          bar += yBar[looppath] * xi[looppath];
+        }
+        result._covCDBar[loopjump][i] = bar;
       }
     }
-    return initDiscountFactorBar;
   }
 
-  //  /**
-  //   * Computes the initial discount factors adjoint values with respect to y.
-  //   * @param initDiscountFactor The initial discount factors.
-  //   * @param y The correlated random variables.
-  //   * @param h The H parameters.
-  //   * @param h2 The H^2 parameters.
-  //   * @param gamma The gamma parameters.
-  //   * @param pDBar The simulated discount factor adjoints (path/jump/cf).
-  //   * @return The y adjoints (jump/path).
-  //   */
-  //  private double[][] pathGeneratorDiscountAdjointY(double[][] initDiscountFactor, double[][] y, double[][] h, double[][] h2, double[] gamma, Double[][][] pDBar) {
-  //    int nbJump = y.length;
-  //    int nbPath = y[0].length;
-  //    double[] h2gamma;
-  //    double[][] yBar = new double[nbJump][nbPath];
-  //    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-  //      int nbCF = h[loopjump].length;
-  //      h2gamma = new double[nbCF];
-  //      for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-  //        h2gamma[loopcf] = h2[loopjump][loopcf] * gamma[loopjump];
-  //      }
-  //      // Backward sweep
-  //      for (int looppath = 0; looppath < nbPath; looppath++) {
-  //        for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-  //          y[loopjump][looppath] += initDiscountFactor[loopjump][loopcf] * Math.exp(-h[loopjump][loopcf] * y[loopjump][looppath] - h2gamma[loopcf]) * -h[loopjump][loopcf]
-  //              * pDBar[looppath][loopjump][loopcf];
-  //        }
-  //      }
-  //    }
-  //    return yBar;
-  //  }
-  //
-  //  /**
-  //   * Computes the initial discount factors adjoint values with respect to gamma.
-  //   * @param initDiscountFactor The initial discount factors.
-  //   * @param y The correlated random variables.
-  //   * @param h The H parameters.
-  //   * @param h2 The H^2 parameters.
-  //   * @param gamma The gamma parameters.
-  //   * @param pDBar The simulated discount factor adjoints (path/jump/cf).
-  //   * @return The y adjoints (jump/path).
-  //   */
-  //  private double[] pathGeneratorDiscountAdjointGamma(double[][] initDiscountFactor, double[][] y, double[][] h, double[][] h2, double[] gamma, Double[][][] pDBar) {
-  //    int nbJump = y.length;
-  //    int nbPath = y[0].length;
-  //    double[] h2gamma;
-  //    double[] h2gammaBar;
-  //    double[] gammaBar = new double[nbJump];
-  //    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
-  //      int nbCF = h[loopjump].length;
-  //      h2gamma = new double[nbCF];
-  //      for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-  //        h2gamma[loopcf] = h2[loopjump][loopcf] * gamma[loopjump];
-  //      }
-  //      // Backward sweep
-  //      h2gammaBar = new double[nbCF];
-  //      for (int looppath = 0; looppath < nbPath; looppath++) {
-  //        for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-  //          h2gammaBar[loopcf] += -initDiscountFactor[loopjump][loopcf] * Math.exp(-h[loopjump][loopcf] * y[loopjump][looppath] - h2gamma[loopcf]) * pDBar[looppath][loopjump][loopcf];
-  //        }
-  //      }
-  //      for (int loopcf = 0; loopcf < nbCF; loopcf++) {
-  //        gammaBar[loopjump] += h2[loopjump][loopcf] * h2gammaBar[loopcf];
-  //      }
-  //    }
-  //    return gammaBar;
-  //  }
-
   @Override
   public CurrencyAmount presentValue(InstrumentDerivative instrument, YieldCurveBundle curves) {
     Validate.isTrue(curves instanceof HullWhiteOneFactorPiecewiseConstantDataBundle, "Bundle should contain Hull-White data");
@@ -37,10 +37,6 @@ public class LiborMarketModelMonteCarloMethod extends MonteCarloMethod {
    * The calculator from discount factors (calculate the price from simulated discount factors and the reference amounts).
    */
   private static final MonteCarloIborRateCalculator MCC = MonteCarloIborRateCalculator.getInstance();
-  /**
-   * The number of paths in one block.
-   */
-  private static final int BLOCK_SIZE = 1000;
   /**
    * The default maximum length of a jump in the path generation.
    */
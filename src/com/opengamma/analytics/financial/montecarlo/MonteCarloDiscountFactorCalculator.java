@@ -48,16 +48,17 @@ public class MonteCarloDiscountFactorCalculator extends AbstractInstrumentDeriva
 
   @Override
   public Double visitCapFloorIbor(final CapFloorIbor payment, final MonteCarloDiscountFactorDataBundle mcResults) {
-    Double[][][] pathDiscountFactors = mcResults.getPathDiscountingFactor();
+    double[] pathDiscountFactors = mcResults.getPathDiscountingFactor();
     double[][] impactAmount = mcResults.getImpactAmount();
-    Validate.isTrue(pathDiscountFactors[0].length == 1, "Only one decision date for cap/floor.");
+    Validate.isTrue(impactAmount.length == 1, "Only one decision date for cap/floor.");
     double price = 0;
-    int nbPath = pathDiscountFactors.length;
+    int nbPath = mcResults.getNbPath();
+    int stride = mcResults.getPathStride();
     double ibor;
     double omega = (payment.isCap() ? 1.0 : -1.0);
-    for (int looppath = 0; looppath < nbPath; looppath++) {
-      ibor = (-impactAmount[0][0] * pathDiscountFactors[looppath][0][0] / (impactAmount[0][1] * pathDiscountFactors[looppath][0][1]) - 1.0) / payment.getFixingYearFraction();
-      price += Math.max(omega * (ibor - payment.getStrike()), 0) * pathDiscountFactors[looppath][0][2];
+    for (int looppath = 0, p = 0; looppath < nbPath; looppath++, p += stride) {
+      ibor = (-impactAmount[0][0] * pathDiscountFactors[p] / (impactAmount[0][1] * pathDiscountFactors[p + 1]) - 1.0) / payment.getFixingYearFraction();
+      price += Math.max(omega * (ibor - payment.getStrike()), 0) * pathDiscountFactors[p + 2];
     }
     price = price / nbPath * payment.getNotional() * payment.getPaymentYearFraction();
     return price;
@@ -65,16 +66,17 @@ public class MonteCarloDiscountFactorCalculator extends AbstractInstrumentDeriva
 
   @Override
   public Double visitSwaptionPhysicalFixedIbor(final SwaptionPhysicalFixedIbor swaption, final MonteCarloDiscountFactorDataBundle mcResults) {
-    Double[][][] pathDiscountFactors = mcResults.getPathDiscountingFactor();
+    double[] pathDiscountFactors = mcResults.getPathDiscountingFactor();
     double[][] impactAmount = mcResults.getImpactAmount();
-    Validate.isTrue(pathDiscountFactors[0].length == 1, "Only one decision date for swaptions.");
+    Validate.isTrue(impactAmount.length == 1, "Only one decision date for swaptions.");
     double price = 0;
-    int nbPath = pathDiscountFactors.length;
+    int nbPath = mcResults.getNbPath();
+    int stride = mcResults.getPathStride();
     double swapPathValue;
-    for (int looppath = 0; looppath < nbPath; looppath++) {
+    for (int looppath = 0, p = 0; looppath < nbPath; looppath++, p += stride) {
       swapPathValue = 0;
       for (int loopcf = 0; loopcf < impactAmount[0].length; loopcf++) {
-        swapPathValue += impactAmount[0][loopcf] * pathDiscountFactors[looppath][0][loopcf];
+        swapPathValue += impactAmount[0][loopcf] * pathDiscountFactors[p + loopcf];
       }
       price += Math.max(swapPathValue, 0);
     }
@@ -84,10 +86,12 @@ public class MonteCarloDiscountFactorCalculator extends AbstractInstrumentDeriva
 
   @Override
   public Double visitAnnuityCouponIborRatchet(final AnnuityCouponIborRatchet annuity, final MonteCarloDiscountFactorDataBundle mcResults) {
-    Double[][][] pathDiscountFactors = mcResults.getPathDiscountingFactor();
+    double[] pathDiscountFactors = mcResults.getPathDiscountingFactor();
     double[][] impactAmount = mcResults.getImpactAmount();
     double price = 0.0;
-    int nbPath = pathDiscountFactors.length;
+    int nbPath = mcResults.getNbPath();
+    int stride = mcResults.getPathStride();
+    int[] start = mcResults.getStepStart();
     int nbCpn = annuity.getNumberOfPayments();
     double[] annuityPathValue = new double[nbPath];
     double[][] cpnRate = new double[nbCpn][nbPath];
@@ -95,27 +99,27 @@ public class MonteCarloDiscountFactorCalculator extends AbstractInstrumentDeriva
     for (int loopcpn = 0; loopcpn < nbCpn; loopcpn++) { //nbCpn
       if (annuity.isFixed()[loopcpn]) { // Coupon already fixed: only one cash flow
         CouponFixed cpn = (CouponFixed) annuity.getNthPayment(loopcpn);
-        for (int looppath = 0; looppath < nbPath; looppath++) {
+        for (int looppath = 0, p = start[loopcpn]; looppath < nbPath; looppath++, p += stride) {
           cpnRate[loopcpn][looppath] = cpn.getFixedRate();
-          annuityPathValue[looppath] += impactAmount[loopcpn][0] * pathDiscountFactors[looppath][loopcpn][0];
+          annuityPathValue[looppath] += impactAmount[loopcpn][0] * pathDiscountFactors[p];
         }
       } else {
         if (annuity.getNthPayment(loopcpn) instanceof CouponIborRatchet) {
           CouponIborRatchet cpn = (CouponIborRatchet) annuity.getNthPayment(loopcpn);
-          for (int looppath = 0; looppath < nbPath; looppath++) {
-            ibor = (-impactAmount[loopcpn][0] * pathDiscountFactors[looppath][loopcpn][0] / (impactAmount[loopcpn][1] * pathDiscountFactors[looppath][loopcpn][1]) - 1.0) / cpn.getFixingYearFraction();
+          for (int looppath = 0, p = start[loopcpn]; looppath < nbPath; looppath++, p += stride) {
+            ibor = (-impactAmount[loopcpn][0] * pathDiscountFactors[p] / (impactAmount[loopcpn][1] * pathDiscountFactors[p + 1]) - 1.0) / cpn.getFixingYearFraction();
             double cpnMain = cpn.getMainCoefficients()[0] * cpnRate[loopcpn - 1][looppath] + cpn.getMainCoefficients()[1] * ibor + cpn.getMainCoefficients()[2];
             double cpnFloor = cpn.getFloorCoefficients()[0] * cpnRate[loopcpn - 1][looppath] + cpn.getFloorCoefficients()[1] * ibor + cpn.getFloorCoefficients()[2];
             double cpnCap = cpn.getCapCoefficients()[0] * cpnRate[loopcpn - 1][looppath] + cpn.getCapCoefficients()[1] * ibor + cpn.getCapCoefficients()[2];
             cpnRate[loopcpn][looppath] = Math.min(Math.max(cpnFloor, cpnMain), cpnCap);
-            annuityPathValue[looppath] += cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath][loopcpn][1];
+            annuityPathValue[looppath] += cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[p + 1];
           }
         } else {
           CouponIborGearing cpn = (CouponIborGearing) annuity.getNthPayment(loopcpn);
-          for (int looppath = 0; looppath < nbPath; looppath++) {
-            ibor = (-impactAmount[0][0] * pathDiscountFactors[looppath][0][0] / (impactAmount[0][1] * pathDiscountFactors[looppath][0][1]) - 1.0) / cpn.getFixingAccrualFactor();
+          for (int looppath = 0, p = 0; looppath < nbPath; looppath++, p += stride) {
+            ibor = (-impactAmount[0][0] * pathDiscountFactors[p] / (impactAmount[0][1] * pathDiscountFactors[p + 1]) - 1.0) / cpn.getFixingAccrualFactor();
             cpnRate[loopcpn][looppath] = cpn.getFactor() * ibor + cpn.getSpread();
-            annuityPathValue[looppath] += cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath][loopcpn][1];
+            annuityPathValue[looppath] += cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[p + start[loopcpn] + 1];
           }
         }
       }
@@ -7,13 +7,28 @@ package com.opengamma.analytics.financial.montecarlo;
 
 /**
  * The data bundle with the Monte Carlo discount factors and the reference amounts.
+ * <p>
+ * The discount factors are stored flat, path by path: the discount factor of path p, step j and cash-flow c is at p * getPathStride() + getStepStart()[j] + c.
+ * The number of cash-flows at each step is given by the reference amounts.
  */
 public class MonteCarloDiscountFactorDataBundle {
 
   /**
-   * The paths discount factors. The dimensions are path/step/cash-flow.
+   * The paths discount factors. The dimensions are path/step/cash-flow, flattened.
    */
-  private final Double[][][] _pathDiscountingFactor;
+  private final double[] _pathDiscountingFactor;
+  /**
+   * The number of paths.
+   */
+  private final int _nbPath;
+  /**
+   * The offset of the first cash-flow of each step in a path.
+   */
+  private final int[] _stepStart;
+  /**
+   * The number of discount factors in one path.
+   */
+  private final int _pathStride;
   /**
    * The reference amounts at the impact dates. The dimensions are step/cash-flow.
    */
@@ -21,23 +36,80 @@ public class MonteCarloDiscountFactorDataBundle {
 
   /**
    * Constructor.
-   * @param pathDiscountingFactor The paths discount factors.
+   * @param pathDiscountingFactor The paths discount factors, flattened (see the class description).
+   * @param nbPath The number of paths.
    * @param impactAmount The reference amounts at the impact dates.
    */
-  public MonteCarloDiscountFactorDataBundle(Double[][][] pathDiscountingFactor, double[][] impactAmount) {
+  public MonteCarloDiscountFactorDataBundle(double[] pathDiscountingFactor, int nbPath, double[][] impactAmount) {
     super();
+    _stepStart = stepStart(impactAmount);
+    _pathStride = pathStride(impactAmount);
+    if (pathDiscountingFactor.length != nbPath * _pathStride) {
+      throw new IllegalArgumentException("Discount factors have length " + pathDiscountingFactor.length + ", expected " + nbPath * _pathStride);
+    }
     _pathDiscountingFactor = pathDiscountingFactor;
+    _nbPath = nbPath;
     _impactAmount = impactAmount;
   }
 
   /**
-   * Gets the path discounting factors.
+   * The offset of the first cash-flow of each step in a path.
+   * @param impactAmount The reference amounts (step/cash-flow).
+   * @return The offsets.
+   */
+  public static int[] stepStart(double[][] impactAmount) {
+    final int[] start = new int[impactAmount.length];
+    for (int loopstep = 1; loopstep < impactAmount.length; loopstep++) {
+      start[loopstep] = start[loopstep - 1] + impactAmount[loopstep - 1].length;
+    }
+    return start;
+  }
+
+  /**
+   * The number of discount factors in one path.
+   * @param impactAmount The reference amounts (step/cash-flow).
+   * @return The number of discount factors.
+   */
+  public static int pathStride(double[][] impactAmount) {
+    int stride = 0;
+    for (final double[] amount : impactAmount) {
+      stride += amount.length;
+    }
+    return stride;
+  }
+
+  /**
+   * Gets the path discounting factors (flattened).
    * @return The path discounting factors.
    */
-  public Double[][][] getPathDiscountingFactor() {
+  public double[] getPathDiscountingFactor() {
     return _pathDiscountingFactor;
   }
 
+  /**
+   * Gets the number of paths.
+   * @return The number of paths.
+   */
+  public int getNbPath() {
+    return _nbPath;
+  }
+
+  /**
+   * Gets the offset of the first cash-flow of each step in a path.
+   * @return The offsets.
+   */
+  public int[] getStepStart() {
+    return _stepStart;
+  }
+
+  /**
+   * Gets the number of discount factors in one path.
+   * @return The stride.
+   */
+  public int getPathStride() {
+    return _pathStride;
+  }
+
   /**
    * Gets the impact amounts.
    * @return The impact amounts.
@@ -49,15 +49,16 @@ public class MonteCarloDiscountFactorDerivativeCalculator extends AbstractInstru
   @Override
   public Double visitSwaptionPhysicalFixedIbor(final SwaptionPhysicalFixedIbor swaption, final MonteCarloDiscountFactorDerivativeDataBundle mcResults) {
     // Forward sweep
-    Double[][][] pathDiscountFactors = mcResults.getPathDiscountingFactor();
+    double[] pathDiscountFactors = mcResults.getPathDiscountingFactor();
     double[][] impactAmount = mcResults.getImpactAmount();
-    Validate.isTrue(pathDiscountFactors[0].length == 1, "Only one decision date for swaptions.");
+    Validate.isTrue(impactAmount.length == 1, "Only one decision date for swaptions.");
     double price = 0;
-    int nbPath = pathDiscountFactors.length;
+    int nbPath = mcResults.getNbPath();
+    int stride = mcResults.getPathStride();
     double[] swapPathValue = new double[nbPath];
     for (int looppath = 0; looppath < nbPath; looppath++) {
       for (int loopcf = 0; loopcf < impactAmount[0].length; loopcf++) {
-        swapPathValue[looppath] += impactAmount[0][loopcf] * pathDiscountFactors[looppath][0][loopcf];
+        swapPathValue[looppath] += impactAmount[0][loopcf] * pathDiscountFactors[looppath * stride + loopcf];
       }
       price += Math.max(swapPathValue[looppath], 0);
     }
@@ -71,14 +72,13 @@ public class MonteCarloDiscountFactorDerivativeCalculator extends AbstractInstru
     double[][] impactAmountBar = new double[1][impactAmount[0].length];
     for (int looppath = 0; looppath < nbPath; looppath++) {
       for (int loopcf = 0; loopcf < impactAmount[0].length; loopcf++) {
-        impactAmountBar[0][loopcf] += pathDiscountFactors[looppath][0][loopcf] * swapPathValueBar[looppath];
+        impactAmountBar[0][loopcf] += pathDiscountFactors[looppath * stride + loopcf] * swapPathValueBar[looppath];
       }
     }
-    Double[][][] pathDiscountFactorsBar = new Double[nbPath][1][];
+    double[] pathDiscountFactorsBar = new double[nbPath * stride];
     for (int looppath = 0; looppath < nbPath; looppath++) {
-      pathDiscountFactorsBar[looppath][0] = new Double[impactAmount[0].length];
       for (int loopcf = 0; loopcf < impactAmount[0].length; loopcf++) {
-        pathDiscountFactorsBar[looppath][0][loopcf] = impactAmount[0][loopcf] * swapPathValueBar[looppath];
+        pathDiscountFactorsBar[looppath * stride + loopcf] = impactAmount[0][loopcf] * swapPathValueBar[looppath];
       }
     }
     mcResults.setImpactAmountDerivative(impactAmountBar);
@@ -88,10 +88,12 @@ public class MonteCarloDiscountFactorDerivativeCalculator extends AbstractInstru
 
   @Override
   public Double visitAnnuityCouponIborRatchet(final AnnuityCouponIborRatchet annuity, final MonteCarloDiscountFactorDerivativeDataBundle mcResults) {
-    Double[][][] pathDiscountFactors = mcResults.getPathDiscountingFactor();
+    double[] pathDiscountFactors = mcResults.getPathDiscountingFactor();
     double[][] impactAmount = mcResults.getImpactAmount();
     double price = 0.0;
-    int nbPath = pathDiscountFactors.length;
+    int nbPath = mcResults.getNbPath();
+    int stride = mcResults.getPathStride();
+    int[] start = mcResults.getStepStart();
     int nbCpn = annuity.getNumberOfPayments();
     double[] annuityPathValue = new double[nbPath];
     double[][] cpnRate = new double[nbCpn][nbPath];
@@ -104,26 +106,26 @@ public class MonteCarloDiscountFactorDerivativeCalculator extends AbstractInstru
         CouponFixed cpn = (CouponFixed) annuity.getNthPayment(loopcpn);
         for (int looppath = 0; looppath < nbPath; looppath++) {
           cpnRate[loopcpn][looppath] = cpn.getFixedRate();
-          annuityPathValue[looppath] += impactAmount[loopcpn][0] * pathDiscountFactors[looppath][loopcpn][0];
+          annuityPathValue[looppath] += impactAmount[loopcpn][0] * pathDiscountFactors[looppath * stride + start[loopcpn]];
         }
       } else {
         if (annuity.getNthPayment(loopcpn) instanceof CouponIborRatchet) {
           CouponIborRatchet cpn = (CouponIborRatchet) annuity.getNthPayment(loopcpn);
           for (int looppath = 0; looppath < nbPath; looppath++) {
-            ibor[loopcpn][looppath] = (-impactAmount[loopcpn][0] * pathDiscountFactors[looppath][loopcpn][0] / (impactAmount[loopcpn][1] * pathDiscountFactors[looppath][loopcpn][1]) - 1.0)
+            ibor[loopcpn][looppath] = (-impactAmount[loopcpn][0] * pathDiscountFactors[looppath * stride + start[loopcpn]] / (impactAmount[loopcpn][1] * pathDiscountFactors[looppath * stride + start[loopcpn] + 1]) - 1.0)
                 / cpn.getFixingYearFraction();
             cpnMain[loopcpn][looppath] = cpn.getMainCoefficients()[0] * cpnRate[loopcpn - 1][looppath] + cpn.getMainCoefficients()[1] * ibor[loopcpn][looppath] + cpn.getMainCoefficients()[2];
             cpnFloor[loopcpn][looppath] = cpn.getFloorCoefficients()[0] * cpnRate[loopcpn - 1][looppath] + cpn.getFloorCoefficients()[1] * ibor[loopcpn][looppath] + cpn.getFloorCoefficients()[2];
             cpnCap[loopcpn][looppath] = cpn.getCapCoefficients()[0] * cpnRate[loopcpn - 1][looppath] + cpn.getCapCoefficients()[1] * ibor[loopcpn][looppath] + cpn.getCapCoefficients()[2];
             cpnRate[loopcpn][looppath] = Math.min(Math.max(cpnFloor[loopcpn][looppath], cpnMain[loopcpn][looppath]), cpnCap[loopcpn][looppath]);
-            annuityPathValue[looppath] += cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath][loopcpn][1];
+            annuityPathValue[looppath] += cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath * stride + start[loopcpn] + 1];
           }
         } else {
           CouponIborGearing cpn = (CouponIborGearing) annuity.getNthPayment(loopcpn);
           for (int looppath = 0; looppath < nbPath; looppath++) {
-            ibor[loopcpn][looppath] = (-impactAmount[0][0] * pathDiscountFactors[looppath][0][0] / (impactAmount[0][1] * pathDiscountFactors[looppath][0][1]) - 1.0) / cpn.getFixingAccrualFactor();
+            ibor[loopcpn][looppath] = (-impactAmount[0][0] * pathDiscountFactors[looppath * stride] / (impactAmount[0][1] * pathDiscountFactors[looppath * stride + 1]) - 1.0) / cpn.getFixingAccrualFactor();
             cpnRate[loopcpn][looppath] = cpn.getFactor() * ibor[loopcpn][looppath] + cpn.getSpread();
-            annuityPathValue[looppath] += cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath][loopcpn][1];
+            annuityPathValue[looppath] += cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath * stride + start[loopcpn] + 1];
           }
         }
       }
@@ -144,22 +146,19 @@ public class MonteCarloDiscountFactorDerivativeCalculator extends AbstractInstru
     double[][] cpnMainBar = new double[nbCpn][nbPath];
     double[][] cpnFloorBar = new double[nbCpn][nbPath];
     double[][] cpnCapBar = new double[nbCpn][nbPath];
-    Double[][][] pathDiscountFactorsBar = new Double[nbPath][nbCpn][];
+    double[] pathDiscountFactorsBar = new double[nbPath * stride];
     for (int loopcpn = nbCpn - 1; loopcpn >= 0; loopcpn--) {
       impactAmountBar[loopcpn] = new double[impactAmount[loopcpn].length];
-      for (int looppath = 0; looppath < nbPath; looppath++) {
-        pathDiscountFactorsBar[looppath][loopcpn] = new Double[impactAmount[loopcpn].length];
-      }
       if (annuity.isFixed()[loopcpn]) { // Coupon already fixed: only one cash flow
         for (int looppath = 0; looppath < nbPath; looppath++) {
-          impactAmountBar[loopcpn][0] += pathDiscountFactors[looppath][loopcpn][0] * annuityPathValueBar[looppath];
-          pathDiscountFactorsBar[looppath][loopcpn][0] = impactAmount[loopcpn][0] * annuityPathValueBar[looppath];
+          impactAmountBar[loopcpn][0] += pathDiscountFactors[looppath * stride + start[loopcpn]] * annuityPathValueBar[looppath];
+          pathDiscountFactorsBar[looppath * stride + start[loopcpn]] = impactAmount[loopcpn][0] * annuityPathValueBar[looppath];
         }
       } else {
         if (annuity.getNthPayment(loopcpn) instanceof CouponIborRatchet) {
           CouponIborRatchet cpn = (CouponIborRatchet) annuity.getNthPayment(loopcpn);
           for (int looppath = 0; looppath < nbPath; looppath++) {
-            cpnRateBar[loopcpn][looppath] += cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath][loopcpn][1] * annuityPathValueBar[looppath];
+            cpnRateBar[loopcpn][looppath] += cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath * stride + start[loopcpn] + 1] * annuityPathValueBar[looppath];
             cpnCapBar[loopcpn][looppath] = (cpnCap[loopcpn][looppath] < Math.max(cpnFloor[loopcpn][looppath], cpnMain[loopcpn][looppath]) ? 1.0 : 0.0) * cpnRateBar[loopcpn][looppath];
             cpnFloorBar[loopcpn][looppath] = (cpnCap[loopcpn][looppath] >= Math.max(cpnFloor[loopcpn][looppath], cpnMain[loopcpn][looppath]) ? 1.0 : 0.0)
                 * (cpnFloor[loopcpn][looppath] > cpnMain[loopcpn][looppath] ? 1.0 : 0.0) * cpnRateBar[loopcpn][looppath];
@@ -169,28 +168,28 @@ public class MonteCarloDiscountFactorDerivativeCalculator extends AbstractInstru
                 + cpn.getMainCoefficients()[0] * cpnMainBar[loopcpn][looppath];
             iborBar[loopcpn][looppath] = cpn.getMainCoefficients()[1] * cpnMainBar[loopcpn][looppath] + cpn.getFloorCoefficients()[1] * cpnFloorBar[loopcpn][looppath] + cpn.getCapCoefficients()[1]
                 * cpnCapBar[loopcpn][looppath];
-            impactAmountBar[loopcpn][0] += -pathDiscountFactors[looppath][loopcpn][0] / (impactAmount[loopcpn][1] * pathDiscountFactors[looppath][loopcpn][1]) / cpn.getFixingYearFraction()
+            impactAmountBar[loopcpn][0] += -pathDiscountFactors[looppath * stride + start[loopcpn]] / (impactAmount[loopcpn][1] * pathDiscountFactors[looppath * stride + start[loopcpn] + 1]) / cpn.getFixingYearFraction()
                 * iborBar[loopcpn][looppath];
-            impactAmountBar[loopcpn][1] += impactAmount[loopcpn][0] * pathDiscountFactors[looppath][loopcpn][0] / pathDiscountFactors[looppath][loopcpn][1]
+            impactAmountBar[loopcpn][1] += impactAmount[loopcpn][0] * pathDiscountFactors[looppath * stride + start[loopcpn]] / pathDiscountFactors[looppath * stride + start[loopcpn] + 1]
                 / (impactAmount[loopcpn][1] * impactAmount[loopcpn][1]) / cpn.getFixingYearFraction() * iborBar[loopcpn][looppath];
-            pathDiscountFactorsBar[looppath][loopcpn][1] = cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * annuityPathValueBar[looppath];
-            pathDiscountFactorsBar[looppath][loopcpn][0] = -impactAmount[loopcpn][0] / (impactAmount[loopcpn][1] * pathDiscountFactors[looppath][loopcpn][1]) / cpn.getFixingYearFraction()
+            pathDiscountFactorsBar[looppath * stride + start[loopcpn] + 1] = cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * annuityPathValueBar[looppath];
+            pathDiscountFactorsBar[looppath * stride + start[loopcpn]] = -impactAmount[loopcpn][0] / (impactAmount[loopcpn][1] * pathDiscountFactors[looppath * stride + start[loopcpn] + 1]) / cpn.getFixingYearFraction()
                 * iborBar[loopcpn][looppath];
-            pathDiscountFactorsBar[looppath][loopcpn][1] += impactAmount[loopcpn][0] * pathDiscountFactors[looppath][loopcpn][0] / impactAmount[loopcpn][1]
-                / (pathDiscountFactors[looppath][loopcpn][1] * pathDiscountFactors[looppath][loopcpn][1]) / cpn.getFixingYearFraction() * iborBar[loopcpn][looppath];
+            pathDiscountFactorsBar[looppath * stride + start[loopcpn] + 1] += impactAmount[loopcpn][0] * pathDiscountFactors[looppath * stride + start[loopcpn]] / impactAmount[loopcpn][1]
+                / (pathDiscountFactors[looppath * stride + start[loopcpn] + 1] * pathDiscountFactors[looppath * stride + start[loopcpn] + 1]) / cpn.getFixingYearFraction() * iborBar[loopcpn][looppath];
           }
         } else {
           CouponIborGearing cpn = (CouponIborGearing) annuity.getNthPayment(loopcpn);
           for (int looppath = 0; looppath < nbPath; looppath++) {
-            cpnRateBar[loopcpn][looppath] += cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath][loopcpn][1] * annuityPathValueBar[looppath];
+            cpnRateBar[loopcpn][looppath] += cpn.getPaymentYearFraction() * cpn.getNotional() * pathDiscountFactors[looppath * stride + start[loopcpn] + 1] * annuityPathValueBar[looppath];
             iborBar[loopcpn][looppath] = cpn.getFactor() * cpnRateBar[loopcpn][looppath];
-            impactAmountBar[0][0] += -pathDiscountFactors[looppath][0][0] / (impactAmount[0][1] * pathDiscountFactors[looppath][0][1]) / cpn.getFixingAccrualFactor() * iborBar[loopcpn][looppath];
-            impactAmountBar[0][1] += impactAmount[0][0] * pathDiscountFactors[looppath][0][0] / pathDiscountFactors[looppath][0][1] / (impactAmount[0][1] * impactAmount[0][1])
+            impactAmountBar[0][0] += -pathDiscountFactors[looppath * stride] / (impactAmount[0][1] * pathDiscountFactors[looppath * stride + 1]) / cpn.getFixingAccrualFactor() * iborBar[loopcpn][looppath];
+            impactAmountBar[0][1] += impactAmount[0][0] * pathDiscountFactors[looppath * stride] / pathDiscountFactors[looppath * stride + 1] / (impactAmount[0][1] * impactAmount[0][1])
                 / cpn.getFixingAccrualFactor() * iborBar[loopcpn][looppath];
-            pathDiscountFactorsBar[looppath][loopcpn][1] = cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * annuityPathValueBar[looppath];
-            pathDiscountFactorsBar[looppath][0][0] = -impactAmount[0][0] / (impactAmount[0][1] * pathDiscountFactors[looppath][0][1]) / cpn.getFixingAccrualFactor() * iborBar[loopcpn][looppath];
-            pathDiscountFactorsBar[looppath][0][1] += impactAmount[0][0] * pathDiscountFactors[looppath][0][0] / impactAmount[0][1]
-                / (pathDiscountFactors[looppath][0][1] * pathDiscountFactors[looppath][0][1]) / cpn.getFixingAccrualFactor() * iborBar[loopcpn][looppath];
+            pathDiscountFactorsBar[looppath * stride + start[loopcpn] + 1] = cpnRate[loopcpn][looppath] * cpn.getPaymentYearFraction() * cpn.getNotional() * annuityPathValueBar[looppath];
+            pathDiscountFactorsBar[looppath * stride] = -impactAmount[0][0] / (impactAmount[0][1] * pathDiscountFactors[looppath * stride + 1]) / cpn.getFixingAccrualFactor() * iborBar[loopcpn][looppath];
+            pathDiscountFactorsBar[looppath * stride + 1] += impactAmount[0][0] * pathDiscountFactors[looppath * stride] / impactAmount[0][1]
+                / (pathDiscountFactors[looppath * stride + 1] * pathDiscountFactors[looppath * stride + 1]) / cpn.getFixingAccrualFactor() * iborBar[loopcpn][looppath];
           }
         }
       }
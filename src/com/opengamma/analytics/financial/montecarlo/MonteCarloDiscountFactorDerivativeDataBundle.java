@@ -12,7 +12,7 @@ public class MonteCarloDiscountFactorDerivativeDataBundle extends MonteCarloDisc
   /**
    * The derivatives of the paths discount factors. The dimensions are path/step/cash-flow.
    */
-  private Double[][][] _pathDiscountingFactorDerivative;
+  private double[] _pathDiscountingFactorDerivative;
   /**
    * The derivatives of the reference amounts at the impact dates. The dimensions are step/cash-flow.
    */
@@ -20,20 +20,21 @@ public class MonteCarloDiscountFactorDerivativeDataBundle extends MonteCarloDisc
 
   /**
    * Constructor.
-   * @param pathDiscountingFactor The paths discount factors.
+   * @param pathDiscountingFactor The paths discount factors, flattened (see MonteCarloDiscountFactorDataBundle).
+   * @param nbPath The number of paths.
    * @param impactAmount The reference amounts at the impact dates.
    */
-  public MonteCarloDiscountFactorDerivativeDataBundle(Double[][][] pathDiscountingFactor, double[][] impactAmount) {
-    super(pathDiscountingFactor, impactAmount);
-    _pathDiscountingFactorDerivative = new Double[0][0][0];
+  public MonteCarloDiscountFactorDerivativeDataBundle(double[] pathDiscountingFactor, int nbPath, double[][] impactAmount) {
+    super(pathDiscountingFactor, nbPath, impactAmount);
+    _pathDiscountingFactorDerivative = new double[0];
     _impactAmountDerivative = new double[0][0];
   }
 
   /**
-   * Gets the derivatives of path discounting factors.
+   * Gets the derivatives of path discounting factors. Same layout as the path discounting factors.
    * @return The derivatives of path discounting factors.
    */
-  public Double[][][] getPathDiscountingFactorDerivative() {
+  public double[] getPathDiscountingFactorDerivative() {
     return _pathDiscountingFactorDerivative;
   }
 
@@ -41,7 +42,7 @@ public class MonteCarloDiscountFactorDerivativeDataBundle extends MonteCarloDisc
    * Sets the derivatives of path discounting factors.
    * @param pathDiscountingFactorDerivative The derivatives of path discounting factors.
    */
-  public void setPathDiscountingFactorDerivative(Double[][][] pathDiscountingFactorDerivative) {
+  public void setPathDiscountingFactorDerivative(double[] pathDiscountingFactorDerivative) {
     _pathDiscountingFactorDerivative = pathDiscountingFactorDerivative;
   }
 
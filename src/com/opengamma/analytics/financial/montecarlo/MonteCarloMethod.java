@@ -5,14 +5,34 @@
  */
 package com.opengamma.analytics.financial.montecarlo;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.lang.Validate;
+
+import cern.jet.random.engine.MersenneTwister;
+
 import com.opengamma.analytics.financial.interestrate.method.PricingMethod;
+import com.opengamma.analytics.math.random.NormalRandomNumberGenerator;
 import com.opengamma.analytics.math.random.RandomNumberGenerator;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.auxiliary.BLASThreadPool;
 
 /**
  * Generic Monte-Carlo pricing method.
+ * <p>
+ * The paths are simulated in blocks of at most BLOCK_SIZE paths. When the method is constructed with a seed, each block has its own random
+ * number stream (a Mersenne twister seeded from the seed and the block index) and the blocks are run in parallel on the {@link BLASThreadPool}.
+ * The block results are always combined in block order, so the result for a given seed does not depend on the number of threads.
+ * When the method is constructed with a random number generator, the blocks share that generator and are run in order on the calling thread.
  */
 public abstract class MonteCarloMethod implements PricingMethod {
 
+  /**
+   * The number of paths in one block.
+   */
+  protected static final int BLOCK_SIZE = 1000;
+
   /**
    * The random number generator.
    */
@@ -21,6 +41,10 @@ public abstract class MonteCarloMethod implements PricingMethod {
    * The number of paths.
    */
   private final int _nbPath;
+  /**
+   * The seed of the block random number streams. Null if the paths are generated from a single generator.
+   */
+  private final Long _seed;
 
   /**
    * Constructor.
@@ -30,6 +54,18 @@ public abstract class MonteCarloMethod implements PricingMethod {
   public MonteCarloMethod(RandomNumberGenerator numberGenerator, int nbPath) {
     _numberGenerator = numberGenerator;
     _nbPath = nbPath;
+    _seed = null;
+  }
+
+  /**
+   * Constructor for the parallel method with one standard normal random number stream per block.
+   * @param seed The seed.
+   * @param nbPath The number of paths.
+   */
+  public MonteCarloMethod(long seed, int nbPath) {
+    _seed = seed;
+    _nbPath = nbPath;
+    _numberGenerator = blockGenerator(seed, 0);
   }
 
   /**
@@ -48,4 +84,128 @@ public abstract class MonteCarloMethod implements PricingMethod {
     return _nbPath;
   }
 
+  /**
+   * The computation on one block of paths.
+   * @param <T> The type of the block result.
+   */
+  protected interface Block<T> {
+
+    /**
+     * Runs the computation on one block.
+     * @param numberGenerator The random number generator to use for the block.
+     * @param nbPath The number of paths in the block.
+     * @return The block result.
+     */
+    T evaluate(RandomNumberGenerator numberGenerator, int nbPath);
+  }
+
+  /**
+   * Runs the computation on all the blocks of paths (in parallel if the method was constructed with a seed).
+   * @param <T> The type of the block result.
+   * @param block The computation.
+   * @return The block results, in block order.
+   */
+  protected <T> List<T> runBlocks(final Block<T> block) {
+    Validate.isTrue(_nbPath > 0, "Number of paths should be positive");
+    final int nbBlock = (_nbPath + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    final List<T> result = new ArrayList<T>(nbBlock);
+    if (_seed == null) {
+      for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
+        result.add(block.evaluate(_numberGenerator, blockPath(loopblock)));
+      }
+      return result;
+    }
+    final List<RecursiveTask<T>> tasks = new ArrayList<RecursiveTask<T>>(nbBlock);
+    for (int loopblock = 0; loopblock < nbBlock; loopblock++) {
+      final int index = loopblock;
+      tasks.add(new RecursiveTask<T>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected T compute() {
+          return block.evaluate(blockGenerator(_seed, index), blockPath(index));
+        }
+      });
+    }
+    BLASThreadPool.getPool().invoke(new RecursiveTask<Void>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected Void compute() {
+        invokeAll(tasks);
+        return null;
+      }
+    });
+    for (final RecursiveTask<T> task : tasks) {
+      result.add(task.join());
+    }
+    return result;
+  }
+
+  /**
+   * Gets the number of paths in a block.
+   * @param block The block index.
+   * @return The number of paths.
+   */
+  private int blockPath(final int block) {
+    return Math.min(BLOCK_SIZE, _nbPath - block * BLOCK_SIZE);
+  }
+
+  /**
+   * The standard normal generator for a block. The seed is scrambled with the block index (SplitMix64 finaliser) so that the streams of
+   * neighbouring blocks are not correlated.
+   * @param seed The seed.
+   * @param block The block index.
+   * @return The generator.
+   */
+  private static RandomNumberGenerator blockGenerator(final long seed, final int block) {
+    long z = seed + (block + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    return new NormalRandomNumberGenerator(0.0, 1.0, new MersenneTwister((int) (z ^ (z >>> 32))));
+  }
+
+  /**
+   * Gets a 2D-array of independent normally distributed variables.
+   * @param numberGenerator The random number generator.
+   * @param nbJump The number of jumps.
+   * @param nbPath The number of paths.
+   * @return The array of variables (jump/path).
+   */
+  protected static double[][] getNormalArray(final RandomNumberGenerator numberGenerator, final int nbJump, final int nbPath) {
+    final double[][] result = new double[nbJump][];
+    for (int loopjump = 0; loopjump < nbJump; loopjump++) {
+      result[loopjump] = numberGenerator.getVector(nbPath);
+    }
+    return result;
+  }
+
+  /**
+   * Correlates independent normal variables with a lower triangular (Cholesky) matrix: y[i][path] = sum_{j<=i} lower[i][j] * x[j][path].
+   * The upper triangle of lower is not read. The loop on the paths is innermost.
+   * @param lower The lower triangular matrix.
+   * @param x The independent variables (jump/path).
+   * @param nbPath The number of paths.
+   * @return The correlated variables (jump/path).
+   */
+  protected static double[][] correlate(final double[][] lower, final double[][] x, final int nbPath) {
+    final int nbJump = x.length;
+    final double[][] y = new double[nbJump][nbPath];
+    for (int i = 0; i < nbJump; i++) {
+      final double[] yi = y[i];
+      for (int j = 0; j <= i; j++) {
+        final double l = lower[i][j];
+        if (l == 0.0) {
+          continue;
+        }
+        final double[] xj = x[j];
+        for (int looppath = 0; looppath < nbPath; looppath++) {
+          yi[looppath] += xj[looppath] * l;
+        }
+      }
+    }
+    return y;
+  }
+
 }
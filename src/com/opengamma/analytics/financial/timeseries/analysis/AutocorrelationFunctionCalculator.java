@@ -14,7 +14,7 @@ import com.opengamma.util.timeseries.DoubleTimeSeries;
  * 
  */
 public class AutocorrelationFunctionCalculator extends Function1D<DoubleTimeSeries<?>, double[]> {
-  private final Function1D<DoubleTimeSeries<?>, double[]> _autoCovariance = new AutocovarianceFunctionCalculator();
+  private final AutocovarianceFunctionCalculator _autoCovariance = new AutocovarianceFunctionCalculator();
 
   @Override
   public double[] evaluate(final DoubleTimeSeries<?> x) {
@@ -22,7 +22,24 @@ public class AutocorrelationFunctionCalculator extends Function1D<DoubleTimeSeri
     if (x.isEmpty()) {
       throw new IllegalArgumentException("Time series was empty");
     }
-    final double[] covariance = _autoCovariance.evaluate(x);
+    return getCorrelation(_autoCovariance.evaluate(x));
+  }
+
+  /**
+   * Calculates the autocorrelation for lags 0 to maxLag only.
+   * @param x The time series, not null or empty
+   * @param maxLag The maximum lag, not negative and less than the size of the time series
+   * @return The autocorrelation, of length maxLag + 1
+   */
+  public double[] evaluate(final DoubleTimeSeries<?> x, final int maxLag) {
+    Validate.notNull(x, "x");
+    if (x.isEmpty()) {
+      throw new IllegalArgumentException("Time series was empty");
+    }
+    return getCorrelation(_autoCovariance.evaluate(x, maxLag));
+  }
+
+  private static double[] getCorrelation(final double[] covariance) {
     final double[] correlation = new double[covariance.length];
     correlation[0] = 1.;
     final double divisor = covariance[0];
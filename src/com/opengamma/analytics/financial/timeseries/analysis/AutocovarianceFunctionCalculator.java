@@ -5,46 +5,108 @@
  */
 package com.opengamma.analytics.financial.timeseries.analysis;
 
-import java.util.Arrays;
-
 import org.apache.commons.lang.Validate;
 
+import com.opengamma.analytics.math.fft.FastFourierTransform;
 import com.opengamma.analytics.math.function.Function;
 import com.opengamma.analytics.math.function.Function1D;
 import com.opengamma.analytics.math.statistics.descriptive.MeanCalculator;
 import com.opengamma.util.timeseries.DoubleTimeSeries;
 
 /**
- * 
+ * Calculates the sample autocovariance $\gamma(h) = \frac{1}{n}\sum_{t=0}^{n-h-1}(x_t - \bar{x})(x_{t+h} - \bar{x})$ of a time series.
+ * <p>
+ * When many lags are required the sums are computed for all the lags at once by zero-padded fast Fourier transform, in $O(n\log n)$;
+ * when only a few lags are required they are computed directly, in $O(n h)$.
  */
 public class AutocovarianceFunctionCalculator extends Function1D<DoubleTimeSeries<?>, double[]> {
+  /**
+   * The direct sums are used when their number of operations, $n(h+1)$, is below this factor times $m\log_2 m$ for a padded length $m$.
+   */
+  private static final int FFT_COST_FACTOR = 8;
   private final Function<DoubleTimeSeries<?>, Double> _meanCalculator = new DoubleTimeSeriesStatisticsCalculator(new MeanCalculator());
 
+  /**
+   * Calculates the autocovariance for lags $0$ to $n-2$.
+   * @param x The time series, not null or empty
+   * @return The autocovariance, of length $n-1$
+   */
   @Override
   public double[] evaluate(final DoubleTimeSeries<?> x) {
     Validate.notNull(x, "x");
     if (x.isEmpty()) {
       throw new IllegalArgumentException("Time series was empty");
     }
-    final int h = x.size() - 1;
-    final double[] result = new double[h];
-    final double mean = _meanCalculator.evaluate(x);
-    double[] x1, x2;
+    if (x.size() == 1) {
+      return new double[0];
+    }
+    return evaluate(x, x.size() - 2);
+  }
+
+  /**
+   * Calculates the autocovariance for lags $0$ to maxLag.
+   * @param x The time series, not null or empty
+   * @param maxLag The maximum lag, not negative and less than the size of the time series
+   * @return The autocovariance, of length maxLag + 1
+   */
+  public double[] evaluate(final DoubleTimeSeries<?> x, final int maxLag) {
+    Validate.notNull(x, "x");
+    if (x.isEmpty()) {
+      throw new IllegalArgumentException("Time series was empty");
+    }
     final int n = x.size();
-    double sum;
+    if (maxLag < 0 || maxLag >= n) {
+      throw new IllegalArgumentException("Maximum lag must be between 0 and " + (n - 1) + "; have " + maxLag);
+    }
+    final double mean = _meanCalculator.evaluate(x);
     final double[] x0 = x.valuesArrayFast();
-    for (int i = 0; i < h; i++) {
-      x1 = Arrays.copyOfRange(x0, 0, n - i);
-      x2 = Arrays.copyOfRange(x0, i, n);
-      if (x1.length != x2.length) {
-        throw new IllegalArgumentException("Series were not the same length; this should not happen");
-      }
+    final int m = FastFourierTransform.getPaddedLength(n + maxLag);
+    final double log2m = Integer.numberOfTrailingZeros(m);
+    if ((double) n * (maxLag + 1) < FFT_COST_FACTOR * m * log2m) {
+      return direct(x0, mean, maxLag);
+    }
+    return fft(x0, mean, maxLag, m);
+  }
+
+  private static double[] direct(final double[] x0, final double mean, final int maxLag) {
+    final int n = x0.length;
+    final double[] centred = new double[n];
+    for (int i = 0; i < n; i++) {
+      centred[i] = x0[i] - mean;
+    }
+    final double[] result = new double[maxLag + 1];
+    double sum;
+    for (int i = 0; i <= maxLag; i++) {
       sum = 0;
-      for (int j = 0; j < x1.length; j++) {
-        sum += (x1[j] - mean) * (x2[j] - mean);
+      for (int j = 0; j < n - i; j++) {
+        sum += centred[j] * centred[j + i];
       }
       result[i] = sum / n;
     }
     return result;
   }
+
+  /**
+   * The padded length m is at least n + maxLag, so that the circular correlation given by the transforms has no wrapped term for these lags.
+   */
+  private static double[] fft(final double[] x0, final double mean, final int maxLag, final int m) {
+    final int n = x0.length;
+    final double[] real = new double[m];
+    final double[] imaginary = new double[m];
+    for (int i = 0; i < n; i++) {
+      real[i] = x0[i] - mean;
+    }
+    FastFourierTransform.transform1DComplex(real, imaginary);
+    for (int i = 0; i < m; i++) {
+      real[i] = real[i] * real[i] + imaginary[i] * imaginary[i];
+      imaginary[i] = 0;
+    }
+    FastFourierTransform.inverseTransform1DComplex(real, imaginary, false);
+    final double[] result = new double[maxLag + 1];
+    final double scale = 1. / ((double) m * n);
+    for (int i = 0; i <= maxLag; i++) {
+      result[i] = real[i] * scale;
+    }
+    return result;
+  }
 }
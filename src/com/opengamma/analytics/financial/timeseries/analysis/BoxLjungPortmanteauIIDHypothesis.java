@@ -9,7 +9,6 @@ import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.opengamma.analytics.math.function.Function1D;
 import com.opengamma.analytics.math.statistics.distribution.ChiSquareDistribution;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.timeseries.DoubleTimeSeries;
@@ -19,7 +18,7 @@ import com.opengamma.util.timeseries.DoubleTimeSeries;
  */
 public class BoxLjungPortmanteauIIDHypothesis extends IIDHypothesis {
   private static final Logger s_logger = LoggerFactory.getLogger(BoxLjungPortmanteauIIDHypothesis.class);
-  private final Function1D<DoubleTimeSeries<?>, double[]> _calculator = new AutocorrelationFunctionCalculator();
+  private final AutocorrelationFunctionCalculator _calculator = new AutocorrelationFunctionCalculator();
   private final double _criticalValue;
   private final int _h;
 
@@ -43,7 +42,7 @@ public class BoxLjungPortmanteauIIDHypothesis extends IIDHypothesis {
     if (ts.size() < _h) {
       throw new IllegalArgumentException("Time series must have at least " + _h + " points");
     }
-    final double[] autocorrelation = _calculator.evaluate(ts);
+    final double[] autocorrelation = _calculator.evaluate(ts, _h - 1);
     double q = 0;
     final int n = ts.size();
     for (int i = 1; i < _h; i++) {
@@ -9,7 +9,6 @@ import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.opengamma.analytics.math.function.Function1D;
 import com.opengamma.analytics.math.statistics.distribution.ChiSquareDistribution;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.timeseries.DoubleTimeSeries;
@@ -20,7 +19,7 @@ import com.opengamma.util.timeseries.fast.longint.FastLongDoubleTimeSeries;
  */
 public class LiMcLeodPortmanteauIIDHypothesis extends IIDHypothesis {
   private static final Logger s_logger = LoggerFactory.getLogger(LiMcLeodPortmanteauIIDHypothesis.class);
-  private final Function1D<DoubleTimeSeries<?>, double[]> _calculator = new AutocorrelationFunctionCalculator();
+  private final AutocorrelationFunctionCalculator _calculator = new AutocorrelationFunctionCalculator();
   private final double _criticalValue;
   private final int _h;
 
@@ -46,7 +45,7 @@ public class LiMcLeodPortmanteauIIDHypothesis extends IIDHypothesis {
     }
     final FastLongDoubleTimeSeries ts = x.toFastLongDoubleTimeSeries();
     final DoubleTimeSeries<Long> tsSq = ts.multiply(ts);
-    final double[] autocorrelation = _calculator.evaluate(tsSq);
+    final double[] autocorrelation = _calculator.evaluate(tsSq, _h - 1);
     double q = 0;
     final int n = x.size();
     for (int i = 1; i < _h; i++) {
@@ -7,7 +7,6 @@ package com.opengamma.analytics.financial.timeseries.analysis;
 
 import org.apache.commons.lang.Validate;
 
-import com.opengamma.analytics.math.function.Function1D;
 import com.opengamma.analytics.math.statistics.distribution.NormalDistribution;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.timeseries.DoubleTimeSeries;
@@ -18,7 +17,7 @@ import com.opengamma.util.timeseries.DoubleTimeSeries;
 public class MovingAverageTimeSeriesOrderIdentifier {
   private final int _maxOrder;
   private final double _criticalValue;
-  private final Function1D<DoubleTimeSeries<?>, double[]> _calculator = new AutocorrelationFunctionCalculator();
+  private final AutocorrelationFunctionCalculator _calculator = new AutocorrelationFunctionCalculator();
 
   public MovingAverageTimeSeriesOrderIdentifier(final int maxOrder, final double level) {
     if (maxOrder < 1) {
@@ -39,7 +38,7 @@ public class MovingAverageTimeSeriesOrderIdentifier {
     if (ts.size() < _maxOrder) {
       throw new IllegalArgumentException("Number of data points lower than the maximum order to calculate");
     }
-    final double[] acf = _calculator.evaluate(ts);
+    final double[] acf = _calculator.evaluate(ts, _maxOrder);
     final int n = ts.size();
     final double bound = _criticalValue / Math.sqrt(n);
     for (int i = _maxOrder; i > 0; i--) {
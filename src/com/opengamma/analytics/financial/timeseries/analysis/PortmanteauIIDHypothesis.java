@@ -9,7 +9,6 @@ import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.opengamma.analytics.math.function.Function1D;
 import com.opengamma.analytics.math.statistics.distribution.ChiSquareDistribution;
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.timeseries.DoubleTimeSeries;
@@ -19,7 +18,7 @@ import com.opengamma.util.timeseries.DoubleTimeSeries;
  */
 public class PortmanteauIIDHypothesis extends IIDHypothesis {
   private static final Logger s_logger = LoggerFactory.getLogger(PortmanteauIIDHypothesis.class);
-  private final Function1D<DoubleTimeSeries<?>, double[]> _calculator = new AutocorrelationFunctionCalculator();
+  private final AutocorrelationFunctionCalculator _calculator = new AutocorrelationFunctionCalculator();
   private final double _criticalValue;
   private final int _h;
 
@@ -43,7 +42,7 @@ public class PortmanteauIIDHypothesis extends IIDHypothesis {
     if (x.size() < _h) {
       throw new IllegalArgumentException("Time series must have at least " + _h + " points");
     }
-    final double[] autocorrelation = _calculator.evaluate(x.toFastLongDoubleTimeSeries());
+    final double[] autocorrelation = _calculator.evaluate(x.toFastLongDoubleTimeSeries(), _h - 1);
     double q = 0;
     for (int i = 1; i < _h; i++) {
       q += autocorrelation[i] * autocorrelation[i];
@@ -9,7 +9,6 @@ import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.opengamma.analytics.math.function.Function1D;
 import com.opengamma.analytics.math.statistics.distribution.NormalDistribution;
 import com.opengamma.analytics.math.statistics.distribution.ProbabilityDistribution;
 import com.opengamma.util.ArgumentChecker;
@@ -20,7 +19,7 @@ import com.opengamma.util.timeseries.DoubleTimeSeries;
  */
 public class SampleAutocorrelationIIDHypothesis extends IIDHypothesis {
   private static final Logger s_logger = LoggerFactory.getLogger(SampleAutocorrelationIIDHypothesis.class);
-  private final Function1D<DoubleTimeSeries<?>, double[]> _calculator = new AutocorrelationFunctionCalculator();
+  private final AutocorrelationFunctionCalculator _calculator = new AutocorrelationFunctionCalculator();
   private final double _level;
   private final double _criticalValue;
   private final int _h;
@@ -47,7 +46,7 @@ public class SampleAutocorrelationIIDHypothesis extends IIDHypothesis {
     if (x.size() < _h) {
       throw new IllegalArgumentException("Time series must have at least " + _h + " points");
     }
-    final double[] autocorrelations = _calculator.evaluate(x.toFastLongDoubleTimeSeries());
+    final double[] autocorrelations = _calculator.evaluate(x.toFastLongDoubleTimeSeries(), Math.max(0, _h - 1));
     final double upper = _criticalValue / Math.sqrt(x.size());
     final double lower = -upper;
     double violations = 0;
@@ -5,8 +5,6 @@
  */
 package com.opengamma.analytics.financial.var;
 
-import java.util.Arrays;
-
 import com.opengamma.util.ArgumentChecker;
 import com.opengamma.util.timeseries.DoubleTimeSeries;
 
@@ -21,8 +19,8 @@ public class EmpiricalDistributionVaRCalculator implements VaRCalculator<Empiric
     ArgumentChecker.notNull(returns, "time series");
     ArgumentChecker.notNull(returns, "returns");
     ArgumentChecker.isTrue(returns.length > 0, "No return series data");
+    // the percentile calculator selects in a copy, the backing array of the series is not modified
     final double[] data = returns[0].valuesArrayFast();
-    Arrays.sort(data);
     final double result = -parameters.getMult() * parameters.getPercentileCalculator().evaluate(data);
     return new VaRCalculationResult(result, null);
   }
@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.var;
+
+import com.opengamma.analytics.math.statistics.descriptive.PercentileCalculator;
+import com.opengamma.analytics.math.statistics.descriptive.QuickSelect;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.auxiliary.BLASThreadPool;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Historical simulation value at risk from scenario profit and loss vectors. Each vector holds the profit and loss of one position in every
+ * historical scenario; the vectors are summed scenario by scenario and the VaR is the empirical percentile of the portfolio profit and loss,
+ * as in {@link EmpiricalDistributionVaRCalculator}.
+ * <p>
+ * The scenarios are partitioned and the percentile is selected on several threads with {@link QuickSelect#select(double[], int[], int)},
+ * which is efficient for the tail percentiles of a VaR. The vectors are not modified.
+ */
+public class HistoricalSimulationVaRCalculator implements VaRCalculator<EmpiricalDistributionVaRParameters, double[]> {
+  private final int _nbPartitions;
+
+  /**
+   * Creates a calculator with one partition per thread of the {@link BLASThreadPool}.
+   */
+  public HistoricalSimulationVaRCalculator() {
+    this(BLASThreadPool.getParallelism());
+  }
+
+  /**
+   * @param nbPartitions The number of partitions of the scenarios, positive
+   */
+  public HistoricalSimulationVaRCalculator(final int nbPartitions) {
+    ArgumentChecker.isTrue(nbPartitions > 0, "Number of partitions must be positive");
+    _nbPartitions = nbPartitions;
+  }
+
+  @Override
+  public VaRCalculationResult evaluate(final EmpiricalDistributionVaRParameters parameters, final double[]... scenarios) {
+    ArgumentChecker.notNull(parameters, "parameters");
+    ArgumentChecker.notEmpty(scenarios, "scenarios");
+    ArgumentChecker.noNulls(scenarios, "scenarios");
+    final int nbScenarios = scenarios[0].length;
+    ArgumentChecker.isTrue(nbScenarios > 0, "No scenario data");
+    for (final double[] position : scenarios) {
+      ArgumentChecker.isTrue(position.length == nbScenarios, "All the scenario vectors must have the same length");
+    }
+    double[] pnl = scenarios[0];
+    if (scenarios.length > 1) {
+      pnl = new double[nbScenarios];
+      for (final double[] position : scenarios) {
+        for (int i = 0; i < nbScenarios; i++) {
+          pnl[i] += position[i];
+        }
+      }
+    }
+    final PercentileCalculator percentileCalculator = parameters.getPercentileCalculator();
+    final double result = -parameters.getMult() * percentileCalculator.evaluate(pnl, _nbPartitions);
+    return new VaRCalculationResult(result, null);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 + _nbPartitions;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    final HistoricalSimulationVaRCalculator other = (HistoricalSimulationVaRCalculator) obj;
+    return _nbPartitions == other._nbPartitions;
+  }
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.financial.var;
+
+import com.opengamma.analytics.math.statistics.descriptive.QuantileSketch;
+import com.opengamma.util.ArgumentChecker;
+
+/**
+ * Empirical value at risk from {@link QuantileSketch} summaries of the returns, for online VaR over histories too long to be kept.
+ * A rolling VaR can be computed by keeping one sketch per block of the history (e.g. per month) and passing the sketches of the blocks in
+ * the window: they are merged into a new sketch, the sketches given are not modified.
+ * <p>
+ * The VaR is approximate, the rank error of the percentile being that of the sketch.
+ */
+public class QuantileSketchVaRCalculator implements VaRCalculator<EmpiricalDistributionVaRParameters, QuantileSketch> {
+
+  @Override
+  public VaRCalculationResult evaluate(final EmpiricalDistributionVaRParameters parameters, final QuantileSketch... sketches) {
+    ArgumentChecker.notNull(parameters, "parameters");
+    ArgumentChecker.notNull(sketches, "sketches");
+    ArgumentChecker.isTrue(sketches.length > 0, "No return data");
+    QuantileSketch sketch = sketches[0];
+    ArgumentChecker.notNull(sketch, "sketch");
+    if (sketches.length > 1) {
+      sketch = new QuantileSketch();
+      for (final QuantileSketch block : sketches) {
+        ArgumentChecker.notNull(block, "sketch");
+        sketch.merge(block);
+      }
+    }
+    final double result = -parameters.getMult() * sketch.getQuantile(parameters.getPercentileCalculator().getPercentile());
+    return new VaRCalculationResult(result, null);
+  }
+
+}
@@ -518,6 +518,37 @@ public class InterpolatedDoublesCurve extends ArraysDoublesCurve {
     return ArrayUtils.toObject(_interpolator.getNodeSensitivitiesForValue(_dataBundle, x));
   }
 
+  /**
+   * Evaluates the curve at each of a set of points without boxing. Sorted points are cheapest, see
+   * {@link Interpolator1D#interpolate(Interpolator1DDataBundle, double[], double[])}.
+   * @param x The points, not null
+   * @param out The curve values at the points, the same length as x
+   */
+  public void getYValues(final double[] x, final double[] out) {
+    _interpolator.interpolate(_dataBundle, x, out);
+  }
+
+  /**
+   * Evaluates the curve at each of a set of points without boxing.
+   * @param x The points, not null
+   * @return The curve values at the points
+   */
+  public double[] getYValues(final double[] x) {
+    Validate.notNull(x, "x");
+    final double[] out = new double[x.length];
+    _interpolator.interpolate(_dataBundle, x, out);
+    return out;
+  }
+
+  /**
+   * Gets the sensitivities of the curve values at each of a set of points to the curve's y data.
+   * @param x The points, not null
+   * @return The sensitivities, one row per point
+   */
+  public double[][] getYValueParameterSensitivities(final double[] x) {
+    return _interpolator.getNodeSensitivitiesForValues(_dataBundle, x);
+  }
+
   public Interpolator1D getInterpolator() {
     return _interpolator;
   }
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.fft;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Pure Java radix-2 fast Fourier transform, for array lengths that are powers of two. The transforms are done in place on the real and
+ * imaginary parts held in two arrays of doubles, so no object is created per value.
+ * <p>
+ * The sign conventions are those of {@link JTransformsWrapper}: $-i$ appears in the exponential of the forward transform and $i$ in the
+ * exponential of the inverse transform. Unlike the wrapper, this class does not need the JTransforms library.
+ */
+public final class FastFourierTransform {
+
+  private FastFourierTransform() {
+  }
+
+  /**
+   * The forward discrete Fourier transform,
+   * $$
+   * H_k = \sum_{j=0}^{N-1} h_j e^{-2i\pi jk/N}
+   * $$
+   * @param real The real parts, replaced by the real parts of the transform. The length must be a power of two
+   * @param imaginary The imaginary parts, replaced by the imaginary parts of the transform. Same length as the real parts
+   */
+  public static void transform1DComplex(final double[] real, final double[] imaginary) {
+    transform(real, imaginary, -1);
+  }
+
+  /**
+   * The inverse (backward) discrete Fourier transform,
+   * $$
+   * h_j = \frac{1}{N}\sum_{k=0}^{N-1} H_k e^{2i\pi jk/N}
+   * $$
+   * where the factor $\frac{1}{N}$ is only applied if scale is true.
+   * @param real The real parts, replaced by the real parts of the transform. The length must be a power of two
+   * @param imaginary The imaginary parts, replaced by the imaginary parts of the transform. Same length as the real parts
+   * @param scale Whether to divide by the length
+   */
+  public static void inverseTransform1DComplex(final double[] real, final double[] imaginary, final boolean scale) {
+    transform(real, imaginary, 1);
+    if (scale) {
+      final double factor = 1. / real.length;
+      for (int i = 0; i < real.length; i++) {
+        real[i] *= factor;
+        imaginary[i] *= factor;
+      }
+    }
+  }
+
+  /**
+   * Gets the smallest power of two greater than or equal to a length, the length to which data is zero-padded before a transform.
+   * @param n The length, positive
+   * @return The padded length
+   */
+  public static int getPaddedLength(final int n) {
+    Validate.isTrue(n > 0, "length must be positive");
+    Validate.isTrue(n <= 1 << 30, "length too large for a radix-2 transform");
+    final int power = Integer.highestOneBit(n);
+    return power == n ? n : power << 1;
+  }
+
+  private static void transform(final double[] real, final double[] imaginary, final int sign) {
+    Validate.notNull(real, "real parts");
+    Validate.notNull(imaginary, "imaginary parts");
+    final int n = real.length;
+    Validate.isTrue(imaginary.length == n, "real and imaginary parts must have the same length");
+    Validate.isTrue(n > 0 && (n & (n - 1)) == 0, "length must be a power of two; have " + n);
+    if (n == 1) {
+      return;
+    }
+    // bit reversal permutation
+    for (int i = 1, j = 0; i < n; i++) {
+      int bit = n >> 1;
+      for (; (j & bit) != 0; bit >>= 1) {
+        j ^= bit;
+      }
+      j ^= bit;
+      if (i < j) {
+        double temp = real[i];
+        real[i] = real[j];
+        real[j] = temp;
+        temp = imaginary[i];
+        imaginary[i] = imaginary[j];
+        imaginary[j] = temp;
+      }
+    }
+    // the twiddle factors of the last stage, the stage of length m uses every (n / m)-th one
+    final int half = n >> 1;
+    final double[] cos = new double[half];
+    final double[] sin = new double[half];
+    for (int k = 0; k < half; k++) {
+      final double angle = sign * 2 * Math.PI * k / n;
+      cos[k] = Math.cos(angle);
+      sin[k] = Math.sin(angle);
+    }
+    for (int m = 2; m <= n; m <<= 1) {
+      final int halfM = m >> 1;
+      final int stride = n / m;
+      for (int start = 0; start < n; start += m) {
+        for (int k = 0; k < halfM; k++) {
+          final double wr = cos[k * stride];
+          final double wi = sin[k * stride];
+          final int top = start + k;
+          final int bottom = top + halfM;
+          final double tr = wr * real[bottom] - wi * imaginary[bottom];
+          final double ti = wr * imaginary[bottom] + wi * real[bottom];
+          real[bottom] = real[top] - tr;
+          imaginary[bottom] = imaginary[top] - ti;
+          real[top] += tr;
+          imaginary[top] += ti;
+        }
+      }
+    }
+  }
+
+}
@@ -97,6 +97,91 @@ public class CombinedInterpolatorExtrapolator extends Interpolator1D {
     return _interpolator.getNodeSensitivitiesForValue(data, value);
   }
 
+  @Override
+  public void interpolate(final Interpolator1DDataBundle data, final double[] xs, final double[] out) {
+    validateBatch(data, xs, out);
+    final int[] inside = partition(data, xs);
+    if (inside == null) {
+      _interpolator.interpolate(data, xs, out);
+      return;
+    }
+    final double[] xInside = new double[inside.length];
+    for (int i = 0; i < inside.length; i++) {
+      xInside[i] = xs[inside[i]];
+    }
+    final double[] yInside = new double[inside.length];
+    _interpolator.interpolate(data, xInside, yInside);
+    for (int i = 0; i < inside.length; i++) {
+      out[inside[i]] = yInside[i];
+    }
+    final double first = data.firstKey();
+    final double last = data.lastKey();
+    for (int i = 0; i < xs.length; i++) {
+      if (xs[i] < first && _leftExtrapolator != null) {
+        out[i] = _leftExtrapolator.interpolate(data, xs[i]);
+      } else if (xs[i] > last && _rightExtrapolator != null) {
+        out[i] = _rightExtrapolator.interpolate(data, xs[i]);
+      }
+    }
+  }
+
+  @Override
+  public double[][] getNodeSensitivitiesForValues(final Interpolator1DDataBundle data, final double[] xs) {
+    Validate.notNull(data, "data");
+    Validate.notNull(xs, "xs");
+    final int[] inside = partition(data, xs);
+    if (inside == null) {
+      return _interpolator.getNodeSensitivitiesForValues(data, xs);
+    }
+    final double[] xInside = new double[inside.length];
+    for (int i = 0; i < inside.length; i++) {
+      xInside[i] = xs[inside[i]];
+    }
+    final double[][] sensitivitiesInside = _interpolator.getNodeSensitivitiesForValues(data, xInside);
+    final double[][] result = new double[xs.length][];
+    for (int i = 0; i < inside.length; i++) {
+      result[inside[i]] = sensitivitiesInside[i];
+    }
+    final double first = data.firstKey();
+    final double last = data.lastKey();
+    for (int i = 0; i < xs.length; i++) {
+      if (xs[i] < first && _leftExtrapolator != null) {
+        result[i] = _leftExtrapolator.getNodeSensitivitiesForValue(data, xs[i]);
+      } else if (xs[i] > last && _rightExtrapolator != null) {
+        result[i] = _rightExtrapolator.getNodeSensitivitiesForValue(data, xs[i]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the points that go to the interpolator rather than an extrapolator.
+   * @param data The interpolation data.
+   * @param xs The points.
+   * @return The indices of those points, in order, or null if that is all of them.
+   */
+  private int[] partition(final Interpolator1DDataBundle data, final double[] xs) {
+    final double first = data.firstKey();
+    final double last = data.lastKey();
+    int count = 0;
+    for (final double x : xs) {
+      if (!(x < first && _leftExtrapolator != null) && !(x > last && _rightExtrapolator != null)) {
+        count++;
+      }
+    }
+    if (count == xs.length) {
+      return null;
+    }
+    final int[] inside = new int[count];
+    int j = 0;
+    for (int i = 0; i < xs.length; i++) {
+      if (!(xs[i] < first && _leftExtrapolator != null) && !(xs[i] > last && _rightExtrapolator != null)) {
+        inside[j++] = i;
+      }
+    }
+    return inside;
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder("Interpolator[interpolator=");
@@ -6,6 +6,7 @@
 package com.opengamma.analytics.math.interpolation;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.SortedMap;
 
@@ -25,6 +26,37 @@ public abstract class Interpolator1D implements Interpolator<Interpolator1DDataB
   @Override
   public abstract Double interpolate(Interpolator1DDataBundle data, Double value);
 
+  /**
+   * Interpolates at each of a set of points, out[i] = interpolate(data, xs[i]).
+   * The default implementation calls {@link #interpolate(Interpolator1DDataBundle, Double)} for each point; interpolators
+   * that override it track the bracketing interval with a cursor, so the cost per point is smallest when xs is sorted.
+   * @param data The interpolation data.
+   * @param xs The points at which to interpolate, in any order.
+   * @param out The interpolated values, the same length as xs.
+   */
+  public void interpolate(final Interpolator1DDataBundle data, final double[] xs, final double[] out) {
+    validateBatch(data, xs, out);
+    for (int i = 0; i < xs.length; i++) {
+      out[i] = interpolate(data, xs[i]);
+    }
+  }
+
+  /**
+   * Computes the sensitivities of the interpolated values to the input data y at each of a set of points.
+   * @param data The interpolation data.
+   * @param xs The points at which to interpolate, in any order.
+   * @return The sensitivities, one row per point.
+   */
+  public double[][] getNodeSensitivitiesForValues(final Interpolator1DDataBundle data, final double[] xs) {
+    Validate.notNull(data, "data");
+    Validate.notNull(xs, "xs");
+    final double[][] result = new double[xs.length][];
+    for (int i = 0; i < xs.length; i++) {
+      result[i] = getNodeSensitivitiesForValue(data, xs[i]);
+    }
+    return result;
+  }
+
   public double[] getNodeSensitivitiesForValue(Interpolator1DDataBundle data, Double value, boolean useFiniteDifferenceSensitivities) {
     return useFiniteDifferenceSensitivities ? getFiniteDifferenceSensitivities(data, value) : getNodeSensitivitiesForValue(data, value);
   }
@@ -59,6 +91,50 @@ public abstract class Interpolator1D implements Interpolator<Interpolator1DDataB
     return result;
   }
 
+  protected static void validateBatch(final Interpolator1DDataBundle data, final double[] xs, final double[] out) {
+    Validate.notNull(data, "data");
+    Validate.notNull(xs, "xs");
+    Validate.notNull(out, "out");
+    Validate.isTrue(xs.length == out.length, "xs and out must be the same length");
+  }
+
+  /**
+   * Finds the index of the largest key that is not greater than value, with the same result as
+   * {@link Interpolator1DDataBundle#getLowerBoundIndex(Double)}. The search starts from a guess, usually the index
+   * found for the previous point: if value is above that key the keys are walked forward in doubling steps, otherwise
+   * the whole array is searched. For increasing points the cost is therefore O(1) per point rather than O(log n).
+   * @param keys The sorted keys.
+   * @param value The value.
+   * @param guess The index to start from.
+   * @return The lower bound index.
+   */
+  protected static int getLowerBoundIndex(final double[] keys, final double value, final int guess) {
+    final int n = keys.length;
+    if (value < keys[0]) {
+      throw new IllegalArgumentException("Could not get lower bound index for " + value + ": lowest x-value is " + keys[0]);
+    }
+    if (value > keys[n - 1]) {
+      throw new IllegalArgumentException("Could not get lower bound index for " + value + ": highest x-value is " + keys[n - 1]);
+    }
+    int lo = Math.min(Math.max(guess, 0), n - 1);
+    int hi;
+    if (keys[lo] <= value) {
+      int step = 1;
+      hi = lo + 1;
+      while (hi < n && keys[hi] <= value) {
+        lo = hi;
+        step <<= 1;
+        hi = lo + step;
+      }
+      hi = Math.min(hi, n);
+    } else {
+      lo = 0;
+      hi = n;
+    }
+    final int index = Arrays.binarySearch(keys, lo, hi, value);
+    return index >= 0 ? index : -(index + 1) - 1;
+  }
+
   public abstract Interpolator1DDataBundle getDataBundle(double[] x, double[] y);
 
   public abstract Interpolator1DDataBundle getDataBundleFromSortedArrays(double[] x, double[] y);
@@ -57,6 +57,46 @@ public class LinearInterpolator1D extends Interpolator1D {
     return result;
   }
 
+  @Override
+  public void interpolate(final Interpolator1DDataBundle data, final double[] xs, final double[] out) {
+    validateBatch(data, xs, out);
+    final double[] x = data.getKeys();
+    final double[] y = data.getValues();
+    final int n = x.length;
+    int index = 0;
+    for (int i = 0; i < xs.length; i++) {
+      final double value = xs[i];
+      index = getLowerBoundIndex(x, value, index);
+      if (index == n - 1) {
+        out[i] = y[n - 1];
+      } else {
+        out[i] = y[index] + (value - x[index]) / (x[index + 1] - x[index]) * (y[index + 1] - y[index]);
+      }
+    }
+  }
+
+  @Override
+  public double[][] getNodeSensitivitiesForValues(final Interpolator1DDataBundle data, final double[] xs) {
+    Validate.notNull(data, "data");
+    Validate.notNull(xs, "xs");
+    final double[] x = data.getKeys();
+    final int n = x.length;
+    final double[][] result = new double[xs.length][n];
+    int index = 0;
+    for (int i = 0; i < xs.length; i++) {
+      final double value = xs[i];
+      index = getLowerBoundIndex(x, value, index);
+      if (index == n - 1) {
+        result[i][n - 1] = 1.0;
+      } else {
+        final double a = (x[index + 1] - value) / (x[index + 1] - x[index]);
+        result[i][index] = a;
+        result[i][index + 1] = 1 - a;
+      }
+    }
+    return result;
+  }
+
   @Override
   public Interpolator1DDataBundle getDataBundle(final double[] x, final double[] y) {
     return new ArrayInterpolator1DDataBundle(x, y);
@@ -40,6 +40,24 @@ public class LogLinearInterpolator1D extends Interpolator1D {
     return Math.pow(y2 / y1, (value - x1) / (x2 - x1)) * y1;
   }
 
+  @Override
+  public void interpolate(final Interpolator1DDataBundle data, final double[] xs, final double[] out) {
+    validateBatch(data, xs, out);
+    final double[] x = data.getKeys();
+    final double[] y = data.getValues();
+    final int n = x.length;
+    int index = 0;
+    for (int i = 0; i < xs.length; i++) {
+      final double value = xs[i];
+      index = getLowerBoundIndex(x, value, index);
+      if (index == n - 1) {
+        out[i] = y[n - 1];
+      } else {
+        out[i] = Math.pow(y[index + 1] / y[index], (value - x[index]) / (x[index + 1] - x[index])) * y[index];
+      }
+    }
+  }
+
   @Override
   public Interpolator1DDataBundle getDataBundle(final double[] x, final double[] y) {
     return new ArrayInterpolator1DDataBundle(x, y);
@@ -79,6 +79,68 @@ public class NaturalCubicSplineInterpolator1D extends Interpolator1D {
     return result;
   }
   
+  @Override
+  public void interpolate(final Interpolator1DDataBundle data, final double[] xs, final double[] out) {
+    validateBatch(data, xs, out);
+    Validate.isTrue(data instanceof Interpolator1DCubicSplineDataBundle);
+    final Interpolator1DCubicSplineDataBundle splineData = (Interpolator1DCubicSplineDataBundle) data;
+    final double[] xData = data.getKeys();
+    final double[] yData = data.getValues();
+    final double[] y2 = splineData.getSecondDerivatives();
+    final int n = xData.length - 1;
+    int low = 0;
+    for (int i = 0; i < xs.length; i++) {
+      final double value = xs[i];
+      low = getLowerBoundIndex(xData, value, low);
+      if (low == n) {
+        out[i] = yData[n];
+        continue;
+      }
+      final int high = low + 1;
+      final double delta = xData[high] - xData[low];
+      if (Math.abs(delta) < _eps) {
+        throw new MathException("x data points were not distinct");
+      }
+      final double a = (xData[high] - value) / delta;
+      final double b = (value - xData[low]) / delta;
+      out[i] = a * yData[low] + b * yData[high] + (a * (a * a - 1) * y2[low] + b * (b * b - 1) * y2[high]) * delta * delta / 6.;
+    }
+  }
+
+  @Override
+  public double[][] getNodeSensitivitiesForValues(final Interpolator1DDataBundle data, final double[] xs) {
+    Validate.notNull(data, "data");
+    Validate.notNull(xs, "xs");
+    Validate.isTrue(data instanceof Interpolator1DCubicSplineDataBundle);
+    final Interpolator1DCubicSplineDataBundle cubicData = (Interpolator1DCubicSplineDataBundle) data;
+    final double[] xData = cubicData.getKeys();
+    final int n = xData.length;
+    final double[][] y2Sensitivities = cubicData.getSecondDerivativesSensitivities();
+    final double[][] result = new double[xs.length][n];
+    int low = 0;
+    for (int loopx = 0; loopx < xs.length; loopx++) {
+      final double value = xs[loopx];
+      low = getLowerBoundIndex(xData, value, low);
+      final double[] row = result[loopx];
+      if (low == n - 1) {
+        row[n - 1] = 1.0;
+        continue;
+      }
+      final int high = low + 1;
+      final double delta = xData[high] - xData[low];
+      final double a = (xData[high] - value) / delta;
+      final double b = (value - xData[low]) / delta;
+      final double c = a * (a * a - 1) * delta * delta / 6.;
+      final double d = b * (b * b - 1) * delta * delta / 6.;
+      for (int i = 0; i < n; i++) {
+        row[i] = c * y2Sensitivities[low][i] + d * y2Sensitivities[high][i];
+      }
+      row[low] += a;
+      row[high] += b;
+    }
+    return result;
+  }
+
   @Override
   public Interpolator1DDataBundle getDataBundle(final double[] x, final double[] y) {
     return new Interpolator1DCubicSplineDataBundle(new ArrayInterpolator1DDataBundle(x, y));
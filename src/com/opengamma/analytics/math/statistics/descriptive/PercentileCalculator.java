@@ -14,6 +14,8 @@ import com.opengamma.analytics.math.function.Function1D;
 /**
  * For a series of data $x_1, x_2, \dots, x_n$, the percentile is the value $x$
  * below which a certain percentage of the data fall. 
+ * <p>
+ * The percentile is interpolated between two order statistics of the data, which are found by selection rather than by sorting.
  */
 public class PercentileCalculator extends Function1D<double[], Double> {
   private double _percentile;
@@ -35,6 +37,15 @@ public class PercentileCalculator extends Function1D<double[], Double> {
   }
 
   /**
+   * Gets the percentile.
+   * @return The percentile
+   */
+  public double getPercentile() {
+    return _percentile;
+  }
+
+  /**
+   * The data is not sorted: the one or two order statistics needed are selected in a copy with {@link QuickSelect}, in $O(n)$.
    * @param x The data, not null or empty
    * @return The percentile
    */
@@ -42,18 +53,74 @@ public class PercentileCalculator extends Function1D<double[], Double> {
   public Double evaluate(final double[] x) {
     Validate.notNull(x, "x");
     Validate.isTrue(x.length > 0, "x cannot be empty");
+    final double[] copy = Arrays.copyOf(x, x.length);
+    return interpolate(_percentile, x.length, QuickSelect.select(copy, getIndices(_percentile, x.length)));
+  }
+
+  /**
+   * Computes the percentile of a large data set on several threads, with {@link QuickSelect#select(double[], int[], int)}. This is
+   * efficient for percentiles in the tails of the distribution.
+   * @param x The data, not null or empty. Not modified
+   * @param nbPartitions The number of partitions of the data, selected in parallel
+   * @return The percentile
+   */
+  public double evaluate(final double[] x, final int nbPartitions) {
+    Validate.notNull(x, "x");
+    Validate.isTrue(x.length > 0, "x cannot be empty");
+    return interpolate(_percentile, x.length, QuickSelect.select(x, getIndices(_percentile, x.length), nbPartitions));
+  }
+
+  /**
+   * Computes several percentiles of the same data with a single multiple selection in a copy of the data.
+   * @param x The data, not null or empty
+   * @param percentiles The percentiles, each between 0 and 1
+   * @return The values of the percentiles, in the same order
+   */
+  public static double[] getPercentiles(final double[] x, final double[] percentiles) {
+    Validate.notNull(x, "x");
+    Validate.notNull(percentiles, "percentiles");
+    Validate.isTrue(x.length > 0, "x cannot be empty");
     final int length = x.length;
-    final double[] copy = Arrays.copyOf(x, length);
-    Arrays.sort(copy);
-    final double n = _percentile * (length - 1) + 1;
+    final int nbPercentiles = percentiles.length;
+    final int[] indices = new int[2 * nbPercentiles];
+    for (int i = 0; i < nbPercentiles; i++) {
+      Validate.isTrue(percentiles[i] > 0 && percentiles[i] < 1, "Percentile must be between 0 and 1");
+      final int[] pair = getIndices(percentiles[i], length);
+      indices[2 * i] = pair[0];
+      indices[2 * i + 1] = pair[pair.length - 1];
+    }
+    final double[] values = QuickSelect.select(Arrays.copyOf(x, length), indices);
+    final double[] result = new double[nbPercentiles];
+    for (int i = 0; i < nbPercentiles; i++) {
+      result[i] = interpolate(percentiles[i], length, new double[] {values[2 * i], values[2 * i + 1]});
+    }
+    return result;
+  }
+
+  /**
+   * The zero-based indices in the sorted data of the order statistics between which the percentile is interpolated.
+   */
+  private static int[] getIndices(final double percentile, final int length) {
+    final double n = percentile * (length - 1) + 1;
     if (Math.round(n) == 1) {
-      return copy[0];
+      return new int[] {0};
     }
     if (Math.round(n) == length) {
-      return copy[length - 1];
+      return new int[] {length - 1};
+    }
+    final int k = (int) Math.round(n - n % 1);
+    return new int[] {k - 1, k};
+  }
+
+  /**
+   * The percentile from the order statistics at the indices given by {@link #getIndices(double, int)}.
+   */
+  private static double interpolate(final double percentile, final int length, final double[] orderStatistics) {
+    final double n = percentile * (length - 1) + 1;
+    if (Math.round(n) == 1 || Math.round(n) == length) {
+      return orderStatistics[0];
     }
     final double d = n % 1;
-    final int k = (int) Math.round(n - d);
-    return copy[k - 1] + d * (copy[k] - copy[k - 1]);
+    return orderStatistics[0] + d * (orderStatistics[1] - orderStatistics[0]);
   }
 }
@@ -0,0 +1,292 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.statistics.descriptive;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.analytics.math.ParallelArrayBinarySort;
+
+/**
+ * Streaming summary of a distribution from which approximate quantiles can be read, for data too long to be kept (e.g. the returns of a
+ * very long history, updated online). The memory used is $O(k)$ whatever the number of values added, and two sketches (e.g. built on
+ * different threads or on different blocks of a history) can be merged.
+ * <p>
+ * This is the sketch of Karnin, Lang and Liberty (KLL): the values are kept in a hierarchy of compactors, a value at level h standing for
+ * $2^h$ values. When a compactor is full it is sorted and every other value, starting at a random offset, is promoted to the next level.
+ * The capacities decrease geometrically from the top level down. The rank error of a quantile is of order $1/k$; with the default $k = 200$
+ * it is typically below 1% of the number of values.
+ * <p>
+ * The random offsets come from a generator with a fixed seed, so the same values added in the same order give the same sketch. The sketch is
+ * not thread-safe.
+ */
+public class QuantileSketch {
+
+  /**
+   * The default size parameter.
+   */
+  public static final int DEFAULT_K = 200;
+  /**
+   * The ratio of the capacities of two consecutive levels.
+   */
+  private static final double CAPACITY_RATIO = 2. / 3;
+  /**
+   * The default seed of the random offsets.
+   */
+  private static final long DEFAULT_SEED = 0;
+
+  private final int _k;
+  private final Random _random;
+  /**
+   * The compactors, level h holding values of weight $2^h$.
+   */
+  private double[][] _levels;
+  /**
+   * The number of values in each compactor.
+   */
+  private int[] _sizes;
+  private int _nbLevels;
+  /**
+   * The number of values held in all the compactors.
+   */
+  private int _size;
+  /**
+   * The number of values held, beyond which a compactor is compacted.
+   */
+  private int _maxSize;
+  /**
+   * The number of values added.
+   */
+  private long _count;
+  private double _min = Double.POSITIVE_INFINITY;
+  private double _max = Double.NEGATIVE_INFINITY;
+
+  /**
+   * Creates an empty sketch with the default size parameter.
+   */
+  public QuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+  /**
+   * Creates an empty sketch.
+   * @param k The size parameter, the capacity of the top compactor. At least 8
+   */
+  public QuantileSketch(final int k) {
+    this(k, DEFAULT_SEED);
+  }
+
+  /**
+   * Creates an empty sketch.
+   * @param k The size parameter, the capacity of the top compactor. At least 8
+   * @param seed The seed of the random offsets
+   */
+  public QuantileSketch(final int k, final long seed) {
+    Validate.isTrue(k >= 8, "k must be at least 8");
+    _k = k;
+    _random = new Random(seed);
+    _levels = new double[0][];
+    _sizes = new int[0];
+    grow();
+  }
+
+  /**
+   * Adds a value.
+   * @param x The value, not NaN
+   */
+  public void add(final double x) {
+    Validate.isTrue(!Double.isNaN(x), "Cannot add NaN");
+    append(0, x);
+    _count++;
+    if (x < _min) {
+      _min = x;
+    }
+    if (x > _max) {
+      _max = x;
+    }
+    _size++;
+    if (_size >= _maxSize) {
+      compress();
+    }
+  }
+
+  /**
+   * Adds values.
+   * @param x The values, not null
+   */
+  public void addAll(final double[] x) {
+    Validate.notNull(x, "x");
+    for (final double value : x) {
+      add(value);
+    }
+  }
+
+  /**
+   * Adds the values summarised by another sketch to this one. The other sketch is not modified.
+   * @param other The other sketch, not null
+   */
+  public void merge(final QuantileSketch other) {
+    Validate.notNull(other, "other");
+    Validate.isTrue(other != this, "Cannot merge a sketch with itself");
+    while (_nbLevels < other._nbLevels) {
+      grow();
+    }
+    for (int h = 0; h < other._nbLevels; h++) {
+      for (int i = 0; i < other._sizes[h]; i++) {
+        append(h, other._levels[h][i]);
+      }
+    }
+    _count += other._count;
+    _min = Math.min(_min, other._min);
+    _max = Math.max(_max, other._max);
+    _size = 0;
+    for (int h = 0; h < _nbLevels; h++) {
+      _size += _sizes[h];
+    }
+    while (_size >= _maxSize) {
+      compress();
+    }
+  }
+
+  /**
+   * Gets the approximate quantile: the smallest value held whose estimated rank is at least the quantile times the number of values.
+   * The quantiles 0 and 1 are the exact minimum and maximum.
+   * @param quantile The quantile, between 0 and 1
+   * @return The quantile
+   */
+  public double getQuantile(final double quantile) {
+    return getQuantiles(new double[] {quantile})[0];
+  }
+
+  /**
+   * Gets several approximate quantiles, see {@link #getQuantile(double)}.
+   * @param quantiles The quantiles, between 0 and 1
+   * @return The quantiles
+   */
+  public double[] getQuantiles(final double[] quantiles) {
+    Validate.notNull(quantiles, "quantiles");
+    Validate.isTrue(_count > 0, "Sketch is empty");
+    final double[] values = new double[_size];
+    final double[] weights = new double[_size];
+    int position = 0;
+    for (int h = 0; h < _nbLevels; h++) {
+      final double weight = Math.scalb(1., h);
+      for (int i = 0; i < _sizes[h]; i++) {
+        values[position] = _levels[h][i];
+        weights[position++] = weight;
+      }
+    }
+    ParallelArrayBinarySort.parallelBinarySort(values, weights);
+    double total = 0;
+    for (int i = 0; i < _size; i++) {
+      total += weights[i];
+      weights[i] = total;
+    }
+    final double[] result = new double[quantiles.length];
+    for (int j = 0; j < quantiles.length; j++) {
+      final double q = quantiles[j];
+      Validate.isTrue(q >= 0 && q <= 1, "Quantile must be between 0 and 1");
+      if (q == 0) {
+        result[j] = _min;
+      } else if (q == 1) {
+        result[j] = _max;
+      } else {
+        final double rank = q * total;
+        int index = Arrays.binarySearch(weights, rank);
+        if (index < 0) {
+          index = -index - 1;
+        }
+        result[j] = values[Math.min(index, _size - 1)];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the number of values added, including through merges.
+   * @return The number of values
+   */
+  public long getCount() {
+    return _count;
+  }
+
+  /**
+   * Gets the smallest value added.
+   * @return The minimum
+   */
+  public double getMin() {
+    return _min;
+  }
+
+  /**
+   * Gets the largest value added.
+   * @return The maximum
+   */
+  public double getMax() {
+    return _max;
+  }
+
+  /**
+   * Gets the number of values held by the sketch, which bounds its memory.
+   * @return The number of values held
+   */
+  public int getRetainedSize() {
+    return _size;
+  }
+
+  /**
+   * Compacts the lowest full compactor.
+   */
+  private void compress() {
+    for (int h = 0; h < _nbLevels; h++) {
+      if (_sizes[h] >= capacity(h)) {
+        if (h + 1 >= _nbLevels) {
+          grow();
+        }
+        final double[] level = _levels[h];
+        final int size = _sizes[h];
+        Arrays.sort(level, 0, size);
+        // an odd value out stays at this level
+        final int start = size % 2;
+        final int offset = _random.nextBoolean() ? 1 : 0;
+        for (int i = start + offset; i < size; i += 2) {
+          append(h + 1, level[i]);
+        }
+        _sizes[h] = start;
+        break;
+      }
+    }
+    _size = 0;
+    for (int h = 0; h < _nbLevels; h++) {
+      _size += _sizes[h];
+    }
+  }
+
+  private void grow() {
+    _levels = Arrays.copyOf(_levels, _nbLevels + 1);
+    _sizes = Arrays.copyOf(_sizes, _nbLevels + 1);
+    _levels[_nbLevels] = new double[8];
+    _nbLevels++;
+    _maxSize = 0;
+    for (int h = 0; h < _nbLevels; h++) {
+      _maxSize += capacity(h);
+    }
+  }
+
+  private int capacity(final int level) {
+    return (int) Math.ceil(_k * Math.pow(CAPACITY_RATIO, _nbLevels - level - 1)) + 1;
+  }
+
+  private void append(final int level, final double x) {
+    if (_sizes[level] == _levels[level].length) {
+      _levels[level] = Arrays.copyOf(_levels[level], 2 * _levels[level].length);
+    }
+    _levels[level][_sizes[level]++] = x;
+  }
+
+}
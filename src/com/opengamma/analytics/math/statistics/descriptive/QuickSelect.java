@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.analytics.math.statistics.descriptive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.commons.lang.Validate;
+
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.auxiliary.BLASThreadPool;
+
+/**
+ * Finds order statistics (the k-th smallest values) of an array without sorting it.
+ * <p>
+ * The selection is an introselect: a quickselect with a median-of-three pivot and a three-way partition (so that repeated values,
+ * e.g. zero returns, do not degrade it), which falls back to sorting the remaining range if the partitions do not shrink fast enough.
+ * The expected time is $O(n)$ for one order statistic and $O(n\log m)$ for $m$ order statistics; the worst case is $O(n\log n)$.
+ * <p>
+ * The data must not contain NaN.
+ */
+public final class QuickSelect {
+
+  /**
+   * The ranges of at most this length are sorted by insertion.
+   */
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private QuickSelect() {
+  }
+
+  /**
+   * Rearranges the data so that the value at index k is the value that would be there if the data was sorted, with no larger value before it
+   * and no smaller value after it.
+   * @param x The data, not null or empty. Modified in place
+   * @param k The index of the order statistic, zero-based
+   * @return The k-th smallest value
+   */
+  public static double select(final double[] x, final int k) {
+    Validate.notNull(x, "x");
+    Validate.isTrue(k >= 0 && k < x.length, "Index " + k + " out of range for an array of length " + x.length);
+    int from = 0;
+    int to = x.length;
+    int depth = depthLimit(x.length);
+    final int[] bounds = new int[2];
+    while (to - from > INSERTION_SORT_THRESHOLD) {
+      if (depth-- == 0) {
+        Arrays.sort(x, from, to);
+        return x[k];
+      }
+      partition(x, from, to, bounds);
+      if (k < bounds[0]) {
+        to = bounds[0];
+      } else if (k > bounds[1]) {
+        from = bounds[1] + 1;
+      } else {
+        return x[k];
+      }
+    }
+    insertionSort(x, from, to);
+    return x[k];
+  }
+
+  /**
+   * Finds several order statistics at once. The data is rearranged so that each of the order statistics is at its index, as in
+   * {@link #select(double[], int)}.
+   * @param x The data, not null or empty. Modified in place
+   * @param ks The indices of the order statistics, zero-based, in any order
+   * @return The order statistics, in the order of the indices
+   */
+  public static double[] select(final double[] x, final int[] ks) {
+    Validate.notNull(x, "x");
+    Validate.notNull(ks, "indices");
+    final int[] sorted = checkAndSort(ks, x.length);
+    multiSelect(x, 0, x.length, sorted, 0, sorted.length, depthLimit(x.length), new int[2]);
+    final double[] result = new double[ks.length];
+    for (int i = 0; i < ks.length; i++) {
+      result[i] = x[ks[i]];
+    }
+    return result;
+  }
+
+  /**
+   * Finds several order statistics of a large array on the threads of the {@link BLASThreadPool}. The data is cut in partitions; each task
+   * copies its partition and keeps only the values that can be one of the order statistics: if the indices are in the lower half of the data,
+   * the values smaller than the order statistic of highest index in the partition, otherwise the larger values. The order statistics are then
+   * selected from these candidates. This is efficient when the indices are in the tails of the distribution, e.g. for a value at risk, as the
+   * candidates are then a small part of the data.
+   * <p>The data is not modified.
+   * @param x The data, not null or empty
+   * @param ks The indices of the order statistics, zero-based, in any order
+   * @param nbPartitions The number of partitions, positive
+   * @return The order statistics, in the order of the indices
+   */
+  public static double[] select(final double[] x, final int[] ks, final int nbPartitions) {
+    Validate.notNull(x, "x");
+    Validate.notNull(ks, "indices");
+    Validate.isTrue(nbPartitions > 0, "Number of partitions must be positive");
+    final int n = x.length;
+    final int[] sorted = checkAndSort(ks, n);
+    final int kMin = sorted[0];
+    final int kMax = sorted[sorted.length - 1];
+    final boolean lower = kMax < n - kMin;
+    // number of candidates kept in each partition
+    final int keep = lower ? kMax + 1 : n - kMin;
+    final int partitionSize = (n + nbPartitions - 1) / nbPartitions;
+    final List<RecursiveTask<double[]>> tasks = new ArrayList<RecursiveTask<double[]>>(nbPartitions);
+    for (int start = 0; start < n; start += partitionSize) {
+      final int from = start;
+      final int to = Math.min(n, start + partitionSize);
+      tasks.add(new RecursiveTask<double[]>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected double[] compute() {
+          final double[] copy = Arrays.copyOfRange(x, from, to);
+          if (copy.length <= keep) {
+            return copy;
+          }
+          if (lower) {
+            select(copy, keep - 1);
+            return Arrays.copyOf(copy, keep);
+          }
+          select(copy, copy.length - keep);
+          return Arrays.copyOfRange(copy, copy.length - keep, copy.length);
+        }
+      });
+    }
+    BLASThreadPool.getPool().invoke(new RecursiveTask<Void>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected Void compute() {
+        invokeAll(tasks);
+        return null;
+      }
+    });
+    int nbCandidates = 0;
+    for (final RecursiveTask<double[]> task : tasks) {
+      nbCandidates += task.join().length;
+    }
+    final double[] candidates = new double[nbCandidates];
+    int position = 0;
+    for (final RecursiveTask<double[]> task : tasks) {
+      final double[] part = task.join();
+      System.arraycopy(part, 0, candidates, position, part.length);
+      position += part.length;
+    }
+    // the smallest candidates are the smallest values; the largest candidates are the largest values
+    final int shift = lower ? 0 : n - nbCandidates;
+    final int[] shifted = new int[ks.length];
+    for (int i = 0; i < ks.length; i++) {
+      shifted[i] = ks[i] - shift;
+    }
+    return select(candidates, shifted);
+  }
+
+  private static void multiSelect(final double[] x, final int from, final int to, final int[] ks, final int kFrom, final int kTo, final int depth,
+      final int[] bounds) {
+    if (kFrom >= kTo) {
+      return;
+    }
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      insertionSort(x, from, to);
+      return;
+    }
+    if (depth == 0) {
+      Arrays.sort(x, from, to);
+      return;
+    }
+    partition(x, from, to, bounds);
+    final int lt = bounds[0];
+    final int gt = bounds[1];
+    int left = kFrom;
+    while (left < kTo && ks[left] < lt) {
+      left++;
+    }
+    int right = left;
+    while (right < kTo && ks[right] <= gt) {
+      right++;
+    }
+    multiSelect(x, from, lt, ks, kFrom, left, depth - 1, bounds);
+    multiSelect(x, gt + 1, to, ks, right, kTo, depth - 1, bounds);
+  }
+
+  /**
+   * Three-way partition of x[from, to) around a median-of-three pivot: on exit x[from, bounds[0]) is below the pivot, x[bounds[0], bounds[1]]
+   * equal to it and x(bounds[1], to) above it.
+   */
+  private static void partition(final double[] x, final int from, final int to, final int[] bounds) {
+    final double a = x[from];
+    final double b = x[(from + to) >>> 1];
+    final double c = x[to - 1];
+    final double pivot = a < b ? (b < c ? b : (a < c ? c : a)) : (a < c ? a : (b < c ? c : b));
+    int lt = from;
+    int i = from;
+    int gt = to - 1;
+    while (i <= gt) {
+      final double value = x[i];
+      if (value < pivot) {
+        x[i++] = x[lt];
+        x[lt++] = value;
+      } else if (value > pivot) {
+        x[i] = x[gt];
+        x[gt--] = value;
+      } else {
+        i++;
+      }
+    }
+    bounds[0] = lt;
+    bounds[1] = gt;
+  }
+
+  private static void insertionSort(final double[] x, final int from, final int to) {
+    for (int i = from + 1; i < to; i++) {
+      final double value = x[i];
+      int j = i - 1;
+      while (j >= from && x[j] > value) {
+        x[j + 1] = x[j];
+        j--;
+      }
+      x[j + 1] = value;
+    }
+  }
+
+  private static int depthLimit(final int n) {
+    return 2 * (32 - Integer.numberOfLeadingZeros(n));
+  }
+
+  private static int[] checkAndSort(final int[] ks, final int n) {
+    Validate.isTrue(ks.length > 0, "No index");
+    final int[] sorted = Arrays.copyOf(ks, ks.length);
+    Arrays.sort(sorted);
+    Validate.isTrue(sorted[0] >= 0 && sorted[sorted.length - 1] < n, "Index out of range for an array of length " + n);
+    return sorted;
+  }
+
+}
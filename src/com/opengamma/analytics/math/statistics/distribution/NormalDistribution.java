@@ -32,6 +32,7 @@ import com.opengamma.analytics.math.statistics.distribution.fnlib.DERFC;
  */
 public class NormalDistribution implements ProbabilityDistribution<Double> {
   private static final double ROOT2 = Math.sqrt(2);
+  private static final double ONE_OVER_ROOT2PI = 1 / Math.sqrt(2 * Math.PI);
 
   // TODO need a better seed
   private final double _mean;
@@ -109,6 +110,25 @@ public class NormalDistribution implements ProbabilityDistribution<Double> {
     return _standardDeviation;
   }
 
+  /**
+   * The cumulative distribution function of the standard normal distribution, on primitives. This is the same DERFC evaluation as
+   * {@link #getCDF(Double)} for a distribution with mean 0 and standard deviation 1; only the boxing and the argument check are left out.
+   * @param x The value
+   * @return The CDF at x
+   */
+  public static double getStandardCDF(final double x) {
+    return DERFC.getErfc(-x / ROOT2) / 2;
+  }
+
+  /**
+   * The probability density function of the standard normal distribution, on primitives.
+   * @param x The value
+   * @return The PDF at x
+   */
+  public static double getStandardPDF(final double x) {
+    return ONE_OVER_ROOT2PI * Math.exp(-0.5 * x * x);
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -23,12 +23,15 @@ import com.opengamma.maths.lowlevelapi.datatypes.primitive.MatrixPrimitive;
 import com.opengamma.maths.lowlevelapi.datatypes.primitive.PackedMatrix;
 import com.opengamma.maths.lowlevelapi.datatypes.primitive.SparseCoordinateFormatMatrix;
 import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelabstractions.BLAS2DGEMVKernelAbstraction;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelabstractions.BLAS2DGEMVParallelKernelAbstraction;
 import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations.DGEMVForCOOMatrix;
 import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations.DGEMVForCSCMatrix;
 import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations.DGEMVForCSRMatrix;
 import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations.DGEMVForDenseMatrix;
 import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations.DGEMVForDenseSymmetricMatrix;
 import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations.DGEMVForPackedMatrix;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations.ParallelDGEMVForCSRMatrix;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations.ParallelDGEMVForDenseMatrix;
 
 /**
  * Provides the BLAS level 2 behaviour for the OG matrix library.
@@ -75,6 +78,16 @@ public class BLAS2 {
     s_dgemvFunctionPointers.put(DenseSymmetricMatrix.class, DGEMVForDenseSymmetricMatrix.getInstance());
   }
 
+  /**
+   * DGEMV hashmapped function pointers for the multi-threaded kernels, types not in here fall back to the serial kernels
+   */
+  private static Map<Class<?>, BLAS2DGEMVParallelKernelAbstraction<?>> s_dgemvParallelFunctionPointers = new HashMap<Class<?>, BLAS2DGEMVParallelKernelAbstraction<?>>();
+  static {
+    s_dgemvParallelFunctionPointers.put(OGArrayType.class, ParallelDGEMVForDenseMatrix.getInstance());
+    s_dgemvParallelFunctionPointers.put(DenseMatrix.class, ParallelDGEMVForDenseMatrix.getInstance());
+    s_dgemvParallelFunctionPointers.put(CompressedSparseRowFormatMatrix.class, ParallelDGEMVForCSRMatrix.getInstance());
+  }
+
   /**
    * gets the hashmap of class->kernels
    * @return Map class->kernels
@@ -1573,4 +1586,90 @@ public class BLAS2 {
     dgemvInPlaceTransposed(y.getData(), alpha, aMatrix, beta, aVector.getData());
   }
 
+  /* Multi-threaded statefull manipulators, y is supplied by the caller and nothing is allocated per call for A*x */
+
+  /**
+   * Ensures that the inputs to the parallel DGEMV routines are sane, these write into y from several threads so
+   * the lengths are checked up front.
+   * @param y the vector written to
+   * @param aMatrix is the matrix to be tested (A)
+   * @param aVector is the vector to be tested (x)
+   * @param o orientation "normal" checks for A*x, "transpose" checks for A^T*x
+   */
+  public static void dgemvParallelInputSanityChecker(double[] y, MatrixPrimitive aMatrix, double[] aVector, BLAS2.orientation o) {
+    if (y == null || aMatrix == null || aVector == null) {
+      throw new IllegalArgumentException("BLAS2 DGEMV was called with a null argument.");
+    }
+    final boolean transposed = o == orientation.transposed;
+    final int xLength = transposed ? aMatrix.getNumberOfRows() : aMatrix.getNumberOfColumns();
+    final int yLength = transposed ? aMatrix.getNumberOfColumns() : aMatrix.getNumberOfRows();
+    if (aVector.length != xLength) {
+      throw new IllegalArgumentException("BLAS2 DGEMV: x has length " + aVector.length + ", expected " + xLength + ".");
+    }
+    if (y.length != yLength) {
+      throw new IllegalArgumentException("BLAS2 DGEMV: y has length " + y.length + ", expected " + yLength + ".");
+    }
+  }
+
+  /**
+   * DGEMV FULL, multi-threaded: y:=alpha*A*x + beta*y OR y:=alpha*A^T*x + beta*y depending on the enum orientation.
+   * Large matrices have their rows split across the shared BLAS thread pool, small ones are done on the calling thread.
+   * Matrix types without a multi-threaded kernel are passed to {@link #dgemvInPlace(double[], double, MatrixPrimitive, double, double[])}
+   * or {@link #dgemvInPlaceTransposed(double[], double, MatrixPrimitive, double, double[])}.
+   * If beta is 0 then y is not read.
+   * @param y a double[] vector that will be altered to contain the result
+   * @param alpha a double indicating the scaling of A*x
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param beta a double indicating the scaling of y
+   * @param aVector a double[] vector
+   * @param o orientation "normal" performs A*x, "transpose" performs A^T*x
+   * @param <T> a matrix that implements {@link MatrixPrimitive}
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends MatrixPrimitive> void dgemvInPlaceParallel(double[] y, double alpha, T aMatrix, double beta, double[] aVector, BLAS2.orientation o) {
+    dgemvParallelInputSanityChecker(y, aMatrix, aVector, o);
+    BLAS2DGEMVParallelKernelAbstraction<T> use = (BLAS2DGEMVParallelKernelAbstraction<T>) s_dgemvParallelFunctionPointers.get(aMatrix.getClass());
+    switch (o) {
+      case normal:
+        if (use == null) {
+          dgemvInPlace(y, alpha, aMatrix, beta, aVector);
+        } else {
+          use.dm_parallel_alpha_times_A_times_x_plus_beta_times_y(y, alpha, aMatrix, aVector, beta);
+        }
+        break;
+      case transposed:
+        if (use == null) {
+          dgemvInPlaceTransposed(y, alpha, aMatrix, beta, aVector);
+        } else {
+          use.dm_parallel_alpha_times_AT_times_x_plus_beta_times_y(y, alpha, aMatrix, aVector, beta);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("BLAS2.orientation should be enumerated to either normal or transpose.");
+    }
+  }
+
+  /**
+   * DGEMV simplified, multi-threaded: y:=A*x OR y:=A^T*x depending on the enum orientation.
+   * @param y a double[] vector that will be altered to contain the result
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param aVector a double[] vector
+   * @param o orientation "normal" performs A*x, "transpose" performs A^T*x
+   * @param <T> a matrix that implements {@link MatrixPrimitive}
+   */
+  public static <T extends MatrixPrimitive> void dgemvInPlaceParallel(double[] y, T aMatrix, double[] aVector, BLAS2.orientation o) {
+    dgemvInPlaceParallel(y, 1, aMatrix, 0, aVector, o);
+  }
+
+  /**
+   * DGEMV simplified, multi-threaded: y:=A*x
+   * @param y a double[] vector that will be altered to contain A*x
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param aVector a double[] vector
+   * @param <T> a matrix that implements {@link MatrixPrimitive}
+   */
+  public static <T extends MatrixPrimitive> void dgemvInPlaceParallel(double[] y, T aMatrix, double[] aVector) {
+    dgemvInPlaceParallel(y, 1, aMatrix, 0, aVector, orientation.normal);
+  }
+
 } // class end
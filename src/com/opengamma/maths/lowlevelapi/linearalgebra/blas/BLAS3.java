@@ -0,0 +1,408 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.maths.lowlevelapi.linearalgebra.blas;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.opengamma.maths.commonapi.exceptions.MathsExceptionIllegalArgument;
+import com.opengamma.maths.highlevelapi.datatypes.primitive.OGArrayType;
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.CompressedSparseRowFormatMatrix;
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.DenseMatrix;
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.MatrixPrimitive;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelabstractions.BLAS3DGEMMKernelAbstraction;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelimplementations.DGEMMForCSRMatrix;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelimplementations.DGEMMForDenseMatrix;
+
+/**
+ * Provides the BLAS level 3 behaviour for the OG matrix library.
+ * Massive amounts of overloading goes on, beware and only use if confident.
+ * METHODS: DGEMM
+ */
+public class BLAS3 {
+  /**
+   * orientation: Enumeration based for the orientation of matrices A and B in the scheme
+   * C := alpha*op(A)*op(B) + beta*C
+   */
+  public enum orientation {
+    /** orientation is "normal" */
+    normal,
+    /** orientation is "transposed" */
+    transposed
+  }
+
+  /**
+  * DGEMM  performs one of the following matrix matrix operations
+  *
+  *  C := alpha*op(A)*op(B) + beta*C, where op(X) = X OR op(X) = X^T,
+  *
+  *  where alpha and beta are scalars and op(A) is an m by k matrix, op(B) is a k by n
+  *  matrix and C is an m by n matrix. The ^T indicates transposition.
+  *
+  *  For speed, the method is overloaded such that simplified calls can be
+  *  made when different parts of the DGEMM operation are not needed.
+  *  The kernel is chosen on the classes of both A and B.
+  */
+
+  /**
+   * DGEMM hashmapped function pointers, keyed on the class of A then the class of B
+   */
+  private static Map<Class<?>, Map<Class<?>, BLAS3DGEMMKernelAbstraction<?, ?, ?, ?>>> s_dgemmFunctionPointers = new HashMap<Class<?>, Map<Class<?>, BLAS3DGEMMKernelAbstraction<?, ?, ?, ?>>>();
+  static {
+    // OGArrayType is the wrapper for the high level API
+    register(DenseMatrix.class, DenseMatrix.class, DGEMMForDenseMatrix.getInstance());
+    register(DenseMatrix.class, OGArrayType.class, DGEMMForDenseMatrix.getInstance());
+    register(OGArrayType.class, DenseMatrix.class, DGEMMForDenseMatrix.getInstance());
+    register(OGArrayType.class, OGArrayType.class, DGEMMForDenseMatrix.getInstance());
+
+    register(CompressedSparseRowFormatMatrix.class, DenseMatrix.class, DGEMMForCSRMatrix.getInstance());
+    register(CompressedSparseRowFormatMatrix.class, OGArrayType.class, DGEMMForCSRMatrix.getInstance());
+  }
+
+  private static void register(Class<?> aClass, Class<?> bClass, BLAS3DGEMMKernelAbstraction<?, ?, ?, ?> kernel) {
+    Map<Class<?>, BLAS3DGEMMKernelAbstraction<?, ?, ?, ?>> inner = s_dgemmFunctionPointers.get(aClass);
+    if (inner == null) {
+      inner = new HashMap<Class<?>, BLAS3DGEMMKernelAbstraction<?, ?, ?, ?>>();
+      s_dgemmFunctionPointers.put(aClass, inner);
+    }
+    inner.put(bClass, kernel);
+  }
+
+  /**
+   * gets the hashmap of class(A)->class(B)->kernels
+   * @return Map class->class->kernels
+   */
+  public Map<Class<?>, Map<Class<?>, BLAS3DGEMMKernelAbstraction<?, ?, ?, ?>>> getHashMap() {
+    return s_dgemmFunctionPointers;
+  }
+
+  /**
+   * Ensures that the inputs to DGEMM routines are sane, i.e. op(A)*op(B) is defined and the same shape as C.
+   * @param aMatrix is the matrix to be tested (A)
+   * @param oA the orientation of A
+   * @param bMatrix is the matrix to be tested (B)
+   * @param oB the orientation of B
+   * @param cMatrix is the matrix to be tested (C), may be null if there is no C in the operation
+   */
+  public static void dgemmInputSanityChecker(MatrixPrimitive aMatrix, BLAS3.orientation oA, MatrixPrimitive bMatrix, BLAS3.orientation oB, MatrixPrimitive cMatrix) {
+    if (aMatrix == null || bMatrix == null) {
+      throw new MathsExceptionIllegalArgument("BLAS3 DGEMM was called with a null matrix.");
+    }
+    final boolean tA = oA == orientation.transposed;
+    final boolean tB = oB == orientation.transposed;
+    final int k = tA ? aMatrix.getNumberOfRows() : aMatrix.getNumberOfColumns();
+    final int kB = tB ? bMatrix.getNumberOfColumns() : bMatrix.getNumberOfRows();
+    if (k != kB) {
+      throw new MathsExceptionIllegalArgument("BLAS3 DGEMM: the inner dimensions of op(A) and op(B) do not agree, " + k + " vs " + kB + ".");
+    }
+    if (cMatrix != null) {
+      final int m = tA ? aMatrix.getNumberOfColumns() : aMatrix.getNumberOfRows();
+      final int n = tB ? bMatrix.getNumberOfRows() : bMatrix.getNumberOfColumns();
+      if (cMatrix.getNumberOfRows() != m || cMatrix.getNumberOfColumns() != n) {
+        throw new MathsExceptionIllegalArgument("BLAS3 DGEMM: C must be " + m + "x" + n + ".");
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> BLAS3DGEMMKernelAbstraction<MatrixPrimitive, TA, TB, MatrixPrimitive> lookup(TA aMatrix, TB bMatrix) {
+    if (aMatrix == null || bMatrix == null) {
+      throw new MathsExceptionIllegalArgument("BLAS3 DGEMM was called with a null matrix.");
+    }
+    final Map<Class<?>, BLAS3DGEMMKernelAbstraction<?, ?, ?, ?>> inner = s_dgemmFunctionPointers.get(aMatrix.getClass());
+    final BLAS3DGEMMKernelAbstraction<?, ?, ?, ?> use = inner == null ? null : inner.get(bMatrix.getClass());
+    if (use == null) {
+      throw new MathsExceptionIllegalArgument("BLAS3 DGEMM was called with an unknown Matrix type combination: " + aMatrix.getClass() + " times " + bMatrix.getClass() +
+          ". If this combination is needed then implement a BLAS3DGEMMKernelAbstraction.");
+    }
+    return (BLAS3DGEMMKernelAbstraction<MatrixPrimitive, TA, TB, MatrixPrimitive>) use;
+  }
+
+  private static int select(BLAS3.orientation oA, BLAS3.orientation oB) {
+    if (oA == null || oB == null) {
+      throw new IllegalArgumentException("BLAS3.orientation should be enumerated to either normal or transpose.");
+    }
+    return (oA == orientation.transposed ? 1 : 0) + (oB == orientation.transposed ? 2 : 0);
+  }
+
+  /* Stateless manipulators on the Matrices implementing the MatrixPrimitive interface type */
+
+  /* GROUP1:: op(A)*op(B) */
+  /**
+   * DGEMM simplified: returns:=op(A)*op(B) depending on the enum orientations.
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param oA orientation of A, "normal" uses A, "transposed" uses A^T
+   * @param oB orientation of B, "normal" uses B, "transposed" uses B^T
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   * @return tmp the result, the type is chosen by the kernel
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> MatrixPrimitive dgemm(TA aMatrix, TB bMatrix, BLAS3.orientation oA, BLAS3.orientation oB) {
+    BLAS3DGEMMKernelAbstraction<MatrixPrimitive, TA, TB, MatrixPrimitive> use = lookup(aMatrix, bMatrix);
+    dgemmInputSanityChecker(aMatrix, oA, bMatrix, oB, null);
+    switch (select(oA, oB)) {
+      case 0:
+        return use.dm_stateless_A_times_B(aMatrix, bMatrix);
+      case 1:
+        return use.dm_stateless_AT_times_B(aMatrix, bMatrix);
+      case 2:
+        return use.dm_stateless_A_times_BT(aMatrix, bMatrix);
+      default:
+        return use.dm_stateless_AT_times_BT(aMatrix, bMatrix);
+    }
+  }
+
+  /**
+   * DGEMM simplified: returns:=A*B
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   * @return tmp the result, the type is chosen by the kernel
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> MatrixPrimitive dgemm(TA aMatrix, TB bMatrix) {
+    return dgemm(aMatrix, bMatrix, orientation.normal, orientation.normal);
+  }
+
+  /* GROUP2:: alpha*op(A)*op(B) */
+  /**
+   * DGEMM simplified: returns:=alpha*op(A)*op(B) depending on the enum orientations.
+   * @param alpha a double indicating the scaling of op(A)*op(B)
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param oA orientation of A, "normal" uses A, "transposed" uses A^T
+   * @param oB orientation of B, "normal" uses B, "transposed" uses B^T
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   * @return tmp the result, the type is chosen by the kernel
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> MatrixPrimitive dgemm(double alpha, TA aMatrix, TB bMatrix, BLAS3.orientation oA, BLAS3.orientation oB) {
+    if (alpha == 1) {
+      return dgemm(aMatrix, bMatrix, oA, oB);
+    }
+    BLAS3DGEMMKernelAbstraction<MatrixPrimitive, TA, TB, MatrixPrimitive> use = lookup(aMatrix, bMatrix);
+    dgemmInputSanityChecker(aMatrix, oA, bMatrix, oB, null);
+    switch (select(oA, oB)) {
+      case 0:
+        return use.dm_stateless_alpha_A_times_B(alpha, aMatrix, bMatrix);
+      case 1:
+        return use.dm_stateless_alpha_AT_times_B(alpha, aMatrix, bMatrix);
+      case 2:
+        return use.dm_stateless_alpha_A_times_BT(alpha, aMatrix, bMatrix);
+      default:
+        return use.dm_stateless_alpha_AT_times_BT(alpha, aMatrix, bMatrix);
+    }
+  }
+
+  /**
+   * DGEMM simplified: returns:=alpha*A*B
+   * @param alpha a double indicating the scaling of A*B
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   * @return tmp the result, the type is chosen by the kernel
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> MatrixPrimitive dgemm(double alpha, TA aMatrix, TB bMatrix) {
+    return dgemm(alpha, aMatrix, bMatrix, orientation.normal, orientation.normal);
+  }
+
+  /* GROUP3:: alpha*op(A)*op(B) + beta*C */
+  /**
+   * DGEMM full: returns:=alpha*op(A)*op(B) + beta*C depending on the enum orientations. C is not altered.
+   * @param alpha a double indicating the scaling of op(A)*op(B)
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param beta a double indicating the scaling of C
+   * @param cMatrix a Matrix of the type the kernel for A and B accumulates into
+   * @param oA orientation of A, "normal" uses A, "transposed" uses A^T
+   * @param oB orientation of B, "normal" uses B, "transposed" uses B^T
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   * @return tmp the result, the type is chosen by the kernel
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> MatrixPrimitive dgemm(double alpha, TA aMatrix, TB bMatrix, double beta, MatrixPrimitive cMatrix,
+      BLAS3.orientation oA, BLAS3.orientation oB) {
+    if (beta == 0) {
+      return dgemm(alpha, aMatrix, bMatrix, oA, oB);
+    }
+    BLAS3DGEMMKernelAbstraction<MatrixPrimitive, TA, TB, MatrixPrimitive> use = lookup(aMatrix, bMatrix);
+    dgemmInputSanityChecker(aMatrix, oA, bMatrix, oB, cMatrix);
+    final int variant = select(oA, oB);
+    if (beta == 1) {
+      if (alpha == 1) {
+        switch (variant) {
+          case 0:
+            return use.dm_stateless_A_times_B_plus_C(aMatrix, bMatrix, cMatrix);
+          case 1:
+            return use.dm_stateless_AT_times_B_plus_C(aMatrix, bMatrix, cMatrix);
+          case 2:
+            return use.dm_stateless_A_times_BT_plus_C(aMatrix, bMatrix, cMatrix);
+          default:
+            return use.dm_stateless_AT_times_BT_plus_C(aMatrix, bMatrix, cMatrix);
+        }
+      }
+      switch (variant) {
+        case 0:
+          return use.dm_stateless_alpha_A_times_B_plus_C(alpha, aMatrix, bMatrix, cMatrix);
+        case 1:
+          return use.dm_stateless_alpha_AT_times_B_plus_C(alpha, aMatrix, bMatrix, cMatrix);
+        case 2:
+          return use.dm_stateless_alpha_A_times_BT_plus_C(alpha, aMatrix, bMatrix, cMatrix);
+        default:
+          return use.dm_stateless_alpha_AT_times_BT_plus_C(alpha, aMatrix, bMatrix, cMatrix);
+      }
+    }
+    if (alpha == 1) {
+      switch (variant) {
+        case 0:
+          return use.dm_stateless_A_times_B_plus_beta_times_C(aMatrix, bMatrix, beta, cMatrix);
+        case 1:
+          return use.dm_stateless_AT_times_B_plus_beta_times_C(aMatrix, bMatrix, beta, cMatrix);
+        case 2:
+          return use.dm_stateless_A_times_BT_plus_beta_times_C(aMatrix, bMatrix, beta, cMatrix);
+        default:
+          return use.dm_stateless_AT_times_BT_plus_beta_times_C(aMatrix, bMatrix, beta, cMatrix);
+      }
+    }
+    switch (variant) {
+      case 0:
+        return use.dm_stateless_alpha_times_A_times_B_plus_beta_times_C(alpha, aMatrix, bMatrix, beta, cMatrix);
+      case 1:
+        return use.dm_stateless_alpha_times_AT_times_B_plus_beta_times_C(alpha, aMatrix, bMatrix, beta, cMatrix);
+      case 2:
+        return use.dm_stateless_alpha_times_A_times_BT_plus_beta_times_C(alpha, aMatrix, bMatrix, beta, cMatrix);
+      default:
+        return use.dm_stateless_alpha_times_AT_times_BT_plus_beta_times_C(alpha, aMatrix, bMatrix, beta, cMatrix);
+    }
+  }
+
+  /**
+   * DGEMM full: returns:=alpha*A*B + beta*C. C is not altered.
+   * @param alpha a double indicating the scaling of A*B
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param beta a double indicating the scaling of C
+   * @param cMatrix a Matrix of the type the kernel for A and B accumulates into
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   * @return tmp the result, the type is chosen by the kernel
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> MatrixPrimitive dgemm(double alpha, TA aMatrix, TB bMatrix, double beta, MatrixPrimitive cMatrix) {
+    return dgemm(alpha, aMatrix, bMatrix, beta, cMatrix, orientation.normal, orientation.normal);
+  }
+
+  /* In place manipulators, C is overwritten */
+
+  /**
+   * DGEMM in place: C:=alpha*op(A)*op(B) + beta*C depending on the enum orientations.
+   * With beta = 0 the contents of C are ignored.
+   * @param cMatrix a Matrix of the type the kernel for A and B accumulates into, overwritten with the result
+   * @param alpha a double indicating the scaling of op(A)*op(B)
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param beta a double indicating the scaling of C
+   * @param oA orientation of A, "normal" uses A, "transposed" uses A^T
+   * @param oB orientation of B, "normal" uses B, "transposed" uses B^T
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> void dgemmInPlace(MatrixPrimitive cMatrix, double alpha, TA aMatrix, TB bMatrix, double beta,
+      BLAS3.orientation oA, BLAS3.orientation oB) {
+    BLAS3DGEMMKernelAbstraction<MatrixPrimitive, TA, TB, MatrixPrimitive> use = lookup(aMatrix, bMatrix);
+    dgemmInputSanityChecker(aMatrix, oA, bMatrix, oB, cMatrix);
+    final int variant = select(oA, oB);
+    if (beta == 1) {
+      if (alpha == 1) {
+        switch (variant) {
+          case 0:
+            use.dm_inplace_A_times_B_plus_C(aMatrix, bMatrix, cMatrix);
+            break;
+          case 1:
+            use.dm_inplace_AT_times_B_plus_C(aMatrix, bMatrix, cMatrix);
+            break;
+          case 2:
+            use.dm_inplace_A_times_BT_plus_C(aMatrix, bMatrix, cMatrix);
+            break;
+          default:
+            use.dm_inplace_AT_times_BT_plus_C(aMatrix, bMatrix, cMatrix);
+        }
+        return;
+      }
+      switch (variant) {
+        case 0:
+          use.dm_inplace_alpha_A_times_B_plus_C(alpha, aMatrix, bMatrix, cMatrix);
+          break;
+        case 1:
+          use.dm_inplace_alpha_AT_times_B_plus_C(alpha, aMatrix, bMatrix, cMatrix);
+          break;
+        case 2:
+          use.dm_inplace_alpha_A_times_BT_plus_C(alpha, aMatrix, bMatrix, cMatrix);
+          break;
+        default:
+          use.dm_inplace_alpha_AT_times_BT_plus_C(alpha, aMatrix, bMatrix, cMatrix);
+      }
+      return;
+    }
+    if (alpha == 1) {
+      switch (variant) {
+        case 0:
+          use.dm_inplace_A_times_B_plus_beta_times_C(aMatrix, bMatrix, beta, cMatrix);
+          break;
+        case 1:
+          use.dm_inplace_AT_times_B_plus_beta_times_C(aMatrix, bMatrix, beta, cMatrix);
+          break;
+        case 2:
+          use.dm_inplace_A_times_BT_plus_beta_times_C(aMatrix, bMatrix, beta, cMatrix);
+          break;
+        default:
+          use.dm_inplace_AT_times_BT_plus_beta_times_C(aMatrix, bMatrix, beta, cMatrix);
+      }
+      return;
+    }
+    switch (variant) {
+      case 0:
+        use.dm_inplace_alpha_times_A_times_B_plus_beta_times_C(alpha, aMatrix, bMatrix, beta, cMatrix);
+        break;
+      case 1:
+        use.dm_inplace_alpha_times_AT_times_B_plus_beta_times_C(alpha, aMatrix, bMatrix, beta, cMatrix);
+        break;
+      case 2:
+        use.dm_inplace_alpha_times_A_times_BT_plus_beta_times_C(alpha, aMatrix, bMatrix, beta, cMatrix);
+        break;
+      default:
+        use.dm_inplace_alpha_times_AT_times_BT_plus_beta_times_C(alpha, aMatrix, bMatrix, beta, cMatrix);
+    }
+  }
+
+  /**
+   * DGEMM in place: C:=alpha*A*B + beta*C.
+   * @param cMatrix a Matrix of the type the kernel for A and B accumulates into, overwritten with the result
+   * @param alpha a double indicating the scaling of A*B
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param beta a double indicating the scaling of C
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> void dgemmInPlace(MatrixPrimitive cMatrix, double alpha, TA aMatrix, TB bMatrix, double beta) {
+    dgemmInPlace(cMatrix, alpha, aMatrix, bMatrix, beta, orientation.normal, orientation.normal);
+  }
+
+  /**
+   * DGEMM in place: C:=A*B + C.
+   * @param cMatrix a Matrix of the type the kernel for A and B accumulates into, overwritten with the result
+   * @param aMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param bMatrix a Matrix implementing the MatrixPrimitive interface
+   * @param <TA> a matrix that implements {@link MatrixPrimitive}
+   * @param <TB> a matrix that implements {@link MatrixPrimitive}
+   */
+  public static <TA extends MatrixPrimitive, TB extends MatrixPrimitive> void dgemmInPlace(MatrixPrimitive cMatrix, TA aMatrix, TB bMatrix) {
+    dgemmInPlace(cMatrix, 1, aMatrix, bMatrix, 1, orientation.normal, orientation.normal);
+  }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.maths.lowlevelapi.linearalgebra.blas.auxiliary;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Holds the fork/join pool shared by the multi-threaded BLAS kernels so that BLAS2 and BLAS3 calls do not
+ * each spin up their own set of threads. Other data-parallel analytics run on the same pool, so one setting bounds
+ * the threads used by all of them.
+ */
+public final class BLASThreadPool {
+
+  private static volatile ForkJoinPool s_pool = new ForkJoinPool();
+
+  private BLASThreadPool() {
+  }
+
+  /**
+   * Gets the pool
+   * @return the pool shared by the BLAS kernels
+   */
+  public static ForkJoinPool getPool() {
+    return s_pool;
+  }
+
+  /**
+   * Gets the number of threads the kernels should aim to keep busy
+   * @return the parallelism of the pool
+   */
+  public static int getParallelism() {
+    return s_pool.getParallelism();
+  }
+
+  /**
+   * Replaces the pool by one with the given number of threads; the previous pool finishes the work it has been given and is shut down.
+   * With one thread the users of the pool run on the calling thread. Not to be called while work is being submitted.
+   * @param threads the number of threads, at least one
+   */
+  public static void setParallelism(final int threads) {
+    Validate.isTrue(threads > 0, "Need at least one thread; have " + threads);
+    final ForkJoinPool old = s_pool;
+    s_pool = new ForkJoinPool(threads);
+    old.shutdown();
+  }
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelabstractions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.MatrixPrimitive;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.auxiliary.BLASThreadPool;
+
+/**
+ * Multi-threaded DGEMV, y := alpha*A*x + beta*y OR y := alpha*A^T*x + beta*y, written into a caller provided y.
+ *
+ * The rows of A are partitioned across the shared BLAS fork/join pool once the amount of work passes a threshold,
+ * below it the same range kernels run on the calling thread and nothing is allocated.
+ * For A*x each row of A owns one entry of y so the tasks write to y directly. For A^T*x every row of A touches all
+ * of y, so the first task accumulates into y and each of the others into its own partial vector, and the partials are
+ * added into y, in task order, at the end. The result therefore does not depend on the scheduling. The partial vectors
+ * are kept by the calling thread for its next call rather than allocated each time.
+ * @param <T> a kind of matrix
+ */
+public abstract class BLAS2DGEMVParallelKernelAbstraction<T extends MatrixPrimitive> {
+
+  /** Below this many multiply-adds the kernels run on the calling thread */
+  protected static final long PARALLEL_THRESHOLD = 1L << 17;
+  /** Smallest number of multiply-adds worth giving to a task */
+  protected static final long MIN_TASK_WORK = 1L << 14;
+
+  /**
+   * The partial vectors of A^T*x of the last call made by each thread. They are taken out while in use, so that a nested call on
+   * the same thread (from a task run while the thread waits for its own) allocates its own.
+   */
+  private final ThreadLocal<double[][]> _partials = new ThreadLocal<double[][]>();
+
+  /**
+   * Gets the number of multiply-adds in A*x
+   * @param A the matrix
+   * @return the work, e.g. rows*columns for a dense matrix or the number of non zeros for a sparse one
+   */
+  protected abstract long work(T A); //CSIGNORE
+
+  /**
+   * Performs y[i] := alpha*(A*x)[i] + beta*y[i] for rows i in [lo, hi). If beta is 0, y is not read.
+   * @param y the vector written to
+   * @param alpha the scaling of A*x
+   * @param A the matrix
+   * @param x the vector multiplied
+   * @param beta the scaling of y
+   * @param lo the first row, inclusive
+   * @param hi the last row, exclusive
+   */
+  protected abstract void rowsTimesX(double[] y, double alpha, T A, double[] x, double beta, int lo, int hi); //CSIGNORE
+
+  /**
+   * Performs acc := acc + alpha*A(lo:hi, :)^T * x(lo:hi), i.e. the contribution of rows [lo, hi) of A to A^T*x.
+   * @param acc the accumulator, of length the number of columns of A
+   * @param alpha the scaling of A^T*x
+   * @param A the matrix
+   * @param x the vector multiplied
+   * @param lo the first row, inclusive
+   * @param hi the last row, exclusive
+   */
+  protected abstract void rowsTransposedTimesX(double[] acc, double alpha, T A, double[] x, int lo, int hi); //CSIGNORE
+
+  /**
+   * y := alpha*A*x + beta*y
+   * @param y the vector written to, of length the number of rows of A
+   * @param alpha the scaling of A*x
+   * @param A the matrix
+   * @param x the vector multiplied, of length the number of columns of A
+   * @param beta the scaling of y, if 0 then y is not read
+   */
+  public void dm_parallel_alpha_times_A_times_x_plus_beta_times_y(final double[] y, final double alpha, final T A, final double[] x, final double beta) { //CSIGNORE
+    final int rows = A.getNumberOfRows();
+    final long work = work(A);
+    if (work < PARALLEL_THRESHOLD || rows < 2 || BLASThreadPool.getParallelism() == 1) {
+      rowsTimesX(y, alpha, A, x, beta, 0, rows);
+      return;
+    }
+    final int rowsPerTask = (int) Math.max(1, Math.max(rows * MIN_TASK_WORK / work, rows / (4L * BLASThreadPool.getParallelism())));
+    BLASThreadPool.getPool().invoke(new RowSplit(y, alpha, A, x, beta, 0, rows, rowsPerTask));
+  }
+
+  /**
+   * y := alpha*A^T*x + beta*y
+   * @param y the vector written to, of length the number of columns of A
+   * @param alpha the scaling of A^T*x
+   * @param A the matrix
+   * @param x the vector multiplied, of length the number of rows of A
+   * @param beta the scaling of y, if 0 then y is not read
+   */
+  public void dm_parallel_alpha_times_AT_times_x_plus_beta_times_y(final double[] y, final double alpha, final T A, final double[] x, final double beta) { //CSIGNORE
+    final int rows = A.getNumberOfRows();
+    final int cols = A.getNumberOfColumns();
+    scale(y, beta, cols);
+    final long work = work(A);
+    final int tasks = (int) Math.min(Math.min(rows, BLASThreadPool.getParallelism()), work / MIN_TASK_WORK);
+    if (work < PARALLEL_THRESHOLD || tasks < 2) {
+      rowsTransposedTimesX(y, alpha, A, x, 0, rows);
+      return;
+    }
+    double[][] partials = _partials.get();
+    _partials.set(null);
+    if (partials == null || partials.length < tasks - 1 || partials[0].length < cols) {
+      partials = new double[tasks - 1][cols];
+    }
+    final List<PartialTransposed> parts = new ArrayList<PartialTransposed>(tasks);
+    for (int loopt = 0; loopt < tasks; loopt++) {
+      final double[] acc = loopt == 0 ? y : partials[loopt - 1];
+      parts.add(new PartialTransposed(acc, loopt != 0, alpha, A, x, (int) ((long) rows * loopt / tasks), (int) ((long) rows * (loopt + 1) / tasks)));
+    }
+    BLASThreadPool.getPool().invoke(new RecursiveAction() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected void compute() {
+        invokeAll(parts);
+      }
+    });
+    for (int loopt = 1; loopt < tasks; loopt++) {
+      final double[] acc = partials[loopt - 1];
+      for (int i = 0; i < cols; i++) {
+        y[i] += acc[i];
+      }
+    }
+    _partials.set(partials);
+  }
+
+  private static void scale(final double[] y, final double beta, final int n) {
+    if (beta == 0) {
+      for (int i = 0; i < n; i++) {
+        y[i] = 0;
+      }
+    } else if (beta != 1) {
+      for (int i = 0; i < n; i++) {
+        y[i] *= beta;
+      }
+    }
+  }
+
+  private final class RowSplit extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final double[] _y;
+    private final double _alpha;
+    private final T _a;
+    private final double[] _x;
+    private final double _beta;
+    private final int _lo;
+    private final int _hi;
+    private final int _rowsPerTask;
+
+    RowSplit(final double[] y, final double alpha, final T a, final double[] x, final double beta, final int lo, final int hi, final int rowsPerTask) {
+      _y = y;
+      _alpha = alpha;
+      _a = a;
+      _x = x;
+      _beta = beta;
+      _lo = lo;
+      _hi = hi;
+      _rowsPerTask = rowsPerTask;
+    }
+
+    @Override
+    protected void compute() {
+      if (_hi - _lo <= _rowsPerTask) {
+        rowsTimesX(_y, _alpha, _a, _x, _beta, _lo, _hi);
+        return;
+      }
+      final int mid = (_lo + _hi) >>> 1;
+      invokeAll(new RowSplit(_y, _alpha, _a, _x, _beta, _lo, mid, _rowsPerTask), new RowSplit(_y, _alpha, _a, _x, _beta, mid, _hi, _rowsPerTask));
+    }
+  }
+
+  private final class PartialTransposed extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final double[] _acc;
+    private final boolean _clear;
+    private final double _alpha;
+    private final T _a;
+    private final double[] _x;
+    private final int _lo;
+    private final int _hi;
+
+    PartialTransposed(final double[] acc, final boolean clear, final double alpha, final T a, final double[] x, final int lo, final int hi) {
+      _acc = acc;
+      _clear = clear;
+      _alpha = alpha;
+      _a = a;
+      _x = x;
+      _lo = lo;
+      _hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (_clear) {
+        Arrays.fill(_acc, 0, _a.getNumberOfColumns(), 0);
+      }
+      rowsTransposedTimesX(_acc, _alpha, _a, _x, _lo, _hi);
+    }
+  }
+
+}
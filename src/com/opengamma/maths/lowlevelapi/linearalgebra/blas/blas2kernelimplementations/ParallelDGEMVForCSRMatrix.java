@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations;
+
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.CompressedSparseRowFormatMatrix;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelabstractions.BLAS2DGEMVParallelKernelAbstraction;
+
+/**
+ * Does multi-threaded DGEMV like operations on the {@link CompressedSparseRowFormatMatrix} type
+ */
+public final class ParallelDGEMVForCSRMatrix extends BLAS2DGEMVParallelKernelAbstraction<CompressedSparseRowFormatMatrix> {
+  private static ParallelDGEMVForCSRMatrix s_instance = new ParallelDGEMVForCSRMatrix();
+
+  public static ParallelDGEMVForCSRMatrix getInstance() {
+    return s_instance;
+  }
+
+  private ParallelDGEMVForCSRMatrix() {
+  }
+
+  @Override
+  protected long work(CompressedSparseRowFormatMatrix A) { //CSIGNORE
+    return A.getRowPtr()[A.getNumberOfRows()];
+  }
+
+  @Override
+  protected void rowsTimesX(double[] y, double alpha, CompressedSparseRowFormatMatrix A, double[] x, double beta, int lo, int hi) { //CSIGNORE
+    final int[] rowPtr = A.getRowPtr();
+    final int[] colIdx = A.getColumnIndex();
+    final double[] values = A.getNonZeroElements();
+    double acc;
+    for (int i = lo; i < hi; i++) {
+      acc = 0;
+      for (int ptr = rowPtr[i]; ptr < rowPtr[i + 1]; ptr++) {
+        acc += values[ptr] * x[colIdx[ptr]];
+      }
+      if (beta == 0) {
+        y[i] = alpha * acc;
+      } else {
+        y[i] = alpha * acc + beta * y[i];
+      }
+    }
+  }
+
+  @Override
+  protected void rowsTransposedTimesX(double[] acc, double alpha, CompressedSparseRowFormatMatrix A, double[] x, int lo, int hi) { //CSIGNORE
+    final int[] rowPtr = A.getRowPtr();
+    final int[] colIdx = A.getColumnIndex();
+    final double[] values = A.getNonZeroElements();
+    double s;
+    for (int i = lo; i < hi; i++) {
+      s = alpha * x[i];
+      for (int ptr = rowPtr[i]; ptr < rowPtr[i + 1]; ptr++) {
+        acc[colIdx[ptr]] += s * values[ptr];
+      }
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2012 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelimplementations;
+
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.DenseMatrix;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas2kernelabstractions.BLAS2DGEMVParallelKernelAbstraction;
+
+/**
+ * Does multi-threaded DGEMV like operations on the {@link DenseMatrix} type
+ */
+public final class ParallelDGEMVForDenseMatrix extends BLAS2DGEMVParallelKernelAbstraction<DenseMatrix> {
+  private static ParallelDGEMVForDenseMatrix s_instance = new ParallelDGEMVForDenseMatrix();
+
+  public static ParallelDGEMVForDenseMatrix getInstance() {
+    return s_instance;
+  }
+
+  private ParallelDGEMVForDenseMatrix() {
+  }
+
+  @Override
+  protected long work(DenseMatrix A) { //CSIGNORE
+    return (long) A.getNumberOfRows() * A.getNumberOfColumns();
+  }
+
+  @Override
+  protected void rowsTimesX(double[] y, double alpha, DenseMatrix A, double[] x, double beta, int lo, int hi) { //CSIGNORE
+    final int cols = A.getNumberOfColumns();
+    final double[] ptrA = A.getData();
+    final int extra = cols - cols % 4;
+    int idx, ptr;
+    double acc0, acc1;
+    for (int i = lo; i < hi; i++) {
+      idx = i * cols;
+      acc0 = 0;
+      acc1 = 0;
+      for (int j = 0; j < extra; j += 4) {
+        ptr = idx + j;
+        acc0 += ptrA[ptr] * x[j]
+            + ptrA[ptr + 1] * x[j + 1];
+        acc1 += ptrA[ptr + 2] * x[j + 2]
+            + ptrA[ptr + 3] * x[j + 3];
+      }
+      for (int j = extra; j < cols; j++) {
+        acc0 += ptrA[idx + j] * x[j];
+      }
+      if (beta == 0) {
+        y[i] = alpha * (acc0 + acc1);
+      } else {
+        y[i] = alpha * (acc0 + acc1) + beta * y[i];
+      }
+    }
+  }
+
+  @Override
+  protected void rowsTransposedTimesX(double[] acc, double alpha, DenseMatrix A, double[] x, int lo, int hi) { //CSIGNORE
+    final int cols = A.getNumberOfColumns();
+    final double[] ptrA = A.getData();
+    final int extra = cols - cols % 4;
+    int idx;
+    double s;
+    for (int i = lo; i < hi; i++) {
+      s = alpha * x[i];
+      idx = i * cols;
+      for (int j = 0; j < extra; j += 4) {
+        acc[j] += s * ptrA[idx + j];
+        acc[j + 1] += s * ptrA[idx + j + 1];
+        acc[j + 2] += s * ptrA[idx + j + 2];
+        acc[j + 3] += s * ptrA[idx + j + 3];
+      }
+      for (int j = extra; j < cols; j++) {
+        acc[j] += s * ptrA[idx + j];
+      }
+    }
+  }
+
+}
@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelabstractions;
+
+import java.util.concurrent.RecursiveAction;
+
+import com.opengamma.maths.commonapi.exceptions.MathsExceptionIllegalArgument;
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.DenseMatrix;
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.MatrixPrimitive;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.auxiliary.BLASThreadPool;
+
+/**
+ * Partial implementation of {@link BLAS3DGEMMKernelAbstraction} for kernels that write into a {@link DenseMatrix}.
+ * All 40 DGEMM variants are reduced to a single update C := alpha*op(A)*op(B) + C on row major data which
+ * the concrete kernel supplies, the scaling of C by beta and the dimension checks are done here once.
+ *
+ * Kernels can split the rows of C across threads with {@link #forEachRowBlock}, rows of C are disjoint so no
+ * synchronisation is needed and the result does not depend on the number of threads.
+ * @param <TYPEA> a kind of matrix A
+ * @param <TYPEB> a kind of matrix B
+ */
+public abstract class BLAS3DGEMMDenseOutputKernelAbstraction<TYPEA extends MatrixPrimitive, TYPEB extends MatrixPrimitive> extends
+    BLAS3DGEMMKernelAbstraction<DenseMatrix, TYPEA, TYPEB, DenseMatrix> {
+
+  /** Below this many multiply-adds the kernels run on the calling thread */
+  protected static final long PARALLEL_THRESHOLD = 1L << 18;
+  /** Rows of C handed to each task once the work is split */
+  protected static final int ROWS_PER_TASK = 32;
+
+  /**
+   * Performs C := alpha*op(A)*op(B) + C where op(A) is m x k, op(B) is k x n and c holds C, m x n, in row major order.
+   * The dimensions have already been checked.
+   * @param alpha the scaling of op(A)*op(B), not 0
+   * @param A the matrix A
+   * @param transposeA true if op(A) = A^T
+   * @param B the matrix B
+   * @param transposeB true if op(B) = B^T
+   * @param c the row major data of C, updated in place
+   */
+  protected abstract void gemm(double alpha, TYPEA A, boolean transposeA, TYPEB B, boolean transposeB, double[] c); //CSIGNORE
+
+  /**
+   * A piece of work over a contiguous range of rows of C
+   */
+  protected interface RowKernel {
+    /**
+     * @param lo the first row, inclusive
+     * @param hi the last row, exclusive
+     */
+    void rows(int lo, int hi);
+  }
+
+  /**
+   * Runs the kernel over rows [0, rows), in parallel if there is enough work to make it worthwhile
+   * @param rows the number of rows of C
+   * @param work the number of multiply-adds in total
+   * @param kernel the kernel
+   */
+  protected static void forEachRowBlock(final int rows, final long work, final RowKernel kernel) {
+    if (work < PARALLEL_THRESHOLD || rows <= ROWS_PER_TASK || BLASThreadPool.getParallelism() == 1) {
+      kernel.rows(0, rows);
+    } else {
+      BLASThreadPool.getPool().invoke(new RowSplit(kernel, 0, rows));
+    }
+  }
+
+  /**
+   * Transposes a row major rows x cols matrix, in tiles so that neither side is walked with a large stride for long
+   * @param data the row major data
+   * @param rows the number of rows
+   * @param cols the number of columns
+   * @return the row major data of the cols x rows transpose
+   */
+  protected static double[] transpose(final double[] data, final int rows, final int cols) {
+    final int tile = 32;
+    final double[] tmp = new double[data.length];
+    for (int ii = 0; ii < rows; ii += tile) {
+      final int iEnd = Math.min(rows, ii + tile);
+      for (int jj = 0; jj < cols; jj += tile) {
+        final int jEnd = Math.min(cols, jj + tile);
+        for (int i = ii; i < iEnd; i++) {
+          final int idx = i * cols;
+          for (int j = jj; j < jEnd; j++) {
+            tmp[j * rows + i] = data[idx + j];
+          }
+        }
+      }
+    }
+    return tmp;
+  }
+
+  private static final class RowSplit extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final RowKernel _kernel;
+    private final int _lo;
+    private final int _hi;
+
+    RowSplit(final RowKernel kernel, final int lo, final int hi) {
+      _kernel = kernel;
+      _lo = lo;
+      _hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (_hi - _lo <= ROWS_PER_TASK) {
+        _kernel.rows(_lo, _hi);
+        return;
+      }
+      // keep the split on a multiple of 4 rows so the kernels' row tiling is not broken up
+      final int mid = _lo + Math.max(4, ((_hi - _lo) >> 1) & ~3);
+      invokeAll(new RowSplit(_kernel, _lo, mid), new RowSplit(_kernel, mid, _hi));
+    }
+  }
+
+  private DenseMatrix stateless(final double alpha, final TYPEA A, final boolean transposeA, final TYPEB B, final boolean transposeB, final double beta, final DenseMatrix C) { //CSIGNORE
+    final int m = transposeA ? A.getNumberOfColumns() : A.getNumberOfRows();
+    final int n = transposeB ? B.getNumberOfRows() : B.getNumberOfColumns();
+    checkDimensions(A, transposeA, B, transposeB, C, false);
+    final double[] c = new double[m * n];
+    if (C != null && beta != 0) {
+      final double[] ptrC = C.getData();
+      if (beta == 1) {
+        System.arraycopy(ptrC, 0, c, 0, c.length);
+      } else {
+        for (int i = 0; i < c.length; i++) {
+          c[i] = beta * ptrC[i];
+        }
+      }
+    }
+    if (alpha != 0) {
+      gemm(alpha, A, transposeA, B, transposeB, c);
+    }
+    return new DenseMatrix().noCopyOnContructFromRowVector(c, m, n);
+  }
+
+  private void inplace(final double alpha, final TYPEA A, final boolean transposeA, final TYPEB B, final boolean transposeB, final double beta, final DenseMatrix C) { //CSIGNORE
+    checkDimensions(A, transposeA, B, transposeB, C, true);
+    final double[] c = C.getData();
+    if (beta == 0) {
+      java.util.Arrays.fill(c, 0);
+    } else if (beta != 1) {
+      for (int i = 0; i < c.length; i++) {
+        c[i] *= beta;
+      }
+    }
+    if (alpha != 0) {
+      gemm(alpha, A, transposeA, B, transposeB, c);
+    }
+  }
+
+  private static void checkDimensions(final MatrixPrimitive A, final boolean transposeA, final MatrixPrimitive B, final boolean transposeB, final DenseMatrix C, //CSIGNORE
+      final boolean inplace) {
+    if (A == null || B == null) {
+      throw new MathsExceptionIllegalArgument("DGEMM: null matrix");
+    }
+    if (inplace && C == null) {
+      throw new MathsExceptionIllegalArgument("DGEMM: null matrix C, the result of an in place operation");
+    }
+    final int m = transposeA ? A.getNumberOfColumns() : A.getNumberOfRows();
+    final int k = transposeA ? A.getNumberOfRows() : A.getNumberOfColumns();
+    final int kB = transposeB ? B.getNumberOfColumns() : B.getNumberOfRows();
+    final int n = transposeB ? B.getNumberOfRows() : B.getNumberOfColumns();
+    if (k != kB) {
+      throw new MathsExceptionIllegalArgument("DGEMM: op(A) is " + m + "x" + k + " but op(B) is " + kB + "x" + n);
+    }
+    if (C != null && (C.getNumberOfRows() != m || C.getNumberOfColumns() != n)) {
+      throw new MathsExceptionIllegalArgument("DGEMM: C is " + C.getNumberOfRows() + "x" + C.getNumberOfColumns() + " but op(A)*op(B) is " + m + "x" + n);
+    }
+  }
+
+  /* Stateless manipulators */
+  //{
+  @Override
+  public DenseMatrix dm_stateless_A_times_B(TYPEA A, TYPEB B) { //CSIGNORE
+    return stateless(1, A, false, B, false, 0, null);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_AT_times_B(TYPEA A, TYPEB B) { //CSIGNORE
+    return stateless(1, A, true, B, false, 0, null);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_A_times_BT(TYPEA A, TYPEB B) { //CSIGNORE
+    return stateless(1, A, false, B, true, 0, null);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_AT_times_BT(TYPEA A, TYPEB B) { //CSIGNORE
+    return stateless(1, A, true, B, true, 0, null);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_A_times_B(double alpha, TYPEA A, TYPEB B) { //CSIGNORE
+    return stateless(alpha, A, false, B, false, 0, null);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_AT_times_B(double alpha, TYPEA A, TYPEB B) { //CSIGNORE
+    return stateless(alpha, A, true, B, false, 0, null);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_A_times_BT(double alpha, TYPEA A, TYPEB B) { //CSIGNORE
+    return stateless(alpha, A, false, B, true, 0, null);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_AT_times_BT(double alpha, TYPEA A, TYPEB B) { //CSIGNORE
+    return stateless(alpha, A, true, B, true, 0, null);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_A_times_B_plus_C(TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    return stateless(1, A, false, B, false, 1, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_AT_times_B_plus_C(TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    return stateless(1, A, true, B, false, 1, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_A_times_BT_plus_C(TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    return stateless(1, A, false, B, true, 1, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_AT_times_BT_plus_C(TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    return stateless(1, A, true, B, true, 1, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_A_times_B_plus_C(double alpha, TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    return stateless(alpha, A, false, B, false, 1, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_AT_times_B_plus_C(double alpha, TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    return stateless(alpha, A, true, B, false, 1, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_A_times_BT_plus_C(double alpha, TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    return stateless(alpha, A, false, B, true, 1, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_AT_times_BT_plus_C(double alpha, TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    return stateless(alpha, A, true, B, true, 1, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_A_times_B_plus_beta_times_C(TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    return stateless(1, A, false, B, false, beta, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_AT_times_B_plus_beta_times_C(TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    return stateless(1, A, true, B, false, beta, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_A_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    return stateless(1, A, false, B, true, beta, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_AT_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    return stateless(1, A, true, B, true, beta, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_times_A_times_B_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    return stateless(alpha, A, false, B, false, beta, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_times_AT_times_B_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    return stateless(alpha, A, true, B, false, beta, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_times_A_times_BT_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    return stateless(alpha, A, false, B, true, beta, C);
+  }
+
+  @Override
+  public DenseMatrix dm_stateless_alpha_times_AT_times_BT_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    return stateless(alpha, A, true, B, true, beta, C);
+  }
+  //} end stateless
+
+  /* In place manipulators */
+  //{
+  @Override
+  public void dm_inplace_A_times_B_plus_C(TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    inplace(1, A, false, B, false, 1, C);
+  }
+
+  @Override
+  public void dm_inplace_AT_times_B_plus_C(TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    inplace(1, A, true, B, false, 1, C);
+  }
+
+  @Override
+  public void dm_inplace_A_times_BT_plus_C(TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    inplace(1, A, false, B, true, 1, C);
+  }
+
+  @Override
+  public void dm_inplace_AT_times_BT_plus_C(TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    inplace(1, A, true, B, true, 1, C);
+  }
+
+  @Override
+  public void dm_inplace_alpha_A_times_B_plus_C(double alpha, TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    inplace(alpha, A, false, B, false, 1, C);
+  }
+
+  @Override
+  public void dm_inplace_alpha_AT_times_B_plus_C(double alpha, TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    inplace(alpha, A, true, B, false, 1, C);
+  }
+
+  @Override
+  public void dm_inplace_alpha_A_times_BT_plus_C(double alpha, TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    inplace(alpha, A, false, B, true, 1, C);
+  }
+
+  @Override
+  public void dm_inplace_alpha_AT_times_BT_plus_C(double alpha, TYPEA A, TYPEB B, DenseMatrix C) { //CSIGNORE
+    inplace(alpha, A, true, B, true, 1, C);
+  }
+
+  @Override
+  public void dm_inplace_A_times_B_plus_beta_times_C(TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    inplace(1, A, false, B, false, beta, C);
+  }
+
+  @Override
+  public void dm_inplace_AT_times_B_plus_beta_times_C(TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    inplace(1, A, true, B, false, beta, C);
+  }
+
+  @Override
+  public void dm_inplace_A_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    inplace(1, A, false, B, true, beta, C);
+  }
+
+  @Override
+  public void dm_inplace_AT_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    inplace(1, A, true, B, true, beta, C);
+  }
+
+  @Override
+  public void dm_inplace_alpha_times_A_times_B_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    inplace(alpha, A, false, B, false, beta, C);
+  }
+
+  @Override
+  public void dm_inplace_alpha_times_AT_times_B_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    inplace(alpha, A, true, B, false, beta, C);
+  }
+
+  @Override
+  public void dm_inplace_alpha_times_A_times_BT_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    inplace(alpha, A, false, B, true, beta, C);
+  }
+
+  @Override
+  public void dm_inplace_alpha_times_AT_times_BT_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, DenseMatrix C) { //CSIGNORE
+    inplace(alpha, A, true, B, true, beta, C);
+  }
+  //} end in place
+
+}
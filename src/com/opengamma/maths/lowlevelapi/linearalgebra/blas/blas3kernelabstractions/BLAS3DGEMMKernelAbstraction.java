@@ -6,7 +6,6 @@
 package com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelabstractions;
 
 import com.opengamma.analytics.math.matrix.Matrix;
-import com.opengamma.maths.lowlevelapi.datatypes.primitive.MatrixPrimitive;
 
 /**
  * BLAS2*KernelAbstraction classes are used to kinda emulate function pointer passing.
@@ -18,7 +17,7 @@ import com.opengamma.maths.lowlevelapi.datatypes.primitive.MatrixPrimitive;
  * @param <TYPEA> a kind of matrix A
  * @param <TYPEB> a kind of matrix B
  * @param <TYPEC> a kind of matrix C
- * @param <TYPER> return type. TODO: Fix this, needs to happen via visitors or similar. 
+ * @param <TYPER> the type of matrix returned by the stateless methods
  * Function names starting with "dm_" are "direct mathematics" functions, their names are deliberately written with
  * underscores in to split out the mathematical operations they perform for ease of reading.
  * 
@@ -57,145 +56,145 @@ public abstract class BLAS3DGEMMKernelAbstraction<TYPER extends Matrix<Double>,
   /**
    * Stateless DGEMM:: returns A*B
    */
-  public abstract MatrixPrimitive dm_stateless_A_times_B(TYPEA A, TYPEB B); //CSIGNORE
+  public abstract TYPER dm_stateless_A_times_B(TYPEA A, TYPEB B); //CSIGNORE
 
   /* GROUP2:: AT*B */
   /**
    * Stateless DGEMM:: returns AT*B
    */
-  public abstract double[] dm_stateless_AT_times_B(TYPEA A, TYPEB B); //CSIGNORE
+  public abstract TYPER dm_stateless_AT_times_B(TYPEA A, TYPEB B); //CSIGNORE
 
   /* GROUP3:: A*BT */
   /**
    * Stateless DGEMM:: returns A*BT
    */
-  public abstract double[] dm_stateless_A_times_BT(TYPEA A, TYPEB B); //CSIGNORE
+  public abstract TYPER dm_stateless_A_times_BT(TYPEA A, TYPEB B); //CSIGNORE
 
   /* GROUP4:: AT*BT */
   /**
    * Stateless DGEMM:: returns AT*BT
    */
-  public abstract double[] dm_stateless_AT_times_BT(TYPEA A, TYPEB B); //CSIGNORE
+  public abstract TYPER dm_stateless_AT_times_BT(TYPEA A, TYPEB B); //CSIGNORE
 
   /* GROUP5:: alpha*A*B */
   /**
    * Stateless DGEMM:: returns alpha*A*B
    */
-  public abstract double[] dm_stateless_alpha_A_times_B(TYPEA A, TYPEB B); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_A_times_B(double alpha, TYPEA A, TYPEB B); //CSIGNORE
 
   /* GROUP6:: alpha*AT*B */
   /**
    * Stateless DGEMM:: returns alpha*AT*B
    */
-  public abstract double[] dm_stateless_alpha_AT_times_B(TYPEA A, TYPEB B); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_AT_times_B(double alpha, TYPEA A, TYPEB B); //CSIGNORE
 
   /* GROUP7:: alpha*A*BT */
   /**
    * Stateless DGEMM:: returns alpha*A*BT
    */
-  public abstract double[] dm_stateless_alpha_A_times_BT(TYPEA A, TYPEB B); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_A_times_BT(double alpha, TYPEA A, TYPEB B); //CSIGNORE
 
   /* GROUP8:: alpha*AT*BT */
   /**
    * Stateless DGEMM:: returns alpha*AT*BT
    */
-  public abstract double[] dm_stateless_alpha_AT_times_BT(TYPEA A, TYPEB B); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_AT_times_BT(double alpha, TYPEA A, TYPEB B); //CSIGNORE
 
   /* GROUP9:: A*B+C */
   /**
    * Stateless DGEMM:: returns A*B+C
    */
-  public abstract double[] dm_stateless_A_times_B_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_A_times_B_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
 
   /* GROUP10:: AT*B+C */
   /**
    * Stateless DGEMM:: returns AT*B+C
    */
-  public abstract double[] dm_stateless_AT_times_B_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_AT_times_B_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
 
   /* GROUP11:: A*BT+C */
   /**
    * Stateless DGEMM:: returns A*BT+C
    */
-  public abstract double[] dm_stateless_A_times_BT_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_A_times_BT_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
 
   /* GROUP12:: AT*BT+C */
   /**
    * Stateless DGEMM:: returns AT*BT+C
    */
-  public abstract double[] dm_stateless_AT_times_BT_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_AT_times_BT_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
 
   /* GROUP13:: alpha*A*B+C */
   /**
    * Stateless DGEMM:: returns alpha*A*B+C
    */
-  public abstract double[] dm_stateless_alpha_A_times_B_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_A_times_B_plus_C(double alpha, TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
 
   /* GROUP14:: alpha*AT*B+C */
   /**
    * Stateless DGEMM:: returns alpha*AT*B+C
    */
-  public abstract double[] dm_stateless_alpha_AT_times_B_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_AT_times_B_plus_C(double alpha, TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
 
   /* GROUP15:: alpha*A*BT+C */
   /**
    * Stateless DGEMM:: returns alpha*A*BT+C
    */
-  public abstract double[] dm_stateless_alpha_A_times_BT_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_A_times_BT_plus_C(double alpha, TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
 
   /* GROUP16:: alpha*AT*BT+C */
   /**
    * Stateless DGEMM:: returns alpha*AT*BT+C
    */
-  public abstract double[] dm_stateless_alpha_AT_times_BT_plus_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_AT_times_BT_plus_C(double alpha, TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
 
   /* GROUP17:: A*B+beta*C */
   /**
    * Stateless DGEMM:: returns A*B+beta*C
    */
-  public abstract double[] dm_stateless_A_times_B_plus_beta_times_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_A_times_B_plus_beta_times_C(TYPEA A, TYPEB B, double beta, TYPEC C); //CSIGNORE
 
   /* GROUP18:: AT*B+beta*C */
   /**
    * Stateless DGEMM:: returns AT*B+beta*C
    */
-  public abstract double[] dm_stateless_AT_times_B_plus_beta_times_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_AT_times_B_plus_beta_times_C(TYPEA A, TYPEB B, double beta, TYPEC C); //CSIGNORE
 
   /* GROUP19:: A*BT+beta*C */
   /**
    * Stateless DGEMM:: returns A*BT+beta*C
    */
-  public abstract double[] dm_stateless_A_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_A_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, double beta, TYPEC C); //CSIGNORE
 
   /* GROUP20:: AT*BT+beta*C */
   /**
    * Stateless DGEMM:: returns AT*BT+beta*C
    */
-  public abstract double[] dm_stateless_AT_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_AT_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, double beta, TYPEC C); //CSIGNORE
 
   /* GROUP21:: alpha*A*B+beta*C */
   /**
    * Stateless DGEMM:: returns alpha*A*B+beta*C
    */
-  public abstract double[] dm_stateless_alpha_times_A_times_B_plus_beta_times_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_times_A_times_B_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, TYPEC C); //CSIGNORE
 
   /* GROUP22:: alpha*AT*B+beta*C */
   /**
    * Stateless DGEMM:: returns alpha*AT*B+beta*C
    */
-  public abstract double[] dm_stateless_alpha_times_AT_times_B_plus_beta_times_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_times_AT_times_B_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, TYPEC C); //CSIGNORE
 
   /* GROUP23:: alpha*A*BT+beta*C */
   /**
    * Stateless DGEMM:: returns alpha*A*BT+beta*C
    */
-  public abstract double[] dm_stateless_alpha_times_A_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_times_A_times_BT_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, TYPEC C); //CSIGNORE
 
   /* GROUP24:: alpha*AT*BT+beta*C */
   /**
    * Stateless DGEMM:: returns alpha*AT*BT+beta*C
    */
-  public abstract double[] dm_stateless_alpha_times_AT_times_BT_plus_beta_times_C(TYPEA A, TYPEB B, TYPEC C); //CSIGNORE
+  public abstract TYPER dm_stateless_alpha_times_AT_times_BT_plus_beta_times_C(double alpha, TYPEA A, TYPEB B, double beta, TYPEC C); //CSIGNORE
 
   //} end stateless
 
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelimplementations;
+
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.CompressedSparseRowFormatMatrix;
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.DenseMatrix;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelabstractions.BLAS3DGEMMDenseOutputKernelAbstraction;
+
+/**
+ * Does DGEMM like operations with A of the {@link CompressedSparseRowFormatMatrix} type and B of the {@link DenseMatrix} type.
+ * Each nonzero A(i,j) adds a scaled row j of op(B) to row i of C so the work is proportional to the number of nonzeros.
+ * If A is transposed its CSR transpose is built first (a counting sort, O(nnz)) so the same row driven kernel applies.
+ */
+public final class DGEMMForCSRMatrix extends BLAS3DGEMMDenseOutputKernelAbstraction<CompressedSparseRowFormatMatrix, DenseMatrix> {
+  private static DGEMMForCSRMatrix s_instance = new DGEMMForCSRMatrix();
+
+  public static DGEMMForCSRMatrix getInstance() {
+    return s_instance;
+  }
+
+  private DGEMMForCSRMatrix() {
+  }
+
+  @Override
+  protected void gemm(final double alpha, CompressedSparseRowFormatMatrix A, boolean transposeA, DenseMatrix B, boolean transposeB, final double[] c) { //CSIGNORE
+    final int[] rowPtr;
+    final int[] colIdx;
+    final double[] values;
+    final int m;
+    if (transposeA) {
+      final int rows = A.getNumberOfRows();
+      final int cols = A.getNumberOfColumns();
+      final int[] aRowPtr = A.getRowPtr();
+      final int[] aColIdx = A.getColumnIndex();
+      final double[] aValues = A.getNonZeroElements();
+      final int nnz = aRowPtr[rows];
+      rowPtr = new int[cols + 1];
+      colIdx = new int[nnz];
+      values = new double[nnz];
+      for (int ptr = 0; ptr < nnz; ptr++) {
+        rowPtr[aColIdx[ptr] + 1]++;
+      }
+      for (int i = 0; i < cols; i++) {
+        rowPtr[i + 1] += rowPtr[i];
+      }
+      final int[] next = new int[cols];
+      System.arraycopy(rowPtr, 0, next, 0, cols);
+      for (int i = 0; i < rows; i++) {
+        for (int ptr = aRowPtr[i]; ptr < aRowPtr[i + 1]; ptr++) {
+          final int dest = next[aColIdx[ptr]]++;
+          colIdx[dest] = i;
+          values[dest] = aValues[ptr];
+        }
+      }
+      m = cols;
+    } else {
+      rowPtr = A.getRowPtr();
+      colIdx = A.getColumnIndex();
+      values = A.getNonZeroElements();
+      m = A.getNumberOfRows();
+    }
+    final int n = transposeB ? B.getNumberOfRows() : B.getNumberOfColumns();
+    final double[] b = transposeB ? transpose(B.getData(), B.getNumberOfRows(), B.getNumberOfColumns()) : B.getData();
+    forEachRowBlock(m, (long) rowPtr[m] * n, new RowKernel() {
+      @Override
+      public void rows(final int lo, final int hi) {
+        for (int i = lo; i < hi; i++) {
+          final int ci = i * n;
+          for (int ptr = rowPtr[i]; ptr < rowPtr[i + 1]; ptr++) {
+            final double s = alpha * values[ptr];
+            final int bj = colIdx[ptr] * n;
+            for (int j = 0; j < n; j++) {
+              c[ci + j] += s * b[bj + j];
+            }
+          }
+        }
+      }
+    });
+  }
+
+}
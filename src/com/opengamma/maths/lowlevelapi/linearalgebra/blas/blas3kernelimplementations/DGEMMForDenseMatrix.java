@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2011 - present by OpenGamma Inc. and the OpenGamma group of companies
+ *
+ * Please see distribution for license.
+ */
+package com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelimplementations;
+
+import com.opengamma.maths.lowlevelapi.datatypes.primitive.DenseMatrix;
+import com.opengamma.maths.lowlevelapi.linearalgebra.blas.blas3kernelabstractions.BLAS3DGEMMDenseOutputKernelAbstraction;
+
+/**
+ * Does DGEMM like operations on the {@link DenseMatrix} type.
+ * Transposed operands are copied into row major transposes first so that the inner loop is always a unit stride axpy
+ * over a row of B into a row of C. The loops are blocked over the columns of C and the inner dimension so the active
+ * panel of B stays in cache, and four rows of C are updated per pass over that panel.
+ */
+public final class DGEMMForDenseMatrix extends BLAS3DGEMMDenseOutputKernelAbstraction<DenseMatrix, DenseMatrix> {
+  private static DGEMMForDenseMatrix s_instance = new DGEMMForDenseMatrix();
+
+  /** Columns of C per block */
+  private static final int NC = 256;
+  /** Inner dimension per block, a KC x NC panel of B is 256kB */
+  private static final int KC = 128;
+
+  public static DGEMMForDenseMatrix getInstance() {
+    return s_instance;
+  }
+
+  private DGEMMForDenseMatrix() {
+  }
+
+  @Override
+  protected void gemm(final double alpha, DenseMatrix A, boolean transposeA, DenseMatrix B, boolean transposeB, final double[] c) { //CSIGNORE
+    final int m = transposeA ? A.getNumberOfColumns() : A.getNumberOfRows();
+    final int k = transposeA ? A.getNumberOfRows() : A.getNumberOfColumns();
+    final int n = transposeB ? B.getNumberOfRows() : B.getNumberOfColumns();
+    final double[] a = transposeA ? transpose(A.getData(), A.getNumberOfRows(), A.getNumberOfColumns()) : A.getData();
+    final double[] b = transposeB ? transpose(B.getData(), B.getNumberOfRows(), B.getNumberOfColumns()) : B.getData();
+    forEachRowBlock(m, (long) m * n * k, new RowKernel() {
+      @Override
+      public void rows(final int lo, final int hi) {
+        kernel(alpha, a, b, c, k, n, lo, hi);
+      }
+    });
+  }
+
+  private static void kernel(final double alpha, final double[] a, final double[] b, final double[] c, final int k, final int n, final int lo, final int hi) {
+    for (int jj = 0; jj < n; jj += NC) {
+      final int jEnd = Math.min(n, jj + NC);
+      for (int pp = 0; pp < k; pp += KC) {
+        final int pEnd = Math.min(k, pp + KC);
+        int i = lo;
+        for (; i + 3 < hi; i += 4) {
+          final int c0 = i * n;
+          final int c1 = c0 + n;
+          final int c2 = c1 + n;
+          final int c3 = c2 + n;
+          final int a0 = i * k;
+          final int a1 = a0 + k;
+          final int a2 = a1 + k;
+          final int a3 = a2 + k;
+          for (int p = pp; p < pEnd; p++) {
+            final double s0 = alpha * a[a0 + p];
+            final double s1 = alpha * a[a1 + p];
+            final double s2 = alpha * a[a2 + p];
+            final double s3 = alpha * a[a3 + p];
+            final int bp = p * n;
+            for (int j = jj; j < jEnd; j++) {
+              final double bpj = b[bp + j];
+              c[c0 + j] += s0 * bpj;
+              c[c1 + j] += s1 * bpj;
+              c[c2 + j] += s2 * bpj;
+              c[c3 + j] += s3 * bpj;
+            }
+          }
+        }
+        for (; i < hi; i++) {
+          final int c0 = i * n;
+          final int a0 = i * k;
+          for (int p = pp; p < pEnd; p++) {
+            final double s0 = alpha * a[a0 + p];
+            final int bp = p * n;
+            for (int j = jj; j < jEnd; j++) {
+              c[c0 + j] += s0 * b[bp + j];
+            }
+          }
+        }
+      }
+    }
+  }
+
+}